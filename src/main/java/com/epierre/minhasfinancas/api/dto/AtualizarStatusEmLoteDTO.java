@@ -0,0 +1,23 @@
+package com.epierre.minhasfinancas.api.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AtualizarStatusEmLoteDTO {
+
+	private List<Long> ids;
+	private Long usuario;
+	private Integer mes;
+	private Integer ano;
+	private String statusAtual;
+	private String status;
+
+}
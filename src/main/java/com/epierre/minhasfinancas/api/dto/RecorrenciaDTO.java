@@ -0,0 +1,31 @@
+package com.epierre.minhasfinancas.api.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lancamento mensal a partir de mes/ano: com parcelas, um parcelamento de
+ * parcelas lancamentos de valor cada; com mesFinal/anoFinal, ate esse mes
+ * (inclusive); sem nenhum dos dois, sem fim.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecorrenciaDTO {
+
+	private String descricao;
+	private Integer mes;
+	private Integer ano;
+	private BigDecimal valor;
+	private Long usuario;
+	private String tipo;
+	private Integer parcelas;
+	private Integer mesFinal;
+	private Integer anoFinal;
+
+}
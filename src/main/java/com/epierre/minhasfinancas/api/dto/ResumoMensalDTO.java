@@ -0,0 +1,18 @@
+package com.epierre.minhasfinancas.api.dto;
+
+import java.math.BigDecimal;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ResumoMensalDTO {
+
+	private Integer mes;
+	private String tipo;
+	private String status;
+	private BigDecimal total;
+	private Long quantidade;
+
+}
@@ -0,0 +1,19 @@
+package com.epierre.minhasfinancas.api.dto;
+
+import java.math.BigDecimal;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SaldoDetalhadoDTO {
+
+	private BigDecimal receitas;
+	private BigDecimal despesas;
+	private BigDecimal saldo;
+	private BigDecimal pendente;
+	private BigDecimal efetivado;
+	private BigDecimal cancelado;
+
+}
@@ -0,0 +1,15 @@
+package com.epierre.minhasfinancas.api.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class UsuarioAutenticadoDTO {
+
+	private Long id;
+	private String nome;
+	private String email;
+	private String token;
+
+}
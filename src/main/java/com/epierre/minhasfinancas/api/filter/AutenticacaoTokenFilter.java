@@ -0,0 +1,84 @@
+package com.epierre.minhasfinancas.api.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.epierre.minhasfinancas.model.repository.RoteadorDataSource;
+import com.epierre.minhasfinancas.service.TokenService;
+
+/**
+ * Valida o token enviado em "Authorization: Bearer ..." e disponibiliza o id
+ * do usuario como atributo da requisicao. Fora o cadastro e a autenticacao,
+ * toda requisicao da API precisa do token: sem ele, ou com um token invalido
+ * ou expirado, a resposta e 401. Os recursos comparam o usuario do token com
+ * o informado e respondem 403 quando divergem.
+ * O usuario tambem fica com o RoteadorDataSource, que direciona para a
+ * primaria as leituras de quem acabou de escrever.
+ */
+@Component
+public class AutenticacaoTokenFilter extends OncePerRequestFilter {
+
+	public static final String ATRIBUTO_USUARIO = "idUsuarioAutenticado";
+
+	private static final String PREFIXO = "Bearer ";
+	private static final String API = "/api/";
+	private static final Set<String> PUBLICOS = new HashSet<>(Arrays.asList("/api/usuarios", "/api/usuarios/autenticar"));
+
+	private final TokenService tokenService;
+
+	public AutenticacaoTokenFilter(TokenService tokenService) {
+		this.tokenService = tokenService;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+
+		String autorizacao = request.getHeader(HttpHeaders.AUTHORIZATION);
+		if (autorizacao == null || !autorizacao.startsWith(PREFIXO)) {
+			if (exigeToken(request)) {
+				response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Informe o token de autenticação.");
+				return;
+			}
+			chain.doFilter(request, response);
+			return;
+		}
+
+		Optional<Long> idUsuario = tokenService.obterIdUsuario(autorizacao.substring(PREFIXO.length()).trim());
+		if (!idUsuario.isPresent()) {
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token inválido ou expirado.");
+			return;
+		}
+
+		request.setAttribute(ATRIBUTO_USUARIO, idUsuario.get());
+		Long anterior = RoteadorDataSource.definirUsuario(idUsuario.get());
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			RoteadorDataSource.definirUsuario(anterior);
+		}
+	}
+
+	// cadastro e autenticacao sao POST sem token; o preflight do CORS nunca leva o cabecalho
+	private static boolean exigeToken(HttpServletRequest request) {
+		String caminho = request.getRequestURI().substring(request.getContextPath().length());
+		if (!caminho.startsWith(API) || HttpMethod.OPTIONS.matches(request.getMethod())) {
+			return false;
+		}
+		return !(HttpMethod.POST.matches(request.getMethod()) && PUBLICOS.contains(caminho));
+	}
+
+}
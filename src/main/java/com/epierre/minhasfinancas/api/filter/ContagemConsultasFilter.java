@@ -0,0 +1,77 @@
+package com.epierre.minhasfinancas.api.filter;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.epierre.minhasfinancas.model.repository.MonitorConsultas;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Conta as execucoes de SQL de cada requisicao. Com
+ * minhasfinancas.sql.cabecalho-contagem=true o total volta no cabecalho
+ * X-Consultas-Sql; como o corpo pode ser gravado antes do fim da requisicao,
+ * nesse modo a resposta fica em memoria ate o cabecalho ser definido. A
+ * exportacao e gravada em fluxo, com memoria constante: ela nunca fica em
+ * memoria e o total vai para o log em vez do cabecalho.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ContagemConsultasFilter extends OncePerRequestFilter {
+
+	public static final String CABECALHO = "X-Consultas-Sql";
+
+	private static final String EXPORTACAO = "/api/lancamentos/exportar";
+
+	private final boolean cabecalho;
+
+	public ContagemConsultasFilter(@Value("${minhasfinancas.sql.cabecalho-contagem:false}") boolean cabecalho) {
+		this.cabecalho = cabecalho;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+
+		MonitorConsultas.Contagem anterior = MonitorConsultas.iniciar(request.getMethod() + " " + request.getRequestURI());
+		if (!cabecalho || emFluxo(request)) {
+			MonitorConsultas.Contagem contagem;
+			try {
+				chain.doFilter(request, response);
+			} finally {
+				contagem = MonitorConsultas.encerrar(anterior);
+			}
+			if (cabecalho) {
+				log.info("{} {}: {} consultas SQL", request.getMethod(), request.getRequestURI(), contagem.getConsultas());
+			}
+			return;
+		}
+
+		ContentCachingResponseWrapper resposta = new ContentCachingResponseWrapper(response);
+		MonitorConsultas.Contagem contagem;
+		try {
+			chain.doFilter(request, resposta);
+		} finally {
+			contagem = MonitorConsultas.encerrar(anterior);
+		}
+		resposta.setHeader(CABECALHO, String.valueOf(contagem.getConsultas()));
+		resposta.copyBodyToResponse();
+	}
+
+	private static boolean emFluxo(HttpServletRequest request) {
+		return request.getRequestURI().substring(request.getContextPath().length()).equals(EXPORTACAO);
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.epierre.minhasfinancas.api.resource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.service.DiarioService;
+import com.epierre.minhasfinancas.service.RegistroDiario;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Leitura do diario por offset em /actuator/diario, para quem acompanha as
+ * alteracoes: cada resposta traz o proximo offset a pedir e, com espera, a
+ * chamada segura ate chegarem registros novos. Fica fora da exposicao padrao
+ * (management.endpoints.web.exposure.include).
+ */
+@Component
+@Endpoint(id = "diario")
+@RequiredArgsConstructor
+public class DiarioEndpoint {
+
+	private static final int LIMITE_PADRAO = 100;
+	private static final int LIMITE_MAXIMO = 1000;
+	private static final long ESPERA_MAXIMA_MS = 30_000;
+
+	private final DiarioService diarioService;
+
+	@ReadOperation
+	public Map<String, Object> ler(@Nullable Long offset, @Nullable Integer limite, @Nullable Long espera)
+			throws InterruptedException {
+		long inicio = offset == null ? 0 : offset;
+		int maximo = limite == null ? LIMITE_PADRAO : Math.min(Math.max(limite, 1), LIMITE_MAXIMO);
+		List<RegistroDiario> registros = espera == null
+				? diarioService.ler(inicio, maximo)
+				: diarioService.aguardar(inicio, maximo, Math.min(espera, ESPERA_MAXIMA_MS));
+
+		Map<String, Object> resposta = new LinkedHashMap<>();
+		resposta.put("registros", registros.stream().map(DiarioEndpoint::registro).collect(Collectors.toList()));
+		resposta.put("proximo", registros.isEmpty() ? inicio : registros.get(registros.size() - 1).getProximo());
+		resposta.put("fim", diarioService.fim());
+		return resposta;
+	}
+
+	// LancamentoLinha tem filtro de campos do Jackson, por isso vai como mapa
+	private static Map<String, Object> registro(RegistroDiario registro) {
+		Map<String, Object> dados = new LinkedHashMap<>();
+		dados.put("offset", registro.getOffset());
+		dados.put("tipo", registro.getTipo());
+		if (registro.getLancamento() != null) {
+			LancamentoLinha linha = registro.getLancamento();
+			Map<String, Object> lancamento = new LinkedHashMap<>();
+			lancamento.put("id", linha.getId());
+			lancamento.put("descricao", linha.getDescricao());
+			lancamento.put("mes", linha.getMes());
+			lancamento.put("ano", linha.getAno());
+			lancamento.put("valor", linha.getValor());
+			lancamento.put("usuario", linha.getUsuario());
+			lancamento.put("tipo", linha.getTipo());
+			lancamento.put("status", linha.getStatus());
+			lancamento.put("dataCadastro", linha.getDataCadastro());
+			lancamento.put("versao", linha.getVersao());
+			dados.put("lancamento", lancamento);
+		}
+		if (registro.getAlteracaoStatus() != null) {
+			dados.put("alteracaoStatus", registro.getAlteracaoStatus());
+		}
+		return dados;
+	}
+
+}
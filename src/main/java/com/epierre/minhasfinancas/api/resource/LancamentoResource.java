@@ -1,29 +1,57 @@
 package com.epierre.minhasfinancas.api.resource;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.epierre.minhasfinancas.api.dto.AtualizarStatusDTO;
+import com.epierre.minhasfinancas.api.dto.AtualizarStatusEmLoteDTO;
+import com.epierre.minhasfinancas.api.filter.AutenticacaoTokenFilter;
 import com.epierre.minhasfinancas.api.dto.LancamentoDTO;
+import com.epierre.minhasfinancas.api.dto.PaginaDTO;
+import com.epierre.minhasfinancas.api.dto.RecorrenciaDTO;
+import com.epierre.minhasfinancas.exception.ConflitoAtualizacaoException;
 import com.epierre.minhasfinancas.exception.RegraNegocioException;
 import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Recorrencia;
 import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.FormatoExportacao;
+import com.epierre.minhasfinancas.model.enums.FormatoImportacao;
 import com.epierre.minhasfinancas.model.enums.StatusLancamento;
 import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.service.ImportacaoService;
 import com.epierre.minhasfinancas.service.LancamentoService;
-import com.epierre.minhasfinancas.service.UsuarioService;
+import com.epierre.minhasfinancas.service.RecorrenciaService;
+import com.epierre.minhasfinancas.service.ResultadoImportacao;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 
 import lombok.RequiredArgsConstructor;
 
@@ -33,21 +61,42 @@ import lombok.RequiredArgsConstructor;
 public class LancamentoResource {
 
 	private final LancamentoService service;
-	private final UsuarioService usuarioService;
+	private final ImportacaoService importacaoService;
+	private final RecorrenciaService recorrenciaService;
+
+	private static final int LIMITE_PADRAO = 50;
+	private static final int LIMITE_MAXIMO = 1000;
+	private static final String CONFLITO = "O lançamento foi alterado por outra operação. Recarregue e tente novamente.";
+	private static final Set<String> CAMPOS_LINHA = new LinkedHashSet<>(Arrays.asList(
+			"id", "descricao", "mes", "ano", "valor", "usuario", "tipo", "status", "dataCadastro", "versao"));
+	private static final String USUARIO_DIVERGENTE = "O usuário informado não corresponde ao usuário autenticado.";
 
 	@GetMapping
 	public ResponseEntity buscar(@RequestParam(value = "descricao", required = false) String descricao,
 			@RequestParam(value = "mes", required = false) Integer mes,
-			@RequestParam(value = "ano", required = false) Integer ano, @RequestParam("usuario") Long idUsuario
+			@RequestParam(value = "ano", required = false) Integer ano,
+			@RequestParam(value = "usuario", required = false) Long idUsuario,
+			@RequestParam(value = "limite", required = false) Integer limite,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "fields", required = false) Set<String> campos,
+			@RequestParam(value = "arquivados", defaultValue = "false") boolean arquivados,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado,
+			WebRequest request, HttpServletResponse response
 
 	) {
+		if (divergente(idAutenticado, idUsuario)) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
+		if (campos != null && !CAMPOS_LINHA.containsAll(campos)) {
+			return ResponseEntity.badRequest().body("Campos válidos para fields: " + String.join(", ", CAMPOS_LINHA) + ".");
+		}
 
 		Lancamento lancamentoFiltro = new Lancamento();
 		lancamentoFiltro.setDescricao(descricao);
 		lancamentoFiltro.setMes(mes);
 		lancamentoFiltro.setAno(ano);
 
-		Optional<Usuario> usuario = usuarioService.obterPorId(idUsuario);
+		Optional<Usuario> usuario = obterUsuario(idAutenticado);
 		if (!usuario.isPresent()) {
 			return ResponseEntity.badRequest()
 					.body("Não foi possível realizar a consulta. Usuário não encontrado para o Id informado.");
@@ -55,14 +104,126 @@ public class LancamentoResource {
 			lancamentoFiltro.setUsuario(usuario.get());
 		}
 
-		List<Lancamento> lancamentos = service.buscar(lancamentoFiltro);
-		return ResponseEntity.ok(lancamentos);
+		// 304 sem consultar os lancamentos quando o cliente ja tem esta versao; a ETag e fraca porque
+		// a mesma versao tem representacoes diferentes (JSON, Smile, CBOR, comprimidas ou nao), e o
+		// Vary tambem vai no 304 para que um cache nao troque uma pela outra
+		response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+		if (request.checkNotModified("W/\"" + service.obterVersaoPorUsuario(usuario.get().getId()) + "\"")) {
+			return null;
+		}
+
+		if (limite == null && cursor == null) {
+			return ResponseEntity.ok(comCampos(arquivados
+					? service.buscarLinhasComArquivados(lancamentoFiltro, null, null)
+					: service.buscarLinhas(lancamentoFiltro), campos));
+		}
+
+		int tamanho = limite == null ? LIMITE_PADRAO : limite;
+		if (tamanho < 1 || tamanho > LIMITE_MAXIMO) {
+			return ResponseEntity.badRequest().body("O limite deve estar entre 1 e " + LIMITE_MAXIMO + ".");
+		}
+
+		Lancamento posicao = null;
+		if (cursor != null) {
+			try {
+				posicao = decodificarCursor(cursor);
+			} catch (IllegalArgumentException e) {
+				return ResponseEntity.badRequest().body("Cursor de paginação inválido.");
+			}
+		}
+
+		List<LancamentoLinha> lancamentos = arquivados
+				? service.buscarLinhasComArquivados(lancamentoFiltro, posicao, tamanho + 1)
+				: service.buscarLinhas(lancamentoFiltro, posicao, tamanho + 1);
+		String proximaPagina = null;
+		if (lancamentos.size() > tamanho) {
+			lancamentos = lancamentos.subList(0, tamanho);
+			proximaPagina = codificarCursor(lancamentos.get(tamanho - 1));
+		}
+		return ResponseEntity.ok(comCampos(new PaginaDTO<>(lancamentos, proximaPagina), campos));
+	}
+
+	// sem fields todas as propriedades da linha sao serializadas
+	private static MappingJacksonValue comCampos(Object corpo, Set<String> campos) {
+		MappingJacksonValue valor = new MappingJacksonValue(corpo);
+		valor.setFilters(new SimpleFilterProvider().addFilter(LancamentoLinha.FILTRO_CAMPOS, campos == null
+				? SimpleBeanPropertyFilter.serializeAll()
+				: SimpleBeanPropertyFilter.filterOutAllExcept(campos)));
+		return valor;
+	}
+
+	@GetMapping("/exportar")
+	public void exportar(@RequestParam(value = "usuario", required = false) Long idUsuario,
+			@RequestParam(value = "formato", defaultValue = "CSV") String formato,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado,
+			HttpServletResponse response) throws IOException {
+
+		if (divergente(idAutenticado, idUsuario)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN, USUARIO_DIVERGENTE);
+			return;
+		}
+
+		FormatoExportacao formatoExportacao;
+		try {
+			formatoExportacao = FormatoExportacao.valueOf(formato.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Formato de exportação inválido.");
+			return;
+		}
+
+		Optional<Usuario> usuario = obterUsuario(idAutenticado);
+		if (!usuario.isPresent()) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+					"Não foi possível realizar a exportação. Usuário não encontrado para o Id informado.");
+			return;
+		}
+
+		String extensao = formatoExportacao == FormatoExportacao.CSV ? "csv" : "ndjson";
+		response.setContentType(formatoExportacao == FormatoExportacao.CSV ? "text/csv" : "application/x-ndjson");
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=lancamentos." + extensao);
+		service.exportar(usuario.get().getId(), formatoExportacao, response.getOutputStream());
+	}
+
+	@PostMapping("/importar")
+	public ResponseEntity importar(@RequestParam(value = "usuario", required = false) Long idUsuario,
+			@RequestParam(value = "formato", defaultValue = "CSV") String formato,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado,
+			InputStream corpo) {
+
+		if (divergente(idAutenticado, idUsuario)) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
+
+		FormatoImportacao formatoImportacao;
+		try {
+			formatoImportacao = FormatoImportacao.valueOf(formato.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body("Formato de importação inválido.");
+		}
+
+		Optional<Usuario> usuario = obterUsuario(idAutenticado);
+		if (!usuario.isPresent()) {
+			return ResponseEntity.badRequest()
+					.body("Não foi possível realizar a importação. Usuário não encontrado para o Id informado.");
+		}
+
+		try {
+			ResultadoImportacao resultado = importacaoService.importar(usuario.get().getId(), formatoImportacao, corpo);
+			return ResponseEntity.ok(resultado);
+		} catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
 	}
 
 	@PostMapping
-	public ResponseEntity salvar(@RequestBody LancamentoDTO dto) {
+	public ResponseEntity salvar(@RequestBody LancamentoDTO dto,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado) {
+		if (divergente(idAutenticado, dto.getUsuario())) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
 		try {
-			Lancamento entidade = converter(dto);
+			Lancamento entidade = converter(dto, idAutenticado);
 			entidade = service.salvar(entidade);
 			return new ResponseEntity(entidade, HttpStatus.CREATED);
 		} catch (RegraNegocioException e) {
@@ -70,55 +231,176 @@ public class LancamentoResource {
 		}
 	}
 
+	// um parcelamento de 48 meses e uma requisicao e uma transacao, nao 48
+	@PostMapping("/recorrencias")
+	public ResponseEntity criarRecorrencia(@RequestBody RecorrenciaDTO dto,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado) {
+		if (divergente(idAutenticado, dto.getUsuario())) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
+		boolean comFim = dto.getMesFinal() != null || dto.getAnoFinal() != null;
+		if (dto.getParcelas() != null && comFim) {
+			return ResponseEntity.badRequest().body("Informe as parcelas ou o mês final, não ambos.");
+		}
+		if (comFim && (dto.getMesFinal() == null || dto.getAnoFinal() == null || dto.getMesFinal() < 1 || dto.getMesFinal() > 12)) {
+			return ResponseEntity.badRequest().body("Informe um mês e um ano finais válidos.");
+		}
+
+		Optional<Usuario> usuario = obterUsuario(idAutenticado);
+		if (!usuario.isPresent()) {
+			return ResponseEntity.badRequest().body("Usuário não encontrado para o Id informado.");
+		}
+
+		Integer quantidade = dto.getParcelas();
+		if (comFim && dto.getMes() != null && dto.getAno() != null) {
+			quantidade = Recorrencia.competencia(dto.getAnoFinal(), dto.getMesFinal())
+					- Recorrencia.competencia(dto.getAno(), dto.getMes()) + 1;
+		}
+		Recorrencia recorrencia = Recorrencia.builder()
+				.idUsuario(usuario.get().getId())
+				.descricao(dto.getDescricao())
+				.valor(dto.getValor())
+				.tipo(dto.getTipo() == null ? null : TipoLancamento.valueOf(dto.getTipo()))
+				.mesInicial(dto.getMes())
+				.anoInicial(dto.getAno())
+				.quantidade(quantidade)
+				.parcelada(dto.getParcelas() != null)
+				.build();
+		try {
+			return new ResponseEntity(recorrenciaService.criar(recorrencia), HttpStatus.CREATED);
+		} catch (RegraNegocioException e) {
+			return ResponseEntity.badRequest().body(e.getMessage());
+		}
+	}
+
 	@PutMapping("{id}")
-	public ResponseEntity atualizar(@PathVariable("id") Long id, @RequestBody LancamentoDTO dto) {
+	public ResponseEntity atualizar(@PathVariable("id") Long id, @RequestBody LancamentoDTO dto,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado) {
 		return service.obterPorId(id).map(entity -> {
+			if (divergente(idAutenticado, entity.getUsuario().getId()) || divergente(idAutenticado, dto.getUsuario())) {
+				return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+			}
 			try {
-				Lancamento lancamento = converter(dto);
+				Lancamento lancamento = converter(dto, idAutenticado);
 				lancamento.setId(entity.getId());
-				service.atualizar(lancamento);
-				return ResponseEntity.ok(lancamento);
+				// sem versao informada pelo cliente vale a que acabou de ser lida
+				if (lancamento.getVersao() == null) {
+					lancamento.setVersao(entity.getVersao());
+				}
+				return ResponseEntity.ok(service.atualizar(lancamento));
 			} catch (RegraNegocioException e) {
 				return ResponseEntity.badRequest().body(e.getMessage());
+			} catch (OptimisticLockingFailureException e) {
+				return new ResponseEntity(CONFLITO, HttpStatus.CONFLICT);
 			}
 		}).orElseGet(() -> new ResponseEntity("Lancamento não encontrado na base de Dados.", HttpStatus.BAD_REQUEST));
 	}
 
 	@PutMapping("{id}/atualiza-status")
-	public ResponseEntity atualizarStatus(@PathVariable("id") Long id, @RequestBody AtualizarStatusDTO dto) {
+	public ResponseEntity atualizarStatus(@PathVariable("id") Long id, @RequestBody AtualizarStatusDTO dto,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado) {
 		return service.obterPorId(id).map(entity ->  {
+			if (divergente(idAutenticado, entity.getUsuario().getId())) {
+				return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+			}
 			StatusLancamento statusSelecionado = StatusLancamento.valueOf(dto.getStatus());
 			if (statusSelecionado == null) {
 				return ResponseEntity.badRequest().body("nao foi possivel atualizar o status do lancamento");
 			}
 			try {
-				  entity.setStatus(statusSelecionado);
-				  service.atualizar(entity);
-				  return ResponseEntity.ok(entity);
+				  return ResponseEntity.ok(service.atualizarStatus(entity, statusSelecionado));
 		    } catch (RegraNegocioException e) {
 				 return ResponseEntity.badRequest().body(e.getMessage());
+		    } catch (ConflitoAtualizacaoException e) {
+				 return new ResponseEntity(e.getMessage(), HttpStatus.CONFLICT);
 		    }
 		}).orElseGet(() -> 
 		new ResponseEntity("Lancamento não encontrado na base de Dados.", HttpStatus.BAD_REQUEST));
 	}
 
+	@PutMapping("/atualiza-status")
+	public ResponseEntity atualizarStatusEmLote(@RequestBody AtualizarStatusEmLoteDTO dto,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado) {
+		if (divergente(idAutenticado, dto.getUsuario())) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
+
+		StatusLancamento status;
+		StatusLancamento statusAtual;
+		try {
+			status = StatusLancamento.valueOf(dto.getStatus());
+			statusAtual = dto.getStatusAtual() == null ? null : StatusLancamento.valueOf(dto.getStatusAtual());
+		} catch (IllegalArgumentException | NullPointerException e) {
+			return ResponseEntity.badRequest().body("nao foi possivel atualizar o status do lancamento");
+		}
+
+		Optional<Usuario> usuario = obterUsuario(idAutenticado);
+		if (!usuario.isPresent()) {
+			return ResponseEntity.badRequest().body("Usuário não encontrado para o Id informado.");
+		}
+
+		Lancamento filtro = new Lancamento();
+		filtro.setUsuario(usuario.get());
+		filtro.setMes(dto.getMes());
+		filtro.setAno(dto.getAno());
+		filtro.setStatus(statusAtual);
+
+		try {
+			int atualizados = service.atualizarStatus(filtro, dto.getIds(), status);
+			return ResponseEntity.ok(Collections.singletonMap("atualizados", atualizados));
+		} catch (ConflitoAtualizacaoException e) {
+			return new ResponseEntity(e.getMessage(), HttpStatus.CONFLICT);
+		}
+	}
+
 	@DeleteMapping("{id}")
-	public ResponseEntity deletar(@PathVariable("id") Long id) {
+	public ResponseEntity deletar(@PathVariable("id") Long id,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado) {
 		return service.obterPorId(id).map(entidade -> {
+			if (divergente(idAutenticado, entidade.getUsuario().getId())) {
+				return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+			}
 			service.deletar(entidade);
 			return new ResponseEntity(HttpStatus.NO_CONTENT);
 		}).orElseGet(() -> new ResponseEntity("Lancamento não encontrado na base de Dados.", HttpStatus.BAD_REQUEST));
 	}
 
-	private Lancamento converter(LancamentoDTO dto) {
+	// o usuario vem do token, sem consulta ao banco; o AutenticacaoTokenFilter recusa a requisicao sem ele
+	private static Optional<Usuario> obterUsuario(Long idAutenticado) {
+		return Optional.ofNullable(idAutenticado).map(id -> Usuario.builder().id(id).build());
+	}
+
+	private static boolean divergente(Long idAutenticado, Long idInformado) {
+		return idAutenticado != null && idInformado != null && !idAutenticado.equals(idInformado);
+	}
+
+	private String codificarCursor(LancamentoLinha ultimo) {
+		String posicao = ultimo.getAno() + ":" + ultimo.getMes() + ":" + ultimo.getId();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(posicao.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Lancamento decodificarCursor(String cursor) {
+		String[] partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+		if (partes.length != 3) {
+			throw new IllegalArgumentException(cursor);
+		}
+		Lancamento posicao = new Lancamento();
+		posicao.setAno(Integer.valueOf(partes[0]));
+		posicao.setMes(Integer.valueOf(partes[1]));
+		posicao.setId(Long.valueOf(partes[2]));
+		return posicao;
+	}
+
+	Lancamento converter(LancamentoDTO dto, Long idAutenticado) {
 		Lancamento lancamento = new Lancamento();
 		lancamento.setId(dto.getId());
 		lancamento.setDescricao(dto.getDescricao());
 		lancamento.setAno(dto.getAno());
 		lancamento.setMes(dto.getMes());
 		lancamento.setValor(dto.getValor());
+		lancamento.setVersao(dto.getVersao());
 
-		Usuario usuario = usuarioService.obterPorId(dto.getUsuario())
+		Usuario usuario = obterUsuario(idAutenticado)
 				.orElseThrow(() -> new RegraNegocioException("Usuário não encontrado para o Id informado."));
 
 		lancamento.setUsuario(usuario);
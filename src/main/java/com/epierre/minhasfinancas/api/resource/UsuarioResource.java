@@ -1,23 +1,43 @@
 package com.epierre.minhasfinancas.api.resource;
 
-import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 //import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.epierre.minhasfinancas.api.dto.ResumoMensalDTO;
+import com.epierre.minhasfinancas.api.dto.SaldoDetalhadoDTO;
+import com.epierre.minhasfinancas.api.dto.UsuarioAutenticadoDTO;
 import com.epierre.minhasfinancas.api.dto.UsuarioDTO;
+import com.epierre.minhasfinancas.api.filter.AutenticacaoTokenFilter;
 import com.epierre.minhasfinancas.exception.ErroAutenticacao;
 import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
 import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.DimensaoAnalise;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+import com.epierre.minhasfinancas.service.AnaliseLancamentosService;
 import com.epierre.minhasfinancas.service.LancamentoService;
+import com.epierre.minhasfinancas.service.TokenService;
 import com.epierre.minhasfinancas.service.UsuarioService;
 
 import lombok.RequiredArgsConstructor;
@@ -29,13 +49,23 @@ public class UsuarioResource {
 
 	private final UsuarioService service;
 	private final LancamentoService lancamentoService;
+	private final AnaliseLancamentosService analiseLancamentosService;
+	private final TokenService tokenService;
+
+	private static final String USUARIO_DIVERGENTE = "O usuário informado não corresponde ao usuário autenticado.";
 
 	@PostMapping("/autenticar")
 	public ResponseEntity autenticar(@RequestBody UsuarioDTO dto) {
 
 		try {
 			Usuario usuarioAutenticado = service.autenticar(dto.getEmail(), dto.getSenha());
-			return ResponseEntity.ok(usuarioAutenticado);
+			UsuarioAutenticadoDTO autenticado = UsuarioAutenticadoDTO.builder()
+					.id(usuarioAutenticado.getId())
+					.nome(usuarioAutenticado.getNome())
+					.email(usuarioAutenticado.getEmail())
+					.token(tokenService.gerarToken(usuarioAutenticado))
+					.build();
+			return ResponseEntity.ok(autenticado);
 		} catch (ErroAutenticacao e) {
 			return ResponseEntity.badRequest().body(e.getMessage());
 		}
@@ -56,15 +86,120 @@ public class UsuarioResource {
 
 
 	@GetMapping("{id}/saldo")
-	public ResponseEntity obterSaldo( @PathVariable("id") Long id ) {
+	public ResponseEntity obterSaldo( @PathVariable("id") Long id, WebRequest request, HttpServletResponse response,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado ) {
+		if (divergente(idAutenticado, id)) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
 		Optional<Usuario> usuario = service.obterPorId(id);
 
 		if(!usuario.isPresent()) {
 			return new ResponseEntity( HttpStatus.NOT_FOUND );
 		}
 
-		BigDecimal saldo = lancamentoService.obterSaldoPorUsuario(id);
+		// a versao e a mesma em JSON, Smile e CBOR: o Vary separa as representacoes nos caches, inclusive no 304
+		response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+		if (request.checkNotModified("W/\"" + lancamentoService.obterVersaoPorUsuario(id) + "\"")) {
+			return null;
+		}
+
+		// sempre com duas casas (10.00); antes o numero saia com a escala da soma, e sem casas para o saldo inicial
+		Dinheiro saldo = lancamentoService.obterSaldoPorUsuario(id);
 		return ResponseEntity.ok(saldo);
 	}
 
+	@GetMapping("{id}/saldo/detalhado")
+	public ResponseEntity obterSaldoDetalhado( @PathVariable("id") Long id,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado ) {
+		if (divergente(idAutenticado, id)) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
+		Optional<Usuario> usuario = service.obterPorId(id);
+
+		if(!usuario.isPresent()) {
+			return new ResponseEntity( HttpStatus.NOT_FOUND );
+		}
+
+		ResumoSaldo resumo = lancamentoService.obterResumoSaldoPorUsuario(id);
+		SaldoDetalhadoDTO dto = SaldoDetalhadoDTO.builder()
+				.receitas(resumo.getReceitas())
+				.despesas(resumo.getDespesas())
+				.saldo(resumo.getReceitas().subtract(resumo.getDespesas()))
+				.pendente(resumo.getPendente())
+				.efetivado(resumo.getEfetivado())
+				.cancelado(resumo.getCancelado())
+				.build();
+		return ResponseEntity.ok(dto);
+	}
+
+	@GetMapping("{id}/resumo-mensal")
+	public ResponseEntity obterResumoMensal( @PathVariable("id") Long id, @RequestParam("ano") Integer ano,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado ) {
+		if (divergente(idAutenticado, id)) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
+		Optional<Usuario> usuario = service.obterPorId(id);
+
+		if(!usuario.isPresent()) {
+			return new ResponseEntity( HttpStatus.NOT_FOUND );
+		}
+
+		List<ResumoMensalDTO> resumos = lancamentoService.obterResumoMensalPorUsuario(id, ano).stream()
+				.filter(resumo -> resumo.getQuantidade() > 0)
+				.map(resumo -> ResumoMensalDTO.builder()
+						.mes(resumo.getId().getMes())
+						.tipo(resumo.getId().getTipo().name())
+						.status(resumo.getId().getStatus().name())
+						.total(resumo.getTotal())
+						.quantidade(resumo.getQuantidade())
+						.build())
+				.collect(Collectors.toList());
+		return ResponseEntity.ok(resumos);
+	}
+
+	@GetMapping("{id}/analise/totais")
+	public ResponseEntity obterTotais( @PathVariable("id") Long id,
+			@RequestParam(value = "ano", required = false) Integer ano,
+			@RequestParam(value = "mes", required = false) Integer mes,
+			@RequestParam(value = "tipo", required = false) TipoLancamento tipo,
+			@RequestParam(value = "status", required = false) StatusLancamento status,
+			@RequestParam(value = "agrupar", required = false) List<DimensaoAnalise> agrupar,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado ) {
+		if (divergente(idAutenticado, id)) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
+		Optional<Usuario> usuario = service.obterPorId(id);
+
+		if(!usuario.isPresent()) {
+			return new ResponseEntity( HttpStatus.NOT_FOUND );
+		}
+
+		Lancamento filtro = Lancamento.builder().usuario(usuario.get()).ano(ano).mes(mes).tipo(tipo).status(status).build();
+		return ResponseEntity.ok(analiseLancamentosService.totalizar(filtro,
+				agrupar == null ? Collections.emptyList() : agrupar));
+	}
+
+	@GetMapping("{id}/analise/saldo-acumulado")
+	public ResponseEntity obterSaldoAcumulado( @PathVariable("id") Long id,
+			@RequestParam(value = "ano", required = false) Integer ano,
+			@RequestParam(value = "status", required = false) StatusLancamento status,
+			@RequestAttribute(value = AutenticacaoTokenFilter.ATRIBUTO_USUARIO, required = false) Long idAutenticado ) {
+		if (divergente(idAutenticado, id)) {
+			return new ResponseEntity(USUARIO_DIVERGENTE, HttpStatus.FORBIDDEN);
+		}
+		Optional<Usuario> usuario = service.obterPorId(id);
+
+		if(!usuario.isPresent()) {
+			return new ResponseEntity( HttpStatus.NOT_FOUND );
+		}
+
+		Lancamento filtro = Lancamento.builder().usuario(usuario.get()).ano(ano).status(status).build();
+		return ResponseEntity.ok(analiseLancamentosService.acumularSaldo(filtro));
+	}
+
+	// o token e exigido pelo AutenticacaoTokenFilter; os dados de um usuario so saem para ele mesmo
+	private static boolean divergente(Long idAutenticado, Long id) {
+		return idAutenticado == null || !idAutenticado.equals(id);
+	}
+
 }
@@ -0,0 +1,9 @@
+package com.epierre.minhasfinancas.exception;
+
+public class ConflitoAtualizacaoException extends RuntimeException {
+
+	public ConflitoAtualizacaoException(String msg, Throwable causa) {
+		super(msg, causa);
+	}
+
+}
@@ -0,0 +1,129 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Valor monetario imutavel em centavos, guardado em um long. Somar e
+ * subtrair sao operacoes sobre long, sem a alocacao e a normalizacao de
+ * escala do BigDecimal, e estouram com ArithmeticException em vez de dar a
+ * volta. Na base continua numeric (DinheiroConverter) e no JSON sai como
+ * numero com duas casas.
+ */
+@JsonSerialize(using = Dinheiro.Serializador.class)
+@JsonDeserialize(using = Dinheiro.Desserializador.class)
+public final class Dinheiro implements Comparable<Dinheiro>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final Dinheiro ZERO = new Dinheiro(0);
+
+	private final long centavos;
+
+	private Dinheiro(long centavos) {
+		this.centavos = centavos;
+	}
+
+	public static Dinheiro deCentavos(long centavos) {
+		return centavos == 0 ? ZERO : new Dinheiro(centavos);
+	}
+
+	// valores com mais de duas casas sao arredondados como na base: o numeric do PostgreSQL afasta o empate do zero
+	public static Dinheiro de(BigDecimal valor) {
+		return valor == null ? null : deCentavos(centavos(valor));
+	}
+
+	public static long centavos(BigDecimal valor) {
+		return valor.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	public long getCentavos() {
+		return centavos;
+	}
+
+	public Dinheiro somar(Dinheiro outro) {
+		return deCentavos(Math.addExact(centavos, outro.centavos));
+	}
+
+	public Dinheiro subtrair(Dinheiro outro) {
+		return deCentavos(Math.subtractExact(centavos, outro.centavos));
+	}
+
+	public Dinheiro negar() {
+		return deCentavos(Math.negateExact(centavos));
+	}
+
+	public Dinheiro multiplicar(long fator) {
+		return deCentavos(Math.multiplyExact(centavos, fator));
+	}
+
+	public int signum() {
+		return Long.signum(centavos);
+	}
+
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(centavos, 2);
+	}
+
+	@Override
+	public int compareTo(Dinheiro outro) {
+		return Long.compare(centavos, outro.centavos);
+	}
+
+	@Override
+	public boolean equals(Object outro) {
+		return outro instanceof Dinheiro && ((Dinheiro) outro).centavos == centavos;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(centavos);
+	}
+
+	// sempre com duas casas, como BigDecimal.valueOf(centavos, 2).toPlainString()
+	@Override
+	public String toString() {
+		if (centavos == Long.MIN_VALUE) {
+			return toBigDecimal().toPlainString();
+		}
+		long absoluto = Math.abs(centavos);
+		long fracao = absoluto % 100;
+		return new StringBuilder(24)
+				.append(centavos < 0 ? "-" : "")
+				.append(absoluto / 100)
+				.append(fracao < 10 ? ".0" : ".")
+				.append(fracao)
+				.toString();
+	}
+
+	public static final class Serializador extends JsonSerializer<Dinheiro> {
+		@Override
+		public void serialize(Dinheiro valor, JsonGenerator gerador, SerializerProvider provider) throws IOException {
+			// formatos binarios (Smile, CBOR) gravariam o texto como string
+			if (gerador.canWriteFormattedNumbers()) {
+				gerador.writeNumber(valor.toString());
+			} else {
+				gerador.writeNumber(valor.toBigDecimal());
+			}
+		}
+	}
+
+	public static final class Desserializador extends JsonDeserializer<Dinheiro> {
+		@Override
+		public Dinheiro deserialize(JsonParser parser, DeserializationContext contexto) throws IOException {
+			return de(parser.getDecimalValue());
+		}
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import java.math.BigDecimal;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+@Converter(autoApply = true)
+public class DinheiroConverter implements AttributeConverter<Dinheiro, BigDecimal> {
+
+	@Override
+	public BigDecimal convertToDatabaseColumn(Dinheiro valor) {
+		return valor == null ? null : valor.toBigDecimal();
+	}
+
+	@Override
+	public Dinheiro convertToEntityAttribute(BigDecimal valor) {
+		return Dinheiro.de(valor);
+	}
+
+}
@@ -8,17 +8,22 @@ import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
 import org.springframework.data.jpa.convert.threeten.Jsr310JpaConverters;
 
 import com.epierre.minhasfinancas.model.enums.StatusLancamento;
 import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -26,15 +31,18 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "lancamento", schema = "financas")
+@Table(name = "lancamento", schema = "financas", indexes = {
+		@Index(name = "idx_lancamento_usuario_ano_mes_id", columnList = "id_usuario, ano, mes, id") })
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
 public class Lancamento {
 
+	// sequencia com otimizador pooled: IDENTITY impede o Hibernate de agrupar os inserts em batch
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lancamento_seq")
+	@SequenceGenerator(name = "lancamento_seq", sequenceName = "lancamento_seq", schema = "financas", allocationSize = 50)
 	@Column(name = "id")
 	private Long id;
 
@@ -47,8 +55,10 @@ public class Lancamento {
 	@Column(name = "ano")
 	private Integer ano;
 
-	@ManyToOne
+	// so o id do usuario costuma ser usado; o restante e carregado sob demanda
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "id_usuario")
+	@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 	private Usuario usuario;
 
 	@Column(name = "valor")
@@ -65,5 +75,9 @@ public class Lancamento {
 	@Column(name = "status")
 	@Enumerated(value = EnumType.STRING)
 	private StatusLancamento status;
+
+	@Version
+	@Column(name = "versao", nullable = false)
+	private Long versao;
 		
 }
@@ -0,0 +1,73 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import org.springframework.data.jpa.convert.threeten.Jsr310JpaConverters;
+
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lancamento de um ano arquivado, copiado com o mesmo id. Somente leitura:
+ * sem chave estrangeira para o usuario nem controle de versao, e com um unico
+ * indice, o da busca.
+ */
+@Entity
+@Table(name = "lancamento_arquivado", schema = "financas", indexes = {
+		@Index(name = "idx_lancamento_arquivado_usuario_ano_mes_id", columnList = "id_usuario, ano, mes, id") })
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class LancamentoArquivado {
+
+	@Id
+	@Column(name = "id")
+	private Long id;
+
+	@Column(name = "descricao")
+	private String descricao;
+
+	@Column(name = "mes")
+	private Integer mes;
+
+	@Column(name = "ano")
+	private Integer ano;
+
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+
+	@Column(name = "valor")
+	private BigDecimal valor;
+
+	@Column(name = "data_cadastra")
+	@Convert(converter = Jsr310JpaConverters.LocalDateConverter.class)
+	private LocalDate dataCadastro;
+
+	@Column(name = "tipo")
+	@Enumerated(value = EnumType.STRING)
+	private TipoLancamento tipo;
+
+	@Column(name = "status")
+	@Enumerated(value = EnumType.STRING)
+	private StatusLancamento status;
+
+	@Column(name = "versao")
+	private Long versao;
+
+}
@@ -0,0 +1,91 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Regra que gera um lancamento por mes a partir de mes/ano iniciais: um
+ * parcelamento (parcelada, com quantidade parcelas), uma conta com data final
+ * (quantidade ate o mes final) ou uma conta sem fim (quantidade nula). As
+ * competencias sao contadas em meses (ano * 12 + mes - 1); proximaCompetencia
+ * e a do proximo lancamento ainda nao gerado.
+ */
+@Entity
+@Table(name = "recorrencia", schema = "financas", indexes = {
+		@Index(name = "idx_recorrencia_proxima_competencia", columnList = "proxima_competencia, id") })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Recorrencia {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recorrencia_seq")
+	@SequenceGenerator(name = "recorrencia_seq", sequenceName = "recorrencia_seq", schema = "financas", allocationSize = 50)
+	@Column(name = "id")
+	private Long id;
+
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+
+	@Column(name = "descricao")
+	private String descricao;
+
+	// valor de cada lancamento gerado (de cada parcela, no parcelamento)
+	@Column(name = "valor")
+	private BigDecimal valor;
+
+	@Column(name = "tipo")
+	@Enumerated(value = EnumType.STRING)
+	private TipoLancamento tipo;
+
+	@Column(name = "mes_inicial")
+	private Integer mesInicial;
+
+	@Column(name = "ano_inicial")
+	private Integer anoInicial;
+
+	@Column(name = "quantidade")
+	private Integer quantidade;
+
+	@Column(name = "parcelada")
+	private boolean parcelada;
+
+	@Column(name = "geradas")
+	private int geradas;
+
+	@Column(name = "proxima_competencia")
+	private int proximaCompetencia;
+
+	// duas execucoes do materializador sobre a mesma regra: a segunda falha em vez de duplicar
+	@Version
+	@Column(name = "versao", nullable = false)
+	private Long versao;
+
+	public static int competencia(int ano, int mes) {
+		return ano * 12 + mes - 1;
+	}
+
+	public boolean encerrada() {
+		return quantidade != null && geradas >= quantidade;
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "resumo_mensal", schema = "financas")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumoMensal {
+
+	@EmbeddedId
+	private ResumoMensalId id;
+
+	@Column(name = "total")
+	private BigDecimal total;
+
+	@Column(name = "quantidade")
+	private Long quantidade;
+
+	// usado pela expressao de construtor da consulta de agregacao
+	public ResumoMensal(Long idUsuario, Integer ano, Integer mes, TipoLancamento tipo, StatusLancamento status,
+			BigDecimal total, Long quantidade) {
+		this(new ResumoMensalId(idUsuario, ano, mes, tipo, status), total, quantidade);
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import java.math.BigDecimal;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totais dos lancamentos arquivados do usuario, ate o ano arquivado mais
+ * recente. Somado aos lancamentos vivos, da o mesmo resultado que a consulta
+ * sobre todos os lancamentos daria antes do arquivamento.
+ */
+@Entity
+@Table(name = "saldo_transportado", schema = "financas")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaldoTransportado implements ResumoSaldo {
+
+	@Id
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+
+	@Column(name = "ate_ano")
+	private Integer ateAno;
+
+	@Column(name = "receitas")
+	private BigDecimal receitas;
+
+	@Column(name = "despesas")
+	private BigDecimal despesas;
+
+	@Column(name = "pendente")
+	private BigDecimal pendente;
+
+	@Column(name = "efetivado")
+	private BigDecimal efetivado;
+
+	@Column(name = "cancelado")
+	private BigDecimal cancelado;
+
+	public ResumoSaldo somar(ResumoSaldo vivos) {
+		return SaldoTransportado.builder()
+				.idUsuario(idUsuario)
+				.ateAno(ateAno)
+				.receitas(receitas.add(vivos.getReceitas()))
+				.despesas(despesas.add(vivos.getDespesas()))
+				.pendente(pendente.add(vivos.getPendente()))
+				.efetivado(efetivado.add(vivos.getEfetivado()))
+				.cancelado(cancelado.add(vivos.getCancelado()))
+				.build();
+	}
+
+}
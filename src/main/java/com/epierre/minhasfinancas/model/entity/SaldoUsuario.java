@@ -0,0 +1,39 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "saldo_usuario", schema = "financas")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaldoUsuario {
+
+	@Id
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+
+	@Column(name = "receitas")
+	private Dinheiro receitas;
+
+	@Column(name = "despesas")
+	private Dinheiro despesas;
+
+	// incrementada por toda gravacao do usuario, na mesma transacao
+	@Column(name = "versao")
+	private Long versao;
+
+	public Dinheiro getSaldo() {
+		return receitas.subtrair(despesas);
+	}
+
+}
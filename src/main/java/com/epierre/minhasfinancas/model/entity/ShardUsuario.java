@@ -0,0 +1,36 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Onde o usuario esta e a geracao dessa informacao, que aumenta a cada vez
+ * que ele muda de shard. No shard 0 e o diretorio; nos demais, a cerca
+ * consultada pelas operacoes do usuario (ver Shards).
+ */
+@Entity
+@Table(name = "shard_usuario", schema = "financas")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardUsuario {
+
+	@Id
+	@Column(name = "id_usuario")
+	private Long idUsuario;
+
+	@Column(name = "shard")
+	private int shard;
+
+	@Column(name = "geracao")
+	private long geracao;
+
+}
@@ -0,0 +1,9 @@
+package com.epierre.minhasfinancas.model.enums;
+
+public enum DimensaoAnalise {
+
+	ANO,
+	MES,
+	TIPO,
+	STATUS
+}
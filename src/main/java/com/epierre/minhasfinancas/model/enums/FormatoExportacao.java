@@ -0,0 +1,8 @@
+package com.epierre.minhasfinancas.model.enums;
+
+public enum FormatoExportacao {
+
+	CSV,
+	NDJSON
+
+}
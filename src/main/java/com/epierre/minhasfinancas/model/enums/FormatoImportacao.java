@@ -0,0 +1,8 @@
+package com.epierre.minhasfinancas.model.enums;
+
+public enum FormatoImportacao {
+
+	CSV,
+	OFX
+
+}
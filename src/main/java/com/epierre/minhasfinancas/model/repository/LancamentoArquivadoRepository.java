@@ -0,0 +1,56 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import com.epierre.minhasfinancas.model.entity.LancamentoArquivado;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+
+public interface LancamentoArquivadoRepository extends JpaRepository<LancamentoArquivado, Long> {
+
+	// copia no proprio banco, sem trazer as linhas para a aplicacao
+	@Modifying
+	@Query( nativeQuery = true, value =
+			  " insert into financas.lancamento_arquivado "
+			+ " (id, descricao, mes, ano, id_usuario, valor, data_cadastra, tipo, status, versao) "
+			+ " select id, descricao, mes, ano, id_usuario, valor, data_cadastra, tipo, status, versao "
+			+ " from financas.lancamento where id_usuario = :idUsuario and ano <= :ano " )
+	int arquivar(@Param("idUsuario") Long idUsuario, @Param("ano") Integer ano);
+
+	// mesmas somas de LancamentoRepository.obterResumoSaldoPorUsuario, sobre os arquivados
+	@Query( value =
+			  " select "
+			+ " coalesce(sum(case when l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.RECEITA then l.valor else 0 end), 0) as receitas, "
+			+ " coalesce(sum(case when l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.DESPESA then l.valor else 0 end), 0) as despesas, "
+			+ " coalesce(sum(case when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.PENDENTE "
+			+ "     and l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.RECEITA then l.valor "
+			+ "     when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.PENDENTE then -l.valor else 0 end), 0) as pendente, "
+			+ " coalesce(sum(case when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.EFETIVADO "
+			+ "     and l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.RECEITA then l.valor "
+			+ "     when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.EFETIVADO then -l.valor else 0 end), 0) as efetivado, "
+			+ " coalesce(sum(case when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.CANCELADO "
+			+ "     and l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.RECEITA then l.valor "
+			+ "     when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.CANCELADO then -l.valor else 0 end), 0) as cancelado "
+			+ " from LancamentoArquivado l where l.idUsuario = :idUsuario " )
+	@QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+	ResumoSaldo obterResumoSaldoPorUsuario(@Param("idUsuario") Long idUsuario);
+
+	@Query( value =
+			  " select new com.epierre.minhasfinancas.model.entity.ResumoMensal( "
+			+ " l.idUsuario, l.ano, l.mes, l.tipo, l.status, sum(l.valor), count(l) ) "
+			+ " from LancamentoArquivado l where l.idUsuario = :idUsuario "
+			+ " group by l.idUsuario, l.ano, l.mes, l.tipo, l.status " )
+	List<ResumoMensal> obterResumosMensaisPorUsuario(@Param("idUsuario") Long idUsuario);
+
+	@Query( value = " select distinct l.idUsuario from LancamentoArquivado l " )
+	List<Long> obterIdsUsuarios();
+
+}
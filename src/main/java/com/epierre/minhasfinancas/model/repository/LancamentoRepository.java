@@ -1,20 +1,100 @@
 package com.epierre.minhasfinancas.model.repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
 import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.EstadoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
 
-public interface LancamentoRepository extends JpaRepository<Lancamento, Long> {
-	@Query( value = 
+public interface LancamentoRepository extends JpaRepository<Lancamento, Long>, LancamentoRepositoryCustom {
+	@Query( value =
 			  " select sum(l.valor) from Lancamento l join l.usuario u "
 			+ " where u.id = :idUsuario and l.tipo =:tipo group by u " )
 	BigDecimal obterSaldoPorTipoLancamentoEUsuario(
-			@Param("idUsuario") Long idUsuario, 
+			@Param("idUsuario") Long idUsuario,
 			@Param("tipo") TipoLancamento tipo );
 
+	// receitas e despesas somam o valor bruto; os totais por status sao liquidos (receita - despesa)
+	@Query( value =
+			  " select "
+			+ " coalesce(sum(case when l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.RECEITA then l.valor else 0 end), 0) as receitas, "
+			+ " coalesce(sum(case when l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.DESPESA then l.valor else 0 end), 0) as despesas, "
+			+ " coalesce(sum(case when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.PENDENTE "
+			+ "     and l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.RECEITA then l.valor "
+			+ "     when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.PENDENTE then -l.valor else 0 end), 0) as pendente, "
+			+ " coalesce(sum(case when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.EFETIVADO "
+			+ "     and l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.RECEITA then l.valor "
+			+ "     when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.EFETIVADO then -l.valor else 0 end), 0) as efetivado, "
+			+ " coalesce(sum(case when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.CANCELADO "
+			+ "     and l.tipo = com.epierre.minhasfinancas.model.enums.TipoLancamento.RECEITA then l.valor "
+			+ "     when l.status = com.epierre.minhasfinancas.model.enums.StatusLancamento.CANCELADO then -l.valor else 0 end), 0) as cancelado "
+			+ " from Lancamento l where l.usuario.id = :idUsuario " )
+	@QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+	ResumoSaldo obterResumoSaldoPorUsuario(@Param("idUsuario") Long idUsuario);
+
+	// le o estado gravado no banco sem descarregar alteracoes pendentes da entidade
+	@Query( value =
+			  " select l.usuario.id as idUsuario, l.ano as ano, l.mes as mes, l.tipo as tipo, "
+			+ " l.status as status, l.valor as valor, l.versao as versao "
+			+ " from Lancamento l where l.id = :id " )
+	@QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+	Optional<EstadoLancamento> obterEstado(@Param("id") Long id);
+
+	@Query( value =
+			  " select new com.epierre.minhasfinancas.model.entity.ResumoMensal( "
+			+ " l.usuario.id, l.ano, l.mes, l.tipo, l.status, sum(l.valor), count(l) ) "
+			+ " from Lancamento l where l.usuario.id = :idUsuario "
+			+ " group by l.usuario.id, l.ano, l.mes, l.tipo, l.status " )
+	@QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+	List<ResumoMensal> obterResumosMensaisPorUsuario(@Param("idUsuario") Long idUsuario);
+
+	// cursor somente para frente: as linhas nao entram no contexto de persistencia
+	@Query( value =
+			  " select new com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha( "
+			+ " l.id, l.descricao, l.mes, l.ano, l.valor, l.usuario.id, l.tipo, l.status, l.dataCadastro, l.versao ) "
+			+ " from Lancamento l where l.usuario.id = :idUsuario order by l.ano, l.mes, l.id " )
+	@QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+	Stream<LancamentoLinha> obterLinhasPorUsuario(@Param("idUsuario") Long idUsuario);
+
+	@Query( value =
+			  " select new com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha( "
+			+ " l.id, l.descricao, l.mes, l.ano, l.valor, l.usuario.id, l.tipo, l.status, l.dataCadastro, l.versao ) "
+			+ " from Lancamento l where l.id in :ids " )
+	List<LancamentoLinha> obterLinhas(@Param("ids") Collection<Long> ids);
+
+	@Query( value = " select distinct l.usuario.id from Lancamento l " )
+	List<Long> obterIdsUsuariosComLancamentos();
+
+	@Query( value = " select distinct l.usuario.id from Lancamento l where l.ano <= :ano " )
+	List<Long> obterIdsUsuariosComLancamentosAte(@Param("ano") Integer ano);
+
+	// select for update dos lancamentos que o arquivamento ate o ano vai copiar e remover
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query( value = " select l.id from Lancamento l where l.usuario.id = :idUsuario and l.ano <= :ano " )
+	List<Long> travarAteAno(@Param("idUsuario") Long idUsuario, @Param("ano") Integer ano);
+
+	// so remove o que ja foi copiado para lancamento_arquivado
+	@Modifying
+	@Query( value =
+			  " delete from Lancamento l where l.usuario.id = :idUsuario and l.ano <= :ano "
+			+ " and l.id in (select a.id from LancamentoArquivado a where a.idUsuario = :idUsuario) " )
+	int removerArquivados(@Param("idUsuario") Long idUsuario, @Param("ano") Integer ano);
+
 }
@@ -0,0 +1,49 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+
+public interface LancamentoRepositoryCustom {
+
+	/**
+	 * Busca os lancamentos do filtro ordenados por (ano, mes, id), comecando
+	 * logo apos a posicao informada, sem usar OFFSET.
+	 */
+	List<Lancamento> buscarPagina(Lancamento filtro, Lancamento posicao, int limite);
+
+	/**
+	 * Mesmo filtro e ordem de buscarPagina, devolvendo linhas planas em vez de
+	 * entidades. Sem limite quando limite for nulo.
+	 */
+	List<LancamentoLinha> buscarLinhas(Lancamento filtro, Lancamento posicao, Integer limite);
+
+	/**
+	 * Mesmo filtro, ordem e formato de buscarLinhas, sobre os lancamentos
+	 * arquivados.
+	 */
+	List<LancamentoLinha> buscarLinhasArquivadas(Lancamento filtro, Lancamento posicao, Integer limite);
+
+	/**
+	 * Trava (SELECT ... FOR UPDATE) os lancamentos que a atualizacao de status
+	 * com os mesmos argumentos vai alterar, ate o fim da transacao.
+	 */
+	void travarAtualizacaoDeStatus(Lancamento filtro, Collection<Long> ids, StatusLancamento novoStatus);
+
+	/**
+	 * Totais por (ano, mes, tipo, status) dos lancamentos que a atualizacao de
+	 * status com os mesmos argumentos vai alterar.
+	 */
+	List<ResumoMensal> resumirAtualizacaoDeStatus(Lancamento filtro, Collection<Long> ids, StatusLancamento novoStatus);
+
+	/**
+	 * Altera o status dos lancamentos do usuario do filtro (mes, ano e status
+	 * atual opcionais), restritos aos ids quando informados, em um unico UPDATE.
+	 */
+	int atualizarStatus(Lancamento filtro, Collection<Long> ids, StatusLancamento novoStatus);
+
+}
@@ -0,0 +1,198 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.LancamentoArquivado;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+
+public class LancamentoRepositoryImpl implements LancamentoRepositoryCustom {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public List<Lancamento> buscarPagina(Lancamento filtro, Lancamento posicao, int limite) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Lancamento> query = cb.createQuery(Lancamento.class);
+		Root<Lancamento> lancamento = query.from(Lancamento.class);
+
+		query.select(lancamento)
+				.where(predicadosBusca(cb, lancamento, lancamento.get("usuario").get("id"), filtro, posicao))
+				.orderBy(ordemBusca(cb, lancamento));
+
+		return entityManager.createQuery(query)
+				.setMaxResults(limite)
+				.getResultList();
+	}
+
+	@Override
+	public List<LancamentoLinha> buscarLinhas(Lancamento filtro, Lancamento posicao, Integer limite) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<LancamentoLinha> query = cb.createQuery(LancamentoLinha.class);
+		Root<Lancamento> lancamento = query.from(Lancamento.class);
+
+		query.select(cb.construct(LancamentoLinha.class,
+						lancamento.get("id"), lancamento.get("descricao"), lancamento.get("mes"), lancamento.get("ano"),
+						lancamento.get("valor"), lancamento.get("usuario").get("id"), lancamento.get("tipo"),
+						lancamento.get("status"), lancamento.get("dataCadastro"), lancamento.get("versao")))
+				.where(predicadosBusca(cb, lancamento, lancamento.get("usuario").get("id"), filtro, posicao))
+				.orderBy(ordemBusca(cb, lancamento));
+
+		TypedQuery<LancamentoLinha> consulta = entityManager.createQuery(query);
+		if (limite != null) {
+			consulta.setMaxResults(limite);
+		}
+		return consulta.getResultList();
+	}
+
+	@Override
+	public List<LancamentoLinha> buscarLinhasArquivadas(Lancamento filtro, Lancamento posicao, Integer limite) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<LancamentoLinha> query = cb.createQuery(LancamentoLinha.class);
+		Root<LancamentoArquivado> lancamento = query.from(LancamentoArquivado.class);
+
+		query.select(cb.construct(LancamentoLinha.class,
+						lancamento.get("id"), lancamento.get("descricao"), lancamento.get("mes"), lancamento.get("ano"),
+						lancamento.get("valor"), lancamento.get("idUsuario"), lancamento.get("tipo"),
+						lancamento.get("status"), lancamento.get("dataCadastro"), lancamento.get("versao")))
+				.where(predicadosBusca(cb, lancamento, lancamento.get("idUsuario"), filtro, posicao))
+				.orderBy(ordemBusca(cb, lancamento));
+
+		TypedQuery<LancamentoLinha> consulta = entityManager.createQuery(query);
+		if (limite != null) {
+			consulta.setMaxResults(limite);
+		}
+		return consulta.getResultList();
+	}
+
+	private static Order[] ordemBusca(CriteriaBuilder cb, Root<?> lancamento) {
+		return new Order[] { cb.asc(lancamento.get("ano")), cb.asc(lancamento.get("mes")), cb.asc(lancamento.get("id")) };
+	}
+
+	private static Predicate[] predicadosBusca(CriteriaBuilder cb, Root<?> lancamento, Path<Long> usuario,
+			Lancamento filtro, Lancamento posicao) {
+		Path<Integer> ano = lancamento.get("ano");
+		Path<Integer> mes = lancamento.get("mes");
+		Path<Long> id = lancamento.get("id");
+
+		List<Predicate> predicados = new ArrayList<>();
+		predicados.add(cb.equal(usuario, filtro.getUsuario().getId()));
+
+		if (filtro.getDescricao() != null) {
+			predicados.add(cb.like(cb.lower(lancamento.get("descricao")),
+					"%" + escaparLike(filtro.getDescricao().toLowerCase()) + "%", '\\'));
+		}
+		if (filtro.getMes() != null) {
+			predicados.add(cb.equal(mes, filtro.getMes()));
+		}
+		if (filtro.getAno() != null) {
+			predicados.add(cb.equal(ano, filtro.getAno()));
+		}
+		if (filtro.getTipo() != null) {
+			predicados.add(cb.equal(lancamento.get("tipo"), filtro.getTipo()));
+		}
+		if (filtro.getStatus() != null) {
+			predicados.add(cb.equal(lancamento.get("status"), filtro.getStatus()));
+		}
+
+		if (posicao != null) {
+			// (ano, mes, id) > (:ano, :mes, :id)
+			predicados.add(cb.or(
+					cb.greaterThan(ano, posicao.getAno()),
+					cb.and(cb.equal(ano, posicao.getAno()), cb.or(
+							cb.greaterThan(mes, posicao.getMes()),
+							cb.and(cb.equal(mes, posicao.getMes()), cb.greaterThan(id, posicao.getId()))))));
+		}
+		return predicados.toArray(new Predicate[0]);
+	}
+
+	@Override
+	public void travarAtualizacaoDeStatus(Lancamento filtro, Collection<Long> ids, StatusLancamento novoStatus) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> query = cb.createQuery(Long.class);
+		Root<Lancamento> lancamento = query.from(Lancamento.class);
+
+		query.select(lancamento.get("id"))
+				.where(predicadosAtualizacaoDeStatus(cb, lancamento, filtro, ids, novoStatus));
+
+		entityManager.createQuery(query).setLockMode(LockModeType.PESSIMISTIC_WRITE).getResultList();
+	}
+
+	@Override
+	public List<ResumoMensal> resumirAtualizacaoDeStatus(Lancamento filtro, Collection<Long> ids,
+			StatusLancamento novoStatus) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<ResumoMensal> query = cb.createQuery(ResumoMensal.class);
+		Root<Lancamento> lancamento = query.from(Lancamento.class);
+		Path<Long> usuario = lancamento.get("usuario").get("id");
+
+		query.select(cb.construct(ResumoMensal.class, usuario, lancamento.get("ano"), lancamento.get("mes"),
+						lancamento.get("tipo"), lancamento.get("status"), cb.sum(lancamento.<BigDecimal>get("valor")),
+						cb.count(lancamento)))
+				.where(predicadosAtualizacaoDeStatus(cb, lancamento, filtro, ids, novoStatus))
+				.groupBy(usuario, lancamento.get("ano"), lancamento.get("mes"), lancamento.get("tipo"),
+						lancamento.get("status"));
+
+		return entityManager.createQuery(query).getResultList();
+	}
+
+	@Override
+	public int atualizarStatus(Lancamento filtro, Collection<Long> ids, StatusLancamento novoStatus) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaUpdate<Lancamento> update = cb.createCriteriaUpdate(Lancamento.class);
+		Root<Lancamento> lancamento = update.from(Lancamento.class);
+
+		Path<Long> versao = lancamento.get("versao");
+		// o UPDATE em lote tambem incrementa a versao, invalidando edicoes concorrentes
+		update.set(lancamento.<StatusLancamento>get("status"), novoStatus)
+				.set(versao, cb.sum(versao, 1L))
+				.where(predicadosAtualizacaoDeStatus(cb, lancamento, filtro, ids, novoStatus));
+
+		return entityManager.createQuery(update).executeUpdate();
+	}
+
+	private static Predicate[] predicadosAtualizacaoDeStatus(CriteriaBuilder cb, Root<Lancamento> lancamento,
+			Lancamento filtro, Collection<Long> ids, StatusLancamento novoStatus) {
+		List<Predicate> predicados = new ArrayList<>();
+		predicados.add(cb.equal(lancamento.get("usuario").get("id"), filtro.getUsuario().getId()));
+		// linhas que ja estao no status de destino nao contam como afetadas
+		predicados.add(cb.notEqual(lancamento.get("status"), novoStatus));
+
+		if (ids != null) {
+			predicados.add(lancamento.get("id").in(ids));
+		}
+		if (filtro.getMes() != null) {
+			predicados.add(cb.equal(lancamento.get("mes"), filtro.getMes()));
+		}
+		if (filtro.getAno() != null) {
+			predicados.add(cb.equal(lancamento.get("ano"), filtro.getAno()));
+		}
+		if (filtro.getStatus() != null) {
+			predicados.add(cb.equal(lancamento.get("status"), filtro.getStatus()));
+		}
+		return predicados.toArray(new Predicate[0]);
+	}
+
+	private static String escaparLike(String valor) {
+		return valor.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+}
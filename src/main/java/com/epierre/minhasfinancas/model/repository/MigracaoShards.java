@@ -0,0 +1,32 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.stereotype.Component;
+
+/**
+ * O Spring Boot so migra o DataSource da aplicacao, que com shards e o shard
+ * 0; os demais recebem as mesmas migracoes, com a mesma configuracao.
+ */
+@Component
+public class MigracaoShards implements FlywayMigrationStrategy {
+
+	private final Shards shards;
+
+	public MigracaoShards(Shards shards) {
+		this.shards = shards;
+	}
+
+	@Override
+	public void migrate(Flyway flyway) {
+		flyway.migrate();
+		for (int shard = 1; shard < shards.quantidade(); shard++) {
+			Flyway.configure()
+					.configuration(flyway.getConfiguration())
+					.dataSource(shards.dataSource(shard))
+					.load()
+					.migrate();
+		}
+	}
+
+}
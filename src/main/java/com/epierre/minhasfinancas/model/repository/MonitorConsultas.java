@@ -0,0 +1,92 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.logging.DefaultQueryLogEntryCreator;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+/**
+ * Envolve o DataSource da aplicacao para observar cada execucao de SQL. As
+ * execucoes sao contadas na thread que abriu uma contagem (o filtro de
+ * requisicoes abre uma por chamada HTTP) e as que passam de
+ * minhasfinancas.sql.limite-lenta-ms sao registradas com os parametros e a
+ * origem. Um lote enviado com executeBatch conta como uma execucao.
+ */
+@Slf4j
+@Component
+public class MonitorConsultas implements BeanPostProcessor, QueryExecutionListener {
+
+	private static final ThreadLocal<Contagem> CONTAGEM = new ThreadLocal<>();
+
+	private final long limiteLentaMs;
+	private final DefaultQueryLogEntryCreator formatador = new DefaultQueryLogEntryCreator();
+
+	public MonitorConsultas(@Value("${minhasfinancas.sql.limite-lenta-ms:200}") long limiteLentaMs) {
+		this.limiteLentaMs = limiteLentaMs;
+	}
+
+	public static class Contagem {
+		private final String origem;
+		private int consultas;
+
+		Contagem(String origem) {
+			this.origem = origem;
+		}
+
+		public int getConsultas() {
+			return consultas;
+		}
+	}
+
+	// a contagem anterior e devolvida para ser restaurada em encerrar
+	public static Contagem iniciar(String origem) {
+		Contagem anterior = CONTAGEM.get();
+		CONTAGEM.set(new Contagem(origem));
+		return anterior;
+	}
+
+	public static Contagem encerrar(Contagem anterior) {
+		Contagem atual = CONTAGEM.get();
+		if (anterior == null) {
+			CONTAGEM.remove();
+		} else {
+			CONTAGEM.set(anterior);
+		}
+		return atual;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource) {
+			return ProxyDataSourceBuilder.create((DataSource) bean).name(beanName).listener(this).build();
+		}
+		return bean;
+	}
+
+	@Override
+	public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+	}
+
+	@Override
+	public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		Contagem contagem = CONTAGEM.get();
+		if (contagem != null) {
+			contagem.consultas++;
+		}
+		if (execInfo.getElapsedTime() >= limiteLentaMs) {
+			log.warn("Consulta lenta em {}: {}", contagem == null ? "-" : contagem.origem,
+					formatador.getLogEntry(execInfo, queryInfoList, false, false));
+		}
+	}
+
+}
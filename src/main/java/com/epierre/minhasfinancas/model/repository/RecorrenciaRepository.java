@@ -0,0 +1,21 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.epierre.minhasfinancas.model.entity.Recorrencia;
+
+public interface RecorrenciaRepository extends JpaRepository<Recorrencia, Long> {
+
+	// regras com lancamentos a gerar ate a competencia limite, em ordem de id a partir de aPartirDe (exclusive)
+	@Query( value =
+			  " select r from Recorrencia r "
+			+ " where r.proximaCompetencia <= :limite and (r.quantidade is null or r.geradas < r.quantidade) "
+			+ " and r.id > :aPartirDe order by r.id " )
+	List<Recorrencia> obterPendentes(@Param("limite") int limite, @Param("aPartirDe") Long aPartirDe, Pageable pagina);
+
+}
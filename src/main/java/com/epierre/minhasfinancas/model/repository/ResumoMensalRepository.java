@@ -0,0 +1,40 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.ResumoMensalId;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+public interface ResumoMensalRepository extends JpaRepository<ResumoMensal, ResumoMensalId> {
+
+	@Modifying
+	@Query( value =
+			  " update ResumoMensal r set r.total = r.total + :valor, r.quantidade = r.quantidade + :quantidade "
+			+ " where r.id.idUsuario = :idUsuario and r.id.ano = :ano and r.id.mes = :mes "
+			+ " and r.id.tipo = :tipo and r.id.status = :status " )
+	int adicionar(
+			@Param("idUsuario") Long idUsuario,
+			@Param("ano") Integer ano,
+			@Param("mes") Integer mes,
+			@Param("tipo") TipoLancamento tipo,
+			@Param("status") StatusLancamento status,
+			@Param("valor") BigDecimal valor,
+			@Param("quantidade") Long quantidade );
+
+	boolean existsByIdIdUsuario(Long idUsuario);
+
+	@Modifying
+	@Query( value = " delete from ResumoMensal r where r.id.idUsuario = :idUsuario " )
+	int removerPorUsuario(@Param("idUsuario") Long idUsuario);
+
+	List<ResumoMensal> findByIdIdUsuarioAndIdAnoOrderByIdMes(Long idUsuario, Integer ano);
+
+}
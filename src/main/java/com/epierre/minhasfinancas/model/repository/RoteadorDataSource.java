@@ -0,0 +1,174 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Entrega conexoes das replicas, em rodizio, para transacoes somente leitura
+ * e da primaria para todo o resto. Se a replica escolhida falhar as demais
+ * sao tentadas e, por ultimo, a primaria.
+ *
+ * O usuario da thread (definido pelo filtro de autenticacao) que confirmou
+ * uma escrita continua lendo da primaria durante a tolerancia de atraso da
+ * replicacao, para enxergar as proprias alteracoes. Conta como escrita a
+ * transacao que executou na primaria alguma instrucao que nao e SELECT; as
+ * de leitura e escrita que so consultaram nao prendem o usuario a primaria.
+ *
+ * A decisao acontece quando a conexao e pedida, por isso o roteador deve
+ * ficar atras de um LazyConnectionDataSourceProxy: o gerenciador de
+ * transacoes so marca a transacao como somente leitura depois de obter a
+ * conexao.
+ */
+@Slf4j
+public class RoteadorDataSource extends AbstractDataSource {
+
+	private static final ThreadLocal<Long> USUARIO = new ThreadLocal<>();
+
+	private final DataSource primaria;
+	private final List<DataSource> replicas;
+	private final AtomicInteger proxima = new AtomicInteger();
+	private final Cache<Long, Boolean> escritasRecentes;
+
+	public RoteadorDataSource(DataSource primaria, List<DataSource> replicas, Duration toleranciaAtraso) {
+		this.primaria = primaria;
+		this.replicas = replicas;
+		this.escritasRecentes = Caffeine.newBuilder()
+				.expireAfterWrite(toleranciaAtraso)
+				.maximumSize(100_000)
+				.build();
+	}
+
+	// devolve o usuario anterior para ser restaurado ao fim da requisicao
+	public static Long definirUsuario(Long idUsuario) {
+		Long anterior = USUARIO.get();
+		if (idUsuario == null) {
+			USUARIO.remove();
+		} else {
+			USUARIO.set(idUsuario);
+		}
+		return anterior;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return conectar(DataSource::getConnection);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return conectar(base -> base.getConnection(username, password));
+	}
+
+	private Connection conectar(Abertura abertura) throws SQLException {
+		Long usuario = USUARIO.get();
+		if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+				|| (usuario != null && escritasRecentes.getIfPresent(usuario) != null)) {
+			return observarEscritas(abertura.abrir(primaria), usuario);
+		}
+
+		int inicio = Math.floorMod(proxima.getAndIncrement(), replicas.size());
+		for (int i = 0; i < replicas.size(); i++) {
+			try {
+				return abertura.abrir(replicas.get((inicio + i) % replicas.size()));
+			} catch (SQLException e) {
+				log.warn("Replica {} indisponivel: {}", (inicio + i) % replicas.size(), e.getMessage());
+			}
+		}
+		return observarEscritas(abertura.abrir(primaria), usuario);
+	}
+
+	// a escrita e registrada na primeira instrucao que nao e SELECT, preparada ou executada direto
+	private Connection observarEscritas(Connection conexao, Long usuario) {
+		if (usuario == null || !TransactionSynchronizationManager.isActualTransactionActive()
+				|| !TransactionSynchronizationManager.isSynchronizationActive()) {
+			return conexao;
+		}
+		AtomicBoolean registrada = new AtomicBoolean();
+		Consumer<Object> instrucao = sql -> {
+			if (sql instanceof String && escreve((String) sql) && registrada.compareAndSet(false, true)) {
+				registrarEscrita(usuario);
+			}
+		};
+		return intermediar(Connection.class, conexao, (metodo, args) -> {
+			if (metodo.getName().startsWith("prepare") && args != null) {
+				instrucao.accept(args[0]);
+			}
+		}, (metodo, resultado) -> resultado instanceof Statement && !(resultado instanceof PreparedStatement)
+				? intermediar(Statement.class, (Statement) resultado, (execucao, args) -> {
+					if ((execucao.getName().startsWith("execute") || execucao.getName().equals("addBatch")) && args != null) {
+						instrucao.accept(args[0]);
+					}
+				}, (execucao, retorno) -> retorno)
+				: resultado);
+	}
+
+	private static boolean escreve(String sql) {
+		String inicio = sql.trim();
+		return !inicio.regionMatches(true, 0, "select", 0, "select".length());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T intermediar(Class<T> tipo, T alvo, BiConsumer<Method, Object[]> antes,
+			BiFunction<Method, Object, Object> depois) {
+		return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[] { tipo }, (proxy, metodo, args) -> {
+			antes.accept(metodo, args);
+			try {
+				return depois.apply(metodo, metodo.invoke(alvo, args));
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		});
+	}
+
+	// o usuario passa a ler da primaria quando a transacao de escrita e confirmada
+	private void registrarEscrita(Long usuario) {
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				escritasRecentes.put(usuario, Boolean.TRUE);
+			}
+		});
+	}
+
+	private interface Abertura {
+		Connection abrir(DataSource base) throws SQLException;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return (T) this;
+		}
+		return primaria.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || primaria.isWrapperFor(iface);
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Entrega a conexao do shard definido para a thread, ou do shard 0 quando
+ * nenhum foi definido. Como no RoteadorDataSource, fica atras de um
+ * LazyConnectionDataSourceProxy para que o shard possa ser escolhido dentro
+ * de um metodo transacional, antes da primeira consulta.
+ *
+ * Quando a thread tambem informa o usuario, a verificacao registrada roda na
+ * conexao do shard antes da primeira instrucao, ja com o modo da transacao
+ * (autocommit e somente leitura) aplicado pelo proxy.
+ */
+public class RoteadorShards extends AbstractRoutingDataSource {
+
+	private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+	private static final ThreadLocal<Long> USUARIO = new ThreadLocal<>();
+
+	private final List<DataSource> shards;
+	private volatile Verificacao verificacao;
+
+	public RoteadorShards(List<DataSource> shards) {
+		this.shards = shards;
+		Map<Object, Object> destinos = new HashMap<>();
+		for (int i = 0; i < shards.size(); i++) {
+			destinos.put(i, shards.get(i));
+		}
+		setTargetDataSources(destinos);
+		setDefaultTargetDataSource(shards.get(0));
+		setLenientFallback(false);
+		afterPropertiesSet();
+	}
+
+	public static <T> T executar(int shard, Supplier<T> acao) {
+		return executar(shard, null, acao);
+	}
+
+	public static <T> T executar(int shard, Long idUsuario, Supplier<T> acao) {
+		Integer anterior = SHARD.get();
+		Long usuarioAnterior = USUARIO.get();
+		SHARD.set(shard);
+		definir(USUARIO, idUsuario);
+		try {
+			return acao.get();
+		} finally {
+			definir(SHARD, anterior);
+			definir(USUARIO, usuarioAnterior);
+		}
+	}
+
+	private static <T> void definir(ThreadLocal<T> local, T valor) {
+		if (valor == null) {
+			local.remove();
+		} else {
+			local.set(valor);
+		}
+	}
+
+	public void setVerificacao(Verificacao verificacao) {
+		this.verificacao = verificacao;
+	}
+
+	public List<DataSource> getShards() {
+		return shards;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return verificar(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return verificar(super.getConnection(username, password));
+	}
+
+	private Connection verificar(Connection conexao) {
+		Long usuario = USUARIO.get();
+		Verificacao atual = verificacao;
+		if (usuario == null || atual == null) {
+			return conexao;
+		}
+		int shard = (Integer) determineCurrentLookupKey();
+		AtomicBoolean verificada = new AtomicBoolean();
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, metodo, args) -> {
+					if ((metodo.getName().startsWith("prepare") || metodo.getName().equals("createStatement"))
+							&& verificada.compareAndSet(false, true)) {
+						atual.verificar(conexao, usuario, shard);
+					}
+					try {
+						return metodo.invoke(conexao, args);
+					} catch (InvocationTargetException e) {
+						throw e.getTargetException();
+					}
+				});
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		Integer shard = SHARD.get();
+		return shard == null ? 0 : shard;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return (T) this;
+		}
+		return shards.get(0).unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || shards.get(0).isWrapperFor(iface);
+	}
+
+	public interface Verificacao {
+		void verificar(Connection conexao, Long idUsuario, int shard) throws SQLException;
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Com minhasfinancas.leitura.replicas (URLs JDBC separadas por virgula) o
+ * DataSource da aplicacao passa a ser um RoteadorDataSource sobre a primaria
+ * e as replicas. Sem replicas nada muda. Roda antes do MonitorConsultas, que
+ * assim observa as consultas de todas as bases.
+ */
+@Component
+public class RoteamentoLeitura implements BeanPostProcessor, Ordered, DisposableBean {
+
+	private final String[] urls;
+	private final String usuario;
+	private final String senha;
+	private final Duration toleranciaAtraso;
+	private final List<HikariDataSource> replicas = new ArrayList<>();
+
+	public RoteamentoLeitura(@Value("${minhasfinancas.leitura.replicas:}") String replicas,
+			@Value("${minhasfinancas.leitura.usuario:${spring.datasource.username:}}") String usuario,
+			@Value("${minhasfinancas.leitura.senha:${spring.datasource.password:}}") String senha,
+			@Value("${minhasfinancas.leitura.tolerancia-atraso-ms:5000}") long toleranciaAtrasoMs) {
+		this.urls = StringUtils.commaDelimitedListToStringArray(replicas.trim());
+		this.usuario = usuario;
+		this.senha = senha;
+		this.toleranciaAtraso = Duration.ofMillis(toleranciaAtrasoMs);
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (urls.length == 0 || !(bean instanceof DataSource) || !"dataSource".equals(beanName)) {
+			return bean;
+		}
+		for (int i = 0; i < urls.length; i++) {
+			HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+					.url(urls[i].trim()).username(usuario).password(senha).build();
+			replica.setPoolName("replica-" + i);
+			replicas.add(replica);
+		}
+		return new LazyConnectionDataSourceProxy(new RoteadorDataSource((DataSource) bean, new ArrayList<>(replicas),
+				toleranciaAtraso));
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+
+	@Override
+	public void destroy() {
+		replicas.forEach(HikariDataSource::close);
+	}
+
+}
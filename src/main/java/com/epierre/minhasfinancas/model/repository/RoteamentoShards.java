@@ -0,0 +1,74 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Com minhasfinancas.shards.urls (URLs JDBC separadas por virgula) o
+ * DataSource da aplicacao passa a ser o shard 0 de um RoteadorShards, e cada
+ * URL um shard adicional, na ordem informada. O esquema de todos vem das
+ * mesmas migracoes (ver MigracaoShards), e a sequence de lancamentos de cada um deve comecar em uma
+ * faixa propria para que os ids continuem unicos quando um usuario muda de
+ * shard. Nao combina com as replicas de leitura.
+ */
+@Component
+public class RoteamentoShards implements BeanPostProcessor, Ordered, DisposableBean {
+
+	private final String[] urls;
+	private final String usuario;
+	private final String senha;
+	private final List<HikariDataSource> adicionais = new ArrayList<>();
+
+	public RoteamentoShards(@Value("${minhasfinancas.shards.urls:}") String urls,
+			@Value("${minhasfinancas.shards.usuario:${spring.datasource.username:}}") String usuario,
+			@Value("${minhasfinancas.shards.senha:${spring.datasource.password:}}") String senha,
+			@Value("${minhasfinancas.leitura.replicas:}") String replicas) {
+		this.urls = StringUtils.commaDelimitedListToStringArray(urls.trim());
+		this.usuario = usuario;
+		this.senha = senha;
+		if (this.urls.length > 0 && !replicas.trim().isEmpty()) {
+			throw new IllegalStateException("minhasfinancas.shards.urls e minhasfinancas.leitura.replicas nao podem ser usados juntos.");
+		}
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (urls.length == 0 || !(bean instanceof DataSource) || !"dataSource".equals(beanName)) {
+			return bean;
+		}
+		List<DataSource> shards = new ArrayList<>();
+		shards.add((DataSource) bean);
+		for (int i = 0; i < urls.length; i++) {
+			HikariDataSource shard = DataSourceBuilder.create().type(HikariDataSource.class)
+					.url(urls[i].trim()).username(usuario).password(senha).build();
+			shard.setPoolName("shard-" + (i + 1));
+			adicionais.add(shard);
+			shards.add(shard);
+		}
+		return new LazyConnectionDataSourceProxy(new RoteadorShards(shards));
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+
+	@Override
+	public void destroy() {
+		adicionais.forEach(HikariDataSource::close);
+	}
+
+}
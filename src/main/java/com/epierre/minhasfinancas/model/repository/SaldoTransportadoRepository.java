@@ -0,0 +1,15 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import com.epierre.minhasfinancas.model.entity.SaldoTransportado;
+
+public interface SaldoTransportadoRepository extends JpaRepository<SaldoTransportado, Long> {
+
+	@Query( value = " select s.idUsuario from SaldoTransportado s " )
+	List<Long> obterIdsUsuarios();
+
+}
@@ -0,0 +1,40 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.SaldoUsuario;
+
+public interface SaldoUsuarioRepository extends JpaRepository<SaldoUsuario, Long> {
+
+	@Modifying
+	@Query( value =
+			  " update SaldoUsuario s set s.receitas = s.receitas + :receitas, s.despesas = s.despesas + :despesas, "
+			+ " s.versao = s.versao + 1 "
+			+ " where s.idUsuario = :idUsuario " )
+	int adicionar(
+			@Param("idUsuario") Long idUsuario,
+			@Param("receitas") Dinheiro receitas,
+			@Param("despesas") Dinheiro despesas );
+
+	// select for update: os deltas de adicionar esperam o fim da transacao que travou a linha
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query( value = " select s from SaldoUsuario s where s.idUsuario = :idUsuario " )
+	Optional<SaldoUsuario> travar(@Param("idUsuario") Long idUsuario);
+
+	@Query( value = " select s.versao from SaldoUsuario s where s.idUsuario = :idUsuario " )
+	Optional<Long> obterVersao(@Param("idUsuario") Long idUsuario);
+
+	@Query( value = " select s.idUsuario from SaldoUsuario s " )
+	List<Long> obterIdsUsuarios();
+
+}
@@ -0,0 +1,212 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.exception.ConflitoAtualizacaoException;
+import com.epierre.minhasfinancas.model.entity.ShardUsuario;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+/**
+ * Localiza o shard de cada usuario e executa as operacoes dele nesse shard.
+ * A tabela shard_usuario do shard 0 e o diretorio: o usuario recebe uma linha
+ * ao ser incluido (id % quantidade, ou 0 sem shards) e os que existiam antes
+ * dela ficam no shard 0. O shard 0 tambem guarda a tabela usuario completa
+ * (email e senha para a autenticacao); os lancamentos, o saldo, o resumo
+ * mensal e uma copia da linha do usuario ficam no shard dele.
+ *
+ * A shard_usuario de cada shard funciona como cerca. A primeira instrucao de
+ * uma operacao do usuario le a linha dele no shard escolhido, travando-a
+ * quando a transacao grava; a linha ausente e criada na primeira gravacao,
+ * junto com a copia da linha do usuario. Quem move o usuario trava a mesma
+ * linha na origem ate terminar e a deixa apontando para o destino, com a
+ * geracao seguinte: uma instancia com o diretorio desatualizado e recusada
+ * ali com ConflitoAtualizacaoException, em vez de ler ou gravar em um shard
+ * que nao e mais o do usuario. Sem shards configurados as operacoes rodam
+ * direto.
+ */
+@Component
+public class Shards {
+
+	private static final RowMapper<ShardUsuario> MAPEAMENTO = (rs, linha) -> new ShardUsuario(
+			rs.getLong("id_usuario"), rs.getInt("shard"), rs.getLong("geracao"));
+
+	private final RoteadorShards roteador;
+	private final JdbcTemplate dados;
+	private final JdbcTemplate catalogo;
+	private final LoadingCache<Long, ShardUsuario> diretorio;
+
+	public Shards(DataSource dataSource) throws SQLException {
+		this.roteador = dataSource.isWrapperFor(RoteadorShards.class) ? dataSource.unwrap(RoteadorShards.class) : null;
+		this.dados = new JdbcTemplate(dataSource);
+		this.catalogo = roteador == null ? null : new JdbcTemplate(roteador.getShards().get(0));
+		// a cerca recusa as entradas desatualizadas; a expiracao so limita o tempo que ficam na memoria
+		this.diretorio = Caffeine.newBuilder()
+				.maximumSize(100_000)
+				.expireAfterWrite(Duration.ofMinutes(1))
+				.build(this::consultarDiretorio);
+		if (roteador != null) {
+			roteador.setVerificacao(this::verificar);
+		}
+	}
+
+	public boolean ativo() {
+		return roteador != null;
+	}
+
+	public int quantidade() {
+		return roteador == null ? 1 : roteador.getShards().size();
+	}
+
+	public DataSource dataSource(int shard) {
+		return roteador.getShards().get(shard);
+	}
+
+	public int shardDoUsuario(Long idUsuario) {
+		return roteador == null ? 0 : diretorio.get(idUsuario).getShard();
+	}
+
+	public <T> T noUsuario(Long idUsuario, Supplier<T> acao) {
+		if (roteador == null || idUsuario == null) {
+			return acao.get();
+		}
+		return RoteadorShards.executar(shardDoUsuario(idUsuario), idUsuario, acao);
+	}
+
+	// para tarefas que percorrem todos os usuarios, um shard por vez
+	public <T> T noShard(int shard, Supplier<T> acao) {
+		return roteador == null ? acao.get() : RoteadorShards.executar(shard, acao);
+	}
+
+	// para consultas sem o usuario, como a busca pelo id do lancamento: tenta cada shard
+	public <T> Optional<T> localizar(Supplier<Optional<T>> consulta) {
+		if (roteador == null) {
+			return consulta.get();
+		}
+		for (int shard = 0; shard < quantidade(); shard++) {
+			Optional<T> encontrado = RoteadorShards.executar(shard, consulta);
+			if (encontrado.isPresent()) {
+				return encontrado;
+			}
+		}
+		return Optional.empty();
+	}
+
+	// na mesma transacao da inclusao do usuario, que roda no shard 0
+	public void registrarUsuario(Usuario usuario) {
+		dados.update("insert into financas.shard_usuario (id_usuario, shard, geracao) values (?, ?, 0)",
+				usuario.getId(), roteador == null ? 0 : padrao(usuario.getId()));
+	}
+
+	/**
+	 * Trava a cerca do usuario no shard, criando-a se ainda nao existe, e a
+	 * devolve. Usado por quem move o usuario, em uma transacao no shard.
+	 */
+	public ShardUsuario travarCerca(JdbcTemplate jdbc, Long idUsuario, int shard) {
+		List<ShardUsuario> cerca = jdbc.query(
+				"select id_usuario, shard, geracao from financas.shard_usuario where id_usuario = ? for update",
+				MAPEAMENTO, idUsuario);
+		if (!cerca.isEmpty()) {
+			return cerca.get(0);
+		}
+		ShardUsuario nova = new ShardUsuario(idUsuario, shard, diretorio.get(idUsuario).getGeracao());
+		gravarCerca(jdbc, nova);
+		return nova;
+	}
+
+	public void gravarCerca(JdbcTemplate jdbc, ShardUsuario localizacao) {
+		if (jdbc.update("update financas.shard_usuario set shard = ?, geracao = ? where id_usuario = ?",
+				localizacao.getShard(), localizacao.getGeracao(), localizacao.getIdUsuario()) == 0) {
+			jdbc.update("insert into financas.shard_usuario (id_usuario, shard, geracao) values (?, ?, ?)",
+					localizacao.getIdUsuario(), localizacao.getShard(), localizacao.getGeracao());
+		}
+	}
+
+	// ultimo passo de uma movimentacao, depois que a origem ja foi esvaziada e aponta para o destino
+	public void definirShard(ShardUsuario localizacao) {
+		gravarCerca(new JdbcTemplate(dataSource(localizacao.getShard())), localizacao);
+		if (localizacao.getShard() != 0) {
+			gravarCerca(catalogo, localizacao);
+		}
+		diretorio.invalidate(localizacao.getIdUsuario());
+	}
+
+	private void verificar(Connection conexao, Long idUsuario, int shard) throws SQLException {
+		boolean gravacao = !conexao.getAutoCommit() && !conexao.isReadOnly();
+		JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(conexao, true));
+		List<ShardUsuario> cerca = jdbc.query("select id_usuario, shard, geracao from financas.shard_usuario where id_usuario = ?"
+				+ (gravacao ? " for update" : ""), MAPEAMENTO, idUsuario);
+		if (!cerca.isEmpty()) {
+			ShardUsuario atual = cerca.get(0);
+			if (atual.getShard() != shard) {
+				// a cerca e mais nova que o diretorio se a movimentacao parou antes de atualiza-lo
+				if (atual.getGeracao() > diretorio.get(idUsuario).getGeracao()) {
+					diretorio.put(idUsuario, atual);
+				} else {
+					diretorio.invalidate(idUsuario);
+				}
+				throw new ConflitoAtualizacaoException("O usuário mudou de shard. Tente novamente.", null);
+			}
+			return;
+		}
+		// sem cerca o usuario nunca saiu deste shard; a primeira gravacao cria a cerca e a copia do usuario
+		if (gravacao) {
+			criarCerca(idUsuario, shard);
+			verificar(conexao, idUsuario, shard);
+		}
+	}
+
+	// em transacao propria: se outra operacao criar antes, esta so segue para a verificacao
+	private void criarCerca(Long idUsuario, int shard) {
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource(shard));
+		try {
+			new TransactionTemplate(new DataSourceTransactionManager(dataSource(shard))).execute(status -> {
+				if (shard != 0 && jdbc.queryForObject("select count(*) from financas.usuario where id = ?",
+						Integer.class, idUsuario) == 0) {
+					copiarUsuario(jdbc, idUsuario);
+				}
+				jdbc.update("insert into financas.shard_usuario (id_usuario, shard, geracao) values (?, ?, ?)",
+						idUsuario, shard, diretorio.get(idUsuario).getGeracao());
+				return null;
+			});
+		} catch (DuplicateKeyException e) {
+			// a cerca ou a copia do usuario ja foram criadas por outra operacao
+		}
+	}
+
+	private void copiarUsuario(JdbcTemplate destino, Long idUsuario) {
+		Map<String, Object> usuario = catalogo.queryForMap("select * from financas.usuario where id = ?", idUsuario);
+		destino.update("insert into financas.usuario (" + String.join(", ", usuario.keySet()) + ") values ("
+				+ String.join(", ", Collections.nCopies(usuario.size(), "?")) + ")", new ArrayList<>(usuario.values()).toArray());
+	}
+
+	private ShardUsuario consultarDiretorio(Long idUsuario) {
+		List<ShardUsuario> localizacao = catalogo.query(
+				"select id_usuario, shard, geracao from financas.shard_usuario where id_usuario = ?", MAPEAMENTO, idUsuario);
+		return localizacao.isEmpty() ? new ShardUsuario(idUsuario, padrao(idUsuario), 0) : localizacao.get(0);
+	}
+
+	private int padrao(Long idUsuario) {
+		return (int) Math.floorMod(idUsuario, (long) quantidade());
+	}
+
+}
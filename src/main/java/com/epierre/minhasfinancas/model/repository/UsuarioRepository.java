@@ -2,6 +2,7 @@ package com.epierre.minhasfinancas.model.repository;
 
 import java.util.Optional;
 
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.epierre.minhasfinancas.model.entity.Usuario;
@@ -10,6 +11,7 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 	
 	boolean existsByEmail(String email);
 	
+	@Cacheable(cacheNames = "usuariosPorEmail", unless = "#result == null")
 	Optional<Usuario> findByEmail(String email);
 
 }
@@ -0,0 +1,24 @@
+package com.epierre.minhasfinancas.model.repository.projection;
+
+import java.math.BigDecimal;
+
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+public interface EstadoLancamento {
+
+	Long getIdUsuario();
+
+	Integer getAno();
+
+	Integer getMes();
+
+	TipoLancamento getTipo();
+
+	StatusLancamento getStatus();
+
+	BigDecimal getValor();
+
+	Long getVersao();
+
+}
@@ -0,0 +1,34 @@
+package com.epierre.minhasfinancas.model.repository.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import lombok.Value;
+
+/**
+ * Linha somente leitura de um lancamento, montada direto pela consulta
+ * (select new): nao entra no contexto de persistencia e referencia o
+ * usuario apenas pelo id.
+ */
+@Value
+@JsonFilter(LancamentoLinha.FILTRO_CAMPOS)
+public class LancamentoLinha {
+
+	public static final String FILTRO_CAMPOS = "camposLancamento";
+
+	private Long id;
+	private String descricao;
+	private Integer mes;
+	private Integer ano;
+	private BigDecimal valor;
+	private Long usuario;
+	private TipoLancamento tipo;
+	private StatusLancamento status;
+	private LocalDate dataCadastro;
+	private Long versao;
+
+}
@@ -0,0 +1,17 @@
+package com.epierre.minhasfinancas.model.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface ResumoSaldo {
+
+	BigDecimal getReceitas();
+
+	BigDecimal getDespesas();
+
+	BigDecimal getPendente();
+
+	BigDecimal getEfetivado();
+
+	BigDecimal getCancelado();
+
+}
@@ -0,0 +1,33 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.enums.DimensaoAnalise;
+
+public interface AnaliseLancamentosService {
+
+	/**
+	 * Total e quantidade dos lancamentos do usuario do filtro, filtrados por
+	 * ano, mes, tipo e status quando informados e agrupados pelas dimensoes
+	 * pedidas (nenhuma: um unico total), em ordem de ano, mes, tipo e status.
+	 * Sem o tipo entre as dimensoes, o total de cada grupo e o saldo: as
+	 * receitas menos as despesas.
+	 */
+	List<TotalAnalise> totalizar(Lancamento filtro, Collection<DimensaoAnalise> agruparPor);
+
+	/**
+	 * Saldo mes a mes, em ordem cronologica, dos lancamentos que passam pelo
+	 * filtro. Os lancamentos arquivados que passam pelo filtro nao aparecem
+	 * mes a mes, mas compoem o saldo de partida.
+	 */
+	List<SaldoAcumulado> acumularSaldo(Lancamento filtro);
+
+	/**
+	 * Tira o usuario da memoria; as colunas dele sao recarregadas na proxima
+	 * consulta.
+	 */
+	void descartar(Long idUsuario);
+
+}
@@ -0,0 +1,19 @@
+package com.epierre.minhasfinancas.service;
+
+public interface ArquivamentoService {
+
+	/**
+	 * Arquiva, para todos os usuarios, os anos anteriores aos
+	 * minhasfinancas.arquivo.anos-ativos mais recentes. Retorna a quantidade
+	 * de lancamentos arquivados.
+	 */
+	int arquivar();
+
+	/**
+	 * Move os lancamentos do usuario ate o ano informado (inclusive) para
+	 * lancamento_arquivado e atualiza o saldo transportado dele. O saldo, o
+	 * resumo mensal e os ids dos lancamentos nao mudam.
+	 */
+	int arquivar(Long idUsuario, int ateAno);
+
+}
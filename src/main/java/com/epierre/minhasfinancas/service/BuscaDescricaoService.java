@@ -0,0 +1,35 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+
+public interface BuscaDescricaoService {
+
+	/**
+	 * Ids dos lancamentos do usuario do filtro cuja descricao contem todos os
+	 * termos informados (por prefixo), respeitando mes e ano. Vazio quando o
+	 * filtro nao tem descricao a pesquisar.
+	 */
+	Optional<List<Long>> buscarIds(Lancamento filtro);
+
+	Optional<List<Long>> buscarIds(Lancamento filtro, Lancamento posicao, int limite);
+
+	/**
+	 * Descarta o indice do usuario; ele e refeito a partir do banco na proxima
+	 * busca. Usado apos gravacoes em lote que nao publicam eventos por linha.
+	 */
+	void reconstruir(Long idUsuario);
+
+	void reconstruir();
+
+	/**
+	 * Substitui o indice do usuario pelas linhas informadas, sem consultar o
+	 * banco.
+	 */
+	void indexar(Long idUsuario, Collection<LancamentoLinha> linhas);
+
+}
@@ -0,0 +1,41 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface DiarioService {
+
+	boolean ativo();
+
+	/**
+	 * Offset logo apos o ultimo registro gravado; e onde o proximo registro
+	 * comecara.
+	 */
+	long fim();
+
+	/**
+	 * Ate maximo registros a partir do offset, que deve ser 0, o fim ou o
+	 * proximo de um registro lido antes.
+	 */
+	List<RegistroDiario> ler(long offset, int maximo);
+
+	/**
+	 * Como ler, mas espera ate esperaMs por novos registros quando o offset ja
+	 * esta no fim do diario.
+	 */
+	List<RegistroDiario> aguardar(long offset, int maximo, long esperaMs) throws InterruptedException;
+
+	void reproduzir(long offset, Consumer<RegistroDiario> consumidor);
+
+	/**
+	 * Refaz saldo_usuario, resumo_mensal e o indice de busca dos usuarios que
+	 * aparecem no diario, a partir dos registros. O diario e gravado depois do
+	 * commit e pode perder registros, entao um usuario so e refeito quando os
+	 * lancamentos reproduzidos coincidem com os do banco (mesmos ids e
+	 * versoes); os demais ficam como estao. Os anos arquivados nao passam
+	 * pelo diario: entram pelo saldo_transportado e pelos totais mensais de
+	 * lancamento_arquivado. Devolve quantos foram refeitos.
+	 */
+	int reconstruirDerivados();
+
+}
@@ -0,0 +1,11 @@
+package com.epierre.minhasfinancas.service;
+
+import java.io.InputStream;
+
+import com.epierre.minhasfinancas.model.enums.FormatoImportacao;
+
+public interface ImportacaoService {
+
+	ResultadoImportacao importar(Long idUsuario, FormatoImportacao formato, InputStream entrada);
+
+}
@@ -0,0 +1,25 @@
+package com.epierre.minhasfinancas.service;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Publicado pelo servico de lancamentos a cada gravacao, para manter as
+ * estruturas derivadas que so devem ser atualizadas apos o commit.
+ */
+@Data
+@AllArgsConstructor
+public class LancamentoAlteradoEvento {
+
+	public enum Operacao {
+		INCLUSAO,
+		ATUALIZACAO,
+		EXCLUSAO
+	}
+
+	private Operacao operacao;
+	private Lancamento lancamento;
+
+}
@@ -1,11 +1,16 @@
 package com.epierre.minhasfinancas.service;
 
-import java.math.BigDecimal;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
 import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.enums.FormatoExportacao;
 import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
 
 public interface LancamentoService {
 	Lancamento salvar(Lancamento lancamento);
@@ -16,12 +21,55 @@ public interface LancamentoService {
 
 	List<Lancamento> buscar(Lancamento lancamentoFiltro);
 
-	void atualizarStatus(Lancamento lancamento, StatusLancamento status);
+	List<Lancamento> buscar(Lancamento lancamentoFiltro, Lancamento posicao, int limite);
+
+	/**
+	 * Variantes de buscar para listagens: linhas planas, ordenadas por (ano, mes, id),
+	 * com o usuario referenciado pelo id.
+	 */
+	List<LancamentoLinha> buscarLinhas(Lancamento lancamentoFiltro);
+
+	List<LancamentoLinha> buscarLinhas(Lancamento lancamentoFiltro, Lancamento posicao, int limite);
+
+	/**
+	 * Como buscarLinhas, incluindo os lancamentos dos anos arquivados; posicao
+	 * e limite sao opcionais.
+	 */
+	List<LancamentoLinha> buscarLinhasComArquivados(Lancamento lancamentoFiltro, Lancamento posicao, Integer limite);
+
+	/**
+	 * Altera o status com controle otimista de concorrencia; em caso de conflito
+	 * relê o lancamento e tenta de novo, ate um limite de tentativas.
+	 */
+	Lancamento atualizarStatus(Lancamento lancamento, StatusLancamento status);
+
+	/**
+	 * Aplica o novo status aos lancamentos do filtro (usuario obrigatorio; mes,
+	 * ano e status atual opcionais) ou, quando informados, apenas aos ids do
+	 * usuario. Retorna a quantidade de lancamentos alterados. Lanca
+	 * ConflitoAtualizacaoException, sem alterar nada, quando um lancamento
+	 * passa a corresponder ao filtro durante a atualizacao.
+	 */
+	int atualizarStatus(Lancamento filtro, List<Long> ids, StatusLancamento status);
 	
 	void validar(Lancamento lancamento);
 	
 	Optional<Lancamento> obterPorId(Long id);
 	
-	BigDecimal obterSaldoPorUsuario(Long id);
+	Dinheiro obterSaldoPorUsuario(Long id);
+
+	ResumoSaldo obterResumoSaldoPorUsuario(Long id);
+
+	List<ResumoMensal> obterResumoMensalPorUsuario(Long id, Integer ano);
+
+	void exportar(Long idUsuario, FormatoExportacao formato, OutputStream saida);
+
+	/**
+	 * Versao dos lancamentos e do saldo do usuario, para ETag: a coluna versao
+	 * de saldo_usuario, que toda gravacao do usuario incrementa na propria
+	 * transacao. E a mesma em todas as instancias e apos um reinicio. Deve ser
+	 * lida antes da consulta cujo resultado ela identifica.
+	 */
+	String obterVersaoPorUsuario(Long id);
 
 }
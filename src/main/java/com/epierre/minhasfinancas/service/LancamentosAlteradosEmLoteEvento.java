@@ -0,0 +1,27 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.List;
+
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Publicado quando varios lancamentos de um usuario sao alterados por um unico
+ * comando no banco, sem que as entidades passem pelo servico uma a uma. Leva
+ * o filtro do comando (mes, ano, status atual e ids opcionais) e o novo
+ * status, o suficiente para repetir a alteracao sobre o mesmo estado.
+ */
+@Data
+@AllArgsConstructor
+public class LancamentosAlteradosEmLoteEvento {
+
+	private Long idUsuario;
+	private Integer mes;
+	private Integer ano;
+	private StatusLancamento statusAtual;
+	private List<Long> ids;
+	private StatusLancamento novoStatus;
+
+}
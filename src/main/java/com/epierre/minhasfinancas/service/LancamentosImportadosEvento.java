@@ -0,0 +1,22 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.List;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Publicado a cada lote gravado pela importacao ou gerado por uma
+ * recorrencia, que nao passam pelo servico de lancamentos nem publicam
+ * eventos por linha.
+ */
+@Data
+@AllArgsConstructor
+public class LancamentosImportadosEvento {
+
+	private Long idUsuario;
+	private List<Lancamento> lancamentos;
+
+}
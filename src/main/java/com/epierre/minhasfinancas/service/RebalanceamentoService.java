@@ -0,0 +1,14 @@
+package com.epierre.minhasfinancas.service;
+
+public interface RebalanceamentoService {
+
+	/**
+	 * Copia os lancamentos (vivos e arquivados), os saldos e o resumo mensal
+	 * do usuario para o shard de destino, passa a rotear o usuario para la e so
+	 * entao apaga as linhas da origem. As operacoes do usuario esperam o fim da
+	 * mudanca em qualquer instancia; as que chegam a origem depois dela falham
+	 * com ConflitoAtualizacaoException e podem ser repetidas.
+	 */
+	void moverUsuario(Long idUsuario, int destino);
+
+}
@@ -0,0 +1,20 @@
+package com.epierre.minhasfinancas.service;
+
+import com.epierre.minhasfinancas.model.entity.Recorrencia;
+
+public interface RecorrenciaService {
+
+	/**
+	 * Grava a regra e, na mesma transacao e em um unico lote de inserts, os
+	 * lancamentos dela: todos, quando ela tem fim, ou os dos proximos
+	 * minhasfinancas.recorrencia.meses-antecedencia, quando nao tem.
+	 */
+	Recorrencia criar(Recorrencia recorrencia);
+
+	/**
+	 * Gera, para todos os usuarios, os lancamentos das regras sem fim que
+	 * entraram na janela de antecedencia. Retorna a quantidade gerada.
+	 */
+	int materializar();
+
+}
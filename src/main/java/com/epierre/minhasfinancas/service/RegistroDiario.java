@@ -0,0 +1,42 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.List;
+
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+
+import lombok.Value;
+
+/**
+ * Uma alteracao confirmada de lancamentos, na posicao (offset) em que foi
+ * gravada no diario. Inclusoes e atualizacoes trazem o estado completo do
+ * lancamento; exclusoes, o ultimo estado conhecido; alteracoes de status em
+ * lote, o filtro e o novo status.
+ */
+@Value
+public class RegistroDiario {
+
+	public enum Tipo {
+		INCLUSAO,
+		ATUALIZACAO,
+		EXCLUSAO,
+		STATUS_EM_LOTE
+	}
+
+	@Value
+	public static class AlteracaoStatus {
+		private Long idUsuario;
+		private Integer mes;
+		private Integer ano;
+		private StatusLancamento statusAtual;
+		private List<Long> ids;
+		private StatusLancamento novoStatus;
+	}
+
+	private long offset;
+	private long proximo;
+	private Tipo tipo;
+	private LancamentoLinha lancamento;
+	private AlteracaoStatus alteracaoStatus;
+
+}
@@ -0,0 +1,26 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ResultadoImportacao {
+
+	private long importados;
+	private long rejeitados;
+	private List<Erro> erros = new ArrayList<>();
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Erro {
+		private long linha;
+		private String mensagem;
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.List;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.EstadoLancamento;
+
+public interface ResumoMensalService {
+
+	void registrarInclusao(Lancamento lancamento);
+
+	void registrarInclusoes(List<Lancamento> lancamentos);
+
+	void registrarExclusao(EstadoLancamento estado);
+
+	/**
+	 * Move os totais afetados por uma atualizacao de status em lote para as
+	 * celulas do novo status. Deve ser chamado antes do UPDATE.
+	 */
+	void registrarAtualizacaoDeStatus(List<ResumoMensal> afetados, StatusLancamento novoStatus);
+
+	/**
+	 * Totais do ano por (mes, tipo, status), lidos apenas da tabela de resumo:
+	 * no maximo 12 x 2 x 3 linhas, independentemente da quantidade de lancamentos.
+	 */
+	List<ResumoMensal> obterResumoAnual(Long idUsuario, Integer ano);
+
+	void reconstruir();
+
+}
@@ -0,0 +1,20 @@
+package com.epierre.minhasfinancas.service;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+
+import lombok.Value;
+
+/**
+ * Receitas e despesas do mes e o saldo acumulado desde o primeiro mes do
+ * filtro ate ele.
+ */
+@Value
+public class SaldoAcumulado {
+
+	private Integer ano;
+	private Integer mes;
+	private Dinheiro receitas;
+	private Dinheiro despesas;
+	private Dinheiro saldo;
+
+}
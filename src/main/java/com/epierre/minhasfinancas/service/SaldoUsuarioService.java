@@ -0,0 +1,43 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.List;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.repository.projection.EstadoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+
+public interface SaldoUsuarioService {
+
+	void registrarInclusao(Lancamento lancamento);
+
+	void registrarInclusoes(List<Lancamento> lancamentos);
+
+	void registrarExclusao(EstadoLancamento estado);
+
+	/**
+	 * Trava a linha do saldo do usuario ate o fim da transacao, criando-a se
+	 * preciso. Toda gravacao de lancamento comeca pelo saldo, entao quem trava
+	 * primeiro espera as gravacoes em andamento do usuario e bloqueia as novas.
+	 */
+	void travar(Long idUsuario);
+
+	Dinheiro obterSaldo(Long idUsuario);
+
+	/**
+	 * Numero de gravacoes do usuario, incrementado na transacao de cada uma;
+	 * 0 antes da primeira.
+	 */
+	long obterVersao(Long idUsuario);
+
+	/**
+	 * Totais dos lancamentos vivos somados ao saldo transportado dos anos
+	 * arquivados.
+	 */
+	ResumoSaldo obterResumoSaldo(Long idUsuario);
+
+	boolean verificarConsistencia(Long idUsuario);
+
+	void reconstruir();
+
+}
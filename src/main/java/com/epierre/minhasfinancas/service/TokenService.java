@@ -0,0 +1,17 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.Optional;
+
+import com.epierre.minhasfinancas.model.entity.Usuario;
+
+public interface TokenService {
+
+	String gerarToken(Usuario usuario);
+
+	/**
+	 * Valida assinatura e expiracao do token apenas em memoria, sem consultar
+	 * o banco. Vazio quando o token e invalido ou expirou.
+	 */
+	Optional<Long> obterIdUsuario(String token);
+
+}
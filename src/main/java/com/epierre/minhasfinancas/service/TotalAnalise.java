@@ -0,0 +1,22 @@
+package com.epierre.minhasfinancas.service;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+import lombok.Value;
+
+/**
+ * Total de um grupo da analise; as dimensoes fora do agrupamento ficam nulas.
+ */
+@Value
+public class TotalAnalise {
+
+	private Integer ano;
+	private Integer mes;
+	private TipoLancamento tipo;
+	private StatusLancamento status;
+	private Dinheiro total;
+	private long quantidade;
+
+}
@@ -0,0 +1,361 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.enums.DimensaoAnalise;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoArquivadoRepository;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.Shards;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.service.AnaliseLancamentosService;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento.Operacao;
+import com.epierre.minhasfinancas.service.LancamentosAlteradosEmLoteEvento;
+import com.epierre.minhasfinancas.service.LancamentosImportadosEvento;
+import com.epierre.minhasfinancas.service.SaldoAcumulado;
+import com.epierre.minhasfinancas.service.TotalAnalise;
+
+/**
+ * Consultas analiticas sobre os lancamentos mantidos em memoria, em colunas
+ * (ColunasLancamentos), sem passar pelo banco nem por BigDecimal. As colunas
+ * de um usuario sao carregadas na primeira consulta dele e, como o indice de
+ * busca, acompanham as gravacoes pelos eventos publicados apos o commit. Os
+ * usuarios usados ha mais tempo saem da memoria quando o total passa de
+ * minhasfinancas.analise.memoria-maxima.
+ */
+@Service
+public class AnaliseLancamentosServiceImpl implements AnaliseLancamentosService {
+
+	private static final int QUANTIDADE_TRAVAS = 64;
+
+	private final LancamentoRepository repository;
+	private final LancamentoArquivadoRepository arquivadoRepository;
+	private final Shards shards;
+	private final TransactionTemplate transactionTemplate;
+	private final long memoriaMaxima;
+	private final TravasPorUsuario travas = new TravasPorUsuario(QUANTIDADE_TRAVAS);
+
+	// em ordem de acesso, do usado ha mais tempo ao mais recente; protegido por ele mesmo
+	private final LinkedHashMap<Long, ColunasLancamentos> carregados = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<Long, Long> bytesPorUsuario = new HashMap<>();
+	private long bytesCarregados;
+
+	public AnaliseLancamentosServiceImpl(LancamentoRepository repository,
+			LancamentoArquivadoRepository arquivadoRepository, Shards shards,
+			PlatformTransactionManager transactionManager,
+			@Value("${minhasfinancas.analise.memoria-maxima:64MB}") DataSize memoriaMaxima) {
+		this.repository = repository;
+		this.arquivadoRepository = arquivadoRepository;
+		this.shards = shards;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.memoriaMaxima = memoriaMaxima.toBytes();
+	}
+
+	@Override
+	public List<TotalAnalise> totalizar(Lancamento filtro, Collection<DimensaoAnalise> agruparPor) {
+		int mascaraFiltro = mascaraFiltro(filtro);
+		int valorFiltro = valorFiltro(filtro);
+		int mascaraGrupo = 0;
+		for (DimensaoAnalise dimensao : agruparPor) {
+			mascaraGrupo |= mascara(dimensao);
+		}
+		int grupo = mascaraGrupo;
+		// sem o tipo no grupo, receitas e despesas se misturam: o total e o saldo, como em acumularSaldo
+		boolean porTipo = (grupo & ColunasLancamentos.MASCARA_TIPO) != 0;
+		int receita = ColunasLancamentos.chave(null, null, TipoLancamento.RECEITA, null);
+
+		Agregacao agregacao = consultar(filtro.getUsuario().getId(), colunas -> {
+			Agregacao totais = new Agregacao();
+			for (int linha = 0; linha < colunas.tamanho(); linha++) {
+				int chave = colunas.chave(linha);
+				if ((chave & mascaraFiltro) == valorFiltro) {
+					boolean despesa = !porTipo && (chave & ColunasLancamentos.MASCARA_TIPO) != receita;
+					totais.somar(chave & grupo, despesa ? -colunas.centavos(linha) : colunas.centavos(linha), 0);
+				}
+			}
+			return totais;
+		});
+
+		List<TotalAnalise> totais = new ArrayList<>();
+		for (int i : agregacao.ordem()) {
+			int chave = agregacao.chaves[i];
+			totais.add(new TotalAnalise(ColunasLancamentos.ano(chave), ColunasLancamentos.mes(chave),
+					ColunasLancamentos.tipo(chave), ColunasLancamentos.status(chave),
+					Dinheiro.deCentavos(agregacao.primeiro[i]), agregacao.quantidades[i]));
+		}
+		return totais;
+	}
+
+	@Override
+	public List<SaldoAcumulado> acumularSaldo(Lancamento filtro) {
+		int mascaraFiltro = mascaraFiltro(filtro);
+		int valorFiltro = valorFiltro(filtro);
+		int mesDoAno = ColunasLancamentos.MASCARA_ANO | ColunasLancamentos.MASCARA_MES;
+		int receita = ColunasLancamentos.chave(null, null, TipoLancamento.RECEITA, null);
+		long[] transportado = new long[1];
+
+		Agregacao agregacao = consultar(filtro.getUsuario().getId(), colunas -> {
+			// os meses arquivados nao sao listados, mas entram no saldo inicial
+			for (int i = 0; i < colunas.arquivados(); i++) {
+				int chave = colunas.chaveArquivada(i);
+				if ((chave & mascaraFiltro) == valorFiltro) {
+					transportado[0] += (chave & ColunasLancamentos.MASCARA_TIPO) == receita
+							? colunas.centavosArquivados(i) : -colunas.centavosArquivados(i);
+				}
+			}
+			Agregacao meses = new Agregacao();
+			for (int linha = 0; linha < colunas.tamanho(); linha++) {
+				int chave = colunas.chave(linha);
+				if ((chave & mascaraFiltro) != valorFiltro) {
+					continue;
+				}
+				if ((chave & ColunasLancamentos.MASCARA_TIPO) == receita) {
+					meses.somar(chave & mesDoAno, colunas.centavos(linha), 0);
+				} else {
+					meses.somar(chave & mesDoAno, 0, colunas.centavos(linha));
+				}
+			}
+			return meses;
+		});
+
+		List<SaldoAcumulado> saldos = new ArrayList<>();
+		long saldo = transportado[0];
+		for (int i : agregacao.ordem()) {
+			int chave = agregacao.chaves[i];
+			saldo += agregacao.primeiro[i] - agregacao.segundo[i];
+			saldos.add(new SaldoAcumulado(ColunasLancamentos.ano(chave), ColunasLancamentos.mes(chave),
+					Dinheiro.deCentavos(agregacao.primeiro[i]), Dinheiro.deCentavos(agregacao.segundo[i]),
+					Dinheiro.deCentavos(saldo)));
+		}
+		return saldos;
+	}
+
+	@Override
+	public void descartar(Long idUsuario) {
+		travas.executarAgora(idUsuario, () -> {
+			synchronized (carregados) {
+				if (carregados.remove(idUsuario) != null) {
+					bytesCarregados -= bytesPorUsuario.remove(idUsuario);
+				}
+			}
+			return null;
+		});
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void aoAlterarLancamento(LancamentoAlteradoEvento evento) {
+		Lancamento lancamento = evento.getLancamento();
+		alterar(lancamento.getUsuario().getId(), colunas -> {
+			if (evento.getOperacao() == Operacao.EXCLUSAO) {
+				colunas.remover(lancamento.getId(), lancamento.getVersao());
+			} else {
+				colunas.gravar(lancamento.getId(), lancamento.getVersao(),
+						ColunasLancamentos.centavos(lancamento.getValor()), ColunasLancamentos.chave(
+								lancamento.getAno(), lancamento.getMes(), lancamento.getTipo(), lancamento.getStatus()));
+			}
+		});
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void aoAlterarLancamentosEmLote(LancamentosAlteradosEmLoteEvento evento) {
+		long[] ids = evento.getIds() == null ? null
+				: evento.getIds().stream().mapToLong(Long::longValue).sorted().toArray();
+		int mascara = ColunasLancamentos.mascara(evento.getAno(), evento.getMes(), null, evento.getStatusAtual());
+		int valor = ColunasLancamentos.chave(evento.getAno(), evento.getMes(), null, evento.getStatusAtual());
+		alterar(evento.getIdUsuario(), colunas -> colunas.alterarStatus(mascara, valor, ids, evento.getNovoStatus()));
+	}
+
+	// a importacao grava milhares de linhas de uma vez: mais barato recarregar que procurar cada id
+	@TransactionalEventListener(fallbackExecution = true)
+	public void aoImportarLancamentos(LancamentosImportadosEvento evento) {
+		descartar(evento.getIdUsuario());
+	}
+
+	private <T> T consultar(Long idUsuario, Function<ColunasLancamentos, T> consulta) {
+		return travas.executarAgora(idUsuario, () -> {
+			ColunasLancamentos colunas;
+			synchronized (carregados) {
+				colunas = carregados.get(idUsuario);
+			}
+			if (colunas == null) {
+				colunas = carregar(idUsuario);
+				contabilizar(idUsuario, colunas);
+			}
+			return consulta.apply(colunas);
+		});
+	}
+
+	// usuarios fora da memoria sao ignorados: a carga seguinte ja le o que foi gravado
+	private void alterar(Long idUsuario, Consumer<ColunasLancamentos> alteracao) {
+		travas.executarAgora(idUsuario, () -> {
+			ColunasLancamentos colunas;
+			synchronized (carregados) {
+				colunas = carregados.get(idUsuario);
+			}
+			if (colunas != null) {
+				alteracao.accept(colunas);
+				contabilizar(idUsuario, colunas);
+			}
+			return null;
+		});
+	}
+
+	private ColunasLancamentos carregar(Long idUsuario) {
+		return shards.noUsuario(idUsuario, () -> transactionTemplate.execute(status -> {
+			ColunasLancamentos colunas = new ColunasLancamentos();
+			try (Stream<LancamentoLinha> linhas = repository.obterLinhasPorUsuario(idUsuario)) {
+				linhas.forEach(linha -> colunas.incluir(linha.getId(), linha.getVersao(),
+						ColunasLancamentos.centavos(linha.getValor()),
+						ColunasLancamentos.chave(linha.getAno(), linha.getMes(), linha.getTipo(), linha.getStatus())));
+			}
+			List<ResumoMensal> arquivados = arquivadoRepository.obterResumosMensaisPorUsuario(idUsuario);
+			int[] chaves = new int[arquivados.size()];
+			long[] centavos = new long[arquivados.size()];
+			for (int i = 0; i < chaves.length; i++) {
+				ResumoMensal resumo = arquivados.get(i);
+				chaves[i] = ColunasLancamentos.chave(resumo.getId().getAno(), resumo.getId().getMes(),
+						resumo.getId().getTipo(), resumo.getId().getStatus());
+				centavos[i] = ColunasLancamentos.centavos(resumo.getTotal());
+			}
+			colunas.arquivados(chaves, centavos);
+			return colunas;
+		}));
+	}
+
+	// registra o tamanho atual das colunas e tira da memoria os usuarios usados ha mais tempo
+	private void contabilizar(Long idUsuario, ColunasLancamentos colunas) {
+		synchronized (carregados) {
+			Long anterior = bytesPorUsuario.put(idUsuario, colunas.bytes());
+			bytesCarregados += colunas.bytes() - (anterior == null ? 0 : anterior);
+			carregados.put(idUsuario, colunas);
+
+			Iterator<Map.Entry<Long, ColunasLancamentos>> antigos = carregados.entrySet().iterator();
+			while (bytesCarregados > memoriaMaxima && antigos.hasNext()) {
+				Long antigo = antigos.next().getKey();
+				if (antigo.equals(idUsuario)) {
+					break;
+				}
+				antigos.remove();
+				bytesCarregados -= bytesPorUsuario.remove(antigo);
+			}
+		}
+	}
+
+	private static int mascaraFiltro(Lancamento filtro) {
+		return ColunasLancamentos.mascara(filtro.getAno(), filtro.getMes(), filtro.getTipo(), filtro.getStatus());
+	}
+
+	private static int valorFiltro(Lancamento filtro) {
+		return ColunasLancamentos.chave(filtro.getAno(), filtro.getMes(), filtro.getTipo(), filtro.getStatus());
+	}
+
+	private static int mascara(DimensaoAnalise dimensao) {
+		switch (dimensao) {
+		case ANO:
+			return ColunasLancamentos.MASCARA_ANO;
+		case MES:
+			return ColunasLancamentos.MASCARA_MES;
+		case TIPO:
+			return ColunasLancamentos.MASCARA_TIPO;
+		default:
+			return ColunasLancamentos.MASCARA_STATUS;
+		}
+	}
+
+	/**
+	 * Tabela de espalhamento aberta de chave de grupo para dois totais em
+	 * centavos e a quantidade, sem objetos por linha somada.
+	 */
+	private static final class Agregacao {
+		private int[] chaves = new int[16];
+		private boolean[] usadas = new boolean[16];
+		private long[] primeiro = new long[16];
+		private long[] segundo = new long[16];
+		private long[] quantidades = new long[16];
+		private int tamanho;
+
+		void somar(int chave, long valorPrimeiro, long valorSegundo) {
+			int i = posicao(chave);
+			if (!usadas[i]) {
+				if ((tamanho + 1) * 2 > chaves.length) {
+					crescer();
+					i = posicao(chave);
+				}
+				usadas[i] = true;
+				chaves[i] = chave;
+				tamanho++;
+			}
+			primeiro[i] += valorPrimeiro;
+			segundo[i] += valorSegundo;
+			quantidades[i]++;
+		}
+
+		// posicoes ocupadas em ordem crescente de chave, ou seja, de ano, mes, tipo e status
+		int[] ordem() {
+			Integer[] posicoes = new Integer[tamanho];
+			for (int i = 0, j = 0; i < chaves.length; i++) {
+				if (usadas[i]) {
+					posicoes[j++] = i;
+				}
+			}
+			Arrays.sort(posicoes, (a, b) -> Integer.compare(chaves[a], chaves[b]));
+			return Arrays.stream(posicoes).mapToInt(Integer::intValue).toArray();
+		}
+
+		private int posicao(int chave) {
+			int mascara = chaves.length - 1;
+			int i = (chave * 0x9E3779B9) >>> 16 & mascara;
+			while (usadas[i] && chaves[i] != chave) {
+				i = (i + 1) & mascara;
+			}
+			return i;
+		}
+
+		private void crescer() {
+			int[] chavesAntigas = chaves;
+			boolean[] usadasAntigas = usadas;
+			long[] primeiroAntigo = primeiro;
+			long[] segundoAntigo = segundo;
+			long[] quantidadesAntigas = quantidades;
+			int capacidade = chaves.length * 2;
+			chaves = new int[capacidade];
+			usadas = new boolean[capacidade];
+			primeiro = new long[capacidade];
+			segundo = new long[capacidade];
+			quantidades = new long[capacidade];
+			for (int i = 0; i < chavesAntigas.length; i++) {
+				if (usadasAntigas[i]) {
+					int j = posicao(chavesAntigas[i]);
+					usadas[j] = true;
+					chaves[j] = chavesAntigas[i];
+					primeiro[j] = primeiroAntigo[i];
+					segundo[j] = segundoAntigo[i];
+					quantidades[j] = quantidadesAntigas[i];
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.math.BigDecimal;
+import java.time.Year;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.exception.ConflitoAtualizacaoException;
+import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.SaldoTransportado;
+import com.epierre.minhasfinancas.model.repository.LancamentoArquivadoRepository;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.SaldoTransportadoRepository;
+import com.epierre.minhasfinancas.model.repository.Shards;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+import com.epierre.minhasfinancas.service.AnaliseLancamentosService;
+import com.epierre.minhasfinancas.service.ArquivamentoService;
+import com.epierre.minhasfinancas.service.BuscaDescricaoService;
+import com.epierre.minhasfinancas.service.SaldoUsuarioService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tira da tabela lancamento os anos que ja nao sao consultados no dia a dia.
+ * As linhas sao copiadas no proprio banco para lancamento_arquivado e os
+ * totais delas ficam em saldo_transportado, na mesma transacao que as remove;
+ * saldo_usuario e resumo_mensal nao mudam. A transacao trava antes o saldo
+ * do usuario e os lancamentos dos anos arquivados, de modo que uma gravacao
+ * concorrente espera o fim da copia em vez de alterar uma linha entre a
+ * copia e a remocao. Os anos arquivados continuam
+ * disponiveis em LancamentoService.buscarLinhasComArquivados.
+ */
+@Slf4j
+@Service
+public class ArquivamentoServiceImpl implements ArquivamentoService {
+
+	private final LancamentoRepository lancamentoRepository;
+	private final LancamentoArquivadoRepository arquivadoRepository;
+	private final SaldoTransportadoRepository saldoTransportadoRepository;
+	private final BuscaDescricaoService buscaDescricaoService;
+	private final AnaliseLancamentosService analiseLancamentosService;
+	private final SaldoUsuarioService saldoUsuarioService;
+	private final Shards shards;
+	private final TransactionTemplate transactionTemplate;
+	private final int anosAtivos;
+
+	public ArquivamentoServiceImpl(LancamentoRepository lancamentoRepository,
+			LancamentoArquivadoRepository arquivadoRepository, SaldoTransportadoRepository saldoTransportadoRepository,
+			BuscaDescricaoService buscaDescricaoService, AnaliseLancamentosService analiseLancamentosService,
+			SaldoUsuarioService saldoUsuarioService,
+			Shards shards, PlatformTransactionManager transactionManager,
+			@Value("${minhasfinancas.arquivo.anos-ativos:2}") int anosAtivos) {
+		this.lancamentoRepository = lancamentoRepository;
+		this.arquivadoRepository = arquivadoRepository;
+		this.saldoTransportadoRepository = saldoTransportadoRepository;
+		this.buscaDescricaoService = buscaDescricaoService;
+		this.analiseLancamentosService = analiseLancamentosService;
+		this.saldoUsuarioService = saldoUsuarioService;
+		this.shards = shards;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.anosAtivos = anosAtivos;
+	}
+
+	@Override
+	@Scheduled(cron = "${minhasfinancas.arquivo.cron:0 0 3 * * *}")
+	public int arquivar() {
+		int ateAno = anoLimite();
+		int arquivados = 0;
+		for (int shard = 0; shard < shards.quantidade(); shard++) {
+			for (Long idUsuario : shards.noShard(shard, () -> lancamentoRepository.obterIdsUsuariosComLancamentosAte(ateAno))) {
+				arquivados += arquivar(idUsuario, ateAno);
+			}
+		}
+		log.info("{} lancamentos arquivados ate {}", arquivados, ateAno);
+		return arquivados;
+	}
+
+	@Override
+	public int arquivar(Long idUsuario, int ateAno) {
+		if (ateAno > anoLimite()) {
+			throw new RegraNegocioException("Somente anos ate " + anoLimite() + " podem ser arquivados.");
+		}
+		int arquivados = shards.noUsuario(idUsuario, () -> transactionTemplate.execute(status -> {
+			// na mesma ordem das gravacoes de lancamento: primeiro o saldo, depois as linhas
+			saldoUsuarioService.travar(idUsuario);
+			if (lancamentoRepository.travarAteAno(idUsuario, ateAno).isEmpty()) {
+				return 0;
+			}
+			int copiados = arquivadoRepository.arquivar(idUsuario, ateAno);
+			if (lancamentoRepository.removerArquivados(idUsuario, ateAno) != copiados) {
+				throw new ConflitoAtualizacaoException("Os lançamentos foram alterados durante o arquivamento. Tente novamente.", null);
+			}
+			// recalculado sobre todos os arquivados, de modo que repetir o arquivamento nao soma em dobro
+			ResumoSaldo resumo = arquivadoRepository.obterResumoSaldoPorUsuario(idUsuario);
+			int ano = saldoTransportadoRepository.findById(idUsuario)
+					.map(transportado -> Math.max(transportado.getAteAno(), ateAno))
+					.orElse(ateAno);
+			saldoTransportadoRepository.save(SaldoTransportado.builder()
+					.idUsuario(idUsuario)
+					.ateAno(ano)
+					.receitas(valor(resumo.getReceitas()))
+					.despesas(valor(resumo.getDespesas()))
+					.pendente(valor(resumo.getPendente()))
+					.efetivado(valor(resumo.getEfetivado()))
+					.cancelado(valor(resumo.getCancelado()))
+					.build());
+			return copiados;
+		}));
+		if (arquivados > 0) {
+			buscaDescricaoService.reconstruir(idUsuario);
+			analiseLancamentosService.descartar(idUsuario);
+		}
+		return arquivados;
+	}
+
+	private int anoLimite() {
+		return Year.now().getValue() - anosAtivos;
+	}
+
+	private static BigDecimal valor(BigDecimal valor) {
+		return valor == null ? BigDecimal.ZERO : valor;
+	}
+
+}
@@ -0,0 +1,238 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Arquivo do diario: segmentos de tamanho fixo mapeados em memoria, gravados
+ * apenas no fim. Cada registro e [tamanho][crc32][dados]; o tamanho e escrito
+ * por ultimo e zero marca o fim do segmento. O offset de um registro e a sua
+ * posicao no diario inteiro, e cada segmento se chama pelo offset em que
+ * comeca. Ao abrir, o ultimo segmento e percorrido ate o primeiro registro
+ * incompleto ou com crc invalido, que e descartado junto com o resto.
+ *
+ * As gravacoes vao para o page cache; forcar() leva ao disco o que foi
+ * gravado desde a chamada anterior.
+ */
+final class ArquivoDiario {
+
+	static final class Entrada {
+		final long offset;
+		final long proximo;
+		final byte[] dados;
+
+		Entrada(long offset, long proximo, byte[] dados) {
+			this.offset = offset;
+			this.proximo = proximo;
+			this.dados = dados;
+		}
+	}
+
+	private static final String EXTENSAO = ".diario";
+	private static final int CABECALHO = 8;
+
+	private final Path diretorio;
+	private final int tamanhoSegmento;
+	private final TreeMap<Long, MappedByteBuffer> segmentos = new TreeMap<>();
+	private final List<FileChannel> canais = new ArrayList<>();
+	private final Object novosRegistros = new Object();
+
+	private MappedByteBuffer atual;
+	private long inicioAtual;
+	private int posicao;
+	private volatile long fim;
+	private boolean pendente;
+
+	ArquivoDiario(Path diretorio, int tamanhoSegmento) throws IOException {
+		this.diretorio = diretorio;
+		this.tamanhoSegmento = tamanhoSegmento;
+		Files.createDirectories(diretorio);
+
+		List<Long> inicios = new ArrayList<>();
+		try (Stream<Path> arquivos = Files.list(diretorio)) {
+			arquivos.map(arquivo -> arquivo.getFileName().toString())
+					.filter(nome -> nome.endsWith(EXTENSAO))
+					.forEach(nome -> inicios.add(Long.valueOf(nome.substring(0, nome.length() - EXTENSAO.length()))));
+		}
+		inicios.sort(null);
+		for (Long inicio : inicios) {
+			segmentos.put(inicio, mapear(inicio));
+		}
+		if (segmentos.isEmpty()) {
+			segmentos.put(0L, mapear(0L));
+		}
+
+		Map.Entry<Long, MappedByteBuffer> ultimo = segmentos.lastEntry();
+		atual = ultimo.getValue();
+		inicioAtual = ultimo.getKey();
+		posicao = recuperar(atual);
+		fim = inicioAtual + posicao;
+	}
+
+	long fim() {
+		return fim;
+	}
+
+	synchronized long gravar(List<byte[]> registros) {
+		for (byte[] dados : registros) {
+			if (CABECALHO + dados.length > tamanhoSegmento) {
+				throw new IllegalArgumentException("Registro maior que o segmento do diario: " + dados.length + " bytes.");
+			}
+			if (posicao + CABECALHO + dados.length > tamanhoSegmento) {
+				novoSegmento();
+			}
+			CRC32 crc = new CRC32();
+			crc.update(dados);
+			ByteBuffer destino = atual.duplicate();
+			destino.position(posicao + CABECALHO);
+			destino.put(dados);
+			atual.putInt(posicao + 4, (int) crc.getValue());
+			atual.putInt(posicao, dados.length);
+			posicao += CABECALHO + dados.length;
+		}
+		pendente = true;
+		fim = inicioAtual + posicao;
+		synchronized (novosRegistros) {
+			novosRegistros.notifyAll();
+		}
+		return fim;
+	}
+
+	// o segmento anterior ja foi forcado ao ser fechado, so o atual pode ter gravacoes pendentes
+	void forcar() {
+		MappedByteBuffer segmento;
+		synchronized (this) {
+			if (!pendente) {
+				return;
+			}
+			pendente = false;
+			segmento = atual;
+		}
+		segmento.force();
+	}
+
+	List<Entrada> ler(long offset, int maximo) {
+		long limite = fim;
+		if (offset < 0 || offset > limite) {
+			throw new IllegalArgumentException("Offset fora do diario: " + offset + ".");
+		}
+		List<Entrada> entradas = new ArrayList<>(Math.min(maximo, 1024));
+		while (offset < limite && entradas.size() < maximo) {
+			Map.Entry<Long, MappedByteBuffer> segmento;
+			synchronized (this) {
+				segmento = segmentos.floorEntry(offset);
+			}
+			int local = (int) (offset - segmento.getKey());
+			ByteBuffer buffer = segmento.getValue().duplicate();
+			int tamanho = local + CABECALHO <= buffer.capacity() ? buffer.getInt(local) : 0;
+			if (tamanho == 0) {
+				// fim do segmento: o proximo comeca exatamente neste offset
+				Long seguinte;
+				synchronized (this) {
+					seguinte = segmentos.higherKey(segmento.getKey());
+				}
+				if (seguinte == null || seguinte != offset) {
+					throw new IllegalArgumentException("Offset nao corresponde a um registro: " + offset + ".");
+				}
+				continue;
+			}
+			byte[] dados = new byte[tamanho];
+			buffer.position(local + CABECALHO);
+			buffer.get(dados);
+			if (!valido(dados, buffer.getInt(local + 4))) {
+				throw new IllegalArgumentException("Offset nao corresponde a um registro: " + offset + ".");
+			}
+			long proximo = offset + CABECALHO + tamanho;
+			entradas.add(new Entrada(offset, proximo, dados));
+			offset = proximo;
+		}
+		return entradas;
+	}
+
+	boolean aguardar(long offset, long esperaMs) throws InterruptedException {
+		long prazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMs);
+		synchronized (novosRegistros) {
+			while (fim <= offset) {
+				long restante = TimeUnit.NANOSECONDS.toMillis(prazo - System.nanoTime());
+				if (restante <= 0) {
+					return false;
+				}
+				novosRegistros.wait(restante);
+			}
+		}
+		return true;
+	}
+
+	synchronized void fechar() throws IOException {
+		atual.force();
+		for (FileChannel canal : canais) {
+			canal.close();
+		}
+	}
+
+	private void novoSegmento() {
+		atual.force();
+		inicioAtual += posicao;
+		posicao = 0;
+		try {
+			atual = mapear(inicioAtual);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		segmentos.put(inicioAtual, atual);
+	}
+
+	private MappedByteBuffer mapear(long inicio) throws IOException {
+		FileChannel canal = FileChannel.open(diretorio.resolve(String.format("%020d%s", inicio, EXTENSAO)),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		canais.add(canal);
+		return canal.map(MapMode.READ_WRITE, 0, tamanhoSegmento);
+	}
+
+	// posicao logo apos o ultimo registro integro; o que vier depois e apagado
+	private int recuperar(MappedByteBuffer segmento) {
+		int local = 0;
+		ByteBuffer buffer = segmento.duplicate();
+		while (local + CABECALHO <= tamanhoSegmento) {
+			int tamanho = buffer.getInt(local);
+			if (tamanho <= 0 || local + CABECALHO + tamanho > tamanhoSegmento) {
+				break;
+			}
+			byte[] dados = new byte[tamanho];
+			buffer.position(local + CABECALHO);
+			buffer.get(dados);
+			if (!valido(dados, buffer.getInt(local + 4))) {
+				break;
+			}
+			local += CABECALHO + tamanho;
+		}
+		if (local + CABECALHO <= tamanhoSegmento && buffer.getInt(local) != 0) {
+			for (int i = local; i < tamanhoSegmento; i++) {
+				segmento.put(i, (byte) 0);
+			}
+			segmento.force();
+		}
+		return local;
+	}
+
+	private static boolean valido(byte[] dados, int crcGravado) {
+		CRC32 crc = new CRC32();
+		crc.update(dados);
+		return (int) crc.getValue() == crcGravado;
+	}
+
+}
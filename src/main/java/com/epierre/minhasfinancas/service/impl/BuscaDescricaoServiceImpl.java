@@ -0,0 +1,488 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.service.BuscaDescricaoService;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento.Operacao;
+import com.epierre.minhasfinancas.service.LancamentosAlteradosEmLoteEvento;
+
+/**
+ * Indice invertido das descricoes dos lancamentos. O indice de cada usuario
+ * e montado na primeira busca dele e, a partir dai, acompanha as gravacoes
+ * pelos eventos publicados apos o commit. Os eventos so chegam a instancia
+ * que gravou: o indice de um usuario e refeito do banco quando passa de
+ * minhasfinancas.busca.validade, e ate la pode nao refletir o que outras
+ * instancias gravaram. Acima de minhasfinancas.busca.maximo-documentos saem
+ * do indice os usuarios buscados ha mais tempo.
+ */
+@Service
+public class BuscaDescricaoServiceImpl implements BuscaDescricaoService {
+
+	private static final String ID = "id";
+	private static final String USUARIO = "usuario";
+	private static final String DESCRICAO = "descricao";
+	private static final String MES = "mes";
+	private static final String ANO = "ano";
+	private static final String TIPO = "tipo";
+	private static final String STATUS = "status";
+
+	private static final Sort ORDEM = new Sort(
+			new SortField(ANO, SortField.Type.INT),
+			new SortField(MES, SortField.Type.INT),
+			new SortField(ID, SortField.Type.LONG));
+
+	private final LancamentoRepository repository;
+	private final TransactionTemplate transactionTemplate;
+	private final TravasPorUsuario travas = new TravasPorUsuario(64);
+	private final long maximoDocumentos;
+	private final long validade;
+
+	// em ordem de acesso, do buscado ha mais tempo ao mais recente; protegido por ele mesmo
+	private final LinkedHashMap<Long, Indexacao> indexados = new LinkedHashMap<>(16, 0.75f, true);
+	private long documentosIndexados;
+
+	private final Analyzer analyzer;
+	private final Directory diretorio;
+	private final IndexWriter writer;
+	private final SearcherManager searcherManager;
+
+	public BuscaDescricaoServiceImpl(LancamentoRepository repository, PlatformTransactionManager transactionManager,
+			@Value("${minhasfinancas.busca.diretorio:}") String caminhoDiretorio,
+			@Value("${minhasfinancas.busca.maximo-documentos:1000000}") long maximoDocumentos,
+			@Value("${minhasfinancas.busca.validade:1m}") Duration validade) throws IOException {
+		this.repository = repository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.maximoDocumentos = maximoDocumentos;
+		this.validade = validade.toNanos();
+
+		this.analyzer = new AnalisadorDescricao();
+		this.diretorio = caminhoDiretorio.isEmpty()
+				? new ByteBuffersDirectory()
+				: FSDirectory.open(Paths.get(caminhoDiretorio));
+		// o indice e refeito sob demanda, entao o conteudo de uma execucao anterior e descartado
+		this.writer = new IndexWriter(diretorio, new IndexWriterConfig(analyzer).setOpenMode(OpenMode.CREATE));
+		this.searcherManager = new SearcherManager(writer, null);
+	}
+
+	@Override
+	public Optional<List<Long>> buscarIds(Lancamento filtro) {
+		Optional<Query> consulta = montarConsulta(filtro);
+		if (!consulta.isPresent()) {
+			return Optional.empty();
+		}
+
+		indexar(filtro.getUsuario().getId());
+		return Optional.of(pesquisar(searcher -> {
+			ColetorIds coletor = new ColetorIds();
+			searcher.search(consulta.get(), coletor);
+			return coletor.ids;
+		}));
+	}
+
+	@Override
+	public Optional<List<Long>> buscarIds(Lancamento filtro, Lancamento posicao, int limite) {
+		Optional<Query> consulta = montarConsulta(filtro);
+		if (!consulta.isPresent()) {
+			return Optional.empty();
+		}
+
+		BooleanQuery.Builder pagina = new BooleanQuery.Builder().add(consulta.get(), Occur.MUST);
+		if (posicao != null) {
+			pagina.add(aposPosicao(posicao), Occur.FILTER);
+		}
+
+		indexar(filtro.getUsuario().getId());
+		return Optional.of(pesquisar(searcher -> {
+			TopDocs resultado = searcher.search(pagina.build(), limite, ORDEM);
+			List<Long> ids = new ArrayList<>(resultado.scoreDocs.length);
+			for (ScoreDoc hit : resultado.scoreDocs) {
+				Document documento = searcher.doc(hit.doc);
+				ids.add(Long.valueOf(documento.get(ID)));
+			}
+			return ids;
+		}));
+	}
+
+	@Override
+	public void reconstruir(Long idUsuario) {
+		travas.executarAgora(idUsuario, () -> {
+			esquecer(idUsuario);
+			try {
+				writer.deleteDocuments(new Term(USUARIO, idUsuario.toString()));
+				searcherManager.maybeRefreshBlocking();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return null;
+		});
+	}
+
+	@Override
+	public void reconstruir() {
+		List<Long> usuarios;
+		synchronized (indexados) {
+			usuarios = new ArrayList<>(indexados.keySet());
+		}
+		for (Long idUsuario : usuarios) {
+			reconstruir(idUsuario);
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void aoAlterarLancamento(LancamentoAlteradoEvento evento) {
+		Lancamento lancamento = evento.getLancamento();
+		Long idUsuario = lancamento.getUsuario().getId();
+
+		travas.executarAgora(idUsuario, () -> {
+			try {
+				Term termo = new Term(ID, lancamento.getId().toString());
+				boolean indexado = contar(idUsuario, evento.getOperacao());
+				if (indexado && evento.getOperacao() != Operacao.EXCLUSAO) {
+					writer.updateDocument(termo, criarDocumento(lancamento.getId(), idUsuario,
+							lancamento.getDescricao(), lancamento.getMes(), lancamento.getAno(),
+							nome(lancamento.getTipo()), nome(lancamento.getStatus())));
+				} else {
+					writer.deleteDocuments(termo);
+				}
+				searcherManager.maybeRefreshBlocking();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return null;
+		});
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void aoAlterarLancamentosEmLote(LancamentosAlteradosEmLoteEvento evento) {
+		reconstruir(evento.getIdUsuario());
+	}
+
+	@PreDestroy
+	public void fechar() throws IOException {
+		searcherManager.close();
+		writer.close();
+		diretorio.close();
+	}
+
+	private void indexar(Long idUsuario) {
+		if (valido(idUsuario)) {
+			return;
+		}
+
+		travas.executarAgora(idUsuario, () -> {
+			if (valido(idUsuario)) {
+				return null;
+			}
+			long documentos = transactionTemplate.execute(status -> {
+				try (Stream<LancamentoLinha> linhas = repository.obterLinhasPorUsuario(idUsuario)) {
+					return substituir(idUsuario, linhas::iterator);
+				}
+			});
+			registrar(idUsuario, documentos);
+			return null;
+		});
+	}
+
+	@Override
+	public void indexar(Long idUsuario, Collection<LancamentoLinha> linhas) {
+		travas.executarAgora(idUsuario, () -> {
+			registrar(idUsuario, substituir(idUsuario, linhas));
+			return null;
+		});
+	}
+
+	private long substituir(Long idUsuario, Iterable<LancamentoLinha> linhas) {
+		long documentos = 0;
+		try {
+			writer.deleteDocuments(new Term(USUARIO, idUsuario.toString()));
+			for (LancamentoLinha linha : linhas) {
+				writer.addDocument(criarDocumento(linha.getId(), idUsuario, linha.getDescricao(),
+						linha.getMes(), linha.getAno(), nome(linha.getTipo()), nome(linha.getStatus())));
+				documentos++;
+			}
+			searcherManager.maybeRefreshBlocking();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return documentos;
+	}
+
+	private boolean valido(Long idUsuario) {
+		synchronized (indexados) {
+			Indexacao indexacao = indexados.get(idUsuario);
+			return indexacao != null && System.nanoTime() - indexacao.momento < validade;
+		}
+	}
+
+	// conta o documento incluido ou excluido; falso quando o usuario nao esta no indice
+	private boolean contar(Long idUsuario, Operacao operacao) {
+		synchronized (indexados) {
+			Indexacao indexacao = indexados.get(idUsuario);
+			if (indexacao == null) {
+				return false;
+			}
+			long diferenca = operacao == Operacao.INCLUSAO ? 1 : operacao == Operacao.EXCLUSAO ? -1 : 0;
+			indexacao.documentos += diferenca;
+			documentosIndexados += diferenca;
+			return true;
+		}
+	}
+
+	private void esquecer(Long idUsuario) {
+		synchronized (indexados) {
+			Indexacao indexacao = indexados.remove(idUsuario);
+			if (indexacao != null) {
+				documentosIndexados -= indexacao.documentos;
+			}
+		}
+	}
+
+	/*
+	 * Registra o usuario recem indexado e tira do indice os buscados ha mais tempo
+	 * enquanto o total passar do maximo. Os documentos deles sao apagados sem a
+	 * trava do usuario (a do usuario atual ja esta tomada); um documento que um
+	 * evento concorrente grave depois disso e apagado na proxima indexacao dele.
+	 */
+	private void registrar(Long idUsuario, long documentos) {
+		List<Long> removidos = new ArrayList<>();
+		synchronized (indexados) {
+			esquecer(idUsuario);
+			indexados.put(idUsuario, new Indexacao(System.nanoTime(), documentos));
+			documentosIndexados += documentos;
+
+			Iterator<Map.Entry<Long, Indexacao>> antigos = indexados.entrySet().iterator();
+			while (documentosIndexados > maximoDocumentos && antigos.hasNext()) {
+				Map.Entry<Long, Indexacao> antigo = antigos.next();
+				if (antigo.getKey().equals(idUsuario)) {
+					break;
+				}
+				antigos.remove();
+				documentosIndexados -= antigo.getValue().documentos;
+				removidos.add(antigo.getKey());
+			}
+		}
+		try {
+			for (Long removido : removidos) {
+				writer.deleteDocuments(new Term(USUARIO, removido.toString()));
+			}
+			if (!removidos.isEmpty()) {
+				searcherManager.maybeRefreshBlocking();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Optional<Query> montarConsulta(Lancamento filtro) {
+		if (filtro.getUsuario() == null || filtro.getUsuario().getId() == null || filtro.getDescricao() == null) {
+			return Optional.empty();
+		}
+
+		List<String> termos = analisar(filtro.getDescricao());
+		if (termos.isEmpty()) {
+			return Optional.empty();
+		}
+
+		BooleanQuery.Builder consulta = new BooleanQuery.Builder();
+		consulta.add(new TermQuery(new Term(USUARIO, filtro.getUsuario().getId().toString())), Occur.FILTER);
+		for (String termo : termos) {
+			consulta.add(new PrefixQuery(new Term(DESCRICAO, termo)), Occur.MUST);
+		}
+		if (filtro.getMes() != null) {
+			consulta.add(IntPoint.newExactQuery(MES, filtro.getMes()), Occur.FILTER);
+		}
+		if (filtro.getAno() != null) {
+			consulta.add(IntPoint.newExactQuery(ANO, filtro.getAno()), Occur.FILTER);
+		}
+		if (filtro.getTipo() != null) {
+			consulta.add(new TermQuery(new Term(TIPO, filtro.getTipo().name())), Occur.FILTER);
+		}
+		if (filtro.getStatus() != null) {
+			consulta.add(new TermQuery(new Term(STATUS, filtro.getStatus().name())), Occur.FILTER);
+		}
+		return Optional.of(consulta.build());
+	}
+
+	// (ano, mes, id) > posicao, na mesma ordem da paginacao do repositorio
+	private Query aposPosicao(Lancamento posicao) {
+		int ano = posicao.getAno();
+		int mes = posicao.getMes();
+		long id = posicao.getId();
+
+		BooleanQuery.Builder mesmoMes = new BooleanQuery.Builder()
+				.add(IntPoint.newExactQuery(ANO, ano), Occur.FILTER)
+				.add(IntPoint.newExactQuery(MES, mes), Occur.FILTER)
+				.add(LongPoint.newRangeQuery(ID, Math.addExact(id, 1), Long.MAX_VALUE), Occur.FILTER);
+		BooleanQuery.Builder mesmoAno = new BooleanQuery.Builder()
+				.add(IntPoint.newExactQuery(ANO, ano), Occur.FILTER)
+				.add(IntPoint.newRangeQuery(MES, Math.addExact(mes, 1), Integer.MAX_VALUE), Occur.FILTER);
+
+		return new BooleanQuery.Builder()
+				.add(IntPoint.newRangeQuery(ANO, Math.addExact(ano, 1), Integer.MAX_VALUE), Occur.SHOULD)
+				.add(mesmoAno.build(), Occur.SHOULD)
+				.add(mesmoMes.build(), Occur.SHOULD)
+				.setMinimumNumberShouldMatch(1)
+				.build();
+	}
+
+	private List<String> analisar(String texto) {
+		List<String> termos = new ArrayList<>();
+		try (TokenStream tokens = analyzer.tokenStream(DESCRICAO, texto)) {
+			CharTermAttribute termo = tokens.addAttribute(CharTermAttribute.class);
+			tokens.reset();
+			while (tokens.incrementToken()) {
+				termos.add(termo.toString());
+			}
+			tokens.end();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return termos;
+	}
+
+	private <T> T pesquisar(Pesquisa<T> pesquisa) {
+		try {
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				return pesquisa.executar(searcher);
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Document criarDocumento(Long id, Long idUsuario, String descricao, Integer mes, Integer ano,
+			String tipo, String status) {
+		Document documento = new Document();
+		documento.add(new StringField(ID, id.toString(), Field.Store.YES));
+		documento.add(new LongPoint(ID, id));
+		documento.add(new NumericDocValuesField(ID, id));
+		documento.add(new StringField(USUARIO, idUsuario.toString(), Field.Store.NO));
+		documento.add(new TextField(DESCRICAO, descricao == null ? "" : descricao, Field.Store.NO));
+		documento.add(new IntPoint(MES, mes));
+		documento.add(new NumericDocValuesField(MES, mes));
+		documento.add(new IntPoint(ANO, ano));
+		documento.add(new NumericDocValuesField(ANO, ano));
+		if (tipo != null) {
+			documento.add(new StringField(TIPO, tipo, Field.Store.NO));
+		}
+		if (status != null) {
+			documento.add(new StringField(STATUS, status, Field.Store.NO));
+		}
+		return documento;
+	}
+
+	private static String nome(Enum<?> valor) {
+		return valor == null ? null : valor.name();
+	}
+
+	private static final class Indexacao {
+		private final long momento;
+		private long documentos;
+
+		Indexacao(long momento, long documentos) {
+			this.momento = momento;
+			this.documentos = documentos;
+		}
+	}
+
+	private interface Pesquisa<T> {
+		T executar(IndexSearcher searcher) throws IOException;
+	}
+
+	// minusculas e sem acentos, para que "Agua" encontre "Água"
+	private static final class AnalisadorDescricao extends Analyzer {
+		@Override
+		protected TokenStreamComponents createComponents(String campo) {
+			Tokenizer tokenizer = new StandardTokenizer();
+			TokenStream filtros = new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer));
+			return new TokenStreamComponents(tokenizer, filtros);
+		}
+	}
+
+	// le o id pelos doc values, sem carregar os documentos armazenados
+	private static final class ColetorIds extends SimpleCollector {
+		private final List<Long> ids = new ArrayList<>();
+		private NumericDocValues valores;
+
+		@Override
+		protected void doSetNextReader(LeafReaderContext contexto) throws IOException {
+			valores = contexto.reader().getNumericDocValues(ID);
+		}
+
+		@Override
+		public void collect(int doc) throws IOException {
+			if (valores.advanceExact(doc)) {
+				ids.add(valores.longValue());
+			}
+		}
+
+		@Override
+		public ScoreMode scoreMode() {
+			return ScoreMode.COMPLETE_NO_SCORES;
+		}
+	}
+
+}
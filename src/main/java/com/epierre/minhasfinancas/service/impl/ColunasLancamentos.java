@@ -0,0 +1,218 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+/**
+ * Lancamentos de um usuario em colunas de tipos primitivos: o valor em
+ * centavos e ano, mes, tipo e status juntos em um int (a chave), de modo que
+ * filtrar e agrupar sao mascaras sobre um unico array. As linhas nao tem
+ * ordem; a remocao traz a ultima para o lugar da removida.
+ *
+ * Nao e thread-safe: o servico acessa as colunas de um usuario sob a trava
+ * dele.
+ */
+final class ColunasLancamentos {
+
+	// chave: ano nos bits 12-27, mes nos bits 8-11, tipo nos bits 4-7 e status nos bits 0-3;
+	// tipo e status guardam ordinal + 1, e zero representa nulo
+	static final int MASCARA_ANO = 0xFFFF << 12;
+	static final int MASCARA_MES = 0xF << 8;
+	static final int MASCARA_TIPO = 0xF << 4;
+	static final int MASCARA_STATUS = 0xF;
+
+	private static final TipoLancamento[] TIPOS = TipoLancamento.values();
+	private static final StatusLancamento[] STATUS = StatusLancamento.values();
+	private static final int CAPACIDADE_INICIAL = 16;
+	// ids, versoes e centavos em long, chave em int
+	private static final int BYTES_POR_LINHA = 8 + 8 + 8 + 4;
+	private static final int BYTES_FIXOS = 96;
+
+	private long[] ids;
+	private long[] versoes;
+	private long[] centavos;
+	private int[] chaves;
+	private int tamanho;
+	// totais por chave dos lancamentos arquivados, que so mudam em um novo arquivamento (que descarta as colunas)
+	private int[] chavesArquivadas = new int[0];
+	private long[] centavosArquivados = new long[0];
+	// versao de cada lancamento removido, para que um evento atrasado nao o inclua de novo
+	private final Map<Long, Long> excluidos = new HashMap<>();
+
+	ColunasLancamentos() {
+		ids = new long[CAPACIDADE_INICIAL];
+		versoes = new long[CAPACIDADE_INICIAL];
+		centavos = new long[CAPACIDADE_INICIAL];
+		chaves = new int[CAPACIDADE_INICIAL];
+	}
+
+	int tamanho() {
+		return tamanho;
+	}
+
+	long id(int linha) {
+		return ids[linha];
+	}
+
+	long centavos(int linha) {
+		return centavos[linha];
+	}
+
+	int chave(int linha) {
+		return chaves[linha];
+	}
+
+	int arquivados() {
+		return chavesArquivadas.length;
+	}
+
+	int chaveArquivada(int indice) {
+		return chavesArquivadas[indice];
+	}
+
+	long centavosArquivados(int indice) {
+		return centavosArquivados[indice];
+	}
+
+	void arquivados(int[] chaves, long[] centavos) {
+		chavesArquivadas = chaves;
+		centavosArquivados = centavos;
+	}
+
+	long bytes() {
+		return BYTES_FIXOS + (long) ids.length * BYTES_POR_LINHA + (long) chavesArquivadas.length * (4 + 8);
+	}
+
+	/**
+	 * Inclui a linha ou atualiza a existente, a menos que ela ja esteja em uma
+	 * versao mais recente ou tenha sido removida nessa versao ou depois
+	 * (eventos podem chegar fora de ordem).
+	 */
+	void gravar(long id, Long versao, long valorCentavos, int chave) {
+		long novaVersao = versao == null ? 0 : versao;
+		Long excluida = excluidos.get(id);
+		if (excluida != null && excluida >= novaVersao) {
+			return;
+		}
+		int linha = posicao(id);
+		if (linha < 0) {
+			incluir(id, versao, valorCentavos, chave);
+			return;
+		} else if (versoes[linha] > novaVersao) {
+			return;
+		}
+		ids[linha] = id;
+		versoes[linha] = novaVersao;
+		centavos[linha] = valorCentavos;
+		chaves[linha] = chave;
+	}
+
+	// para a carga, em que os ids ja sao distintos
+	void incluir(long id, Long versao, long valorCentavos, int chave) {
+		if (tamanho == ids.length) {
+			crescer();
+		}
+		ids[tamanho] = id;
+		versoes[tamanho] = versao == null ? 0 : versao;
+		centavos[tamanho] = valorCentavos;
+		chaves[tamanho] = chave;
+		tamanho++;
+	}
+
+	// sem a versao, a remocao vale para qualquer versao
+	void remover(long id, Long versao) {
+		excluidos.merge(id, versao == null ? Long.MAX_VALUE : versao, Math::max);
+		int linha = posicao(id);
+		if (linha < 0) {
+			return;
+		}
+		int ultima = --tamanho;
+		ids[linha] = ids[ultima];
+		versoes[linha] = versoes[ultima];
+		centavos[linha] = centavos[ultima];
+		chaves[linha] = chaves[ultima];
+	}
+
+	/**
+	 * Mesmo filtro de LancamentoRepositoryImpl.atualizarStatus: as linhas que
+	 * passam pelo filtro e ainda nao estao no novo status mudam de status e
+	 * de versao. Ids nulo significa todas as linhas do filtro.
+	 */
+	void alterarStatus(int mascaraFiltro, int valorFiltro, long[] idsOrdenados, StatusLancamento novoStatus) {
+		int status = codigo(novoStatus);
+		for (int linha = 0; linha < tamanho; linha++) {
+			int chave = chaves[linha];
+			if ((chave & mascaraFiltro) != valorFiltro || (chave & MASCARA_STATUS) == status) {
+				continue;
+			}
+			if (idsOrdenados != null && Arrays.binarySearch(idsOrdenados, ids[linha]) < 0) {
+				continue;
+			}
+			chaves[linha] = (chave & ~MASCARA_STATUS) | status;
+			versoes[linha]++;
+		}
+	}
+
+	// busca linear: poucas milhares de linhas por usuario cabem em alguns microssegundos
+	private int posicao(long id) {
+		for (int linha = 0; linha < tamanho; linha++) {
+			if (ids[linha] == id) {
+				return linha;
+			}
+		}
+		return -1;
+	}
+
+	private void crescer() {
+		int capacidade = ids.length + (ids.length >> 1);
+		ids = Arrays.copyOf(ids, capacidade);
+		versoes = Arrays.copyOf(versoes, capacidade);
+		centavos = Arrays.copyOf(centavos, capacidade);
+		chaves = Arrays.copyOf(chaves, capacidade);
+	}
+
+	static int chave(Integer ano, Integer mes, TipoLancamento tipo, StatusLancamento status) {
+		return (ano == null ? 0 : ano << 12) | (mes == null ? 0 : mes << 8) | codigo(tipo) << 4 | codigo(status);
+	}
+
+	// mascara com os campos informados do filtro; o valor esperado e a propria chave do filtro
+	static int mascara(Integer ano, Integer mes, TipoLancamento tipo, StatusLancamento status) {
+		return (ano == null ? 0 : MASCARA_ANO) | (mes == null ? 0 : MASCARA_MES)
+				| (tipo == null ? 0 : MASCARA_TIPO) | (status == null ? 0 : MASCARA_STATUS);
+	}
+
+	static Integer ano(int chave) {
+		int ano = (chave & MASCARA_ANO) >>> 12;
+		return ano == 0 ? null : ano;
+	}
+
+	static Integer mes(int chave) {
+		int mes = (chave & MASCARA_MES) >>> 8;
+		return mes == 0 ? null : mes;
+	}
+
+	static TipoLancamento tipo(int chave) {
+		int codigo = (chave & MASCARA_TIPO) >>> 4;
+		return codigo == 0 ? null : TIPOS[codigo - 1];
+	}
+
+	static StatusLancamento status(int chave) {
+		int codigo = chave & MASCARA_STATUS;
+		return codigo == 0 ? null : STATUS[codigo - 1];
+	}
+
+	static long centavos(BigDecimal valor) {
+		return valor == null ? 0 : Dinheiro.centavos(valor);
+	}
+
+	private static int codigo(Enum<?> valor) {
+		return valor == null ? 0 : valor.ordinal() + 1;
+	}
+
+}
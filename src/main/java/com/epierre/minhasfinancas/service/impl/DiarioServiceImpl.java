@@ -0,0 +1,492 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.ResumoMensalId;
+import com.epierre.minhasfinancas.model.entity.SaldoTransportado;
+import com.epierre.minhasfinancas.model.entity.SaldoUsuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoArquivadoRepository;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.ResumoMensalRepository;
+import com.epierre.minhasfinancas.model.repository.SaldoTransportadoRepository;
+import com.epierre.minhasfinancas.model.repository.SaldoUsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.Shards;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.service.BuscaDescricaoService;
+import com.epierre.minhasfinancas.service.DiarioService;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento.Operacao;
+import com.epierre.minhasfinancas.service.LancamentosAlteradosEmLoteEvento;
+import com.epierre.minhasfinancas.service.LancamentosImportadosEvento;
+import com.epierre.minhasfinancas.service.RegistroDiario;
+import com.epierre.minhasfinancas.service.RegistroDiario.AlteracaoStatus;
+import com.epierre.minhasfinancas.service.RegistroDiario.Tipo;
+import com.epierre.minhasfinancas.service.SaldoUsuarioService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Diario das alteracoes de lancamentos, gravado apos cada commit a partir dos
+ * mesmos eventos que mantem o indice de busca. As gravacoes sao sequenciais
+ * em arquivos mapeados em memoria e levadas ao disco em lote, a cada
+ * minhasfinancas.diario.intervalo-fsync-ms: uma queda do sistema operacional
+ * pode perder os registros desse intervalo, mas nunca deixa um registro pela
+ * metade. Sem minhasfinancas.diario.diretorio o diario fica desligado.
+ */
+@Slf4j
+@Service
+public class DiarioServiceImpl implements DiarioService {
+
+	private static final int LOTE_REPRODUCAO = 1000;
+	// o formato do registro e a ordem dos enums abaixo fazem parte do arquivo: valores novos so no fim
+	private static final byte VERSAO_FORMATO = 1;
+	private static final Tipo[] TIPOS = Tipo.values();
+	private static final TipoLancamento[] TIPOS_LANCAMENTO = TipoLancamento.values();
+	private static final StatusLancamento[] STATUS = StatusLancamento.values();
+
+	private final ArquivoDiario arquivo;
+	private final ScheduledExecutorService sincronizacao;
+	private final SaldoUsuarioRepository saldoUsuarioRepository;
+	private final ResumoMensalRepository resumoMensalRepository;
+	private final LancamentoRepository lancamentoRepository;
+	private final LancamentoArquivadoRepository arquivadoRepository;
+	private final SaldoTransportadoRepository saldoTransportadoRepository;
+	private final SaldoUsuarioService saldoUsuarioService;
+	private final BuscaDescricaoService buscaDescricaoService;
+	private final Shards shards;
+	private final TransactionTemplate transactionTemplate;
+
+	public DiarioServiceImpl(@Value("${minhasfinancas.diario.diretorio:}") String diretorio,
+			@Value("${minhasfinancas.diario.tamanho-segmento:64MB}") DataSize tamanhoSegmento,
+			@Value("${minhasfinancas.diario.intervalo-fsync-ms:50}") long intervaloFsyncMs,
+			SaldoUsuarioRepository saldoUsuarioRepository, ResumoMensalRepository resumoMensalRepository,
+			LancamentoRepository lancamentoRepository, LancamentoArquivadoRepository arquivadoRepository,
+			SaldoTransportadoRepository saldoTransportadoRepository, SaldoUsuarioService saldoUsuarioService,
+			BuscaDescricaoService buscaDescricaoService, Shards shards, PlatformTransactionManager transactionManager)
+			throws IOException {
+		this.saldoUsuarioRepository = saldoUsuarioRepository;
+		this.resumoMensalRepository = resumoMensalRepository;
+		this.lancamentoRepository = lancamentoRepository;
+		this.arquivadoRepository = arquivadoRepository;
+		this.saldoTransportadoRepository = saldoTransportadoRepository;
+		this.saldoUsuarioService = saldoUsuarioService;
+		this.buscaDescricaoService = buscaDescricaoService;
+		this.shards = shards;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+		if (diretorio.isEmpty()) {
+			this.arquivo = null;
+			this.sincronizacao = null;
+			return;
+		}
+		this.arquivo = new ArquivoDiario(Paths.get(diretorio), Math.toIntExact(tamanhoSegmento.toBytes()));
+		this.sincronizacao = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+			Thread thread = new Thread(tarefa, "diario-fsync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.sincronizacao.scheduleWithFixedDelay(arquivo::forcar, intervaloFsyncMs, intervaloFsyncMs,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public boolean ativo() {
+		return arquivo != null;
+	}
+
+	@Override
+	public long fim() {
+		return arquivo == null ? 0 : arquivo.fim();
+	}
+
+	@Override
+	public List<RegistroDiario> ler(long offset, int maximo) {
+		if (arquivo == null) {
+			return Collections.emptyList();
+		}
+		return arquivo.ler(offset, maximo).stream()
+				.map(DiarioServiceImpl::decodificar)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<RegistroDiario> aguardar(long offset, int maximo, long esperaMs) throws InterruptedException {
+		if (arquivo == null || !arquivo.aguardar(offset, esperaMs)) {
+			return Collections.emptyList();
+		}
+		return ler(offset, maximo);
+	}
+
+	@Override
+	public void reproduzir(long offset, Consumer<RegistroDiario> consumidor) {
+		List<RegistroDiario> registros;
+		while (!(registros = ler(offset, LOTE_REPRODUCAO)).isEmpty()) {
+			registros.forEach(consumidor);
+			offset = registros.get(registros.size() - 1).getProximo();
+		}
+	}
+
+	@Override
+	public int reconstruirDerivados() {
+		Map<Long, Map<Long, LancamentoLinha>> porUsuario = new HashMap<>();
+		Set<Long> excluidos = new HashSet<>();
+		reproduzir(0, registro -> aplicar(porUsuario, excluidos, registro));
+
+		int refeitos = 0;
+		for (Map.Entry<Long, Map<Long, LancamentoLinha>> usuario : porUsuario.entrySet()) {
+			Long idUsuario = usuario.getKey();
+			Map<Long, LancamentoLinha> lancamentos = usuario.getValue();
+			boolean refeito = shards.noUsuario(idUsuario, () -> transactionTemplate.execute(status -> {
+				// com o saldo travado nenhuma gravacao do usuario muda os lancamentos durante a comparacao
+				saldoUsuarioService.travar(idUsuario);
+				if (!coincideComOBanco(idUsuario, lancamentos)) {
+					return false;
+				}
+				// o diario so cobre os lancamentos vivos; os anos arquivados entram pelos totais guardados no arquivamento
+				Optional<SaldoTransportado> transportado = saldoTransportadoRepository.findById(idUsuario);
+				long receitas = transportado.map(saldo -> Dinheiro.centavos(saldo.getReceitas())).orElse(0l);
+				long despesas = transportado.map(saldo -> Dinheiro.centavos(saldo.getDespesas())).orElse(0l);
+				// centavos e quantidade de cada celula do resumo
+				Map<ResumoMensalId, long[]> resumos = new HashMap<>();
+				for (ResumoMensal arquivado : arquivadoRepository.obterResumosMensaisPorUsuario(idUsuario)) {
+					long[] resumo = resumos.computeIfAbsent(arquivado.getId(), chave -> new long[2]);
+					resumo[0] = Math.addExact(resumo[0], Dinheiro.centavos(arquivado.getTotal()));
+					resumo[1] += arquivado.getQuantidade();
+				}
+				for (LancamentoLinha linha : lancamentos.values()) {
+					long centavos = Dinheiro.centavos(linha.getValor());
+					if (linha.getTipo() == TipoLancamento.RECEITA) {
+						receitas = Math.addExact(receitas, centavos);
+					} else {
+						despesas = Math.addExact(despesas, centavos);
+					}
+					long[] resumo = resumos.computeIfAbsent(new ResumoMensalId(idUsuario, linha.getAno(),
+							linha.getMes(), linha.getTipo(), linha.getStatus()), chave -> new long[2]);
+					resumo[0] = Math.addExact(resumo[0], centavos);
+					resumo[1]++;
+				}
+				// a linha foi criada ou incrementada por travar; so os valores sao refeitos
+				SaldoUsuario saldo = saldoUsuarioRepository.findById(idUsuario).get();
+				saldo.setReceitas(Dinheiro.deCentavos(receitas));
+				saldo.setDespesas(Dinheiro.deCentavos(despesas));
+				resumoMensalRepository.removerPorUsuario(idUsuario);
+				resumoMensalRepository.saveAll(resumos.entrySet().stream()
+						.map(resumo -> new ResumoMensal(resumo.getKey(),
+								Dinheiro.deCentavos(resumo.getValue()[0]).toBigDecimal(), resumo.getValue()[1]))
+						.collect(Collectors.toList()));
+				return true;
+			}));
+			if (refeito) {
+				buscaDescricaoService.indexar(idUsuario, lancamentos.values());
+				refeitos++;
+			} else {
+				log.warn("Diario incompleto para o usuario {}: estruturas derivadas mantidas", idUsuario);
+			}
+		}
+		log.info("Estruturas derivadas de {} de {} usuarios refeitas a partir do diario", refeitos, porUsuario.size());
+		return refeitos;
+	}
+
+	// o diario e gravado depois do commit e pode ter perdido registros: so vale se cobrir cada lancamento e versao
+	private boolean coincideComOBanco(Long idUsuario, Map<Long, LancamentoLinha> lancamentos) {
+		Map<Long, Long> versoes = new HashMap<>();
+		try (Stream<LancamentoLinha> linhas = lancamentoRepository.obterLinhasPorUsuario(idUsuario)) {
+			linhas.forEach(linha -> versoes.put(linha.getId(), versao(linha)));
+		}
+		return versoes.size() == lancamentos.size() && lancamentos.values().stream()
+				.allMatch(linha -> Long.valueOf(versao(linha)).equals(versoes.get(linha.getId())));
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void aoAlterarLancamento(LancamentoAlteradoEvento evento) {
+		if (arquivo == null) {
+			return;
+		}
+		Tipo tipo = evento.getOperacao() == Operacao.INCLUSAO ? Tipo.INCLUSAO
+				: evento.getOperacao() == Operacao.ATUALIZACAO ? Tipo.ATUALIZACAO
+				: Tipo.EXCLUSAO;
+		arquivo.gravar(Collections.singletonList(codificar(tipo, linha(evento.getLancamento()))));
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void aoAlterarLancamentosEmLote(LancamentosAlteradosEmLoteEvento evento) {
+		if (arquivo == null) {
+			return;
+		}
+		arquivo.gravar(Collections.singletonList(codificar(new AlteracaoStatus(evento.getIdUsuario(),
+				evento.getMes(), evento.getAno(), evento.getStatusAtual(), evento.getIds(), evento.getNovoStatus()))));
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void aoImportarLancamentos(LancamentosImportadosEvento evento) {
+		if (arquivo == null) {
+			return;
+		}
+		List<byte[]> registros = new ArrayList<>(evento.getLancamentos().size());
+		for (Lancamento lancamento : evento.getLancamentos()) {
+			registros.add(codificar(Tipo.INCLUSAO, linha(lancamento)));
+		}
+		arquivo.gravar(registros);
+	}
+
+	@PreDestroy
+	public void fechar() throws IOException {
+		if (arquivo == null) {
+			return;
+		}
+		sincronizacao.shutdown();
+		arquivo.fechar();
+	}
+
+	// registros de transacoes concorrentes podem chegar fora de ordem: fica a maior versao de cada lancamento
+	private static void aplicar(Map<Long, Map<Long, LancamentoLinha>> porUsuario, Set<Long> excluidos,
+			RegistroDiario registro) {
+		LancamentoLinha linha = registro.getLancamento();
+		switch (registro.getTipo()) {
+		case INCLUSAO:
+		case ATUALIZACAO:
+			if (!excluidos.contains(linha.getId())) {
+				porUsuario.computeIfAbsent(linha.getUsuario(), id -> new HashMap<>()).merge(linha.getId(), linha,
+						(atual, nova) -> versao(nova) >= versao(atual) ? nova : atual);
+			}
+			break;
+		case EXCLUSAO:
+			// os ids nao se repetem: um registro atrasado do lancamento excluido nao o traz de volta
+			excluidos.add(linha.getId());
+			if (linha.getUsuario() != null) {
+				porUsuario.computeIfAbsent(linha.getUsuario(), id -> new HashMap<>()).remove(linha.getId());
+			} else {
+				porUsuario.values().forEach(lancamentos -> lancamentos.remove(linha.getId()));
+			}
+			break;
+		case STATUS_EM_LOTE:
+			// mesmo filtro de LancamentoRepositoryImpl.atualizarStatus, sobre o estado reproduzido ate aqui
+			AlteracaoStatus alteracao = registro.getAlteracaoStatus();
+			Map<Long, LancamentoLinha> lancamentos = porUsuario.getOrDefault(alteracao.getIdUsuario(),
+					Collections.emptyMap());
+			Set<Long> ids = alteracao.getIds() == null ? null : new HashSet<>(alteracao.getIds());
+			lancamentos.replaceAll((id, atual) -> atual.getStatus() != alteracao.getNovoStatus()
+					&& (ids == null || ids.contains(id))
+					&& (alteracao.getMes() == null || alteracao.getMes().equals(atual.getMes()))
+					&& (alteracao.getAno() == null || alteracao.getAno().equals(atual.getAno()))
+					&& (alteracao.getStatusAtual() == null || alteracao.getStatusAtual() == atual.getStatus())
+							? new LancamentoLinha(atual.getId(), atual.getDescricao(), atual.getMes(), atual.getAno(),
+									atual.getValor(), atual.getUsuario(), atual.getTipo(), alteracao.getNovoStatus(),
+									atual.getDataCadastro(), atual.getVersao() == null ? null : atual.getVersao() + 1)
+							: atual);
+			break;
+		}
+	}
+
+	private static long versao(LancamentoLinha linha) {
+		return linha.getVersao() == null ? -1 : linha.getVersao();
+	}
+
+	private static LancamentoLinha linha(Lancamento lancamento) {
+		return new LancamentoLinha(lancamento.getId(), lancamento.getDescricao(), lancamento.getMes(),
+				lancamento.getAno(), lancamento.getValor(),
+				lancamento.getUsuario() == null ? null : lancamento.getUsuario().getId(), lancamento.getTipo(),
+				lancamento.getStatus(), lancamento.getDataCadastro(), lancamento.getVersao());
+	}
+
+	private static byte[] codificar(Tipo tipo, LancamentoLinha linha) {
+		return codificar(tipo, saida -> {
+			saida.writeLong(linha.getId());
+			escreverLong(saida, linha.getUsuario());
+			escreverTexto(saida, linha.getDescricao());
+			escreverInt(saida, linha.getMes());
+			escreverInt(saida, linha.getAno());
+			escreverDecimal(saida, linha.getValor());
+			escreverEnum(saida, linha.getTipo());
+			escreverEnum(saida, linha.getStatus());
+			escreverLong(saida, linha.getDataCadastro() == null ? null : linha.getDataCadastro().toEpochDay());
+			escreverLong(saida, linha.getVersao());
+		});
+	}
+
+	private static byte[] codificar(AlteracaoStatus alteracao) {
+		return codificar(Tipo.STATUS_EM_LOTE, saida -> {
+			saida.writeLong(alteracao.getIdUsuario());
+			escreverInt(saida, alteracao.getMes());
+			escreverInt(saida, alteracao.getAno());
+			escreverEnum(saida, alteracao.getStatusAtual());
+			saida.writeInt(alteracao.getIds() == null ? -1 : alteracao.getIds().size());
+			if (alteracao.getIds() != null) {
+				for (Long id : alteracao.getIds()) {
+					saida.writeLong(id);
+				}
+			}
+			escreverEnum(saida, alteracao.getNovoStatus());
+		});
+	}
+
+	private static byte[] codificar(Tipo tipo, Escrita escrita) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try (DataOutputStream saida = new DataOutputStream(bytes)) {
+			saida.writeByte(VERSAO_FORMATO);
+			saida.writeByte(tipo.ordinal());
+			escrita.escrever(saida);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static RegistroDiario decodificar(ArquivoDiario.Entrada entrada) {
+		try (DataInputStream entradaDados = new DataInputStream(new ByteArrayInputStream(entrada.dados))) {
+			byte versao = entradaDados.readByte();
+			if (versao != VERSAO_FORMATO) {
+				throw new IllegalStateException("Versao de registro do diario desconhecida: " + versao);
+			}
+			Tipo tipo = TIPOS[entradaDados.readByte()];
+			if (tipo == Tipo.STATUS_EM_LOTE) {
+				Long idUsuario = entradaDados.readLong();
+				Integer mes = lerInt(entradaDados);
+				Integer ano = lerInt(entradaDados);
+				StatusLancamento statusAtual = lerEnum(entradaDados, STATUS);
+				int quantidade = entradaDados.readInt();
+				List<Long> ids = null;
+				if (quantidade >= 0) {
+					ids = new ArrayList<>(quantidade);
+					for (int i = 0; i < quantidade; i++) {
+						ids.add(entradaDados.readLong());
+					}
+				}
+				AlteracaoStatus alteracao = new AlteracaoStatus(idUsuario, mes, ano, statusAtual, ids,
+						lerEnum(entradaDados, STATUS));
+				return new RegistroDiario(entrada.offset, entrada.proximo, tipo, null, alteracao);
+			}
+			Long id = entradaDados.readLong();
+			Long usuario = lerLong(entradaDados);
+			String descricao = lerTexto(entradaDados);
+			Integer mes = lerInt(entradaDados);
+			Integer ano = lerInt(entradaDados);
+			BigDecimal valor = lerDecimal(entradaDados);
+			TipoLancamento tipoLancamento = lerEnum(entradaDados, TIPOS_LANCAMENTO);
+			StatusLancamento status = lerEnum(entradaDados, STATUS);
+			Long dia = lerLong(entradaDados);
+			Long versaoLancamento = lerLong(entradaDados);
+			LancamentoLinha linha = new LancamentoLinha(id, descricao, mes, ano, valor, usuario, tipoLancamento,
+					status, dia == null ? null : LocalDate.ofEpochDay(dia), versaoLancamento);
+			return new RegistroDiario(entrada.offset, entrada.proximo, tipo, linha, null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Escrita {
+		void escrever(DataOutputStream saida) throws IOException;
+	}
+
+	private static void escreverLong(DataOutputStream saida, Long valor) throws IOException {
+		saida.writeBoolean(valor != null);
+		if (valor != null) {
+			saida.writeLong(valor);
+		}
+	}
+
+	private static Long lerLong(DataInputStream entrada) throws IOException {
+		return entrada.readBoolean() ? entrada.readLong() : null;
+	}
+
+	private static void escreverInt(DataOutputStream saida, Integer valor) throws IOException {
+		saida.writeBoolean(valor != null);
+		if (valor != null) {
+			saida.writeInt(valor);
+		}
+	}
+
+	private static Integer lerInt(DataInputStream entrada) throws IOException {
+		return entrada.readBoolean() ? entrada.readInt() : null;
+	}
+
+	private static void escreverTexto(DataOutputStream saida, String valor) throws IOException {
+		if (valor == null) {
+			saida.writeInt(-1);
+			return;
+		}
+		byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+		saida.writeInt(bytes.length);
+		saida.write(bytes);
+	}
+
+	private static String lerTexto(DataInputStream entrada) throws IOException {
+		int tamanho = entrada.readInt();
+		if (tamanho < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[tamanho];
+		entrada.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void escreverDecimal(DataOutputStream saida, BigDecimal valor) throws IOException {
+		if (valor == null) {
+			saida.writeInt(-1);
+			return;
+		}
+		byte[] digitos = valor.unscaledValue().toByteArray();
+		saida.writeInt(digitos.length);
+		saida.write(digitos);
+		saida.writeInt(valor.scale());
+	}
+
+	private static BigDecimal lerDecimal(DataInputStream entrada) throws IOException {
+		int tamanho = entrada.readInt();
+		if (tamanho < 0) {
+			return null;
+		}
+		byte[] digitos = new byte[tamanho];
+		entrada.readFully(digitos);
+		return new BigDecimal(new BigInteger(digitos), entrada.readInt());
+	}
+
+	private static void escreverEnum(DataOutputStream saida, Enum<?> valor) throws IOException {
+		saida.writeByte(valor == null ? -1 : valor.ordinal());
+	}
+
+	private static <E extends Enum<E>> E lerEnum(DataInputStream entrada, E[] valores) throws IOException {
+		byte ordinal = entrada.readByte();
+		return ordinal < 0 ? null : valores[ordinal];
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+import com.epierre.minhasfinancas.model.enums.FormatoExportacao;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Escreve as linhas uma a uma no destino, sem acumular o resultado em memoria.
+ */
+final class EscritorLancamentos {
+
+	private static final JsonFactory JSON = new JsonFactory()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+			.setRootValueSeparator(null);
+
+	private EscritorLancamentos() {
+	}
+
+	static void escrever(Iterator<LancamentoLinha> linhas, FormatoExportacao formato, Writer destino) throws IOException {
+		if (formato == FormatoExportacao.NDJSON) {
+			escreverNdjson(linhas, destino);
+		} else {
+			escreverCsv(linhas, destino);
+		}
+		destino.flush();
+	}
+
+	private static void escreverCsv(Iterator<LancamentoLinha> linhas, Writer destino) throws IOException {
+		destino.write("id,descricao,mes,ano,valor,usuario,tipo,status,data_cadastro\n");
+		while (linhas.hasNext()) {
+			LancamentoLinha linha = linhas.next();
+			destino.write(String.valueOf(linha.getId()));
+			destino.write(',');
+			destino.write(campoCsv(linha.getDescricao()));
+			destino.write(',');
+			destino.write(texto(linha.getMes()));
+			destino.write(',');
+			destino.write(texto(linha.getAno()));
+			destino.write(',');
+			destino.write(linha.getValor() == null ? "" : linha.getValor().toPlainString());
+			destino.write(',');
+			destino.write(texto(linha.getUsuario()));
+			destino.write(',');
+			destino.write(texto(linha.getTipo()));
+			destino.write(',');
+			destino.write(texto(linha.getStatus()));
+			destino.write(',');
+			destino.write(texto(linha.getDataCadastro()));
+			destino.write('\n');
+		}
+	}
+
+	private static void escreverNdjson(Iterator<LancamentoLinha> linhas, Writer destino) throws IOException {
+		try (JsonGenerator gerador = JSON.createGenerator(destino)) {
+			while (linhas.hasNext()) {
+				LancamentoLinha linha = linhas.next();
+				gerador.writeStartObject();
+				gerador.writeObjectField("id", linha.getId());
+				gerador.writeStringField("descricao", linha.getDescricao());
+				gerador.writeObjectField("mes", linha.getMes());
+				gerador.writeObjectField("ano", linha.getAno());
+				gerador.writeObjectField("valor", linha.getValor());
+				gerador.writeObjectField("usuario", linha.getUsuario());
+				gerador.writeStringField("tipo", linha.getTipo() == null ? null : linha.getTipo().name());
+				gerador.writeStringField("status", linha.getStatus() == null ? null : linha.getStatus().name());
+				gerador.writeStringField("dataCadastro", linha.getDataCadastro() == null ? null : linha.getDataCadastro().toString());
+				gerador.writeEndObject();
+				gerador.writeRaw('\n');
+			}
+		}
+	}
+
+	private static String texto(Object valor) {
+		return valor == null ? "" : valor.toString();
+	}
+
+	private static String campoCsv(String valor) {
+		if (valor == null) {
+			return "";
+		}
+		if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+			return valor;
+		}
+		return '"' + valor.replace("\"", "\"\"") + '"';
+	}
+
+}
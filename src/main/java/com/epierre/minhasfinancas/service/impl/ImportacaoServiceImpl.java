@@ -0,0 +1,152 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.FormatoImportacao;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.Shards;
+import com.epierre.minhasfinancas.service.BuscaDescricaoService;
+import com.epierre.minhasfinancas.service.ImportacaoService;
+import com.epierre.minhasfinancas.service.LancamentoService;
+import com.epierre.minhasfinancas.service.LancamentosImportadosEvento;
+import com.epierre.minhasfinancas.service.ResultadoImportacao;
+import com.epierre.minhasfinancas.service.ResumoMensalService;
+import com.epierre.minhasfinancas.service.SaldoUsuarioService;
+
+/**
+ * Importa extratos em lotes: cada lote e gravado em uma transacao propria,
+ * com os inserts agrupados pelo batch do JDBC e o contexto de persistencia
+ * limpo ao final, de modo que a memoria usada nao cresce com o arquivo.
+ */
+@Service
+public class ImportacaoServiceImpl implements ImportacaoService {
+
+	private static final int TAMANHO_LOTE = 1000;
+	private static final int MAXIMO_ERROS_DETALHADOS = 1000;
+
+	private final LancamentoService lancamentoService;
+	private final LancamentoRepository repository;
+	private final SaldoUsuarioService saldoUsuarioService;
+	private final ResumoMensalService resumoMensalService;
+	private final BuscaDescricaoService buscaDescricaoService;
+	private final TransactionTemplate transactionTemplate;
+	private final Shards shards;
+	private final ApplicationEventPublisher publisher;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	public ImportacaoServiceImpl(LancamentoService lancamentoService, LancamentoRepository repository,
+			SaldoUsuarioService saldoUsuarioService, ResumoMensalService resumoMensalService,
+			BuscaDescricaoService buscaDescricaoService, PlatformTransactionManager transactionManager, Shards shards,
+			ApplicationEventPublisher publisher) {
+		this.lancamentoService = lancamentoService;
+		this.repository = repository;
+		this.saldoUsuarioService = saldoUsuarioService;
+		this.resumoMensalService = resumoMensalService;
+		this.buscaDescricaoService = buscaDescricaoService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.shards = shards;
+		this.publisher = publisher;
+	}
+
+	@Override
+	public ResultadoImportacao importar(Long idUsuario, FormatoImportacao formato, InputStream entrada) {
+		return shards.noUsuario(idUsuario, () -> importarNoShard(idUsuario, formato, entrada));
+	}
+
+	private ResultadoImportacao importarNoShard(Long idUsuario, FormatoImportacao formato, InputStream entrada) {
+		Usuario usuario = Usuario.builder().id(idUsuario).build();
+		ResultadoImportacao resultado = new ResultadoImportacao();
+		List<Lancamento> lote = new ArrayList<>(TAMANHO_LOTE);
+
+		try {
+			Reader leitura = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+			LeitorLancamentos leitor = formato == FormatoImportacao.OFX
+					? new LeitorOfxLancamentos(leitura)
+					: new LeitorCsvLancamentos(leitura);
+
+			LinhaImportada linha;
+			while ((linha = leitor.proxima()) != null) {
+				if (linha.erro != null) {
+					rejeitar(resultado, linha.numero, linha.erro);
+					continue;
+				}
+
+				Lancamento lancamento = linha.lancamento;
+				lancamento.setUsuario(usuario);
+				if (lancamento.getStatus() == null) {
+					lancamento.setStatus(StatusLancamento.PENDENTE);
+				}
+				try {
+					lancamentoService.validar(lancamento);
+				} catch (RegraNegocioException e) {
+					rejeitar(resultado, linha.numero, e.getMessage());
+					continue;
+				}
+
+				lote.add(lancamento);
+				if (lote.size() == TAMANHO_LOTE) {
+					gravar(lote, resultado);
+				}
+			}
+			gravar(lote, resultado);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (IllegalArgumentException e) {
+			throw new RegraNegocioException(e.getMessage());
+		} finally {
+			if (resultado.getImportados() > 0) {
+				buscaDescricaoService.reconstruir(idUsuario);
+			}
+		}
+
+		return resultado;
+	}
+
+	private void gravar(List<Lancamento> lote, ResultadoImportacao resultado) {
+		if (lote.isEmpty()) {
+			return;
+		}
+
+		transactionTemplate.execute(status -> {
+			saldoUsuarioService.registrarInclusoes(lote);
+			resumoMensalService.registrarInclusoes(lote);
+			repository.saveAll(lote);
+			entityManager.flush();
+			entityManager.clear();
+			return null;
+		});
+		resultado.setImportados(resultado.getImportados() + lote.size());
+		publisher.publishEvent(new LancamentosImportadosEvento(lote.get(0).getUsuario().getId(), new ArrayList<>(lote)));
+		lote.clear();
+	}
+
+	private void rejeitar(ResultadoImportacao resultado, long linha, String mensagem) {
+		resultado.setRejeitados(resultado.getRejeitados() + 1);
+		if (resultado.getErros().size() < MAXIMO_ERROS_DETALHADOS) {
+			resultado.getErros().add(new ResultadoImportacao.Erro(linha, mensagem));
+		}
+	}
+
+}
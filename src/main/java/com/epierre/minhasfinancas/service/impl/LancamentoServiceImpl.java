@@ -1,38 +1,100 @@
 package com.epierre.minhasfinancas.service.impl;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.ExampleMatcher.StringMatcher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.epierre.minhasfinancas.exception.ConflitoAtualizacaoException;
 import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
 import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.enums.FormatoExportacao;
 import com.epierre.minhasfinancas.model.enums.StatusLancamento;
-import com.epierre.minhasfinancas.model.enums.TipoLancamento;
 import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.Shards;
+import com.epierre.minhasfinancas.model.repository.projection.EstadoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+import com.epierre.minhasfinancas.service.BuscaDescricaoService;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento.Operacao;
 import com.epierre.minhasfinancas.service.LancamentoService;
+import com.epierre.minhasfinancas.service.LancamentosAlteradosEmLoteEvento;
+import com.epierre.minhasfinancas.service.ResumoMensalService;
+import com.epierre.minhasfinancas.service.SaldoUsuarioService;
 
 @Service
 public class LancamentoServiceImpl implements LancamentoService {
 
+	private static final int TAMANHO_BUFFER_EXPORTACAO = 64 * 1024;
+
+	private static final int TAMANHO_LOTE_CONSULTA = 1000;
+	private static final int MAXIMO_TENTATIVAS = 5;
+	private static final long ESPERA_INICIAL_MILIS = 10;
+	private static final Comparator<LancamentoLinha> ORDEM_BUSCA = Comparator.comparing(LancamentoLinha::getAno)
+			.thenComparing(LancamentoLinha::getMes)
+			.thenComparing(LancamentoLinha::getId);
+
 	private LancamentoRepository repository;
+	private SaldoUsuarioService saldoUsuarioService;
+	private ResumoMensalService resumoMensalService;
+	private BuscaDescricaoService buscaDescricaoService;
+	private ApplicationEventPublisher publisher;
+	private TransactionTemplate transactionTemplate;
+	private Shards shards;
 
-	public LancamentoServiceImpl(LancamentoRepository repository) {
+	public LancamentoServiceImpl(LancamentoRepository repository, SaldoUsuarioService saldoUsuarioService,
+			ResumoMensalService resumoMensalService, BuscaDescricaoService buscaDescricaoService,
+			ApplicationEventPublisher publisher, PlatformTransactionManager transactionManager, Shards shards) {
 		this.repository = repository;
+		this.shards = shards;
+		this.saldoUsuarioService = saldoUsuarioService;
+		this.resumoMensalService = resumoMensalService;
+		this.buscaDescricaoService = buscaDescricaoService;
+		this.publisher = publisher;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 	}
 
+	// o saldo e o resumo mensal sao ajustados antes do save/delete para que, se ainda nao
+	// existirem, sejam criados a partir do estado anterior do banco e recebam so a diferenca
 	@Override
 	@Transactional
 	public Lancamento salvar(Lancamento lancamento) {
 		validar(lancamento);
-		lancamento.setStatus(StatusLancamento.PENDENTE);
-		return repository.save(lancamento);
+		return shards.noUsuario(usuario(lancamento), () -> {
+			lancamento.setStatus(StatusLancamento.PENDENTE);
+			registrarInclusao(lancamento);
+			Lancamento salvo = repository.save(lancamento);
+			publisher.publishEvent(new LancamentoAlteradoEvento(Operacao.INCLUSAO, salvo));
+			return salvo;
+		});
 	}
 
 	@Override
@@ -40,31 +102,220 @@ public class LancamentoServiceImpl implements LancamentoService {
 	public Lancamento atualizar(Lancamento lancamento) {
 		Objects.requireNonNull(lancamento.getId());
 		validar(lancamento);
-		return repository.save(lancamento);
+		return shards.noUsuario(usuario(lancamento), () -> {
+			Optional<EstadoLancamento> estado = repository.obterEstado(lancamento.getId());
+			// os deltas so podem partir do estado da versao que sera sobrescrita: uma alteracao sem
+			// campos modificados nao gera UPDATE, e portanto nao passaria pela verificacao de versao
+			if (lancamento.getVersao() != null && estado.isPresent()
+					&& !lancamento.getVersao().equals(estado.get().getVersao())) {
+				throw new ObjectOptimisticLockingFailureException(Lancamento.class, lancamento.getId());
+			}
+			estado.ifPresent(this::registrarExclusao);
+			registrarInclusao(lancamento);
+			Lancamento salvo = repository.save(lancamento);
+			publisher.publishEvent(new LancamentoAlteradoEvento(Operacao.ATUALIZACAO, salvo));
+			return salvo;
+		});
 	}
 
 	@Override
 	@Transactional
 	public void deletar(Lancamento lancamento) {
 		Objects.requireNonNull(lancamento.getId());
-		repository.delete(lancamento);
+		shards.noUsuario(usuario(lancamento), () -> {
+			repository.obterEstado(lancamento.getId()).ifPresent(this::registrarExclusao);
+			repository.delete(lancamento);
+			publisher.publishEvent(new LancamentoAlteradoEvento(Operacao.EXCLUSAO, lancamento));
+			return null;
+		});
+	}
+
+	private void registrarInclusao(Lancamento lancamento) {
+		saldoUsuarioService.registrarInclusao(lancamento);
+		resumoMensalService.registrarInclusao(lancamento);
+	}
+
+	private void registrarExclusao(EstadoLancamento estado) {
+		saldoUsuarioService.registrarExclusao(estado);
+		resumoMensalService.registrarExclusao(estado);
 	}
 
 	@Override
 	@Transactional(readOnly = true)
 	public List<Lancamento> buscar(Lancamento lancamentoFiltro) {
-		Example example = Example.of( lancamentoFiltro, 
-				ExampleMatcher.matching()
-					.withIgnoreCase()
-					.withStringMatcher(StringMatcher.CONTAINING) );
+		return shards.noUsuario(usuario(lancamentoFiltro), () -> {
+			Optional<List<Long>> ids = buscaDescricaoService.buscarIds(lancamentoFiltro);
+			if (ids.isPresent()) {
+				return carregar(ids.get());
+			}
+
+			Example<Lancamento> example = Example.of( lancamentoFiltro, 
+					ExampleMatcher.matching()
+						.withIgnoreCase()
+						.withStringMatcher(StringMatcher.CONTAINING) );
+
+			return repository.findAll(example);
+		});
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<Lancamento> buscar(Lancamento lancamentoFiltro, Lancamento posicao, int limite) {
+		return shards.noUsuario(usuario(lancamentoFiltro), () -> {
+			Optional<List<Long>> ids = buscaDescricaoService.buscarIds(lancamentoFiltro, posicao, limite);
+			if (ids.isPresent()) {
+				return carregar(ids.get());
+			}
+			return repository.buscarPagina(lancamentoFiltro, posicao, limite);
+		});
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<LancamentoLinha> buscarLinhas(Lancamento lancamentoFiltro) {
+		return shards.noUsuario(usuario(lancamentoFiltro), () -> {
+			Optional<List<Long>> ids = buscaDescricaoService.buscarIds(lancamentoFiltro);
+			if (ids.isPresent()) {
+				return carregar(ids.get(), repository::obterLinhas, LancamentoLinha::getId);
+			}
+			return repository.buscarLinhas(lancamentoFiltro, null, null);
+		});
+	}
 
-		return repository.findAll(example);
+	@Override
+	@Transactional(readOnly = true)
+	public List<LancamentoLinha> buscarLinhas(Lancamento lancamentoFiltro, Lancamento posicao, int limite) {
+		return shards.noUsuario(usuario(lancamentoFiltro), () -> {
+			Optional<List<Long>> ids = buscaDescricaoService.buscarIds(lancamentoFiltro, posicao, limite);
+			if (ids.isPresent()) {
+				return carregar(ids.get(), repository::obterLinhas, LancamentoLinha::getId);
+			}
+			return repository.buscarLinhas(lancamentoFiltro, posicao, limite);
+		});
 	}
 
 	@Override
-	public void atualizarStatus(Lancamento lancamento, StatusLancamento status) {
-		lancamento.setStatus(status);
-		atualizar(lancamento);
+	@Transactional(readOnly = true)
+	public List<LancamentoLinha> buscarLinhasComArquivados(Lancamento lancamentoFiltro, Lancamento posicao, Integer limite) {
+		return shards.noUsuario(usuario(lancamentoFiltro), () -> {
+			// as duas listas ja vem na ordem (ano, mes, id); basta intercalar e cortar no limite
+			List<LancamentoLinha> vivos = repository.buscarLinhas(lancamentoFiltro, posicao, limite);
+			List<LancamentoLinha> arquivados = repository.buscarLinhasArquivadas(lancamentoFiltro, posicao, limite);
+			List<LancamentoLinha> linhas = new ArrayList<>(vivos.size() + arquivados.size());
+			int v = 0;
+			int a = 0;
+			while ((v < vivos.size() || a < arquivados.size()) && (limite == null || linhas.size() < limite)) {
+				if (a == arquivados.size() || (v < vivos.size() && ORDEM_BUSCA.compare(vivos.get(v), arquivados.get(a)) < 0)) {
+					linhas.add(vivos.get(v++));
+				} else {
+					linhas.add(arquivados.get(a++));
+				}
+			}
+			return linhas;
+		});
+	}
+
+	private List<Lancamento> carregar(List<Long> ids) {
+		return carregar(ids, repository::findAllById, Lancamento::getId);
+	}
+
+	// carrega os lancamentos encontrados no indice preservando a ordem dos ids
+	private static <T> List<T> carregar(List<Long> ids, Function<List<Long>, ? extends Iterable<T>> consulta,
+			Function<T, Long> id) {
+		Map<Long, T> porId = new HashMap<>(ids.size() * 2);
+		for (int inicio = 0; inicio < ids.size(); inicio += TAMANHO_LOTE_CONSULTA) {
+			List<Long> lote = ids.subList(inicio, Math.min(inicio + TAMANHO_LOTE_CONSULTA, ids.size()));
+			consulta.apply(lote).forEach(item -> porId.put(id.apply(item), item));
+		}
+
+		List<T> itens = new ArrayList<>(ids.size());
+		for (Long chave : ids) {
+			T item = porId.get(chave);
+			if (item != null) {
+				itens.add(item);
+			}
+		}
+		return itens;
+	}
+
+	// cada tentativa roda em uma transacao propria; a partir da segunda o lancamento e
+	// relido do banco e o novo status aplicado sobre a versao mais recente
+	@Override
+	public Lancamento atualizarStatus(Lancamento lancamento, StatusLancamento status) {
+		Objects.requireNonNull(lancamento.getId());
+		return shards.noUsuario(usuario(lancamento), () -> atualizarStatusComTentativas(lancamento, status));
+	}
+
+	private Lancamento atualizarStatusComTentativas(Lancamento lancamento, StatusLancamento status) {
+		for (int tentativa = 1; ; tentativa++) {
+			Lancamento atual = tentativa == 1 ? lancamento : null;
+			try {
+				return transactionTemplate.execute(transacao -> {
+					Lancamento alvo = atual != null ? atual : repository.findById(lancamento.getId())
+							.orElseThrow(() -> new RegraNegocioException("Lancamento não encontrado na base de Dados."));
+					alvo.setStatus(status);
+					return atualizar(alvo);
+				});
+			} catch (OptimisticLockingFailureException e) {
+				if (tentativa == MAXIMO_TENTATIVAS) {
+					throw new ConflitoAtualizacaoException(
+							"O lançamento foi alterado por outra operação. Tente novamente.", e);
+				}
+				aguardar(tentativa);
+			}
+		}
+	}
+
+	// espera exponencial com variacao aleatoria, para que as transacoes em conflito nao colidam de novo
+	private static void aguardar(int tentativa) {
+		long espera = ESPERA_INICIAL_MILIS << (tentativa - 1);
+		try {
+			Thread.sleep(espera + ThreadLocalRandom.current().nextLong(espera + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConflitoAtualizacaoException("Atualização interrompida.", e);
+		}
+	}
+
+	@Override
+	@Transactional
+	public int atualizarStatus(Lancamento filtro, List<Long> ids, StatusLancamento status) {
+		Objects.requireNonNull(filtro.getUsuario().getId());
+		return shards.noUsuario(filtro.getUsuario().getId(), () -> atualizarStatusEmLotes(filtro, ids, status));
+	}
+
+	private int atualizarStatusEmLotes(Lancamento filtro, List<Long> ids, StatusLancamento status) {
+		// as gravacoes de um lancamento travam o saldo antes do lancamento; a mesma ordem aqui evita deadlock
+		saldoUsuarioService.travar(filtro.getUsuario().getId());
+		int atualizados = 0;
+		if (ids == null) {
+			atualizados = atualizarStatusEmLote(filtro, null, status);
+		} else {
+			for (int inicio = 0; inicio < ids.size(); inicio += TAMANHO_LOTE_CONSULTA) {
+				List<Long> lote = ids.subList(inicio, Math.min(inicio + TAMANHO_LOTE_CONSULTA, ids.size()));
+				atualizados += atualizarStatusEmLote(filtro, lote, status);
+			}
+		}
+
+		if (atualizados > 0) {
+			publisher.publishEvent(new LancamentosAlteradosEmLoteEvento(filtro.getUsuario().getId(), filtro.getMes(),
+					filtro.getAno(), filtro.getStatus(), ids, status));
+		}
+		return atualizados;
+	}
+
+	// o resumo mensal e ajustado antes do UPDATE, lendo o status que cada lancamento tinha. As linhas
+	// ficam travadas ate o commit, para que nenhuma edicao mude o status entre o GROUP BY e o UPDATE;
+	// um lancamento que passe a corresponder ao filtro sem passar pelo saldo e denunciado pela contagem
+	private int atualizarStatusEmLote(Lancamento filtro, List<Long> ids, StatusLancamento status) {
+		repository.travarAtualizacaoDeStatus(filtro, ids, status);
+		List<ResumoMensal> resumos = repository.resumirAtualizacaoDeStatus(filtro, ids, status);
+		resumoMensalService.registrarAtualizacaoDeStatus(resumos, status);
+		int atualizados = repository.atualizarStatus(filtro, ids, status);
+		if (atualizados != resumos.stream().mapToLong(ResumoMensal::getQuantidade).sum()) {
+			throw new ConflitoAtualizacaoException("Os lançamentos foram alterados por outra operação. Tente novamente.", null);
+		}
+		return atualizados;
 	}
 
 	@Override
@@ -97,24 +348,49 @@ public class LancamentoServiceImpl implements LancamentoService {
 
 	@Override
 	public Optional<Lancamento> obterPorId(Long id) {
-		return repository.findById(id);
+		return shards.localizar(() -> repository.findById(id));
 	}
 
 	@Override
 	@Transactional(readOnly = true)
-	public BigDecimal obterSaldoPorUsuario(Long id) {
-	   BigDecimal receitas = repository.obterSaldoPorTipoLancamentoEUsuario(id, TipoLancamento.RECEITA);
-	   BigDecimal despesas = repository.obterSaldoPorTipoLancamentoEUsuario(id, TipoLancamento.DESPESA);
-	   
-	   if(receitas == null) {
-		   receitas = BigDecimal.ZERO;
-	   }
-	   
-	   if(despesas == null) {
-		   despesas = BigDecimal.ZERO;
-	   }
-	   
-		return receitas.subtract(despesas);
+	public Dinheiro obterSaldoPorUsuario(Long id) {
+		return shards.noUsuario(id, () -> saldoUsuarioService.obterSaldo(id));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public ResumoSaldo obterResumoSaldoPorUsuario(Long id) {
+		return shards.noUsuario(id, () -> saldoUsuarioService.obterResumoSaldo(id));
+	}
+
+	@Override
+	@Transactional
+	public List<ResumoMensal> obterResumoMensalPorUsuario(Long id, Integer ano) {
+		return shards.noUsuario(id, () -> resumoMensalService.obterResumoAnual(id, ano));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void exportar(Long idUsuario, FormatoExportacao formato, OutputStream saida) {
+		Writer destino = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8), TAMANHO_BUFFER_EXPORTACAO);
+		shards.noUsuario(idUsuario, () -> {
+			try (Stream<LancamentoLinha> linhas = repository.obterLinhasPorUsuario(idUsuario)) {
+				EscritorLancamentos.escrever(linhas.iterator(), formato, destino);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return null;
+		});
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public String obterVersaoPorUsuario(Long id) {
+		return shards.noUsuario(id, () -> Long.toString(saldoUsuarioService.obterVersao(id)));
+	}
+
+	private static Long usuario(Lancamento lancamento) {
+		return lancamento.getUsuario() == null ? null : lancamento.getUsuario().getId();
 	}
 
 }
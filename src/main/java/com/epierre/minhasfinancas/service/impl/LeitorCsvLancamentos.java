@@ -0,0 +1,167 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+/**
+ * Le o CSV pelo nome das colunas do cabecalho (descricao, mes, ano, valor,
+ * tipo e, opcionalmente, status), aceitando ',' ou ';' como separador e
+ * campos entre aspas. O formato gerado pela exportacao pode ser reimportado.
+ */
+final class LeitorCsvLancamentos implements LeitorLancamentos {
+
+	private static final int FIM = -1;
+
+	private final Reader entrada;
+	private final Map<String, Integer> colunas = new HashMap<>();
+	private char separador = ',';
+	private int proximoCaractere;
+	private long numeroRegistro;
+
+	LeitorCsvLancamentos(Reader entrada) throws IOException {
+		this.entrada = entrada;
+		this.proximoCaractere = entrada.read();
+		lerCabecalho();
+	}
+
+	@Override
+	public LinhaImportada proxima() throws IOException {
+		List<String> campos;
+		do {
+			campos = lerRegistro();
+			if (campos == null) {
+				return null;
+			}
+			numeroRegistro++;
+		} while (campos.size() == 1 && campos.get(0).trim().isEmpty());
+
+		try {
+			return LinhaImportada.valida(numeroRegistro, converter(campos));
+		} catch (IllegalArgumentException e) {
+			return LinhaImportada.invalida(numeroRegistro, e.getMessage());
+		}
+	}
+
+	private void lerCabecalho() throws IOException {
+		StringBuilder cabecalho = new StringBuilder();
+		while (proximoCaractere != FIM && proximoCaractere != '\n') {
+			cabecalho.append((char) proximoCaractere);
+			proximoCaractere = entrada.read();
+		}
+		proximoCaractere = proximoCaractere == FIM ? FIM : entrada.read();
+		numeroRegistro = 1;
+
+		String linha = cabecalho.toString().replace("\uFEFF", "");
+		if (linha.indexOf(';') >= 0 && linha.indexOf(',') < 0) {
+			separador = ';';
+		}
+		String[] nomes = linha.split(String.valueOf(separador));
+		for (int i = 0; i < nomes.length; i++) {
+			colunas.put(nomes[i].trim().replace("\"", "").toLowerCase(Locale.ROOT), i);
+		}
+		for (String obrigatoria : new String[] { "descricao", "mes", "ano", "valor", "tipo" }) {
+			if (!colunas.containsKey(obrigatoria)) {
+				throw new IllegalArgumentException("Coluna obrigatória ausente no cabeçalho: " + obrigatoria);
+			}
+		}
+	}
+
+	private List<String> lerRegistro() throws IOException {
+		if (proximoCaractere == FIM) {
+			return null;
+		}
+
+		List<String> campos = new ArrayList<>();
+		StringBuilder campo = new StringBuilder();
+		boolean entreAspas = false;
+
+		while (proximoCaractere != FIM) {
+			char c = (char) proximoCaractere;
+			proximoCaractere = entrada.read();
+
+			if (entreAspas) {
+				if (c == '"' && proximoCaractere == '"') {
+					campo.append('"');
+					proximoCaractere = entrada.read();
+				} else if (c == '"') {
+					entreAspas = false;
+				} else {
+					campo.append(c);
+				}
+			} else if (c == '"') {
+				entreAspas = true;
+			} else if (c == separador) {
+				campos.add(campo.toString());
+				campo.setLength(0);
+			} else if (c == '\n') {
+				break;
+			} else if (c != '\r') {
+				campo.append(c);
+			}
+		}
+		campos.add(campo.toString());
+		return campos;
+	}
+
+	private Lancamento converter(List<String> campos) {
+		Lancamento lancamento = new Lancamento();
+		lancamento.setDescricao(campo(campos, "descricao"));
+		lancamento.setMes(inteiro(campo(campos, "mes"), "Informe um Mês válido."));
+		lancamento.setAno(inteiro(campo(campos, "ano"), "Informe um Ano válido."));
+
+		String valor = campo(campos, "valor");
+		try {
+			lancamento.setValor(valor == null ? null : LeitorLancamentos.converterValor(valor));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Informe um Valor válido.");
+		}
+
+		String tipo = campo(campos, "tipo");
+		if (tipo != null) {
+			try {
+				lancamento.setTipo(TipoLancamento.valueOf(tipo.trim().toUpperCase(Locale.ROOT)));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Informe um tipo de Lançamento.");
+			}
+		}
+
+		String status = campo(campos, "status");
+		if (status != null) {
+			try {
+				lancamento.setStatus(StatusLancamento.valueOf(status.trim().toUpperCase(Locale.ROOT)));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Status de lançamento inválido: " + status);
+			}
+		}
+		return lancamento;
+	}
+
+	private String campo(List<String> campos, String nome) {
+		Integer indice = colunas.get(nome);
+		if (indice == null || indice >= campos.size() || campos.get(indice).trim().isEmpty()) {
+			return null;
+		}
+		return campos.get(indice);
+	}
+
+	private static Integer inteiro(String texto, String mensagem) {
+		if (texto == null) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(texto.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(mensagem);
+		}
+	}
+
+}
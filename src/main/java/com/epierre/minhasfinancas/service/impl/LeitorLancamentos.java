@@ -0,0 +1,21 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Le um extrato registro a registro; devolve null quando a entrada termina.
+ */
+interface LeitorLancamentos {
+
+	LinhaImportada proxima() throws IOException;
+
+	static BigDecimal converterValor(String texto) {
+		String valor = texto.trim();
+		if (valor.indexOf(',') >= 0) {
+			valor = valor.replace(".", "").replace(',', '.');
+		}
+		return new BigDecimal(valor);
+	}
+
+}
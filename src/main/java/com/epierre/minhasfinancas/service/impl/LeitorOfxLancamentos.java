@@ -0,0 +1,119 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+/**
+ * Le as transacoes (STMTTRN) de um extrato OFX, tanto no formato SGML (tags
+ * sem fechamento) quanto XML. Valores positivos viram receitas e negativos
+ * despesas; como o extrato traz movimentacoes ja compensadas, o status e
+ * EFETIVADO.
+ */
+final class LeitorOfxLancamentos implements LeitorLancamentos {
+
+	private static final int FIM = -1;
+
+	private final Reader entrada;
+	private int proximoCaractere;
+	private long numeroTransacao;
+
+	LeitorOfxLancamentos(Reader entrada) throws IOException {
+		this.entrada = entrada;
+		this.proximoCaractere = entrada.read();
+	}
+
+	@Override
+	public LinhaImportada proxima() throws IOException {
+		Map<String, String> campos = null;
+		String tag;
+		while ((tag = lerTag()) != null) {
+			if (tag.equals("STMTTRN")) {
+				campos = new HashMap<>();
+			} else if (tag.equals("/STMTTRN")) {
+				if (campos != null) {
+					break;
+				}
+			} else if (campos != null && !tag.startsWith("/")) {
+				campos.put(tag, lerTexto());
+			}
+		}
+
+		if (campos == null) {
+			return null;
+		}
+		numeroTransacao++;
+		try {
+			return LinhaImportada.valida(numeroTransacao, converter(campos));
+		} catch (IllegalArgumentException e) {
+			return LinhaImportada.invalida(numeroTransacao, e.getMessage());
+		}
+	}
+
+	private String lerTag() throws IOException {
+		while (proximoCaractere != FIM && proximoCaractere != '<') {
+			proximoCaractere = entrada.read();
+		}
+		if (proximoCaractere == FIM) {
+			return null;
+		}
+
+		StringBuilder tag = new StringBuilder();
+		proximoCaractere = entrada.read();
+		while (proximoCaractere != FIM && proximoCaractere != '>') {
+			tag.append((char) proximoCaractere);
+			proximoCaractere = entrada.read();
+		}
+		proximoCaractere = entrada.read();
+		return tag.toString().trim().toUpperCase(Locale.ROOT);
+	}
+
+	private String lerTexto() throws IOException {
+		StringBuilder texto = new StringBuilder();
+		while (proximoCaractere != FIM && proximoCaractere != '<') {
+			texto.append((char) proximoCaractere);
+			proximoCaractere = entrada.read();
+		}
+		return texto.toString().trim();
+	}
+
+	private Lancamento converter(Map<String, String> campos) {
+		String data = campos.get("DTPOSTED");
+		if (data == null || data.length() < 8) {
+			throw new IllegalArgumentException("Transação sem data (DTPOSTED) válida.");
+		}
+
+		BigDecimal valor;
+		try {
+			valor = LeitorLancamentos.converterValor(campos.getOrDefault("TRNAMT", ""));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Informe um Valor válido.");
+		}
+
+		String descricao = campos.get("MEMO");
+		if (descricao == null || descricao.isEmpty()) {
+			descricao = campos.get("NAME");
+		}
+
+		Lancamento lancamento = new Lancamento();
+		lancamento.setDescricao(descricao);
+		try {
+			lancamento.setAno(Integer.valueOf(data.substring(0, 4)));
+			lancamento.setMes(Integer.valueOf(data.substring(4, 6)));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Transação sem data (DTPOSTED) válida.");
+		}
+		lancamento.setValor(valor.abs());
+		lancamento.setTipo(valor.signum() < 0 ? TipoLancamento.DESPESA : TipoLancamento.RECEITA);
+		lancamento.setStatus(StatusLancamento.EFETIVADO);
+		return lancamento;
+	}
+
+}
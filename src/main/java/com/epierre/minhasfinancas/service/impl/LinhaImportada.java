@@ -0,0 +1,25 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+
+final class LinhaImportada {
+
+	final long numero;
+	final Lancamento lancamento;
+	final String erro;
+
+	private LinhaImportada(long numero, Lancamento lancamento, String erro) {
+		this.numero = numero;
+		this.lancamento = lancamento;
+		this.erro = erro;
+	}
+
+	static LinhaImportada valida(long numero, Lancamento lancamento) {
+		return new LinhaImportada(numero, lancamento, null);
+	}
+
+	static LinhaImportada invalida(long numero, String erro) {
+		return new LinhaImportada(numero, null, erro);
+	}
+
+}
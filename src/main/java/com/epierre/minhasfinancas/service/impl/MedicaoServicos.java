@@ -0,0 +1,74 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Mede cada chamada aos metodos publicos de LancamentoService e UsuarioService
+ * no timer "servicos.chamadas", com as tags servico, metodo e excecao. Fica
+ * por fora das transacoes e do cache, entao o tempo inclui o commit e os
+ * acertos de cache. Percentis e histograma sao definidos em
+ * management.metrics.distribution.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MedicaoServicos {
+
+	static final String TIMER = "servicos.chamadas";
+	private static final String SEM_EXCECAO = "None";
+
+	private final MeterRegistry registry;
+	// timers das chamadas sem excecao, para nao montar o id do medidor a cada chamada
+	private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+	public MedicaoServicos(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Around("execution(public * com.epierre.minhasfinancas.service.LancamentoService.*(..))")
+	public Object medirLancamentos(ProceedingJoinPoint chamada) throws Throwable {
+		return medir(chamada, "LancamentoService");
+	}
+
+	@Around("execution(public * com.epierre.minhasfinancas.service.UsuarioService.*(..))")
+	public Object medirUsuarios(ProceedingJoinPoint chamada) throws Throwable {
+		return medir(chamada, "UsuarioService");
+	}
+
+	private Object medir(ProceedingJoinPoint chamada, String servico) throws Throwable {
+		Method metodo = ((MethodSignature) chamada.getSignature()).getMethod();
+		long inicio = System.nanoTime();
+		try {
+			Object resultado = chamada.proceed();
+			timers.computeIfAbsent(metodo, m -> timer(servico, m, SEM_EXCECAO))
+					.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+			return resultado;
+		} catch (Throwable e) {
+			timer(servico, metodo, e.getClass().getSimpleName()).record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+			throw e;
+		}
+	}
+
+	private Timer timer(String servico, Method metodo, String excecao) {
+		return Timer.builder(TIMER)
+				.tag("servico", servico)
+				.tag("metodo", metodo.getName())
+				.tag("excecao", excecao)
+				.register(registry);
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.ShardUsuario;
+import com.epierre.minhasfinancas.model.repository.Shards;
+import com.epierre.minhasfinancas.service.RebalanceamentoService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Move as linhas de um usuario entre shards por JDBC, em lotes, sem passar
+ * pelo JPA. A transacao na origem comeca travando a cerca do usuario (ver
+ * Shards), o que espera as operacoes em andamento e segura as novas, de
+ * qualquer instancia. Com ela aberta as linhas sao copiadas em uma transacao
+ * no destino; depois a cerca da origem passa a apontar para o destino e as
+ * linhas de la sao removidas. Por ultimo a cerca do destino e o diretorio
+ * recebem a nova geracao. Se a copia falhar nada muda. Se o processo parar
+ * depois da remocao, a proxima chamada encontra a origem ja apontando para o
+ * destino e so conclui esses ultimos passos.
+ */
+@Slf4j
+@Service
+public class RebalanceamentoServiceImpl implements RebalanceamentoService {
+
+	private static final int TAMANHO_LOTE = 1000;
+
+	// ordem de insercao; a remocao segue a ordem inversa por causa das chaves estrangeiras
+	private static final String[][] TABELAS = {
+			{ "financas.usuario", "id" },
+			{ "financas.lancamento", "id_usuario" },
+			{ "financas.saldo_usuario", "id_usuario" },
+			{ "financas.resumo_mensal", "id_usuario" },
+			{ "financas.lancamento_arquivado", "id_usuario" },
+			{ "financas.saldo_transportado", "id_usuario" },
+			{ "financas.recorrencia", "id_usuario" } };
+
+	private final Shards shards;
+
+	public RebalanceamentoServiceImpl(Shards shards) {
+		this.shards = shards;
+	}
+
+	@Override
+	public void moverUsuario(Long idUsuario, int destino) {
+		if (!shards.ativo() || destino < 0 || destino >= shards.quantidade()) {
+			throw new RegraNegocioException("Shard de destino invalido.");
+		}
+		int origem = shards.shardDoUsuario(idUsuario);
+		if (origem == destino) {
+			return;
+		}
+		ShardUsuario movido = transacao(origem).execute(status -> {
+			JdbcTemplate jdbcOrigem = new JdbcTemplate(shards.dataSource(origem));
+			ShardUsuario cerca = shards.travarCerca(jdbcOrigem, idUsuario, origem);
+			if (cerca.getShard() != origem) {
+				return cerca;
+			}
+			// o shard 0 guarda a tabela usuario completa: a linha dele nunca e copiada nem removida
+			transacao(destino).execute(copia -> {
+				JdbcTemplate jdbc = new JdbcTemplate(shards.dataSource(destino));
+				remover(jdbc, idUsuario, destino != 0);
+				for (String[] tabela : TABELAS) {
+					if (destino != 0 || !tabela[0].equals("financas.usuario")) {
+						copiar(jdbcOrigem, jdbc, tabela[0], tabela[1], idUsuario);
+					}
+				}
+				return null;
+			});
+			ShardUsuario novo = new ShardUsuario(idUsuario, destino, cerca.getGeracao() + 1);
+			shards.gravarCerca(jdbcOrigem, novo);
+			remover(jdbcOrigem, idUsuario, origem != 0);
+			return novo;
+		});
+		shards.definirShard(movido);
+		if (movido.getShard() != destino) {
+			// concluida a movimentacao interrompida, o usuario segue do shard onde ela o deixou
+			moverUsuario(idUsuario, destino);
+			return;
+		}
+		log.info("Usuario {} movido do shard {} para o shard {}", idUsuario, origem, destino);
+	}
+
+	private TransactionTemplate transacao(int shard) {
+		return new TransactionTemplate(new DataSourceTransactionManager(shards.dataSource(shard)));
+	}
+
+	private void remover(JdbcTemplate jdbc, Long idUsuario, boolean incluirUsuario) {
+		for (int i = TABELAS.length - 1; i >= 0; i--) {
+			if (i > 0 || incluirUsuario) {
+				jdbc.update("delete from " + TABELAS[i][0] + " where " + TABELAS[i][1] + " = ?", idUsuario);
+			}
+		}
+	}
+
+	private void copiar(JdbcTemplate origem, JdbcTemplate destino, String tabela, String coluna, Long idUsuario) {
+		List<Object[]> lote = new ArrayList<>(TAMANHO_LOTE);
+		List<String> insercao = new ArrayList<>(1);
+		origem.query("select * from " + tabela + " where " + coluna + " = ?", rs -> {
+			ResultSetMetaData metadados = rs.getMetaData();
+			int colunas = metadados.getColumnCount();
+			if (insercao.isEmpty()) {
+				List<String> nomes = new ArrayList<>(colunas);
+				for (int i = 1; i <= colunas; i++) {
+					nomes.add(metadados.getColumnName(i));
+				}
+				insercao.add("insert into " + tabela + " (" + String.join(", ", nomes) + ") values ("
+						+ String.join(", ", Collections.nCopies(colunas, "?")) + ")");
+			}
+			Object[] valores = new Object[colunas];
+			for (int i = 1; i <= colunas; i++) {
+				valores[i - 1] = rs.getObject(i);
+			}
+			lote.add(valores);
+			if (lote.size() == TAMANHO_LOTE) {
+				destino.batchUpdate(insercao.get(0), lote);
+				lote.clear();
+			}
+		}, idUsuario);
+		if (!lote.isEmpty()) {
+			destino.batchUpdate(insercao.get(0), lote);
+		}
+	}
+
+}
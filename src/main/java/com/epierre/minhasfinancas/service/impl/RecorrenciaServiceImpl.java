@@ -0,0 +1,203 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Recorrencia;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.RecorrenciaRepository;
+import com.epierre.minhasfinancas.model.repository.Shards;
+import com.epierre.minhasfinancas.service.BuscaDescricaoService;
+import com.epierre.minhasfinancas.service.LancamentoService;
+import com.epierre.minhasfinancas.service.LancamentosImportadosEvento;
+import com.epierre.minhasfinancas.service.RecorrenciaService;
+import com.epierre.minhasfinancas.service.ResumoMensalService;
+import com.epierre.minhasfinancas.service.SaldoUsuarioService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Expande as regras de recorrencia em lancamentos como a importacao grava um
+ * lote: saldo e resumo mensal ajustados uma vez para o lote todo e os inserts
+ * agrupados pelo batch do JDBC, em uma unica transacao. Os listeners recebem
+ * o mesmo evento da importacao.
+ */
+@Slf4j
+@Service
+public class RecorrenciaServiceImpl implements RecorrenciaService {
+
+	static final int MAXIMO_LANCAMENTOS = 600;
+	private static final int TAMANHO_LOTE = 100;
+
+	private final RecorrenciaRepository repository;
+	private final LancamentoRepository lancamentoRepository;
+	private final LancamentoService lancamentoService;
+	private final SaldoUsuarioService saldoUsuarioService;
+	private final ResumoMensalService resumoMensalService;
+	private final BuscaDescricaoService buscaDescricaoService;
+	private final ApplicationEventPublisher publisher;
+	private final Shards shards;
+	private final TransactionTemplate transactionTemplate;
+	private final int mesesAntecedencia;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	public RecorrenciaServiceImpl(RecorrenciaRepository repository, LancamentoRepository lancamentoRepository,
+			LancamentoService lancamentoService, SaldoUsuarioService saldoUsuarioService,
+			ResumoMensalService resumoMensalService, BuscaDescricaoService buscaDescricaoService,
+			ApplicationEventPublisher publisher, Shards shards, PlatformTransactionManager transactionManager,
+			@Value("${minhasfinancas.recorrencia.meses-antecedencia:12}") int mesesAntecedencia) {
+		this.repository = repository;
+		this.lancamentoRepository = lancamentoRepository;
+		this.lancamentoService = lancamentoService;
+		this.saldoUsuarioService = saldoUsuarioService;
+		this.resumoMensalService = resumoMensalService;
+		this.buscaDescricaoService = buscaDescricaoService;
+		this.publisher = publisher;
+		this.shards = shards;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.mesesAntecedencia = mesesAntecedencia;
+	}
+
+	@Override
+	public Recorrencia criar(Recorrencia recorrencia) {
+		validar(recorrencia);
+		recorrencia.setId(null);
+		recorrencia.setVersao(null);
+		recorrencia.setGeradas(0);
+		recorrencia.setProximaCompetencia(Recorrencia.competencia(recorrencia.getAnoInicial(), recorrencia.getMesInicial()));
+
+		// com fim, todos os lancamentos de uma vez: um parcelamento nao depende do materializador
+		int limite = recorrencia.getQuantidade() == null ? limite() : Integer.MAX_VALUE;
+		Long idUsuario = recorrencia.getIdUsuario();
+		Recorrencia salva = shards.noUsuario(idUsuario, () -> transactionTemplate.execute(status -> {
+			Recorrencia nova = repository.save(recorrencia);
+			gerar(nova, limite);
+			return nova;
+		}));
+		buscaDescricaoService.reconstruir(idUsuario);
+		return salva;
+	}
+
+	@Override
+	@Scheduled(cron = "${minhasfinancas.recorrencia.cron:0 30 2 * * *}")
+	public int materializar() {
+		int limite = limite();
+		int gerados = 0;
+		for (int shard = 0; shard < shards.quantidade(); shard++) {
+			int indice = shard;
+			long ultimo = 0;
+			List<Recorrencia> pendentes;
+			do {
+				long aPartirDe = ultimo;
+				pendentes = shards.noShard(indice,
+						() -> repository.obterPendentes(limite, aPartirDe, PageRequest.of(0, TAMANHO_LOTE)));
+				for (Recorrencia pendente : pendentes) {
+					gerados += materializar(pendente.getId(), pendente.getIdUsuario(), limite);
+					ultimo = pendente.getId();
+				}
+			} while (pendentes.size() == TAMANHO_LOTE);
+		}
+		log.info("{} lancamentos recorrentes gerados ate {}", gerados, YearMonth.now().plusMonths(mesesAntecedencia));
+		return gerados;
+	}
+
+	// uma transacao por regra, relendo-a no shard do usuario
+	private int materializar(Long id, Long idUsuario, int limite) {
+		int gerados;
+		try {
+			gerados = shards.noUsuario(idUsuario, () -> transactionTemplate.execute(status -> repository.findById(id)
+					.filter(recorrencia -> !recorrencia.encerrada())
+					.map(recorrencia -> gerar(recorrencia, limite))
+					.orElse(0)));
+		} catch (OptimisticLockingFailureException e) {
+			// outra instancia gerou os mesmos lancamentos primeiro
+			return 0;
+		}
+		if (gerados > 0) {
+			buscaDescricaoService.reconstruir(idUsuario);
+		}
+		return gerados;
+	}
+
+	// gera as competencias pendentes ate o limite e avanca a regra; chamado dentro da transacao
+	private int gerar(Recorrencia recorrencia, int limite) {
+		List<Lancamento> lote = new ArrayList<>();
+		while (!recorrencia.encerrada() && recorrencia.getProximaCompetencia() <= limite) {
+			lote.add(lancamento(recorrencia, recorrencia.getGeradas()));
+			recorrencia.setGeradas(recorrencia.getGeradas() + 1);
+			recorrencia.setProximaCompetencia(recorrencia.getProximaCompetencia() + 1);
+		}
+		if (lote.isEmpty()) {
+			return 0;
+		}
+
+		saldoUsuarioService.registrarInclusoes(lote);
+		resumoMensalService.registrarInclusoes(lote);
+		lancamentoRepository.saveAll(lote);
+		repository.save(recorrencia);
+		entityManager.flush();
+		publisher.publishEvent(new LancamentosImportadosEvento(recorrencia.getIdUsuario(), lote));
+		return lote.size();
+	}
+
+	private static Lancamento lancamento(Recorrencia recorrencia, int indice) {
+		int competencia = Recorrencia.competencia(recorrencia.getAnoInicial(), recorrencia.getMesInicial()) + indice;
+		String descricao = recorrencia.isParcelada()
+				? recorrencia.getDescricao() + " (" + (indice + 1) + "/" + recorrencia.getQuantidade() + ")"
+				: recorrencia.getDescricao();
+		return Lancamento.builder()
+				.descricao(descricao)
+				.mes(competencia % 12 + 1)
+				.ano(competencia / 12)
+				.valor(recorrencia.getValor())
+				.tipo(recorrencia.getTipo())
+				.status(StatusLancamento.PENDENTE)
+				.usuario(Usuario.builder().id(recorrencia.getIdUsuario()).build())
+				.build();
+	}
+
+	// os campos comuns sao validados como o primeiro lancamento, pelas mesmas regras de um lancamento avulso
+	private void validar(Recorrencia recorrencia) {
+		Integer quantidade = recorrencia.getQuantidade();
+		if (quantidade != null && (quantidade < 1 || quantidade > MAXIMO_LANCAMENTOS)) {
+			throw new RegraNegocioException("Informe uma quantidade de parcelas ou um mês final válido (até "
+					+ MAXIMO_LANCAMENTOS + " lançamentos).");
+		}
+		if (recorrencia.isParcelada() && quantidade == null) {
+			throw new RegraNegocioException("Informe a quantidade de parcelas.");
+		}
+		lancamentoService.validar(Lancamento.builder()
+				.descricao(recorrencia.getDescricao())
+				.mes(recorrencia.getMesInicial())
+				.ano(recorrencia.getAnoInicial())
+				.valor(recorrencia.getValor())
+				.tipo(recorrencia.getTipo())
+				.usuario(Usuario.builder().id(recorrencia.getIdUsuario()).build())
+				.build());
+	}
+
+	private int limite() {
+		YearMonth atual = YearMonth.now();
+		return Recorrencia.competencia(atual.getYear(), atual.getMonthValue()) + mesesAntecedencia;
+	}
+
+}
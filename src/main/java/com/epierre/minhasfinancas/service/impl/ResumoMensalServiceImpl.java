@@ -0,0 +1,153 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.ResumoMensalId;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoArquivadoRepository;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.ResumoMensalRepository;
+import com.epierre.minhasfinancas.model.repository.projection.EstadoLancamento;
+import com.epierre.minhasfinancas.service.ResumoMensalService;
+
+/**
+ * Mantem a tabela resumo_mensal pelos mesmos deltas aplicados ao saldo. Um
+ * usuario sem nenhuma linha ainda nao foi materializado: na primeira escrita
+ * ou leitura todas as linhas dele sao calculadas a partir dos lancamentos.
+ */
+@Service
+public class ResumoMensalServiceImpl implements ResumoMensalService {
+
+	private static final int QUANTIDADE_TRAVAS = 64;
+
+	private final ResumoMensalRepository repository;
+	private final LancamentoRepository lancamentoRepository;
+	private final LancamentoArquivadoRepository lancamentoArquivadoRepository;
+	private final TravasPorUsuario travas = new TravasPorUsuario(QUANTIDADE_TRAVAS);
+
+	public ResumoMensalServiceImpl(ResumoMensalRepository repository, LancamentoRepository lancamentoRepository,
+			LancamentoArquivadoRepository lancamentoArquivadoRepository) {
+		this.repository = repository;
+		this.lancamentoRepository = lancamentoRepository;
+		this.lancamentoArquivadoRepository = lancamentoArquivadoRepository;
+	}
+
+	@Override
+	@Transactional
+	public void registrarInclusao(Lancamento lancamento) {
+		somar(chave(lancamento), lancamento.getValor(), 1L);
+	}
+
+	@Override
+	@Transactional
+	public void registrarInclusoes(List<Lancamento> lancamentos) {
+		// centavos e quantidade por celula, somados em long
+		Map<ResumoMensalId, long[]> deltas = new LinkedHashMap<>();
+		for (Lancamento lancamento : lancamentos) {
+			long[] delta = deltas.computeIfAbsent(chave(lancamento), chave -> new long[2]);
+			delta[0] = Math.addExact(delta[0], Dinheiro.centavos(lancamento.getValor()));
+			delta[1]++;
+		}
+		deltas.forEach((chave, delta) -> somar(chave, Dinheiro.deCentavos(delta[0]).toBigDecimal(), delta[1]));
+	}
+
+	@Override
+	@Transactional
+	public void registrarExclusao(EstadoLancamento estado) {
+		ResumoMensalId chave = new ResumoMensalId(estado.getIdUsuario(), estado.getAno(), estado.getMes(),
+				estado.getTipo(), estado.getStatus());
+		somar(chave, estado.getValor().negate(), -1L);
+	}
+
+	@Override
+	@Transactional
+	public void registrarAtualizacaoDeStatus(List<ResumoMensal> afetados, StatusLancamento novoStatus) {
+		for (ResumoMensal afetado : afetados) {
+			ResumoMensalId origem = afetado.getId();
+			ResumoMensalId destino = new ResumoMensalId(origem.getIdUsuario(), origem.getAno(), origem.getMes(),
+					origem.getTipo(), novoStatus);
+			somar(origem, afetado.getTotal().negate(), -afetado.getQuantidade());
+			somar(destino, afetado.getTotal(), afetado.getQuantidade());
+		}
+	}
+
+	@Override
+	@Transactional
+	public List<ResumoMensal> obterResumoAnual(Long idUsuario, Integer ano) {
+		if (!repository.existsByIdIdUsuario(idUsuario)) {
+			travas.executar(idUsuario, () -> {
+				if (!repository.existsByIdIdUsuario(idUsuario)) {
+					repository.saveAll(calcular(idUsuario).values());
+				}
+			});
+		}
+		return repository.findByIdIdUsuarioAndIdAnoOrderByIdMes(idUsuario, ano);
+	}
+
+	@Override
+	@Transactional
+	public void reconstruir() {
+		repository.deleteAllInBatch();
+		Set<Long> usuarios = new LinkedHashSet<>(lancamentoRepository.obterIdsUsuariosComLancamentos());
+		usuarios.addAll(lancamentoArquivadoRepository.obterIdsUsuarios());
+		for (Long idUsuario : usuarios) {
+			repository.saveAll(calcular(idUsuario).values());
+		}
+	}
+
+	private void somar(ResumoMensalId chave, BigDecimal valor, Long quantidade) {
+		if (repository.adicionar(chave.getIdUsuario(), chave.getAno(), chave.getMes(), chave.getTipo(),
+				chave.getStatus(), valor, quantidade) > 0) {
+			return;
+		}
+
+		travas.executar(chave.getIdUsuario(), () -> {
+			if (repository.adicionar(chave.getIdUsuario(), chave.getAno(), chave.getMes(), chave.getTipo(),
+					chave.getStatus(), valor, quantidade) > 0) {
+				return;
+			}
+
+			// o delta entra em memoria antes do insert, para nao atualizar linhas recem-persistidas
+			Map<ResumoMensalId, ResumoMensal> resumos = repository.existsByIdIdUsuario(chave.getIdUsuario())
+					? new LinkedHashMap<>()
+					: calcular(chave.getIdUsuario());
+			ResumoMensal resumo = resumos.computeIfAbsent(chave, ResumoMensalServiceImpl::vazio);
+			resumo.setTotal(resumo.getTotal().add(valor));
+			resumo.setQuantidade(resumo.getQuantidade() + quantidade);
+			repository.saveAll(resumos.values());
+		});
+	}
+
+	// os anos arquivados entram junto: um ano pode ter lancamentos nas duas tabelas
+	private Map<ResumoMensalId, ResumoMensal> calcular(Long idUsuario) {
+		Map<ResumoMensalId, ResumoMensal> resumos = new LinkedHashMap<>();
+		lancamentoRepository.obterResumosMensaisPorUsuario(idUsuario)
+				.forEach(resumo -> resumos.put(resumo.getId(), resumo));
+		lancamentoArquivadoRepository.obterResumosMensaisPorUsuario(idUsuario)
+				.forEach(resumo -> resumos.merge(resumo.getId(), resumo, (vivo, arquivado) -> new ResumoMensal(
+						vivo.getId(), vivo.getTotal().add(arquivado.getTotal()),
+						vivo.getQuantidade() + arquivado.getQuantidade())));
+		return resumos;
+	}
+
+	private static ResumoMensalId chave(Lancamento lancamento) {
+		return new ResumoMensalId(lancamento.getUsuario().getId(), lancamento.getAno(), lancamento.getMes(),
+				lancamento.getTipo(), lancamento.getStatus());
+	}
+
+	private static ResumoMensal vazio(ResumoMensalId chave) {
+		return new ResumoMensal(chave, BigDecimal.ZERO, 0L);
+	}
+
+}
@@ -0,0 +1,173 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.SaldoUsuario;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.SaldoTransportadoRepository;
+import com.epierre.minhasfinancas.model.repository.SaldoUsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.projection.EstadoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+import com.epierre.minhasfinancas.service.SaldoUsuarioService;
+
+@Service
+public class SaldoUsuarioServiceImpl implements SaldoUsuarioService {
+
+	private static final int QUANTIDADE_TRAVAS = 64;
+
+	private final SaldoUsuarioRepository repository;
+	private final LancamentoRepository lancamentoRepository;
+	private final SaldoTransportadoRepository saldoTransportadoRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final TravasPorUsuario travas = new TravasPorUsuario(QUANTIDADE_TRAVAS);
+
+	public SaldoUsuarioServiceImpl(SaldoUsuarioRepository repository, LancamentoRepository lancamentoRepository,
+			SaldoTransportadoRepository saldoTransportadoRepository, PlatformTransactionManager transactionManager) {
+		this.repository = repository;
+		this.lancamentoRepository = lancamentoRepository;
+		this.saldoTransportadoRepository = saldoTransportadoRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	@Override
+	@Transactional
+	public void registrarInclusao(Lancamento lancamento) {
+		somar(lancamento.getUsuario().getId(), lancamento.getTipo(), Dinheiro.de(lancamento.getValor()));
+	}
+
+	@Override
+	@Transactional
+	public void registrarInclusoes(List<Lancamento> lancamentos) {
+		// receitas e despesas em centavos por usuario, somadas em long
+		Map<Long, long[]> totais = new HashMap<>();
+		for (Lancamento lancamento : lancamentos) {
+			long[] total = totais.computeIfAbsent(lancamento.getUsuario().getId(), id -> new long[2]);
+			int indice = lancamento.getTipo() == TipoLancamento.RECEITA ? 0 : 1;
+			total[indice] = Math.addExact(total[indice], Dinheiro.centavos(lancamento.getValor()));
+		}
+		totais.forEach((idUsuario, total) ->
+				somar(idUsuario, Dinheiro.deCentavos(total[0]), Dinheiro.deCentavos(total[1])));
+	}
+
+	@Override
+	@Transactional
+	public void registrarExclusao(EstadoLancamento estado) {
+		somar(estado.getIdUsuario(), estado.getTipo(), Dinheiro.de(estado.getValor()).negar());
+	}
+
+	// um delta nulo trava a linha como qualquer gravacao do usuario
+	@Override
+	@Transactional
+	public void travar(Long idUsuario) {
+		somar(idUsuario, Dinheiro.ZERO, Dinheiro.ZERO);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Dinheiro obterSaldo(Long idUsuario) {
+		return repository.findById(idUsuario)
+				.orElseGet(() -> calcular(idUsuario))
+				.getSaldo();
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public long obterVersao(Long idUsuario) {
+		return repository.obterVersao(idUsuario).orElse(0l);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public ResumoSaldo obterResumoSaldo(Long idUsuario) {
+		ResumoSaldo vivos = lancamentoRepository.obterResumoSaldoPorUsuario(idUsuario);
+		return saldoTransportadoRepository.findById(idUsuario)
+				.map(transportado -> transportado.somar(vivos))
+				.orElse(vivos);
+	}
+
+	@Override
+	@Transactional
+	public boolean verificarConsistencia(Long idUsuario) {
+		return corrigir(idUsuario);
+	}
+
+	// um usuario por transacao, para nao manter travadas as linhas dos ja corrigidos ate o fim
+	@Override
+	public void reconstruir() {
+		// usuarios com todos os lancamentos arquivados tambem mantem o saldo
+		Set<Long> usuarios = new LinkedHashSet<>(lancamentoRepository.obterIdsUsuariosComLancamentos());
+		usuarios.addAll(saldoTransportadoRepository.obterIdsUsuarios());
+		usuarios.addAll(repository.obterIdsUsuarios());
+		for (Long idUsuario : usuarios) {
+			transactionTemplate.execute(status -> corrigir(idUsuario));
+		}
+	}
+
+	/*
+	 * A linha do saldo e travada antes da soma dos lancamentos: um delta concorrente
+	 * ou ja foi confirmado e entra na soma, ou espera o commit e e aplicado sobre o
+	 * valor corrigido. Sem linha, a inclusao segue a trava do usuario, como em somar.
+	 */
+	private boolean corrigir(Long idUsuario) {
+		boolean[] consistente = new boolean[1];
+		travas.executar(idUsuario, () -> {
+			Optional<SaldoUsuario> gravado = repository.travar(idUsuario);
+			SaldoUsuario calculado = calcular(idUsuario);
+			consistente[0] = gravado.isPresent()
+					&& gravado.get().getReceitas().equals(calculado.getReceitas())
+					&& gravado.get().getDespesas().equals(calculado.getDespesas());
+			if (!consistente[0]) {
+				calculado.setVersao(gravado.map(saldo -> saldo.getVersao() + 1).orElse(1l));
+				repository.save(calculado);
+			}
+		});
+		return consistente[0];
+	}
+
+	private void somar(Long idUsuario, TipoLancamento tipo, Dinheiro valor) {
+		Dinheiro receitas = tipo == TipoLancamento.RECEITA ? valor : Dinheiro.ZERO;
+		Dinheiro despesas = tipo == TipoLancamento.DESPESA ? valor : Dinheiro.ZERO;
+		somar(idUsuario, receitas, despesas);
+	}
+
+	private void somar(Long idUsuario, Dinheiro receitas, Dinheiro despesas) {
+		if (repository.adicionar(idUsuario, receitas, despesas) > 0) {
+			return;
+		}
+
+		travas.executar(idUsuario, () -> {
+			if (repository.adicionar(idUsuario, receitas, despesas) == 0) {
+				SaldoUsuario saldo = calcular(idUsuario);
+				saldo.setReceitas(saldo.getReceitas().somar(receitas));
+				saldo.setDespesas(saldo.getDespesas().somar(despesas));
+				saldo.setVersao(1l);
+				repository.save(saldo);
+			}
+		});
+	}
+
+	private SaldoUsuario calcular(Long idUsuario) {
+		ResumoSaldo resumo = obterResumoSaldo(idUsuario);
+
+		return SaldoUsuario.builder()
+				.idUsuario(idUsuario)
+				.receitas(Dinheiro.de(resumo.getReceitas()))
+				.despesas(Dinheiro.de(resumo.getDespesas()))
+				.versao(0l)
+				.build();
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.service.TokenService;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+@Service
+public class TokenServiceImpl implements TokenService {
+
+	private final Key chave;
+	private final Duration expiracao;
+	private final JwtParser parser;
+
+	// a chave precisa ser a mesma em todas as instancias e entre reinicios, por isso nao ha chave gerada
+	public TokenServiceImpl(@Value("${minhasfinancas.jwt.chave:}") String chave,
+			@Value("${minhasfinancas.jwt.expiracao-minutos:30}") long expiracaoMinutos) {
+		if (chave.isEmpty()) {
+			throw new IllegalStateException("Configure minhasfinancas.jwt.chave com pelo menos 32 bytes.");
+		}
+		this.chave = Keys.hmacShaKeyFor(chave.getBytes(StandardCharsets.UTF_8));
+		this.expiracao = Duration.ofMinutes(expiracaoMinutos);
+		this.parser = Jwts.parserBuilder().setSigningKey(this.chave).build();
+	}
+
+	@Override
+	public String gerarToken(Usuario usuario) {
+		Instant agora = Instant.now();
+		return Jwts.builder()
+				.setSubject(usuario.getId().toString())
+				.claim("nome", usuario.getNome())
+				.setIssuedAt(Date.from(agora))
+				.setExpiration(Date.from(agora.plus(expiracao)))
+				.signWith(chave)
+				.compact();
+	}
+
+	@Override
+	public Optional<Long> obterIdUsuario(String token) {
+		try {
+			Claims claims = parser.parseClaimsJws(token).getBody();
+			return Optional.of(Long.valueOf(claims.getSubject()));
+		} catch (JwtException | IllegalArgumentException e) {
+			return Optional.empty();
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.epierre.minhasfinancas.service.impl;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Conjunto fixo de travas distribuidas pelo id do usuario. Quando existe uma
+ * transacao ativa a trava so e liberada apos o commit ou rollback, para que a
+ * proxima transacao ja enxergue as linhas gravadas pela anterior.
+ */
+final class TravasPorUsuario {
+
+	private final Lock[] travas;
+
+	TravasPorUsuario(int quantidade) {
+		travas = new Lock[quantidade];
+		for (int i = 0; i < quantidade; i++) {
+			travas[i] = new ReentrantLock();
+		}
+	}
+
+	void executar(Long idUsuario, Runnable acao) {
+		Lock trava = trava(idUsuario);
+		trava.lock();
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			try {
+				acao.run();
+			} finally {
+				trava.unlock();
+			}
+			return;
+		}
+
+		try {
+			acao.run();
+		} catch (RuntimeException e) {
+			trava.unlock();
+			throw e;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				trava.unlock();
+			}
+		});
+	}
+
+	/**
+	 * Executa a acao com a trava do usuario, liberando-a ao terminar,
+	 * independentemente de haver transacao ativa.
+	 */
+	<T> T executarAgora(Long idUsuario, Supplier<T> acao) {
+		Lock trava = trava(idUsuario);
+		trava.lock();
+		try {
+			return acao.get();
+		} finally {
+			trava.unlock();
+		}
+	}
+
+	private Lock trava(Long idUsuario) {
+		return travas[Math.floorMod(idUsuario.hashCode(), travas.length)];
+	}
+
+}
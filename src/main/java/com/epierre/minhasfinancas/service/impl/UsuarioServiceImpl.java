@@ -3,12 +3,16 @@ package com.epierre.minhasfinancas.service.impl;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.epierre.minhasfinancas.exception.ErroAutenticacao;
 import com.epierre.minhasfinancas.exception.RegraNegocioException;
 import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.repository.Shards;
 import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
 import com.epierre.minhasfinancas.service.UsuarioService;
 
@@ -16,11 +20,13 @@ import com.epierre.minhasfinancas.service.UsuarioService;
 public class UsuarioServiceImpl implements UsuarioService{
 
 	private UsuarioRepository repository;
+	private Shards shards;
 	
 	//@Autowired
-	public UsuarioServiceImpl(UsuarioRepository repository) {
+	public UsuarioServiceImpl(UsuarioRepository repository, Shards shards) {
 		super();
 		this.repository = repository;
+		this.shards = shards;
 	}
 
 	@Override
@@ -41,9 +47,14 @@ public class UsuarioServiceImpl implements UsuarioService{
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+			@CacheEvict(cacheNames = "usuarios", key = "#usuario.id", condition = "#usuario.id != null"),
+			@CacheEvict(cacheNames = "usuariosPorEmail", key = "#usuario.email", condition = "#usuario.email != null") })
 	public Usuario salvarUsuario(Usuario usuario) {
 		validarEmail(usuario.getEmail());
-		return repository.save(usuario);
+		Usuario salvo = repository.save(usuario);
+		shards.registrarUsuario(salvo);
+		return salvo;
 	}
 
 	@Override
@@ -56,6 +67,7 @@ public class UsuarioServiceImpl implements UsuarioService{
 	}
 
 	@Override
+	@Cacheable(cacheNames = "usuarios", unless = "#result == null")
 	public Optional <Usuario> obterPorId(Long id) {
 		return repository.findById(id);
 	}
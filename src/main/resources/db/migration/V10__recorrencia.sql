@@ -0,0 +1,20 @@
+-- regras de lancamentos recorrentes (ver RecorrenciaServiceImpl); ids pela sequence com incremento 50, como lancamento
+
+create sequence financas.recorrencia_seq increment by 50;
+
+create table financas.recorrencia (
+	id bigint not null primary key,
+	id_usuario bigint not null references financas.usuario (id),
+	descricao varchar(100) not null,
+	valor numeric(16,2) not null,
+	tipo varchar(20) not null check (tipo in ('RECEITA', 'DESPESA')),
+	mes_inicial integer not null,
+	ano_inicial integer not null,
+	quantidade integer,
+	parcelada boolean not null,
+	geradas integer not null,
+	proxima_competencia integer not null,
+	versao bigint not null
+);
+
+create index idx_recorrencia_proxima_competencia on financas.recorrencia (proxima_competencia, id);
@@ -0,0 +1,20 @@
+-- esquema anterior as migracoes; bancos que ja o tem sao marcados como versao 1 (baseline-on-migrate)
+
+create table financas.usuario (
+	id bigserial not null primary key,
+	nome varchar(150),
+	email varchar(100),
+	senha varchar(20)
+);
+
+create table financas.lancamento (
+	id bigserial not null primary key,
+	descricao varchar(100) not null,
+	mes integer not null,
+	ano integer not null,
+	id_usuario bigint not null references financas.usuario (id),
+	valor numeric(16,2) not null,
+	data_cadastra date default now(),
+	tipo varchar(20) not null check (tipo in ('RECEITA', 'DESPESA')),
+	status varchar(20) not null check (status in ('PENDENTE', 'CANCELADO', 'EFETIVADO'))
+);
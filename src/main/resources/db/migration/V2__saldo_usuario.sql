@@ -0,0 +1,14 @@
+-- saldo materializado por usuario (receitas e despesas brutas, todos os status)
+
+create table financas.saldo_usuario (
+	id_usuario bigint not null primary key,
+	receitas numeric(16,2) not null,
+	despesas numeric(16,2) not null
+);
+
+insert into financas.saldo_usuario (id_usuario, receitas, despesas)
+select id_usuario,
+	coalesce(sum(case when tipo = 'RECEITA' then valor else 0 end), 0),
+	coalesce(sum(case when tipo = 'DESPESA' then valor else 0 end), 0)
+from financas.lancamento
+group by id_usuario;
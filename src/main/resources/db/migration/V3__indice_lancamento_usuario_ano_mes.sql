@@ -0,0 +1,3 @@
+-- paginacao por chave (ano, mes, id) dos lancamentos de um usuario
+
+create index idx_lancamento_usuario_ano_mes_id on financas.lancamento (id_usuario, ano, mes, id);
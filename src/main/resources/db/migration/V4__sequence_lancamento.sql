@@ -0,0 +1,10 @@
+-- ids de lancamento por sequence com incremento 50: o otimizador pooled do Hibernate reserva 50 ids por
+-- chamada e os inserts podem ir em batch. A faixa seguinte comeca depois do maior id ja gravado
+
+create sequence financas.lancamento_seq increment by 50;
+
+select setval('financas.lancamento_seq', max(id)) from financas.lancamento having max(id) is not null;
+
+alter table financas.lancamento alter column id drop default;
+
+drop sequence financas.lancamento_id_seq;
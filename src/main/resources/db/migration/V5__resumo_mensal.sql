@@ -0,0 +1,17 @@
+-- totais por usuario, mes, tipo e status, mantidos pelos mesmos deltas do saldo
+
+create table financas.resumo_mensal (
+	id_usuario bigint not null,
+	ano integer not null,
+	mes integer not null,
+	tipo varchar(20) not null,
+	status varchar(20) not null,
+	total numeric(16,2) not null,
+	quantidade bigint not null,
+	primary key (id_usuario, ano, mes, tipo, status)
+);
+
+insert into financas.resumo_mensal (id_usuario, ano, mes, tipo, status, total, quantidade)
+select id_usuario, ano, mes, tipo, status, sum(valor), count(*)
+from financas.lancamento
+group by id_usuario, ano, mes, tipo, status;
@@ -0,0 +1,3 @@
+-- versao para a trava otimista; as linhas existentes comecam em 0
+
+alter table financas.lancamento add column versao bigint not null default 0;
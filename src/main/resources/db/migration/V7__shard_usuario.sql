@@ -0,0 +1,12 @@
+-- shard de cada usuario e a geracao da informacao (ver Shards); no shard 0 e o diretorio
+-- os usuarios que ja existem ficam no shard 0, onde estao os dados deles, ate serem movidos
+
+create table financas.shard_usuario (
+	id_usuario bigint not null primary key,
+	shard integer not null,
+	geracao bigint not null default 0
+);
+
+insert into financas.shard_usuario (id_usuario, shard, geracao)
+select id, 0, 0
+from financas.usuario;
@@ -0,0 +1,26 @@
+-- lancamentos dos anos arquivados, com o mesmo id, e os totais deles por usuario (ver ArquivamentoServiceImpl)
+
+create table financas.lancamento_arquivado (
+	id bigint not null primary key,
+	descricao varchar(100) not null,
+	mes integer not null,
+	ano integer not null,
+	id_usuario bigint not null,
+	valor numeric(16,2) not null,
+	data_cadastra date,
+	tipo varchar(20) not null,
+	status varchar(20) not null,
+	versao bigint not null
+);
+
+create index idx_lancamento_arquivado_usuario_ano_mes_id on financas.lancamento_arquivado (id_usuario, ano, mes, id);
+
+create table financas.saldo_transportado (
+	id_usuario bigint not null primary key,
+	ate_ano integer not null,
+	receitas numeric(16,2) not null,
+	despesas numeric(16,2) not null,
+	pendente numeric(16,2) not null,
+	efetivado numeric(16,2) not null,
+	cancelado numeric(16,2) not null
+);
@@ -0,0 +1,3 @@
+-- contador de gravacoes do usuario, para o ETag das consultas; incrementado junto com o saldo
+
+alter table financas.saldo_usuario add column versao bigint not null default 0;
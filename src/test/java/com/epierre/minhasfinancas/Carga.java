@@ -0,0 +1,9 @@
+package com.epierre.minhasfinancas;
+
+/**
+ * Categoria dos testes que geram massa de dados e exercitam a API sob carga.
+ * Ficam fora da execucao padrao e rodam com o profile carga, antes da classe
+ * configurada em carga.classe: mvn -P carga test
+ */
+public interface Carga {
+}
@@ -0,0 +1,9 @@
+package com.epierre.minhasfinancas;
+
+/**
+ * Categoria dos testes que medem desempenho (latencia, vazao, alocacao) com
+ * volumes maiores. Ficam fora da execucao padrao e rodam com o profile
+ * benchmark, antes dos benchmarks JMH: mvn -P benchmark test
+ */
+public interface Medicao {
+}
@@ -0,0 +1,78 @@
+package com.epierre.minhasfinancas;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.service.TokenService;
+import com.epierre.minhasfinancas.service.UsuarioService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+public class MetricasTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	MeterRegistry registry;
+
+	@Autowired
+	UsuarioService usuarioService;
+
+	@Autowired
+	TokenService tokenService;
+
+	@Test
+	public void deveMedirEndpointsServicosEPersistencia() throws Exception {
+		Usuario usuario = usuarioService.salvarUsuario(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.senha("senha")
+				.build());
+		String corpo = "{\"email\":\"" + usuario.getEmail() + "\",\"senha\":\"errada\"}";
+
+		mvc.perform(MockMvcRequestBuilders.get("/api/usuarios/{id}/saldo", usuario.getId())
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenService.gerarToken(usuario)))
+				.andExpect(MockMvcResultMatchers.status().isOk());
+		mvc.perform(MockMvcRequestBuilders.post("/api/usuarios/autenticar").contentType(MediaType.APPLICATION_JSON).content(corpo))
+				.andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+		Timer endpoint = registry.find("http.server.requests").tag("uri", "/api/usuarios/{id}/saldo").timer();
+		Assertions.assertThat(endpoint).isNotNull();
+		Assertions.assertThat(endpoint.count()).isGreaterThanOrEqualTo(1);
+		Assertions.assertThat(registry.find("http.server.requests.percentile").tag("uri", "/api/usuarios/{id}/saldo")
+				.tag("phi", "0.999").gauge()).isNotNull();
+
+		Assertions.assertThat(registry.find("servicos.chamadas").tags("servico", "UsuarioService", "metodo", "salvarUsuario",
+				"excecao", "None").timer().count()).isGreaterThanOrEqualTo(1);
+		Assertions.assertThat(registry.find("servicos.chamadas").tags("servico", "LancamentoService", "metodo",
+				"obterSaldoPorUsuario").timer().count()).isGreaterThanOrEqualTo(1);
+		Assertions.assertThat(registry.find("servicos.chamadas").tags("metodo", "autenticar", "excecao", "ErroAutenticacao")
+				.timer().count()).isGreaterThanOrEqualTo(1);
+
+		Assertions.assertThat(registry.find("hibernate.statements").tag("status", "prepared").functionCounter().count()).isGreaterThan(0);
+		Assertions.assertThat(registry.find("hibernate.flushes").functionCounter()).isNotNull();
+		Assertions.assertThat(registry.find("hikaricp.connections.acquire").timer()).isNotNull();
+
+		mvc.perform(MockMvcRequestBuilders.get("/actuator/metrics/hibernate.entities.loads"))
+				.andExpect(MockMvcResultMatchers.status().isOk());
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.epierre.minhasfinancas.api.resource;
+
+import org.assertj.core.api.Assertions;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import com.epierre.minhasfinancas.api.filter.ContagemConsultasFilter;
+
+/**
+ * Verificacoes sobre o cabecalho X-Consultas-Sql. Exige
+ * minhasfinancas.sql.cabecalho-contagem=true no contexto do teste.
+ */
+final class ConsultasSql {
+
+	private ConsultasSql() {
+	}
+
+	static ResultMatcher noMaximo(int maximo) {
+		return resultado -> {
+			String consultas = resultado.getResponse().getHeader(ContagemConsultasFilter.CABECALHO);
+			Assertions.assertThat(consultas).as("cabecalho %s", ContagemConsultasFilter.CABECALHO).isNotNull();
+			Assertions.assertThat(Integer.parseInt(consultas))
+					.as("execucoes de SQL em %s %s", resultado.getRequest().getMethod(), resultado.getRequest().getRequestURI())
+					.isLessThanOrEqualTo(maximo);
+		};
+	}
+
+}
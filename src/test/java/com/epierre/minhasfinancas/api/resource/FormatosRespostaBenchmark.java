@@ -0,0 +1,96 @@
+package com.epierre.minhasfinancas.api.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+/**
+ * Listagem de lancamentos em JSON, Smile e CBOR, com os mesmos builders dos
+ * conversores do Spring MVC: tempo para codificar (com e sem gzip) e para
+ * decodificar como o cliente, em arvore. Os tamanhos de cada formato sao
+ * impressos na preparacao.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatosRespostaBenchmark {
+
+	@Param({ "json", "smile", "cbor" })
+	String formato;
+
+	@Param({ "1000" })
+	int tamanho;
+
+	ObjectMapper mapper;
+	ObjectWriter escritor;
+	List<LancamentoLinha> linhas;
+	byte[] codificado;
+
+	@Setup
+	public void preparar() throws IOException {
+		Jackson2ObjectMapperBuilder builder = formato.equals("smile") ? Jackson2ObjectMapperBuilder.smile()
+				: formato.equals("cbor") ? Jackson2ObjectMapperBuilder.cbor() : Jackson2ObjectMapperBuilder.json();
+		mapper = builder.build();
+		escritor = mapper.writer(new SimpleFilterProvider()
+				.addFilter(LancamentoLinha.FILTRO_CAMPOS, SimpleBeanPropertyFilter.serializeAll()));
+
+		linhas = new ArrayList<>(tamanho);
+		for (int i = 0; i < tamanho; i++) {
+			linhas.add(new LancamentoLinha((long) i, "lancamento " + i, i % 12 + 1, 2020, BigDecimal.valueOf(i * 100 + 99, 2),
+					1l, i % 3 == 0 ? TipoLancamento.RECEITA : TipoLancamento.DESPESA, StatusLancamento.PENDENTE,
+					LocalDate.of(2020, 1, 1), 0l));
+		}
+		codificado = codificar();
+		System.out.printf("%n%s: %d bytes, %d bytes com gzip%n", formato, codificado.length, codificarComGzip().length);
+	}
+
+	@Benchmark
+	public byte[] codificar() throws IOException {
+		return escritor.writeValueAsBytes(linhas);
+	}
+
+	@Benchmark
+	public byte[] codificarComGzip() throws IOException {
+		ByteArrayOutputStream saida = new ByteArrayOutputStream(codificado.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(saida)) {
+			escritor.writeValue(gzip, linhas);
+		}
+		return saida.toByteArray();
+	}
+
+	@Benchmark
+	public JsonNode decodificar() throws IOException {
+		return mapper.readTree(codificado);
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.epierre.minhasfinancas.api.resource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.epierre.minhasfinancas.api.dto.LancamentoDTO;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+/**
+ * Conversao do DTO recebido pela API e serializacao JSON das listagens, com
+ * o mesmo ObjectMapper montado para os conversores do Spring MVC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LancamentoResourceBenchmark {
+
+	LancamentoResource resource;
+	LancamentoDTO dto;
+
+	@Setup
+	public void preparar() {
+		// com o usuario autenticado a conversao nao consulta nenhum servico
+		resource = new LancamentoResource(null, null, null);
+		dto = LancamentoDTO.builder()
+				.descricao("conta de luz")
+				.mes(3)
+				.ano(2020)
+				.valor(new BigDecimal("123.45"))
+				.tipo("DESPESA")
+				.status("PENDENTE")
+				.build();
+	}
+
+	@Benchmark
+	public Lancamento converter() {
+		return resource.converter(dto, 1l);
+	}
+
+	@Benchmark
+	public byte[] serializarLancamentos(Listagem listagem) throws JsonProcessingException {
+		return listagem.mapper.writeValueAsBytes(listagem.lancamentos);
+	}
+
+	@Benchmark
+	public byte[] serializarLinhas(Listagem listagem) throws JsonProcessingException {
+		return listagem.escritorLinhas.writeValueAsBytes(listagem.linhas);
+	}
+
+	@State(Scope.Benchmark)
+	public static class Listagem {
+
+		@Param({ "10", "1000" })
+		int tamanho;
+
+		ObjectMapper mapper;
+		ObjectWriter escritorLinhas;
+		List<Lancamento> lancamentos;
+		List<LancamentoLinha> linhas;
+
+		@Setup
+		public void preparar() {
+			mapper = Jackson2ObjectMapperBuilder.json().build();
+			escritorLinhas = mapper.writer(new SimpleFilterProvider()
+					.addFilter(LancamentoLinha.FILTRO_CAMPOS, SimpleBeanPropertyFilter.serializeAll()));
+
+			Usuario usuario = Usuario.builder().id(1l).nome("usuario").email("usuario@email.com").senha("senha").build();
+			lancamentos = new ArrayList<>(tamanho);
+			linhas = new ArrayList<>(tamanho);
+			for (int i = 0; i < tamanho; i++) {
+				Lancamento lancamento = Lancamento.builder()
+						.id((long) i)
+						.descricao("lancamento " + i)
+						.mes(i % 12 + 1)
+						.ano(2020)
+						.valor(BigDecimal.valueOf(i * 100 + 99, 2))
+						.usuario(usuario)
+						.dataCadastro(LocalDate.of(2020, 1, 1))
+						.tipo(i % 3 == 0 ? TipoLancamento.RECEITA : TipoLancamento.DESPESA)
+						.status(StatusLancamento.PENDENTE)
+						.versao(0l)
+						.build();
+				lancamentos.add(lancamento);
+				linhas.add(new LancamentoLinha(lancamento.getId(), lancamento.getDescricao(), lancamento.getMes(),
+						lancamento.getAno(), lancamento.getValor(), usuario.getId(), lancamento.getTipo(),
+						lancamento.getStatus(), lancamento.getDataCadastro(), lancamento.getVersao()));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.epierre.minhasfinancas.api.resource;
+
+import java.math.BigDecimal;
+
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.epierre.minhasfinancas.api.filter.ContagemConsultasFilter;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+import com.epierre.minhasfinancas.service.LancamentoService;
+import com.epierre.minhasfinancas.service.TokenService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+@TestPropertySource(properties = "minhasfinancas.sql.cabecalho-contagem=true")
+public class LancamentoResourceConsultasTest {
+
+	private static final int LANCAMENTOS = 30;
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	LancamentoService service;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	TokenService tokenService;
+
+	Usuario usuario;
+	String autorizacao;
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.senha("senha")
+				.build());
+		for (int i = 0; i < LANCAMENTOS; i++) {
+			service.salvar(Lancamento.builder()
+					.descricao("lancamento " + i)
+					.mes(i % 12 + 1)
+					.ano(2020)
+					.valor(BigDecimal.valueOf(i + 1))
+					.tipo(TipoLancamento.DESPESA)
+					.usuario(usuario)
+					.build());
+		}
+		autorizacao = "Bearer " + tokenService.gerarToken(usuario);
+	}
+
+	@Test
+	public void deveBuscarComConsultasConstantes() throws Exception {
+		// a versao do ETag, lida de saldo_usuario, e a busca
+		mvc.perform(MockMvcRequestBuilders.get("/api/lancamentos").param("ano", "2020")
+				.header(HttpHeaders.AUTHORIZATION, autorizacao))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(LANCAMENTOS))
+				.andExpect(ConsultasSql.noMaximo(2));
+
+		mvc.perform(MockMvcRequestBuilders.get("/api/lancamentos").param("usuario", usuario.getId().toString())
+				.param("limite", "10").header(HttpHeaders.AUTHORIZATION, autorizacao))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(ConsultasSql.noMaximo(2));
+	}
+
+	@Test
+	public void deveSalvarComConsultasConstantes() throws Exception {
+		// insert, saldo e resumo mensal; a cada 50 ids o proximo bloco da sequence soma uma execucao
+		String corpo = "{\"descricao\":\"luz\",\"mes\":3,\"ano\":2020,\"valor\":10,\"tipo\":\"DESPESA\"}";
+		mvc.perform(MockMvcRequestBuilders.post("/api/lancamentos").contentType(MediaType.APPLICATION_JSON).content(corpo)
+				.header(HttpHeaders.AUTHORIZATION, autorizacao))
+				.andExpect(MockMvcResultMatchers.status().isCreated())
+				.andExpect(ConsultasSql.noMaximo(4));
+	}
+
+	@Test
+	public void naoDeveGuardarAExportacaoEmMemoria() throws Exception {
+		mvc.perform(MockMvcRequestBuilders.get("/api/lancamentos/exportar").header(HttpHeaders.AUTHORIZATION, autorizacao))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().doesNotExist(ContagemConsultasFilter.CABECALHO))
+				.andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("lancamento " + (LANCAMENTOS - 1))));
+	}
+
+	@Test
+	public void deveObterSaldoComConsultasConstantes() throws Exception {
+		// o usuario, a versao do ETag e o saldo
+		mvc.perform(MockMvcRequestBuilders.get("/api/usuarios/{id}/saldo", usuario.getId())
+				.header(HttpHeaders.AUTHORIZATION, autorizacao))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(ConsultasSql.noMaximo(3));
+	}
+
+}
@@ -0,0 +1,278 @@
+package com.epierre.minhasfinancas.api.resource;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Recorrencia;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.service.ImportacaoService;
+import com.epierre.minhasfinancas.service.LancamentoService;
+import com.epierre.minhasfinancas.service.RecorrenciaService;
+import com.epierre.minhasfinancas.service.TokenService;
+import com.epierre.minhasfinancas.service.UsuarioService;
+import com.epierre.minhasfinancas.service.impl.TokenServiceImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = LancamentoResource.class)
+@AutoConfigureMockMvc
+@Import(TokenServiceImpl.class)
+@TestPropertySource(properties = "minhasfinancas.jwt.chave=chave-de-teste-com-pelo-menos-32-bytes")
+public class LancamentoResourceTest {
+	static final String API = "/api/lancamentos";
+	static final MediaType JSON = MediaType.APPLICATION_JSON;
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	TokenService tokenService;
+
+	@MockBean
+	LancamentoService service;
+
+	@MockBean
+	UsuarioService usuarioService;
+
+	@MockBean
+	ImportacaoService importacaoService;
+
+	@MockBean
+	RecorrenciaService recorrenciaService;
+
+	@Test
+	public void deveBuscarPeloUsuarioDoTokenSemConsultarOUsuario() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		Mockito.when(service.buscarLinhas(Mockito.any(Lancamento.class))).thenReturn(Collections.emptyList());
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk());
+
+		Mockito.verify(service).buscarLinhas(Mockito.argThat((Lancamento filtro) -> filtro.getUsuario().getId().equals(1l)));
+		Mockito.verifyZeroInteractions(usuarioService);
+	}
+
+	@Test
+	public void deveResponderNaoModificadoSemConsultarOsLancamentos() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		Mockito.when(service.obterVersaoPorUsuario(1l)).thenReturn("3");
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+				.header(HttpHeaders.IF_NONE_MATCH, "W/\"3\"");
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isNotModified())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"3\""))
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+				.andExpect(MockMvcResultMatchers.content().string(""));
+
+		Mockito.verify(service, Mockito.never()).buscarLinhas(Mockito.any(Lancamento.class));
+	}
+
+	@Test
+	public void deveEnviarAVersaoComoETag() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		Mockito.when(service.obterVersaoPorUsuario(1l)).thenReturn("4");
+		Mockito.when(service.buscarLinhas(Mockito.any(Lancamento.class))).thenReturn(Collections.emptyList());
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+				.header(HttpHeaders.IF_NONE_MATCH, "\"3\"");
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"4\""))
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+	}
+
+	@Test
+	public void deveIncluirOsArquivadosQuandoPedido() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		Mockito.when(service.buscarLinhasComArquivados(Mockito.any(Lancamento.class), Mockito.any(), Mockito.any()))
+				.thenReturn(Collections.emptyList());
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).param("ano", "2015")
+				.param("arquivados", "true").accept(JSON).header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk());
+
+		Mockito.verify(service).buscarLinhasComArquivados(
+				Mockito.argThat((Lancamento filtro) -> filtro.getAno().equals(2015)), Mockito.isNull(), Mockito.isNull());
+		Mockito.verify(service, Mockito.never()).buscarLinhas(Mockito.any(Lancamento.class));
+	}
+
+	@Test
+	public void deveSerializarApenasOsCamposPedidos() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		LancamentoLinha linha = new LancamentoLinha(7l, "luz", 3, 2020, BigDecimal.TEN, 1l, TipoLancamento.DESPESA,
+				StatusLancamento.PENDENTE, null, 0l);
+		Mockito.when(service.buscarLinhas(Mockito.any(Lancamento.class))).thenReturn(Collections.singletonList(linha));
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).param("fields", "id,valor").accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().json("[{\"id\": 7, \"valor\": 10}]", true));
+
+		request = MockMvcRequestBuilders.get(API).accept(JSON).header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("[0].usuario").value(1))
+				.andExpect(MockMvcResultMatchers.jsonPath("[0].descricao").value("luz"));
+
+		request = MockMvcRequestBuilders.get(API).param("fields", "id,senha").accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isBadRequest());
+	}
+
+	@Test
+	public void deveNegociarOsFormatosBinarios() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		LancamentoLinha linha = new LancamentoLinha(7l, "luz", 3, 2020, new BigDecimal("10.50"), 1l, TipoLancamento.DESPESA,
+				StatusLancamento.PENDENTE, null, 0l);
+		Mockito.when(service.buscarLinhas(Mockito.any(Lancamento.class))).thenReturn(Collections.singletonList(linha));
+
+		// execucao e verificacao
+		for (ObjectMapper mapper : Arrays.asList(new ObjectMapper(new SmileFactory()), new ObjectMapper(new CBORFactory()))) {
+			MediaType tipo = MediaType.valueOf(mapper.getFactory().getFormatName().equals("Smile")
+					? "application/x-jackson-smile" : "application/cbor");
+			MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).param("fields", "id,valor").accept(tipo)
+					.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+			byte[] corpo = mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+					.andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(tipo))
+					.andReturn().getResponse().getContentAsByteArray();
+
+			JsonNode linhas = mapper.readTree(corpo);
+			Assertions.assertThat(linhas.get(0).get("id").asLong()).isEqualTo(7);
+			Assertions.assertThat(linhas.get(0).get("valor").decimalValue()).isEqualByComparingTo("10.50");
+			Assertions.assertThat(linhas.get(0).has("descricao")).isFalse();
+		}
+	}
+
+	@Test
+	public void deveRecusarTokenInvalido() throws Exception {
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer invalido");
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isUnauthorized());
+
+		Mockito.verifyZeroInteractions(service, usuarioService);
+	}
+
+	@Test
+	public void deveRecusarUsuarioDiferenteDoToken() throws Exception {
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).param("usuario", "2").accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isForbidden());
+	}
+
+	@Test
+	public void deveAtualizarOStatusEmLoteDoUsuarioDoToken() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		Mockito.when(service.atualizarStatus(Mockito.any(Lancamento.class), Mockito.isNull(),
+				Mockito.eq(StatusLancamento.EFETIVADO))).thenReturn(12);
+		String json = "{\"mes\": 3, \"ano\": 2020, \"statusAtual\": \"PENDENTE\", \"status\": \"EFETIVADO\"}";
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(API.concat("/atualiza-status")).accept(JSON)
+				.contentType(JSON).content(json).header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("atualizados").value(12));
+
+		Mockito.verify(service).atualizarStatus(Mockito.argThat((Lancamento filtro) -> filtro.getUsuario().getId().equals(1l)
+				&& filtro.getMes() == 3 && filtro.getStatus() == StatusLancamento.PENDENTE), Mockito.isNull(),
+				Mockito.eq(StatusLancamento.EFETIVADO));
+	}
+
+	@Test
+	public void deveCriarRecorrenciaComAsParcelasOuOMesFinal() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		Mockito.when(recorrenciaService.criar(Mockito.any(Recorrencia.class))).thenAnswer(invocacao -> invocacao.getArgument(0));
+		String parcelado = "{\"descricao\": \"notebook\", \"mes\": 11, \"ano\": 2020, \"valor\": 100, "
+				+ "\"tipo\": \"DESPESA\", \"parcelas\": 48}";
+		String ateFevereiro = "{\"descricao\": \"aluguel\", \"mes\": 11, \"ano\": 2020, \"valor\": 100, "
+				+ "\"tipo\": \"DESPESA\", \"mesFinal\": 2, \"anoFinal\": 2021}";
+
+		// execucao e verificacao
+		for (String json : Arrays.asList(parcelado, ateFevereiro)) {
+			MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(API.concat("/recorrencias")).accept(JSON)
+					.contentType(JSON).content(json).header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+			mvc.perform(request).andExpect(MockMvcResultMatchers.status().isCreated());
+		}
+
+		Mockito.verify(recorrenciaService).criar(Mockito.argThat((Recorrencia recorrencia) -> recorrencia.isParcelada()
+				&& recorrencia.getQuantidade() == 48 && recorrencia.getIdUsuario().equals(1l)));
+		Mockito.verify(recorrenciaService).criar(Mockito.argThat((Recorrencia recorrencia) -> !recorrencia.isParcelada()
+				&& recorrencia.getQuantidade() == 4 && recorrencia.getTipo() == TipoLancamento.DESPESA));
+
+		String ambos = "{\"descricao\": \"aluguel\", \"mes\": 11, \"ano\": 2020, \"valor\": 100, "
+				+ "\"tipo\": \"DESPESA\", \"parcelas\": 3, \"mesFinal\": 2, \"anoFinal\": 2021}";
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(API.concat("/recorrencias")).accept(JSON)
+				.contentType(JSON).content(ambos).header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isBadRequest());
+	}
+
+	@Test
+	public void deveRetornarConflitoAoAtualizarVersaoDesatualizada() throws Exception {
+		// cenario
+		String token = tokenService.gerarToken(Usuario.builder().id(1l).build());
+		Lancamento salvo = Lancamento.builder().id(5l).usuario(Usuario.builder().id(1l).build()).versao(3l).build();
+		Mockito.when(service.obterPorId(5l)).thenReturn(Optional.of(salvo));
+		Mockito.when(service.atualizar(Mockito.any(Lancamento.class)))
+				.thenThrow(new ObjectOptimisticLockingFailureException(Lancamento.class, 5l));
+		String json = "{\"descricao\": \"luz\", \"mes\": 3, \"ano\": 2020, \"valor\": 10, \"tipo\": \"DESPESA\", \"versao\": 2}";
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(API.concat("/5")).accept(JSON)
+				.contentType(JSON).content(json).header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isConflict());
+
+		Mockito.verify(service).atualizar(Mockito.argThat((Lancamento lancamento) -> lancamento.getVersao() == 2l));
+	}
+
+	@Test
+	public void deveExigirOTokenParaBuscar() throws Exception {
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API).param("usuario", "2").accept(JSON);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isUnauthorized());
+
+		Mockito.verify(service, Mockito.never()).buscarLinhas(Mockito.any(Lancamento.class));
+	}
+
+}
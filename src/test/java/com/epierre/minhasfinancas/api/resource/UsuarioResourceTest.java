@@ -1,8 +1,10 @@
 package com.epierre.minhasfinancas.api.resource;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Optional;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
@@ -19,10 +21,21 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import com.epierre.minhasfinancas.api.dto.UsuarioDTO;
 import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
 import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.DimensaoAnalise;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+import com.epierre.minhasfinancas.service.AnaliseLancamentosService;
 import com.epierre.minhasfinancas.service.LancamentoService;
+import com.epierre.minhasfinancas.service.TokenService;
+import com.epierre.minhasfinancas.service.TotalAnalise;
 import com.epierre.minhasfinancas.service.UsuarioService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
 @RunWith(SpringRunner.class)
@@ -33,6 +46,7 @@ import org.springframework.http.MediaType;
 public class UsuarioResourceTest {
 	static final String API = "/api/usuarios";
 	static final MediaType JSON = MediaType.APPLICATION_JSON;
+	static final String AUTORIZACAO = "Bearer token";
 
 	@Autowired
 	MockMvc mvc;
@@ -43,6 +57,17 @@ public class UsuarioResourceTest {
 	@MockBean
 	LancamentoService lancamentoService;
 
+	@MockBean
+	TokenService tokenService;
+
+	@MockBean
+	AnaliseLancamentosService analiseLancamentosService;
+
+	@Before
+	public void setUp() {
+		Mockito.when(tokenService.obterIdUsuario("token")).thenReturn(Optional.of(1l));
+	}
+
 	@Test
 	public void deveAutenticarUmUsuario() throws Exception {
 		// cenario
@@ -52,6 +77,7 @@ public class UsuarioResourceTest {
 		UsuarioDTO dto = UsuarioDTO.builder().email(email).senha(senha).build();
 		Usuario usuario = Usuario.builder().id(1l).email(email).senha(senha).build();
 		Mockito.when(service.autenticar(email, senha)).thenReturn(usuario);
+		Mockito.when(tokenService.gerarToken(usuario)).thenReturn("token");
 		String json = new ObjectMapper().writeValueAsString(dto);
 
 		// execucao e verificacao
@@ -61,7 +87,8 @@ public class UsuarioResourceTest {
 		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
 				.andExpect(MockMvcResultMatchers.jsonPath("id").value(usuario.getId()))
 				.andExpect(MockMvcResultMatchers.jsonPath("nome").value(usuario.getNome()))
-				.andExpect(MockMvcResultMatchers.jsonPath("email").value(usuario.getEmail()));
+				.andExpect(MockMvcResultMatchers.jsonPath("email").value(usuario.getEmail()))
+				.andExpect(MockMvcResultMatchers.jsonPath("token").value("token"));
 
 	}
 
@@ -111,16 +138,83 @@ public class UsuarioResourceTest {
 
 		// cenário
 
-		BigDecimal saldo = BigDecimal.valueOf(10);
+		Dinheiro saldo = Dinheiro.deCentavos(1000);
 		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").senha("123").build();
 		Mockito.when(service.obterPorId(1l)).thenReturn(Optional.of(usuario));
 		Mockito.when(lancamentoService.obterSaldoPorUsuario(1l)).thenReturn(saldo);
 
 		// execucao e verificacao
-		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/1/saldo")).accept(JSON)
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/1/saldo")).accept(JSON).header(HttpHeaders.AUTHORIZATION, AUTORIZACAO)
+				.contentType(JSON);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.content().string("10.00"));
+
+	}
+
+	@Test
+	public void deveResponderNaoModificadoSemConsultarOSaldo() throws Exception {
+
+		// cenário
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").senha("123").build();
+		Mockito.when(service.obterPorId(1l)).thenReturn(Optional.of(usuario));
+		Mockito.when(lancamentoService.obterVersaoPorUsuario(1l)).thenReturn("7");
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/1/saldo")).accept(JSON).header(HttpHeaders.AUTHORIZATION, AUTORIZACAO)
+				.header(HttpHeaders.IF_NONE_MATCH, "\"7\"");
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isNotModified())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "W/\"7\""))
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+
+		Mockito.verify(lancamentoService, Mockito.never()).obterSaldoPorUsuario(Mockito.anyLong());
+	}
+
+	@Test
+	public void deveObterOSaldoDetalhadoDoUsuario() throws Exception {
+
+		// cenário
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").senha("123").build();
+		ResumoSaldo resumo = Mockito.mock(ResumoSaldo.class);
+		Mockito.when(resumo.getReceitas()).thenReturn(BigDecimal.valueOf(100));
+		Mockito.when(resumo.getDespesas()).thenReturn(BigDecimal.valueOf(40));
+		Mockito.when(resumo.getPendente()).thenReturn(BigDecimal.valueOf(10));
+		Mockito.when(resumo.getEfetivado()).thenReturn(BigDecimal.valueOf(50));
+		Mockito.when(resumo.getCancelado()).thenReturn(BigDecimal.ZERO);
+		Mockito.when(service.obterPorId(1l)).thenReturn(Optional.of(usuario));
+		Mockito.when(lancamentoService.obterResumoSaldoPorUsuario(1l)).thenReturn(resumo);
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/1/saldo/detalhado")).accept(JSON).header(HttpHeaders.AUTHORIZATION, AUTORIZACAO)
+				.contentType(JSON);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("receitas").value(100))
+				.andExpect(MockMvcResultMatchers.jsonPath("despesas").value(40))
+				.andExpect(MockMvcResultMatchers.jsonPath("saldo").value(60))
+				.andExpect(MockMvcResultMatchers.jsonPath("efetivado").value(50));
+
+	}
+
+	@Test
+	public void deveObterOResumoMensalDoUsuarioSemAsCelulasVazias() throws Exception {
+
+		// cenário
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").senha("123").build();
+		ResumoMensal pendente = new ResumoMensal(1l, 2020, 1, TipoLancamento.DESPESA, StatusLancamento.PENDENTE,
+				BigDecimal.ZERO, 0l);
+		ResumoMensal efetivado = new ResumoMensal(1l, 2020, 1, TipoLancamento.DESPESA, StatusLancamento.EFETIVADO,
+				BigDecimal.valueOf(150), 3l);
+		Mockito.when(service.obterPorId(1l)).thenReturn(Optional.of(usuario));
+		Mockito.when(lancamentoService.obterResumoMensalPorUsuario(1l, 2020)).thenReturn(Arrays.asList(pendente, efetivado));
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/1/resumo-mensal?ano=2020")).accept(JSON).header(HttpHeaders.AUTHORIZATION, AUTORIZACAO)
 				.contentType(JSON);
 		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
-				.andExpect(MockMvcResultMatchers.content().string("10"));
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].mes").value(1))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("EFETIVADO"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].total").value(150))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].quantidade").value(3));
 
 	}
 
@@ -131,10 +225,55 @@ public class UsuarioResourceTest {
 		Mockito.when(service.obterPorId(1l)).thenReturn(Optional.empty());
 
 		// execucao e verificacao
-		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/1/saldo")).accept(JSON)
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/1/saldo")).accept(JSON).header(HttpHeaders.AUTHORIZATION, AUTORIZACAO)
 				.contentType(JSON);
 		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isNotFound());
 
 	}
 
+	@Test
+	public void deveObterOsTotaisAgrupadosDoUsuario() throws Exception {
+
+		// cenário
+		Usuario usuario = Usuario.builder().id(1l).email("usuario@email.com").senha("123").build();
+		TotalAnalise janeiro = new TotalAnalise(null, 1, TipoLancamento.DESPESA, null, Dinheiro.deCentavos(15000), 3l);
+		Mockito.when(service.obterPorId(1l)).thenReturn(Optional.of(usuario));
+		Mockito.when(analiseLancamentosService.totalizar(Mockito.any(Lancamento.class),
+				Mockito.eq(Arrays.asList(DimensaoAnalise.MES, DimensaoAnalise.TIPO)))).thenReturn(Arrays.asList(janeiro));
+
+		// execucao e verificacao
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+				.get(API.concat("/1/analise/totais?ano=2020&agrupar=MES,TIPO")).accept(JSON).header(HttpHeaders.AUTHORIZATION, AUTORIZACAO).contentType(JSON);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].mes").value(1))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].tipo").value("DESPESA"))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].total").value(150))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].quantidade").value(3));
+
+	}
+
+	@Test
+	public void deveRecusarOSaldoDeOutroUsuario() throws Exception {
+		Mockito.when(service.obterPorId(2l)).thenReturn(Optional.of(Usuario.builder().id(2l).build()));
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/2/saldo")).accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, AUTORIZACAO);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isForbidden());
+
+		request = MockMvcRequestBuilders.get(API.concat("/2/analise/saldo-acumulado")).accept(JSON)
+				.header(HttpHeaders.AUTHORIZATION, AUTORIZACAO);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isForbidden());
+
+		Mockito.verify(lancamentoService, Mockito.never()).obterSaldoPorUsuario(Mockito.anyLong());
+	}
+
+	@Test
+	public void deveExigirOTokenParaObterOSaldo() throws Exception {
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(API.concat("/1/saldo")).accept(JSON);
+		mvc.perform(request).andExpect(MockMvcResultMatchers.status().isUnauthorized());
+
+		Mockito.verify(service, Mockito.never()).obterPorId(Mockito.anyLong());
+	}
+
 }
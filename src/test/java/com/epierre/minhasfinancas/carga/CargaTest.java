@@ -0,0 +1,101 @@
+package com.epierre.minhasfinancas.carga;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.epierre.minhasfinancas.Carga;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+import com.epierre.minhasfinancas.service.BuscaDescricaoService;
+import com.epierre.minhasfinancas.service.ResumoMensalService;
+import com.epierre.minhasfinancas.service.SaldoUsuarioService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+@Category(Carga.class)
+public class CargaTest {
+
+	private static final int USUARIOS = 20;
+	private static final int LANCAMENTOS = 2000;
+
+	@LocalServerPort
+	int porta;
+
+	@Autowired
+	DataSource dataSource;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	SaldoUsuarioService saldoUsuarioService;
+
+	@Autowired
+	ResumoMensalService resumoMensalService;
+
+	@Autowired
+	BuscaDescricaoService buscaDescricaoService;
+
+	@Autowired
+	LancamentoRepository lancamentoRepository;
+
+	@Test
+	public void deveGerarMassaEnviesadaEConsistenteESustentarACarga() throws Exception {
+		String prefixo = "carga" + System.nanoTime() + "u";
+		GeradorDados.Configuracao configuracao = GeradorDados.Configuracao.builder()
+				.usuarios(USUARIOS).lancamentos(LANCAMENTOS).lote(500).prefixo(prefixo).build();
+		GeradorDados.Resultado resultado = new GeradorDados(dataSource, transactionManager, saldoUsuarioService,
+				resumoMensalService, buscaDescricaoService).gerar(configuracao);
+
+		long[] porUsuario = resultado.getLancamentosPorUsuario();
+		Assertions.assertThat(Arrays.stream(porUsuario).sum()).isEqualTo(LANCAMENTOS);
+		// com expoente 1.1 o primeiro usuario concentra bem mais linhas que o ultimo
+		Assertions.assertThat(porUsuario[0]).isGreaterThan(5 * porUsuario[USUARIOS - 1]);
+
+		for (int i = 0; i < USUARIOS; i++) {
+			Long id = resultado.getIdsUsuarios()[i];
+			ResumoSaldo agregado = lancamentoRepository.obterResumoSaldoPorUsuario(id);
+			Assertions.assertThat(saldoUsuarioService.obterSaldo(id).toBigDecimal())
+					.isEqualByComparingTo(agregado.getReceitas().subtract(agregado.getDespesas()));
+
+			long quantidade = 0;
+			for (int ano = configuracao.getAnoInicial(); ano <= configuracao.getAnoFinal(); ano++) {
+				List<ResumoMensal> resumos = resumoMensalService.obterResumoAnual(id, ano);
+				quantidade += resumos.stream().mapToLong(ResumoMensal::getQuantidade).sum();
+			}
+			Assertions.assertThat(quantidade).isEqualTo(porUsuario[i]);
+		}
+
+		List<DriverCarga.Estatistica> estatisticas = new DriverCarga(DriverCarga.Configuracao.builder()
+				.url("http://localhost:" + porta)
+				.usuarios(USUARIOS)
+				.prefixo(prefixo)
+				.threads(4)
+				.duracao(2)
+				.aquecimento(1)
+				.build()).executar();
+
+		DriverCarga.Estatistica total = estatisticas.get(estatisticas.size() - 1);
+		estatisticas.forEach(System.out::println);
+		Assertions.assertThat(total.getOperacao()).isEqualTo("total");
+		Assertions.assertThat(total.getRequisicoes()).isGreaterThan(0);
+		Assertions.assertThat(total.getErros()).isZero();
+		Assertions.assertThat(total.getP999()).isGreaterThanOrEqualTo(total.getP50());
+	}
+
+}
@@ -0,0 +1,354 @@
+package com.epierre.minhasfinancas.carga;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Gerador de carga HTTP autocontido (apenas JDK) contra uma instancia local.
+ * Cada thread sorteia um usuario da massa do GeradorDados, com a mesma
+ * distribuicao de Zipf, e uma operacao conforme os pesos do mix. Os tempos
+ * das requisicoes feitas apos o aquecimento sao guardados integralmente
+ * para calcular p50, p99 e p999 por operacao.
+ *
+ * mvn -P carga test -Dcarga.classe=DriverCarga -Dcarga.args="--url=http://localhost:8080 --threads=16 --duracao=60"
+ *
+ * Argumentos (--nome=valor): url, usuarios, prefixo, threads, duracao e
+ * aquecimento em segundos, semente, zipf e mix, no formato
+ * operacao:peso separado por virgulas. Operacoes: listar, paginar,
+ * buscarDescricao, saldo, saldoDetalhado, resumoMensal, incluir, autenticar.
+ */
+public class DriverCarga {
+
+	private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+	private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+	private static final String[] TERMOS = { "luz", "mercado", "conta", "aluguel", "salario", "farm" };
+
+	@Value
+	@Builder
+	public static class Configuracao {
+		@Builder.Default String url = "http://localhost:8080";
+		@Builder.Default int usuarios = 1000;
+		@Builder.Default String prefixo = "carga";
+		@Builder.Default int threads = 8;
+		@Builder.Default int duracao = 60;
+		@Builder.Default int aquecimento = 10;
+		@Builder.Default long semente = 42;
+		@Builder.Default double expoenteZipf = 1.1;
+		@Builder.Default String mix = "listar:30,paginar:25,buscarDescricao:10,saldo:15,saldoDetalhado:5,resumoMensal:10,incluir:4,autenticar:1";
+		@Builder.Default int anoInicial = 2015;
+		@Builder.Default int anoFinal = 2020;
+	}
+
+	@Value
+	public static class Estatistica {
+		String operacao;
+		long requisicoes;
+		long erros;
+		double porSegundo;
+		double p50;
+		double p99;
+		double p999;
+		double maximo;
+	}
+
+	private final Configuracao configuracao;
+	private final String[] operacoes;
+	private final int[] pesosAcumulados;
+	private final double[] usuariosAcumulados;
+	private final Map<Integer, Sessao> sessoes = new ConcurrentHashMap<>();
+
+	public DriverCarga(Configuracao configuracao) {
+		this.configuracao = configuracao;
+		String[] itens = configuracao.getMix().split(",");
+		this.operacoes = new String[itens.length];
+		this.pesosAcumulados = new int[itens.length];
+		int soma = 0;
+		for (int i = 0; i < itens.length; i++) {
+			String[] partes = itens[i].trim().split(":");
+			operacoes[i] = partes[0];
+			soma += Integer.parseInt(partes[1]);
+			pesosAcumulados[i] = soma;
+		}
+		this.usuariosAcumulados = GeradorDados.distribuicaoZipf(configuracao.getUsuarios(), configuracao.getExpoenteZipf());
+	}
+
+	public List<Estatistica> executar() throws Exception {
+		long inicio = System.nanoTime();
+		long fimAquecimento = inicio + configuracao.getAquecimento() * 1_000_000_000L;
+		long fim = fimAquecimento + configuracao.getDuracao() * 1_000_000_000L;
+
+		ExecutorService executor = Executors.newFixedThreadPool(configuracao.getThreads());
+		List<Future<Registro>> tarefas = new ArrayList<>();
+		for (int t = 0; t < configuracao.getThreads(); t++) {
+			SplittableRandom aleatorio = new SplittableRandom(configuracao.getSemente() + t);
+			tarefas.add(executor.submit(() -> executarThread(aleatorio, fimAquecimento, fim)));
+		}
+		Registro total = new Registro(operacoes.length);
+		for (Future<Registro> tarefa : tarefas) {
+			total.juntar(tarefa.get());
+		}
+		executor.shutdown();
+
+		List<Estatistica> estatisticas = new ArrayList<>();
+		List<Long> todos = new ArrayList<>();
+		long errosTotais = 0;
+		for (int i = 0; i < operacoes.length; i++) {
+			estatisticas.add(estatistica(operacoes[i], total.tempos.get(i), total.erros[i]));
+			todos.addAll(total.tempos.get(i));
+			errosTotais += total.erros[i];
+		}
+		estatisticas.add(estatistica("total", todos, errosTotais));
+		return estatisticas;
+	}
+
+	private Estatistica estatistica(String operacao, List<Long> tempos, long erros) {
+		long[] ordenados = tempos.stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(ordenados);
+		return new Estatistica(operacao, ordenados.length, erros, (double) ordenados.length / configuracao.getDuracao(),
+				percentil(ordenados, 0.50), percentil(ordenados, 0.99), percentil(ordenados, 0.999),
+				ordenados.length == 0 ? 0 : ordenados[ordenados.length - 1] / 1e3);
+	}
+
+	// em milissegundos, pelo metodo do posto mais proximo
+	private static double percentil(long[] ordenados, double p) {
+		if (ordenados.length == 0) {
+			return 0;
+		}
+		int posicao = (int) Math.ceil(p * ordenados.length) - 1;
+		return ordenados[Math.max(posicao, 0)] / 1e3;
+	}
+
+	private Registro executarThread(SplittableRandom aleatorio, long fimAquecimento, long fim) {
+		Registro registro = new Registro(operacoes.length);
+		while (true) {
+			int usuario = GeradorDados.sortear(usuariosAcumulados, aleatorio.nextDouble());
+			int operacao = sortearOperacao(aleatorio.nextInt(pesosAcumulados[pesosAcumulados.length - 1]));
+
+			long inicio = System.nanoTime();
+			if (inicio >= fim) {
+				return registro;
+			}
+			boolean sucesso;
+			try {
+				sucesso = executar(operacoes[operacao], usuario, aleatorio);
+			} catch (IOException e) {
+				sucesso = false;
+			}
+			long decorrido = System.nanoTime() - inicio;
+			if (inicio >= fimAquecimento) {
+				registro.registrar(operacao, decorrido / 1000, sucesso);
+			}
+		}
+	}
+
+	private int sortearOperacao(int sorteio) {
+		for (int i = 0; i < pesosAcumulados.length; i++) {
+			if (sorteio < pesosAcumulados[i]) {
+				return i;
+			}
+		}
+		return pesosAcumulados.length - 1;
+	}
+
+	private boolean executar(String operacao, int usuario, SplittableRandom aleatorio) throws IOException {
+		if ("autenticar".equals(operacao)) {
+			return autenticar(usuario) != null;
+		}
+		Sessao sessao = sessao(usuario);
+		if (sessao == null) {
+			return false;
+		}
+		int ano = configuracao.getAnoInicial() + aleatorio.nextInt(configuracao.getAnoFinal() - configuracao.getAnoInicial() + 1);
+		int mes = aleatorio.nextInt(12) + 1;
+		switch (operacao) {
+		case "listar":
+			return requisitar("GET", "/api/lancamentos?ano=" + ano + "&mes=" + mes, null, sessao).sucesso();
+		case "paginar":
+			return requisitar("GET", "/api/lancamentos?ano=" + ano + "&limite=50", null, sessao).sucesso();
+		case "buscarDescricao":
+			return requisitar("GET", "/api/lancamentos?descricao=" + TERMOS[aleatorio.nextInt(TERMOS.length)]
+					+ "&limite=50", null, sessao).sucesso();
+		case "saldo":
+			return requisitar("GET", "/api/usuarios/" + sessao.id + "/saldo", null, sessao).sucesso();
+		case "saldoDetalhado":
+			return requisitar("GET", "/api/usuarios/" + sessao.id + "/saldo/detalhado", null, sessao).sucesso();
+		case "resumoMensal":
+			return requisitar("GET", "/api/usuarios/" + sessao.id + "/resumo-mensal?ano=" + ano, null, sessao).sucesso();
+		case "incluir":
+			String corpo = "{\"descricao\":\"carga\",\"mes\":" + mes + ",\"ano\":" + ano + ",\"valor\":"
+					+ (aleatorio.nextInt(100000) + 1) / 100.0 + ",\"tipo\":\"DESPESA\"}";
+			return requisitar("POST", "/api/lancamentos", corpo, sessao).sucesso();
+		default:
+			throw new IllegalArgumentException("Operacao desconhecida no mix: " + operacao);
+		}
+	}
+
+	// o token e obtido uma vez por usuario e renovado quando a API responde 401
+	private Sessao sessao(int usuario) throws IOException {
+		Sessao sessao = sessoes.get(usuario);
+		if (sessao == null) {
+			sessao = autenticar(usuario);
+			if (sessao != null) {
+				sessoes.put(usuario, sessao);
+			}
+		}
+		return sessao;
+	}
+
+	private Sessao autenticar(int usuario) throws IOException {
+		String corpo = "{\"email\":\"" + configuracao.getPrefixo() + usuario + "@carga.local\",\"senha\":\""
+				+ configuracao.getPrefixo() + "\"}";
+		Resposta resposta = requisitar("POST", "/api/usuarios/autenticar", corpo, null);
+		if (!resposta.sucesso()) {
+			return null;
+		}
+		Matcher token = TOKEN.matcher(resposta.corpo);
+		Matcher id = ID.matcher(resposta.corpo);
+		if (!token.find() || !id.find()) {
+			return null;
+		}
+		return new Sessao(usuario, Long.parseLong(id.group(1)), token.group(1));
+	}
+
+	private Resposta requisitar(String metodo, String caminho, String corpo, Sessao sessao) throws IOException {
+		HttpURLConnection conexao = (HttpURLConnection) new URL(configuracao.getUrl() + caminho).openConnection();
+		conexao.setRequestMethod(metodo);
+		conexao.setRequestProperty("Accept", "application/json");
+		if (sessao != null) {
+			conexao.setRequestProperty("Authorization", "Bearer " + sessao.token);
+		}
+		if (corpo != null) {
+			conexao.setDoOutput(true);
+			conexao.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream saida = conexao.getOutputStream()) {
+				saida.write(corpo.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int status = conexao.getResponseCode();
+		// o corpo e sempre consumido para que a conexao volte ao keep-alive
+		String resposta = ler(status < 400 ? conexao.getInputStream() : conexao.getErrorStream());
+		if (status == 401 && sessao != null) {
+			sessoes.remove(sessao.usuario);
+		}
+		return new Resposta(status, resposta);
+	}
+
+	private static String ler(InputStream entrada) throws IOException {
+		if (entrada == null) {
+			return "";
+		}
+		try (InputStream fluxo = entrada) {
+			ByteArrayOutputStream conteudo = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int lidos;
+			while ((lidos = fluxo.read(buffer)) != -1) {
+				conteudo.write(buffer, 0, lidos);
+			}
+			return new String(conteudo.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static class Sessao {
+		final int usuario;
+		final long id;
+		final String token;
+
+		Sessao(int usuario, long id, String token) {
+			this.usuario = usuario;
+			this.id = id;
+			this.token = token;
+		}
+	}
+
+	private static class Resposta {
+		final int status;
+		final String corpo;
+
+		Resposta(int status, String corpo) {
+			this.status = status;
+			this.corpo = corpo;
+		}
+
+		boolean sucesso() {
+			return status >= 200 && status < 300;
+		}
+	}
+
+	// tempos em microssegundos, por operacao, de uma unica thread
+	private static class Registro {
+		final List<List<Long>> tempos = new ArrayList<>();
+		final long[] erros;
+
+		Registro(int operacoes) {
+			for (int i = 0; i < operacoes; i++) {
+				tempos.add(new ArrayList<>());
+			}
+			erros = new long[operacoes];
+		}
+
+		void registrar(int operacao, long micros, boolean sucesso) {
+			tempos.get(operacao).add(micros);
+			if (!sucesso) {
+				erros[operacao]++;
+			}
+		}
+
+		void juntar(Registro outro) {
+			for (int i = 0; i < erros.length; i++) {
+				tempos.get(i).addAll(outro.tempos.get(i));
+				erros[i] += outro.erros[i];
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> argumentos = new LinkedHashMap<>();
+		for (String arg : args) {
+			String[] partes = arg.replaceFirst("^--", "").split("=", 2);
+			argumentos.put(partes[0], partes.length > 1 ? partes[1] : "true");
+		}
+		Configuracao padrao = Configuracao.builder().build();
+		Configuracao configuracao = Configuracao.builder()
+				.url(argumentos.getOrDefault("url", padrao.getUrl()))
+				.usuarios(Integer.parseInt(argumentos.getOrDefault("usuarios", String.valueOf(padrao.getUsuarios()))))
+				.prefixo(argumentos.getOrDefault("prefixo", padrao.getPrefixo()))
+				.threads(Integer.parseInt(argumentos.getOrDefault("threads", String.valueOf(padrao.getThreads()))))
+				.duracao(Integer.parseInt(argumentos.getOrDefault("duracao", String.valueOf(padrao.getDuracao()))))
+				.aquecimento(Integer.parseInt(argumentos.getOrDefault("aquecimento", String.valueOf(padrao.getAquecimento()))))
+				.semente(Long.parseLong(argumentos.getOrDefault("semente", String.valueOf(padrao.getSemente()))))
+				.expoenteZipf(Double.parseDouble(argumentos.getOrDefault("zipf", String.valueOf(padrao.getExpoenteZipf()))))
+				.mix(argumentos.getOrDefault("mix", padrao.getMix()))
+				.build();
+
+		List<Estatistica> estatisticas = new DriverCarga(configuracao).executar();
+		System.out.printf("%d threads, %d s (+%d s de aquecimento) contra %s%n", configuracao.getThreads(),
+				configuracao.getDuracao(), configuracao.getAquecimento(), configuracao.getUrl());
+		System.out.printf("%-16s %10s %8s %10s %10s %10s %10s %10s%n", "operacao", "requisicoes", "erros", "req/s",
+				"p50 ms", "p99 ms", "p999 ms", "max ms");
+		for (Estatistica e : estatisticas) {
+			System.out.printf("%-16s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", e.getOperacao(), e.getRequisicoes(),
+					e.getErros(), e.getPorSegundo(), e.getP50(), e.getP99(), e.getP999(), e.getMaximo());
+		}
+	}
+
+}
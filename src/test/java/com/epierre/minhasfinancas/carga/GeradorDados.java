@@ -0,0 +1,253 @@
+package com.epierre.minhasfinancas.carga;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.PostgresSequenceMaxValueIncrementer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.MinhasfinancasApplication;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.service.BuscaDescricaoService;
+import com.epierre.minhasfinancas.service.ResumoMensalService;
+import com.epierre.minhasfinancas.service.SaldoUsuarioService;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Carrega no datasource configurado uma massa sintetica de usuarios e
+ * lancamentos, com inserts JDBC em lote fora do contexto de persistencia.
+ * Os lancamentos sao distribuidos entre os usuarios por uma lei de Zipf:
+ * poucos usuarios concentram boa parte das linhas. A mesma semente gera
+ * sempre a mesma massa. Ao final saldo_usuario e resumo_mensal sao
+ * reconstruidos e o indice de descricoes descartado.
+ *
+ * mvn -P carga test -Dcarga.args="--carga.usuarios=5000 --carga.lancamentos=5000000"
+ *
+ * Os usuarios recebem o email {prefixo}{n}@carga.local e a senha do prefixo,
+ * que e o que o DriverCarga usa para autenticar.
+ */
+public class GeradorDados {
+
+	private static final String[] DESCRICOES = { "mercado", "aluguel", "conta de luz", "conta de agua", "internet",
+			"combustivel", "farmacia", "restaurante", "salario", "freelance", "academia", "cinema", "padaria",
+			"condominio", "seguro do carro", "plano de saude", "escola", "presente", "viagem", "manutencao" };
+
+	// mesmo allocationSize da sequencia de Lancamento: cada valor reserva os ids (valor - 49) a valor
+	private static final int BLOCO_IDS = 50;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final SaldoUsuarioService saldoUsuarioService;
+	private final ResumoMensalService resumoMensalService;
+	private final BuscaDescricaoService buscaDescricaoService;
+
+	public GeradorDados(DataSource dataSource, PlatformTransactionManager transactionManager,
+			SaldoUsuarioService saldoUsuarioService, ResumoMensalService resumoMensalService,
+			BuscaDescricaoService buscaDescricaoService) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.saldoUsuarioService = saldoUsuarioService;
+		this.resumoMensalService = resumoMensalService;
+		this.buscaDescricaoService = buscaDescricaoService;
+	}
+
+	@Value
+	@Builder
+	public static class Configuracao {
+		@Builder.Default int usuarios = 1000;
+		@Builder.Default long lancamentos = 1_000_000;
+		@Builder.Default double expoenteZipf = 1.1;
+		@Builder.Default int anoInicial = 2015;
+		@Builder.Default int anoFinal = 2020;
+		@Builder.Default int lote = 5000;
+		@Builder.Default long semente = 42;
+		@Builder.Default String prefixo = "carga";
+	}
+
+	@Value
+	public static class Resultado {
+		long[] idsUsuarios;
+		long[] lancamentosPorUsuario;
+		double segundos;
+	}
+
+	public Resultado gerar(Configuracao configuracao) {
+		long inicio = System.nanoTime();
+		long[] ids = inserirUsuarios(configuracao);
+		long[] porUsuario = inserirLancamentos(configuracao, ids);
+
+		saldoUsuarioService.reconstruir();
+		resumoMensalService.reconstruir();
+		buscaDescricaoService.reconstruir();
+		return new Resultado(ids, porUsuario, (System.nanoTime() - inicio) / 1e9);
+	}
+
+	private long[] inserirUsuarios(Configuracao configuracao) {
+		String dominio = "@carga.local";
+		Integer existentes = jdbcTemplate.queryForObject("select count(*) from financas.usuario where email like ?",
+				Integer.class, configuracao.getPrefixo() + "%" + dominio);
+		if (existentes != null && existentes > 0) {
+			throw new IllegalStateException("Ja existem usuarios com o prefixo " + configuracao.getPrefixo() + ".");
+		}
+
+		List<Object[]> usuarios = new ArrayList<>(configuracao.getUsuarios());
+		for (int i = 0; i < configuracao.getUsuarios(); i++) {
+			usuarios.add(new Object[] { "usuario " + i, configuracao.getPrefixo() + i + dominio, configuracao.getPrefixo() });
+		}
+		transactionTemplate.execute(t -> jdbcTemplate.batchUpdate(
+				"insert into financas.usuario (nome, email, senha) values (?, ?, ?)", usuarios, configuracao.getLote(),
+				(ps, usuario) -> {
+					ps.setString(1, (String) usuario[0]);
+					ps.setString(2, (String) usuario[1]);
+					ps.setString(3, (String) usuario[2]);
+				}));
+
+		Map<String, Long> porEmail = new HashMap<>(configuracao.getUsuarios() * 2);
+		jdbcTemplate.query("select id, email from financas.usuario where email like ?",
+				rs -> { porEmail.put(rs.getString(2), rs.getLong(1)); }, configuracao.getPrefixo() + "%" + dominio);
+		long[] ids = new long[configuracao.getUsuarios()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = porEmail.get(configuracao.getPrefixo() + i + dominio);
+		}
+		return ids;
+	}
+
+	private long[] inserirLancamentos(Configuracao configuracao, long[] idsUsuarios) {
+		SplittableRandom aleatorio = new SplittableRandom(configuracao.getSemente());
+		double[] acumulada = distribuicaoZipf(idsUsuarios.length, configuracao.getExpoenteZipf());
+		DataFieldMaxValueIncrementer sequencia = sequenciaLancamento();
+		long[] porUsuario = new long[idsUsuarios.length];
+		int anos = configuracao.getAnoFinal() - configuracao.getAnoInicial() + 1;
+		LocalDate referencia = LocalDate.of(configuracao.getAnoFinal(), 12, 31);
+
+		long proximoId = 0;
+		long ultimoIdDoBloco = -1;
+		Object[][] linhas = new Object[configuracao.getLote()][];
+		for (long gerados = 0; gerados < configuracao.getLancamentos(); ) {
+			int quantidade = (int) Math.min(linhas.length, configuracao.getLancamentos() - gerados);
+			for (int i = 0; i < quantidade; i++) {
+				if (proximoId > ultimoIdDoBloco) {
+					ultimoIdDoBloco = sequencia.nextLongValue();
+					proximoId = Math.max(ultimoIdDoBloco - BLOCO_IDS + 1, 1);
+				}
+				int usuario = sortear(acumulada, aleatorio.nextDouble());
+				porUsuario[usuario]++;
+				boolean receita = aleatorio.nextInt(5) == 0;
+				// valores com cauda longa: a maioria pequena, alguns bem altos
+				double valor = Math.exp(aleatorio.nextDouble() * (receita ? 9 : 7)) + 1;
+				int status = aleatorio.nextInt(10);
+				linhas[i] = new Object[] {
+						proximoId++,
+						DESCRICOES[aleatorio.nextInt(DESCRICOES.length)],
+						aleatorio.nextInt(12) + 1,
+						configuracao.getAnoInicial() + aleatorio.nextInt(anos),
+						idsUsuarios[usuario],
+						BigDecimal.valueOf(Math.round(valor * 100), 2),
+						Date.valueOf(referencia.minusDays(aleatorio.nextInt(365 * anos))),
+						receita ? TipoLancamento.RECEITA.name() : TipoLancamento.DESPESA.name(),
+						(status < 6 ? StatusLancamento.EFETIVADO : status < 9 ? StatusLancamento.PENDENTE
+								: StatusLancamento.CANCELADO).name() };
+			}
+			List<Object[]> lote = Arrays.asList(linhas).subList(0, quantidade);
+			transactionTemplate.execute(t -> jdbcTemplate.batchUpdate(
+					"insert into financas.lancamento (id, descricao, mes, ano, id_usuario, valor, data_cadastra, tipo, status, versao) "
+							+ "values (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)",
+					lote, quantidade, GeradorDados::preencher));
+			gerados += quantidade;
+		}
+		return porUsuario;
+	}
+
+	private static void preencher(PreparedStatement ps, Object[] linha) throws SQLException {
+		for (int i = 0; i < linha.length; i++) {
+			ps.setObject(i + 1, linha[i]);
+		}
+	}
+
+	// funcao acumulada de P(k) proporcional a 1 / k^s, para sorteio por busca binaria
+	static double[] distribuicaoZipf(int elementos, double expoente) {
+		double[] acumulada = new double[elementos];
+		double soma = 0;
+		for (int k = 0; k < elementos; k++) {
+			soma += 1 / Math.pow(k + 1, expoente);
+			acumulada[k] = soma;
+		}
+		for (int k = 0; k < elementos; k++) {
+			acumulada[k] /= soma;
+		}
+		return acumulada;
+	}
+
+	static int sortear(double[] acumulada, double sorteio) {
+		int posicao = Arrays.binarySearch(acumulada, sorteio);
+		return Math.min(posicao >= 0 ? posicao : -posicao - 1, acumulada.length - 1);
+	}
+
+	private DataFieldMaxValueIncrementer sequenciaLancamento() {
+		String banco;
+		try {
+			banco = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), "getDatabaseProductName");
+		} catch (MetaDataAccessException e) {
+			throw new IllegalStateException(e);
+		}
+		if ("H2".equals(banco)) {
+			return new H2SequenceMaxValueIncrementer(jdbcTemplate.getDataSource(), "financas.lancamento_seq");
+		}
+		return new PostgresSequenceMaxValueIncrementer(jdbcTemplate.getDataSource(), "financas.lancamento_seq");
+	}
+
+	public static void main(String[] args) {
+		try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(MinhasfinancasApplication.class)
+				.properties("server.port=0", "spring.main.banner-mode=off")
+				.run(args)) {
+			Environment ambiente = contexto.getEnvironment();
+			Configuracao configuracao = Configuracao.builder()
+					.usuarios(ambiente.getProperty("carga.usuarios", Integer.class, 1000))
+					.lancamentos(ambiente.getProperty("carga.lancamentos", Long.class, 1_000_000L))
+					.expoenteZipf(ambiente.getProperty("carga.zipf", Double.class, 1.1))
+					.anoInicial(ambiente.getProperty("carga.ano-inicial", Integer.class, 2015))
+					.anoFinal(ambiente.getProperty("carga.ano-final", Integer.class, 2020))
+					.lote(ambiente.getProperty("carga.lote", Integer.class, 5000))
+					.semente(ambiente.getProperty("carga.semente", Long.class, 42L))
+					.prefixo(ambiente.getProperty("carga.prefixo", "carga"))
+					.build();
+
+			GeradorDados gerador = new GeradorDados(contexto.getBean(DataSource.class),
+					contexto.getBean(PlatformTransactionManager.class), contexto.getBean(SaldoUsuarioService.class),
+					contexto.getBean(ResumoMensalService.class), contexto.getBean(BuscaDescricaoService.class));
+			Resultado resultado = gerador.gerar(configuracao);
+
+			long[] ordenado = resultado.getLancamentosPorUsuario().clone();
+			Arrays.sort(ordenado);
+			System.out.printf("%d usuarios e %d lancamentos em %.1f s (%.0f lancamentos/s)%n", configuracao.getUsuarios(),
+					configuracao.getLancamentos(), resultado.getSegundos(),
+					configuracao.getLancamentos() / resultado.getSegundos());
+			System.out.printf("lancamentos por usuario: maximo %d, mediana %d, minimo %d%n", ordenado[ordenado.length - 1],
+					ordenado[ordenado.length / 2], ordenado[0]);
+		}
+	}
+
+}
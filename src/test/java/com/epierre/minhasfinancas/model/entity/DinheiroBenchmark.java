@@ -0,0 +1,69 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Soma de receitas e despesas de um usuario, como no recalculo do saldo e
+ * nas agregacoes, com BigDecimal e com Dinheiro.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DinheiroBenchmark {
+
+	@Param({ "10000" })
+	int lancamentos;
+
+	BigDecimal[] decimais;
+	Dinheiro[] valores;
+	boolean[] receitas;
+
+	@Setup
+	public void preparar() {
+		Random aleatorio = new Random(42);
+		decimais = new BigDecimal[lancamentos];
+		valores = new Dinheiro[lancamentos];
+		receitas = new boolean[lancamentos];
+		for (int i = 0; i < lancamentos; i++) {
+			decimais[i] = BigDecimal.valueOf(aleatorio.nextInt(1_000_000), 2);
+			valores[i] = Dinheiro.de(decimais[i]);
+			receitas[i] = aleatorio.nextBoolean();
+		}
+	}
+
+	@Benchmark
+	public BigDecimal saldoComBigDecimal() {
+		BigDecimal saldo = BigDecimal.ZERO;
+		for (int i = 0; i < lancamentos; i++) {
+			saldo = receitas[i] ? saldo.add(decimais[i]) : saldo.subtract(decimais[i]);
+		}
+		return saldo;
+	}
+
+	@Benchmark
+	public Dinheiro saldoComDinheiro() {
+		Dinheiro saldo = Dinheiro.ZERO;
+		for (int i = 0; i < lancamentos; i++) {
+			saldo = receitas[i] ? saldo.somar(valores[i]) : saldo.subtrair(valores[i]);
+		}
+		return saldo;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.epierre.minhasfinancas.model.entity;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public class DinheiroTest {
+
+	@Test
+	public void deveSomarESubtrairEmCentavos() {
+		Dinheiro valor = Dinheiro.de(new BigDecimal("10.10")).somar(Dinheiro.deCentavos(5)).subtrair(Dinheiro.deCentavos(20));
+
+		Assertions.assertThat(valor.getCentavos()).isEqualTo(995);
+		Assertions.assertThat(valor.toBigDecimal()).isEqualByComparingTo("9.95");
+	}
+
+	@Test
+	public void deveLancarErroAoEstourar() {
+		Throwable erro = Assertions.catchThrowable(() -> Dinheiro.deCentavos(Long.MAX_VALUE).somar(Dinheiro.deCentavos(1)));
+
+		Assertions.assertThat(erro).isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	public void deveArredondarOEmpateComoABase() {
+		Assertions.assertThat(Dinheiro.de(new BigDecimal("0.125")).getCentavos()).isEqualTo(13);
+		Assertions.assertThat(Dinheiro.de(new BigDecimal("-0.125")).getCentavos()).isEqualTo(-13);
+		Assertions.assertThat(Dinheiro.de(new BigDecimal("0.135")).getCentavos()).isEqualTo(14);
+	}
+
+	@Test
+	public void deveFormatarComDuasCasas() {
+		Assertions.assertThat(Dinheiro.deCentavos(1000).toString()).isEqualTo("10.00");
+		Assertions.assertThat(Dinheiro.deCentavos(-5).toString()).isEqualTo("-0.05");
+		Assertions.assertThat(Dinheiro.deCentavos(Long.MIN_VALUE).toString())
+				.isEqualTo(BigDecimal.valueOf(Long.MIN_VALUE, 2).toPlainString());
+	}
+
+	@Test
+	public void deveSerializarComoNumero() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+
+		String json = mapper.writeValueAsString(Dinheiro.deCentavos(12345));
+
+		Assertions.assertThat(json).isEqualTo("123.45");
+		Assertions.assertThat(mapper.readValue("123.456", Dinheiro.class)).isEqualTo(Dinheiro.deCentavos(12346));
+	}
+
+	@Test
+	public void deveSerializarComoNumeroNosFormatosBinarios() throws Exception {
+		for (ObjectMapper mapper : Arrays.asList(new ObjectMapper(new SmileFactory()), new ObjectMapper(new CBORFactory()))) {
+			byte[] bytes = mapper.writeValueAsBytes(Dinheiro.deCentavos(-12345));
+
+			Assertions.assertThat(mapper.readTree(bytes).isNumber()).isTrue();
+			Assertions.assertThat(mapper.readValue(bytes, Dinheiro.class)).isEqualTo(Dinheiro.deCentavos(-12345));
+		}
+	}
+
+}
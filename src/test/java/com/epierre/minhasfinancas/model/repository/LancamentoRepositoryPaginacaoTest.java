@@ -0,0 +1,106 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureTestEntityManager
+@Transactional
+@ActiveProfiles("h2")
+public class LancamentoRepositoryPaginacaoTest {
+
+	@Autowired
+	LancamentoRepository repository;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = entityManager.persist(UsuarioRepositoryTest.criarUsuario());
+		Usuario outroUsuario = entityManager.persist(Usuario.builder().nome("outro").email("outro@email.com").build());
+
+		for (int ano = 2021; ano >= 2019; ano--) {
+			for (int mes = 12; mes >= 1; mes--) {
+				persistir(usuario, ano, mes, "conta de luz");
+				persistir(usuario, ano, mes, "salario");
+				persistir(outroUsuario, ano, mes, "conta de luz");
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	public void devePercorrerTodasAsPaginasEmOrdemDeAnoMesEId() {
+		Lancamento filtro = Lancamento.builder().usuario(usuario).build();
+
+		List<Lancamento> todos = new ArrayList<>();
+		Lancamento posicao = null;
+		List<Lancamento> pagina;
+		do {
+			pagina = repository.buscarPagina(filtro, posicao, 10);
+			todos.addAll(pagina);
+			posicao = pagina.isEmpty() ? null : pagina.get(pagina.size() - 1);
+		} while (pagina.size() == 10);
+
+		Assertions.assertThat(todos).hasSize(72);
+		Assertions.assertThat(todos).extracting(l -> l.getUsuario().getId()).containsOnly(usuario.getId());
+		for (int i = 1; i < todos.size(); i++) {
+			Lancamento anterior = todos.get(i - 1);
+			Lancamento atual = todos.get(i);
+			long chaveAnterior = anterior.getAno() * 100L + anterior.getMes();
+			long chaveAtual = atual.getAno() * 100L + atual.getMes();
+			Assertions.assertThat(chaveAtual > chaveAnterior
+					|| (chaveAtual == chaveAnterior && atual.getId() > anterior.getId())).isTrue();
+		}
+	}
+
+	@Test
+	public void deveAplicarOsFiltrosDeDescricaoMesEAno() {
+		Lancamento filtro = Lancamento.builder().usuario(usuario).descricao("LUZ").ano(2020).build();
+
+		List<Lancamento> pagina = repository.buscarPagina(filtro, null, 100);
+
+		Assertions.assertThat(pagina).hasSize(12);
+		Assertions.assertThat(pagina).extracting(Lancamento::getAno).containsOnly(2020);
+		Assertions.assertThat(pagina).extracting(Lancamento::getMes).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+
+		filtro.setMes(6);
+		Assertions.assertThat(repository.buscarPagina(filtro, null, 100)).hasSize(1);
+	}
+
+	private void persistir(Usuario dono, int ano, int mes, String descricao) {
+		entityManager.persist(Lancamento.builder()
+				.descricao(descricao)
+				.ano(ano)
+				.mes(mes)
+				.valor(BigDecimal.TEN)
+				.tipo(TipoLancamento.DESPESA)
+				.status(StatusLancamento.PENDENTE)
+				.usuario(dono)
+				.build());
+	}
+
+}
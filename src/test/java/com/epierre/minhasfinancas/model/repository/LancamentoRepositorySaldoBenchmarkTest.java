@@ -0,0 +1,120 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.math.BigDecimal;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.epierre.minhasfinancas.Medicao;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+
+/**
+ * Compara a consulta unica com somas condicionais com as duas consultas por
+ * tipo usadas anteriormente no calculo do saldo, contando statements pelas
+ * estatisticas do Hibernate e medindo a latencia media de cada abordagem.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestEntityManager
+@Transactional
+@ActiveProfiles("h2")
+@Category(Medicao.class)
+public class LancamentoRepositorySaldoBenchmarkTest {
+
+	static final int LANCAMENTOS = 5_000;
+	static final int AQUECIMENTO = 200;
+	static final int REPETICOES = 1_000;
+
+	@Autowired
+	LancamentoRepository repository;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	Long idUsuario;
+	Statistics estatisticas;
+
+	@Before
+	public void setUp() {
+		Usuario usuario = entityManager.persist(UsuarioRepositoryTest.criarUsuario());
+		idUsuario = usuario.getId();
+
+		StatusLancamento[] status = StatusLancamento.values();
+		for (int i = 0; i < LANCAMENTOS; i++) {
+			entityManager.persist(Lancamento.builder()
+					.descricao("lancamento " + i)
+					.ano(2020)
+					.mes(i % 12 + 1)
+					.valor(BigDecimal.valueOf(i % 100 + 1))
+					.tipo(i % 3 == 0 ? TipoLancamento.DESPESA : TipoLancamento.RECEITA)
+					.status(status[i % status.length])
+					.usuario(usuario)
+					.build());
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	public void deveCalcularOSaldoComUmaUnicaConsulta() {
+		estatisticas.clear();
+		BigDecimal receitas = repository.obterSaldoPorTipoLancamentoEUsuario(idUsuario, TipoLancamento.RECEITA);
+		BigDecimal despesas = repository.obterSaldoPorTipoLancamentoEUsuario(idUsuario, TipoLancamento.DESPESA);
+		long statementsPorTipo = estatisticas.getPrepareStatementCount();
+
+		estatisticas.clear();
+		ResumoSaldo resumo = repository.obterResumoSaldoPorUsuario(idUsuario);
+		long statementsResumo = estatisticas.getPrepareStatementCount();
+
+		Assertions.assertThat(resumo.getReceitas()).isEqualByComparingTo(receitas);
+		Assertions.assertThat(resumo.getDespesas()).isEqualByComparingTo(despesas);
+		Assertions.assertThat(resumo.getPendente().add(resumo.getEfetivado()).add(resumo.getCancelado()))
+				.isEqualByComparingTo(receitas.subtract(despesas));
+		Assertions.assertThat(statementsPorTipo).isEqualTo(2);
+		Assertions.assertThat(statementsResumo).isEqualTo(1);
+
+		double porTipo = medir(() -> {
+			repository.obterSaldoPorTipoLancamentoEUsuario(idUsuario, TipoLancamento.RECEITA);
+			repository.obterSaldoPorTipoLancamentoEUsuario(idUsuario, TipoLancamento.DESPESA);
+		});
+		double resumido = medir(() -> repository.obterResumoSaldoPorUsuario(idUsuario));
+
+		System.out.printf("saldo com %d lancamentos: duas consultas por tipo %.1f us (%d statements), "
+				+ "consulta unica %.1f us (%d statement)%n", LANCAMENTOS, porTipo, statementsPorTipo, resumido, statementsResumo);
+	}
+
+	private double medir(Runnable consulta) {
+		for (int i = 0; i < AQUECIMENTO; i++) {
+			consulta.run();
+		}
+		long inicio = System.nanoTime();
+		for (int i = 0; i < REPETICOES; i++) {
+			consulta.run();
+		}
+		return (System.nanoTime() - inicio) / 1_000.0 / REPETICOES;
+	}
+
+}
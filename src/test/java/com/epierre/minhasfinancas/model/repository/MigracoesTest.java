@@ -0,0 +1,118 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.assertj.core.api.Assertions;
+import org.flywaydb.core.Flyway;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+// aplica as migracoes de db/migration em um PostgreSQL embutido, com a configuracao de application.properties
+public class MigracoesTest {
+
+	private static EmbeddedPostgres postgres;
+
+	@BeforeClass
+	public static void iniciar() throws IOException {
+		postgres = EmbeddedPostgres.start();
+	}
+
+	@AfterClass
+	public static void encerrar() throws IOException {
+		postgres.close();
+	}
+
+	@Test
+	public void deveCriarOEsquemaEmUmBancoVazio() {
+		DataSource dataSource = novoBanco("vazio");
+
+		migrar(dataSource);
+
+		List<String> tabelas = new JdbcTemplate(dataSource).queryForList(
+				"select table_name from information_schema.tables where table_schema = 'financas'", String.class);
+		Assertions.assertThat(tabelas).contains("usuario", "lancamento", "saldo_usuario", "resumo_mensal", "shard_usuario",
+				"lancamento_arquivado", "saldo_transportado", "recorrencia");
+		List<String> indices = new JdbcTemplate(dataSource).queryForList(
+				"select indexname from pg_indexes where schemaname = 'financas'", String.class);
+		Assertions.assertThat(indices).contains("idx_lancamento_usuario_ano_mes_id", "idx_recorrencia_proxima_competencia");
+		// a recorrencia usa o pooled do Hibernate com allocationSize 50, como o lancamento
+		Assertions.assertThat(new JdbcTemplate(dataSource).queryForObject(
+				"select increment_by from pg_sequences where schemaname = 'financas' and sequencename = 'recorrencia_seq'",
+				Long.class)).isEqualTo(50L);
+	}
+
+	@Test
+	public void deveMarcarOBancoAnteriorAsMigracoesEPreencherOsDerivados() {
+		DataSource dataSource = novoBanco("anterior");
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+		// o esquema que os bancos ja em uso tem, com dados
+		jdbc.execute("create schema financas");
+		new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__esquema_inicial.sql")).execute(dataSource);
+		jdbc.update("insert into financas.usuario (nome, email, senha) values ('a', 'a@email.com', 'senha'), ('b', 'b@email.com', 'senha')");
+		jdbc.update("insert into financas.lancamento (descricao, mes, ano, id_usuario, valor, tipo, status) values "
+				+ "('salario', 1, 2019, 1, 1000.50, 'RECEITA', 'EFETIVADO'), "
+				+ "('aluguel', 1, 2019, 1, 400.25, 'DESPESA', 'EFETIVADO'), "
+				+ "('mercado', 2, 2019, 1, 100, 'DESPESA', 'PENDENTE'), "
+				+ "('luz', 2, 2019, 2, 50, 'DESPESA', 'CANCELADO')");
+
+		migrar(dataSource);
+
+		Assertions.assertThat(jdbc.queryForObject(
+				"select type from financas.flyway_schema_history where version = '1'", String.class)).isEqualTo("BASELINE");
+		List<Map<String, Object>> saldos = jdbc.queryForList(
+				"select id_usuario, receitas, despesas from financas.saldo_usuario order by id_usuario");
+		Assertions.assertThat(saldos).hasSize(2);
+		Assertions.assertThat(saldos.get(0).get("receitas").toString()).isEqualTo("1000.50");
+		Assertions.assertThat(saldos.get(0).get("despesas").toString()).isEqualTo("500.25");
+		Assertions.assertThat(saldos.get(1).get("receitas").toString()).isEqualTo("0.00");
+		Assertions.assertThat(saldos.get(1).get("despesas").toString()).isEqualTo("50.00");
+
+		List<Map<String, Object>> resumos = jdbc.queryForList(
+				"select id_usuario, mes, tipo, status, total, quantidade from financas.resumo_mensal order by id_usuario, mes, tipo");
+		Assertions.assertThat(resumos).hasSize(4);
+		Assertions.assertThat(resumos.get(0).get("tipo")).isEqualTo("DESPESA");
+		Assertions.assertThat(resumos.get(0).get("total").toString()).isEqualTo("400.25");
+		Assertions.assertThat(resumos.get(1).get("tipo")).isEqualTo("RECEITA");
+		Assertions.assertThat(resumos.get(1).get("total").toString()).isEqualTo("1000.50");
+		Assertions.assertThat(resumos.get(3).get("status")).isEqualTo("CANCELADO");
+		Assertions.assertThat(resumos.get(3).get("quantidade")).isEqualTo(1L);
+
+		Assertions.assertThat(jdbc.queryForList("select versao from financas.lancamento", Long.class)).containsOnly(0L);
+		Assertions.assertThat(jdbc.queryForList("select versao from financas.saldo_usuario", Long.class)).containsOnly(0L, 0L);
+
+		// os usuarios anteriores ao diretorio ficam no shard 0
+		Assertions.assertThat(jdbc.queryForList("select id_usuario from financas.shard_usuario where shard = 0 and geracao = 0",
+				Long.class)).containsExactlyInAnyOrder(1L, 2L);
+
+		// o pooled usa os 50 ids anteriores ao valor devolvido pela sequence
+		long maiorId = jdbc.queryForObject("select max(id) from financas.lancamento", Long.class);
+		Assertions.assertThat(jdbc.queryForObject("select nextval('financas.lancamento_seq')", Long.class) - 49)
+				.isGreaterThan(maiorId);
+	}
+
+	private static void migrar(DataSource dataSource) {
+		Flyway.configure()
+				.dataSource(dataSource)
+				.schemas("financas")
+				.baselineOnMigrate(true)
+				.baselineVersion("1")
+				.load()
+				.migrate();
+	}
+
+	private static DataSource novoBanco(String nome) {
+		new JdbcTemplate(postgres.getPostgresDatabase()).execute("create database " + nome);
+		return postgres.getDatabase("postgres", nome);
+	}
+
+}
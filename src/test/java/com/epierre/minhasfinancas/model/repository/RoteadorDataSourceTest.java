@@ -0,0 +1,132 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class RoteadorDataSourceTest {
+
+	private static final String PRIMARIA = "jdbc:h2:mem:primaria";
+	private static final String REPLICA_A = "jdbc:h2:mem:replica-a";
+	private static final String REPLICA_B = "jdbc:h2:mem:replica-b";
+	// nenhuma base escuta nessa porta: a conexao falha na hora
+	private static final String INDISPONIVEL = "jdbc:h2:tcp://localhost:1/indisponivel";
+
+	@After
+	public void tearDown() {
+		RoteadorDataSource.definirUsuario(null);
+	}
+
+	@Test
+	public void deveLerDasReplicasEmRodizioEEscreverNaPrimaria() {
+		DataSource dataSource = roteador(Duration.ofSeconds(5), REPLICA_A, REPLICA_B);
+
+		Assertions.assertThat(Arrays.asList(base(dataSource, true), base(dataSource, true), base(dataSource, true)))
+				.containsExactly(REPLICA_A, REPLICA_B, REPLICA_A);
+		Assertions.assertThat(base(dataSource, false)).isEqualTo(PRIMARIA);
+	}
+
+	@Test
+	public void deveIgnorarReplicaIndisponivel() {
+		Assertions.assertThat(base(roteador(Duration.ofSeconds(5), INDISPONIVEL, REPLICA_B), true)).isEqualTo(REPLICA_B);
+		Assertions.assertThat(base(roteador(Duration.ofSeconds(5), INDISPONIVEL), true)).isEqualTo(PRIMARIA);
+	}
+
+	@Test
+	public void deveLerDaPrimariaAposEscreverDentroDaTolerancia() throws Exception {
+		DataSource dataSource = roteador(Duration.ofMillis(200), REPLICA_A);
+
+		RoteadorDataSource.definirUsuario(1L);
+		escrever(dataSource, "create table if not exists escrita (id int)");
+		Assertions.assertThat(base(dataSource, true)).isEqualTo(PRIMARIA);
+
+		RoteadorDataSource.definirUsuario(2L);
+		Assertions.assertThat(base(dataSource, true)).isEqualTo(REPLICA_A);
+
+		Thread.sleep(300);
+		RoteadorDataSource.definirUsuario(1L);
+		Assertions.assertThat(base(dataSource, true)).isEqualTo(REPLICA_A);
+	}
+
+	@Test
+	public void naoDevePrenderAPrimariaATransacaoQueSoConsultou() {
+		DataSource dataSource = roteador(Duration.ofSeconds(5), REPLICA_A);
+
+		RoteadorDataSource.definirUsuario(1L);
+		Assertions.assertThat(base(dataSource, false)).isEqualTo(PRIMARIA);
+		escrever(dataSource, "select 1");
+		Assertions.assertThat(base(dataSource, true)).isEqualTo(REPLICA_A);
+
+		escrever(dataSource, "create table if not exists escrita (id int)");
+		RoteadorDataSource.definirUsuario(2L);
+		Assertions.assertThat(base(dataSource, true)).isEqualTo(REPLICA_A);
+		// insert preparado, sem passar por createStatement
+		new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+				.execute(t -> new JdbcTemplate(dataSource).update("insert into escrita values (?)", 1));
+		Assertions.assertThat(base(dataSource, true)).isEqualTo(PRIMARIA);
+	}
+
+	@Test
+	public void deveRotearAConexaoComUsuarioESenha() throws Exception {
+		DataSource dataSource = roteador(Duration.ofSeconds(5), REPLICA_A);
+		TransactionTemplate transacao = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transacao.setReadOnly(true);
+
+		String url = transacao.execute(t -> {
+			try (Connection conexao = dataSource.getConnection("sa", "")) {
+				return conexao.getMetaData().getURL();
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Assertions.assertThat(url).isEqualTo(REPLICA_A);
+	}
+
+	private static DataSource roteador(Duration tolerancia, String... replicas) {
+		List<DataSource> bases = new ArrayList<>();
+		for (String replica : replicas) {
+			bases.add(new DriverManagerDataSource(replica + ";DB_CLOSE_DELAY=-1", "sa", ""));
+		}
+		return new LazyConnectionDataSourceProxy(
+				new RoteadorDataSource(new DriverManagerDataSource(PRIMARIA + ";DB_CLOSE_DELAY=-1", "sa", ""), bases, tolerancia));
+	}
+
+	private static void escrever(DataSource dataSource, String sql) {
+		new TransactionTemplate(new DataSourceTransactionManager(dataSource)).execute(t -> {
+			try (Statement instrucao = DataSourceUtils.getConnection(dataSource).createStatement()) {
+				return instrucao.execute(sql);
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private static String base(DataSource dataSource, boolean somenteLeitura) {
+		TransactionTemplate transacao = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transacao.setReadOnly(somenteLeitura);
+		return transacao.execute(t -> {
+			try {
+				return DataSourceUtils.getConnection(dataSource).getMetaData().getURL();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import javax.persistence.EntityManager;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.Session;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "minhasfinancas.leitura.replicas=jdbc:h2:mem:replica-contexto;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("h2")
+public class RoteamentoLeituraTest {
+
+	@Autowired
+	EntityManager entityManager;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	public void deveEnviarAsTransacoesSomenteLeituraDoJpaParaAReplica() {
+		Assertions.assertThat(base(true)).startsWith("jdbc:h2:mem:replica-contexto");
+		Assertions.assertThat(base(false)).startsWith("jdbc:h2:mem:financas-");
+	}
+
+	private String base(boolean somenteLeitura) {
+		TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+		transacao.setReadOnly(somenteLeitura);
+		return transacao.execute(t -> entityManager.unwrap(Session.class)
+				.doReturningWork(conexao -> conexao.getMetaData().getURL()));
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.epierre.minhasfinancas.model.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.exception.ConflitoAtualizacaoException;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.service.LancamentoService;
+import com.epierre.minhasfinancas.service.RebalanceamentoService;
+import com.epierre.minhasfinancas.service.UsuarioService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:file:./target/shards/shard0-${random.uuid};DB_CLOSE_ON_EXIT=FALSE;INIT=CREATE SCHEMA IF NOT EXISTS financas",
+		"minhasfinancas.shards.urls=jdbc:h2:file:./target/shards/shard1-${random.uuid};DB_CLOSE_ON_EXIT=FALSE;INIT=CREATE SCHEMA IF NOT EXISTS financas,"
+				+ "jdbc:h2:file:./target/shards/shard2-${random.uuid};DB_CLOSE_ON_EXIT=FALSE;INIT=CREATE SCHEMA IF NOT EXISTS financas" })
+@ActiveProfiles("h2")
+public class ShardsTest {
+
+	private static final long FAIXA_SEQUENCE = 1_000_000_000L;
+
+	private static boolean esquemaCopiado;
+
+	@Autowired
+	Shards shards;
+
+	@Autowired
+	UsuarioService usuarioService;
+
+	@Autowired
+	LancamentoService lancamentoService;
+
+	@Autowired
+	RebalanceamentoService rebalanceamentoService;
+
+	@Autowired
+	LancamentoRepository lancamentoRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	// o Hibernate so cria o esquema no shard 0; os demais recebem uma copia sem dados
+	@Before
+	public void copiarEsquema() {
+		if (esquemaCopiado) {
+			return;
+		}
+		List<String> comandos = jdbc(0).queryForList("script nodata", String.class).stream()
+				.filter(c -> c.startsWith("CREATE SEQUENCE") || c.startsWith("CREATE CACHED TABLE")
+						|| c.startsWith("CREATE MEMORY TABLE") || c.startsWith("ALTER TABLE")
+						|| c.startsWith("CREATE INDEX") || c.startsWith("CREATE UNIQUE INDEX"))
+				.collect(Collectors.toList());
+		for (int shard = 1; shard < shards.quantidade(); shard++) {
+			JdbcTemplate jdbc = jdbc(shard);
+			comandos.forEach(jdbc::execute);
+			jdbc.execute("alter sequence financas.lancamento_seq restart with " + (shard * FAIXA_SEQUENCE + 1));
+		}
+		esquemaCopiado = true;
+	}
+
+	@Test
+	public void deveGravarOsLancamentosNoShardDoUsuario() {
+		for (int i = 0; i < 3; i++) {
+			Usuario usuario = criarUsuario("gravar" + i);
+			int shard = shards.shardDoUsuario(usuario.getId());
+			lancamentoService.salvar(lancamento(usuario, 10, TipoLancamento.RECEITA));
+			lancamentoService.salvar(lancamento(usuario, 4, TipoLancamento.DESPESA));
+
+			for (int outro = 0; outro < shards.quantidade(); outro++) {
+				Assertions.assertThat(contar(outro, "lancamento", usuario.getId())).isEqualTo(outro == shard ? 2 : 0);
+			}
+			Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal()).isEqualByComparingTo("6");
+			Assertions.assertThat(lancamentoService.buscarLinhas(filtro(usuario))).hasSize(2);
+		}
+	}
+
+	@Test
+	public void deveObterLancamentoPeloIdEmQualquerShard() {
+		for (int i = 0; i < 3; i++) {
+			Usuario usuario = criarUsuario("obter" + i);
+			Lancamento salvo = lancamentoService.salvar(lancamento(usuario, 10, TipoLancamento.RECEITA));
+
+			Assertions.assertThat(lancamentoService.obterPorId(salvo.getId()))
+					.hasValueSatisfying(l -> Assertions.assertThat(l.getDescricao()).isEqualTo("lancamento"));
+		}
+	}
+
+	@Test
+	public void deveMoverUsuarioParaOutroShard() {
+		Usuario usuario = criarUsuario("mover");
+		int origem = shards.shardDoUsuario(usuario.getId());
+		int destino = (origem + 1) % shards.quantidade();
+		lancamentoService.salvar(lancamento(usuario, 10, TipoLancamento.RECEITA));
+		lancamentoService.salvar(lancamento(usuario, 3, TipoLancamento.DESPESA));
+
+		rebalanceamentoService.moverUsuario(usuario.getId(), destino);
+
+		Assertions.assertThat(shards.shardDoUsuario(usuario.getId())).isEqualTo(destino);
+		Assertions.assertThat(contar(origem, "lancamento", usuario.getId())).isZero();
+		Assertions.assertThat(contar(origem, "saldo_usuario", usuario.getId())).isZero();
+		Assertions.assertThat(contar(destino, "lancamento", usuario.getId())).isEqualTo(2);
+		Assertions.assertThat(contar(destino, "saldo_usuario", usuario.getId())).isEqualTo(1);
+		Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal()).isEqualByComparingTo("7");
+
+		lancamentoService.salvar(lancamento(usuario, 5, TipoLancamento.RECEITA));
+		Assertions.assertThat(contar(destino, "lancamento", usuario.getId())).isEqualTo(3);
+		Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal()).isEqualByComparingTo("12");
+		Assertions.assertThat(lancamentoService.obterResumoMensalPorUsuario(usuario.getId(), 2020)).isNotEmpty();
+	}
+
+	@Test
+	public void deveCopiarOUsuarioParaOShardNaPrimeiraGravacao() {
+		Usuario usuario = criarUsuario("copiar0");
+		for (int i = 1; shards.shardDoUsuario(usuario.getId()) == 0; i++) {
+			usuario = criarUsuario("copiar" + i);
+		}
+		int shard = shards.shardDoUsuario(usuario.getId());
+		Assertions.assertThat(jdbc(shard).queryForObject("select count(*) from financas.usuario where id = ?",
+				Integer.class, usuario.getId())).isZero();
+
+		lancamentoService.salvar(lancamento(usuario, 10, TipoLancamento.RECEITA));
+
+		Assertions.assertThat(jdbc(shard).queryForObject("select count(*) from financas.usuario where id = ?",
+				Integer.class, usuario.getId())).isEqualTo(1);
+		Assertions.assertThat(jdbc(shard).queryForObject("select shard from financas.shard_usuario where id_usuario = ?",
+				Integer.class, usuario.getId())).isEqualTo(shard);
+	}
+
+	// simula uma instancia que ainda roteia o usuario para a origem depois da movimentacao
+	@Test
+	public void deveRecusarAOperacaoNoShardAnteriorDoUsuario() {
+		Usuario usuario = criarUsuario("recusar");
+		int origem = shards.shardDoUsuario(usuario.getId());
+		int destino = (origem + 1) % shards.quantidade();
+		lancamentoService.salvar(lancamento(usuario, 10, TipoLancamento.RECEITA));
+		rebalanceamentoService.moverUsuario(usuario.getId(), destino);
+
+		Usuario movido = usuario;
+		TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+		Assertions.assertThatThrownBy(() -> RoteadorShards.executar(origem, movido.getId(),
+				() -> transacao.execute(status -> lancamentoRepository.saveAndFlush(lancamento(movido, 5, TipoLancamento.RECEITA)))))
+				.isInstanceOf(ConflitoAtualizacaoException.class);
+		Assertions.assertThatThrownBy(() -> RoteadorShards.executar(origem, movido.getId(),
+				lancamentoRepository::count))
+				.isInstanceOf(ConflitoAtualizacaoException.class);
+
+		Assertions.assertThat(contar(origem, "lancamento", usuario.getId())).isZero();
+		Assertions.assertThat(contar(destino, "lancamento", usuario.getId())).isEqualTo(1);
+		Assertions.assertThat(jdbc(0).queryForObject("select geracao from financas.shard_usuario where id_usuario = ?",
+				Long.class, usuario.getId())).isEqualTo(1L);
+	}
+
+	private Usuario criarUsuario(String nome) {
+		return usuarioService.salvarUsuario(
+				Usuario.builder().nome(nome).email(nome + "@email.com").senha("senha").build());
+	}
+
+	private static Lancamento lancamento(Usuario usuario, int valor, TipoLancamento tipo) {
+		return Lancamento.builder().usuario(usuario).ano(2020).mes(1).descricao("lancamento")
+				.valor(BigDecimal.valueOf(valor)).tipo(tipo).status(StatusLancamento.PENDENTE).build();
+	}
+
+	private static Lancamento filtro(Usuario usuario) {
+		return Lancamento.builder().usuario(usuario).build();
+	}
+
+	private int contar(int shard, String tabela, Long idUsuario) {
+		return jdbc(shard).queryForObject("select count(*) from financas." + tabela + " where id_usuario = ?",
+				Integer.class, idUsuario);
+	}
+
+	private JdbcTemplate jdbc(int shard) {
+		return new JdbcTemplate(shards.dataSource(shard));
+	}
+
+}
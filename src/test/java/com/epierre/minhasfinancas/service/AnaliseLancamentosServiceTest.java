@@ -0,0 +1,229 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.DimensaoAnalise;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento.Operacao;
+import com.epierre.minhasfinancas.service.impl.AnaliseLancamentosServiceImpl;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "minhasfinancas.analise.memoria-maxima=8KB")
+@ActiveProfiles("h2")
+public class AnaliseLancamentosServiceTest {
+
+	static final List<DimensaoAnalise> TODAS = Arrays.asList(DimensaoAnalise.values());
+
+	@Autowired
+	AnaliseLancamentosService service;
+
+	@Autowired
+	LancamentoService lancamentoService;
+
+	@Autowired
+	LancamentoRepository lancamentoRepository;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	ArquivamentoService arquivamentoService;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = criarUsuario();
+	}
+
+	@Test
+	public void deveTotalizarComoAsConsultasNoBanco() {
+		salvarLancamentos(usuario, 30);
+
+		verificarTotais();
+		List<TotalAnalise> total = service.totalizar(filtro(), Collections.emptyList());
+		Assertions.assertThat(total).hasSize(1);
+		Assertions.assertThat(total.get(0).getQuantidade()).isEqualTo(30);
+		Assertions.assertThat(total.get(0).getMes()).isNull();
+	}
+
+	@Test
+	public void deveTotalizarOSaldoSemAgruparPorTipo() {
+		lancamentoService.salvar(criarLancamento(usuario, 1, 100, TipoLancamento.RECEITA));
+		lancamentoService.salvar(criarLancamento(usuario, 1, 30, TipoLancamento.DESPESA));
+		lancamentoService.salvar(criarLancamento(usuario, 2, 50, TipoLancamento.DESPESA));
+
+		List<TotalAnalise> porMes = service.totalizar(filtro(), Collections.singletonList(DimensaoAnalise.MES));
+
+		Assertions.assertThat(porMes).extracting(TotalAnalise::getMes).containsExactly(1, 2);
+		Assertions.assertThat(porMes).extracting(TotalAnalise::getTotal)
+				.containsExactly(Dinheiro.deCentavos(7000), Dinheiro.deCentavos(-5000));
+		Assertions.assertThat(porMes).extracting(TotalAnalise::getQuantidade).containsExactly(2l, 1l);
+		Assertions.assertThat(service.totalizar(filtro(), Collections.emptyList()).get(0).getTotal())
+				.isEqualTo(Dinheiro.deCentavos(2000));
+	}
+
+	@Test
+	public void deveAcompanharAsGravacoesSemConsultarOBanco() {
+		List<Lancamento> lancamentos = salvarLancamentos(usuario, 30);
+		service.totalizar(filtro(), TODAS);
+
+		lancamentoService.salvar(criarLancamento(usuario, 4, 1000, TipoLancamento.RECEITA));
+		Lancamento alterado = lancamentoService.obterPorId(lancamentos.get(1).getId()).get();
+		alterado.setValor(new BigDecimal("12.34"));
+		lancamentoService.atualizar(alterado);
+		lancamentoService.atualizarStatus(Lancamento.builder().usuario(usuario).mes(2).build(), null,
+				StatusLancamento.EFETIVADO);
+		lancamentoService.deletar(lancamentoService.obterPorId(lancamentos.get(0).getId()).get());
+
+		Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		long antes = estatisticas.getPrepareStatementCount();
+		List<TotalAnalise> totais = service.totalizar(filtro(), TODAS);
+		Assertions.assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(antes);
+		Assertions.assertThat(totais.stream().mapToLong(TotalAnalise::getQuantidade).sum()).isEqualTo(30);
+		verificarTotais();
+	}
+
+	@Test
+	public void naoDeveIncluirDeNovoOLancamentoRemovidoComEventoAtrasado() {
+		Lancamento lancamento = lancamentoService.salvar(criarLancamento(usuario, 1, 100, TipoLancamento.RECEITA));
+		Lancamento incluido = lancamentoService.obterPorId(lancamento.getId()).get();
+		service.totalizar(filtro(), TODAS);
+
+		lancamentoService.deletar(incluido);
+		// o evento da inclusao chega depois do da exclusao
+		((AnaliseLancamentosServiceImpl) service).aoAlterarLancamento(new LancamentoAlteradoEvento(Operacao.INCLUSAO, incluido));
+
+		Assertions.assertThat(service.totalizar(filtro(), TODAS)).isEmpty();
+	}
+
+	@Test
+	public void deveAcumularOSaldoMesAMes() {
+		lancamentoService.salvar(criarLancamento(usuario, 1, 100, TipoLancamento.RECEITA));
+		lancamentoService.salvar(criarLancamento(usuario, 1, 30, TipoLancamento.DESPESA));
+		lancamentoService.salvar(criarLancamento(usuario, 3, 50, TipoLancamento.DESPESA));
+		lancamentoService.salvar(criarLancamento(usuario, 2, 10, TipoLancamento.RECEITA));
+
+		List<SaldoAcumulado> saldos = service.acumularSaldo(filtro());
+
+		Assertions.assertThat(saldos).extracting(SaldoAcumulado::getMes).containsExactly(1, 2, 3);
+		Assertions.assertThat(saldos).extracting(SaldoAcumulado::getSaldo)
+				.containsExactly(Dinheiro.deCentavos(7000), Dinheiro.deCentavos(8000), Dinheiro.deCentavos(3000));
+		Assertions.assertThat(saldos.get(0).getReceitas()).isEqualTo(Dinheiro.deCentavos(10000));
+		Assertions.assertThat(saldos.get(0).getDespesas()).isEqualTo(Dinheiro.deCentavos(3000));
+	}
+
+	@Test
+	public void deveComecarOSaldoAcumuladoPelosAnosArquivados() {
+		Lancamento antigo = criarLancamento(usuario, 12, 500, TipoLancamento.RECEITA);
+		antigo.setAno(2019);
+		lancamentoService.salvar(antigo);
+		Lancamento despesa = criarLancamento(usuario, 11, 200, TipoLancamento.DESPESA);
+		despesa.setAno(2019);
+		lancamentoService.salvar(despesa);
+		lancamentoService.salvar(criarLancamento(usuario, 1, 100, TipoLancamento.RECEITA));
+		arquivamentoService.arquivar(usuario.getId(), 2019);
+
+		List<SaldoAcumulado> saldos = service.acumularSaldo(Lancamento.builder().usuario(usuario).build());
+		Assertions.assertThat(saldos).extracting(SaldoAcumulado::getAno).containsExactly(2020);
+		Assertions.assertThat(saldos.get(0).getSaldo()).isEqualTo(Dinheiro.deCentavos(40000));
+
+		List<SaldoAcumulado> receitas = service.acumularSaldo(
+				Lancamento.builder().usuario(usuario).tipo(TipoLancamento.RECEITA).build());
+		Assertions.assertThat(receitas.get(0).getSaldo()).isEqualTo(Dinheiro.deCentavos(60000));
+		// o ano filtrado comeca do zero, como antes do arquivamento
+		Assertions.assertThat(service.acumularSaldo(filtro()).get(0).getSaldo()).isEqualTo(Dinheiro.deCentavos(10000));
+	}
+
+	@Test
+	public void deveRecarregarOUsuarioQueSaiuDaMemoria() {
+		Usuario outro = criarUsuario();
+		salvarLancamentos(usuario, 200);
+		salvarLancamentos(outro, 200);
+		service.totalizar(filtro(), TODAS);
+		service.totalizar(Lancamento.builder().usuario(outro).build(), TODAS);
+
+		Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		long antes = estatisticas.getPrepareStatementCount();
+		verificarTotais();
+		Assertions.assertThat(estatisticas.getPrepareStatementCount()).isGreaterThan(antes);
+	}
+
+	// mesmos grupos e totais de obterResumosMensaisPorUsuario, calculado pelo banco
+	private void verificarTotais() {
+		List<ResumoMensal> esperado = lancamentoRepository.obterResumosMensaisPorUsuario(usuario.getId());
+		List<TotalAnalise> totais = service.totalizar(filtro(), TODAS);
+
+		Assertions.assertThat(totais).hasSameSizeAs(esperado);
+		for (ResumoMensal resumo : esperado) {
+			TotalAnalise total = totais.stream()
+					.filter(t -> t.getAno().equals(resumo.getId().getAno()) && t.getMes().equals(resumo.getId().getMes())
+							&& t.getTipo() == resumo.getId().getTipo() && t.getStatus() == resumo.getId().getStatus())
+					.findFirst().get();
+			Assertions.assertThat(total.getTotal()).isEqualTo(Dinheiro.de(resumo.getTotal()));
+			Assertions.assertThat(total.getQuantidade()).isEqualTo(resumo.getQuantidade());
+		}
+		Assertions.assertThat(totais.stream().map(TotalAnalise::getMes).collect(Collectors.toList())).isSorted();
+	}
+
+	private Lancamento filtro() {
+		return Lancamento.builder().usuario(usuario).ano(2020).build();
+	}
+
+	private Usuario criarUsuario() {
+		return usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.build());
+	}
+
+	private List<Lancamento> salvarLancamentos(Usuario usuario, int quantidade) {
+		List<Lancamento> lancamentos = new ArrayList<>();
+		for (int i = 1; i <= quantidade; i++) {
+			lancamentos.add(lancamentoService.salvar(criarLancamento(usuario, i % 3 + 1, i,
+					i % 2 == 0 ? TipoLancamento.DESPESA : TipoLancamento.RECEITA)));
+		}
+		return lancamentos;
+	}
+
+	private static Lancamento criarLancamento(Usuario usuario, int mes, int valor, TipoLancamento tipo) {
+		return Lancamento.builder()
+				.descricao("lancamento")
+				.mes(mes)
+				.ano(2020)
+				.valor(BigDecimal.valueOf(valor))
+				.tipo(tipo)
+				.status(StatusLancamento.PENDENTE)
+				.usuario(usuario)
+				.build();
+	}
+
+}
@@ -0,0 +1,190 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.time.Year;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoArquivadoRepository;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ArquivamentoServiceTest {
+
+	private static final int ANO_ATUAL = Year.now().getValue();
+	private static final int ANO_ANTIGO = ANO_ATUAL - 5;
+
+	@Autowired
+	ArquivamentoService service;
+
+	@Autowired
+	LancamentoService lancamentoService;
+
+	@Autowired
+	SaldoUsuarioService saldoUsuarioService;
+
+	@Autowired
+	LancamentoRepository lancamentoRepository;
+
+	@Autowired
+	LancamentoArquivadoRepository arquivadoRepository;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.build());
+		salvar(ANO_ANTIGO, 1, 100, TipoLancamento.RECEITA);
+		salvar(ANO_ANTIGO, 2, 30, TipoLancamento.DESPESA);
+		salvar(ANO_ANTIGO + 1, 1, 20, TipoLancamento.DESPESA);
+		salvar(ANO_ATUAL, 1, 7, TipoLancamento.RECEITA);
+	}
+
+	@Test
+	public void deveArquivarOsAnosAntigosMantendoOSaldo() {
+		ResumoSaldo antes = lancamentoService.obterResumoSaldoPorUsuario(usuario.getId());
+
+		int arquivados = service.arquivar(usuario.getId(), ANO_ANTIGO + 1);
+
+		Assertions.assertThat(arquivados).isEqualTo(3);
+		Assertions.assertThat(lancamentoService.buscarLinhas(filtro(null))).hasSize(1);
+		Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal()).isEqualByComparingTo("57");
+
+		ResumoSaldo depois = lancamentoService.obterResumoSaldoPorUsuario(usuario.getId());
+		Assertions.assertThat(depois.getReceitas()).isEqualByComparingTo(antes.getReceitas());
+		Assertions.assertThat(depois.getDespesas()).isEqualByComparingTo(antes.getDespesas());
+		Assertions.assertThat(depois.getPendente()).isEqualByComparingTo(antes.getPendente());
+
+		// o saldo recalculado do zero tambem considera o transportado
+		Assertions.assertThat(saldoUsuarioService.verificarConsistencia(usuario.getId())).isTrue();
+	}
+
+	@Test
+	public void deveBuscarOsAnosArquivadosSobDemanda() {
+		service.arquivar(usuario.getId(), ANO_ANTIGO);
+		// um lancamento incluido depois em um ano arquivado fica na tabela viva
+		salvar(ANO_ANTIGO, 3, 5, TipoLancamento.DESPESA);
+
+		Assertions.assertThat(lancamentoService.buscarLinhas(filtro(ANO_ANTIGO))).hasSize(1);
+
+		List<LancamentoLinha> todos = lancamentoService.buscarLinhasComArquivados(filtro(null), null, null);
+		Assertions.assertThat(todos).extracting(LancamentoLinha::getMes).containsExactly(1, 2, 3, 1, 1);
+		Assertions.assertThat(todos).extracting(LancamentoLinha::getAno)
+				.containsExactly(ANO_ANTIGO, ANO_ANTIGO, ANO_ANTIGO, ANO_ANTIGO + 1, ANO_ATUAL);
+
+		// pagina com cursor atravessando as duas tabelas
+		List<LancamentoLinha> pagina = lancamentoService.buscarLinhasComArquivados(filtro(null), posicao(todos.get(1)), 2);
+		Assertions.assertThat(pagina).extracting(LancamentoLinha::getId).containsExactly(todos.get(2).getId(), todos.get(3).getId());
+
+		Assertions.assertThat(lancamentoService.buscarLinhasComArquivados(filtro(ANO_ANTIGO), null, null)).hasSize(3);
+	}
+
+	@Test
+	public void deveManterOResumoMensalDosAnosArquivados() {
+		service.arquivar(usuario.getId(), ANO_ANTIGO);
+
+		List<ResumoMensal> resumo = lancamentoService.obterResumoMensalPorUsuario(usuario.getId(), ANO_ANTIGO);
+
+		Assertions.assertThat(resumo.stream().map(ResumoMensal::getTotal).collect(Collectors.toList()))
+				.usingElementComparator(BigDecimal::compareTo)
+				.containsExactly(BigDecimal.valueOf(100), BigDecimal.valueOf(30));
+	}
+
+	@Test
+	public void naoDeveArquivarDuasVezes() {
+		service.arquivar(usuario.getId(), ANO_ANTIGO);
+		int repetido = service.arquivar(usuario.getId(), ANO_ANTIGO);
+
+		Assertions.assertThat(repetido).isZero();
+		Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal()).isEqualByComparingTo("57");
+		Assertions.assertThat(saldoUsuarioService.verificarConsistencia(usuario.getId())).isTrue();
+	}
+
+	@Test
+	public void naoDevePerderAEdicaoConfirmadaDuranteOArquivamento() throws Exception {
+		Long id = lancamentoService.buscarLinhas(filtro(ANO_ANTIGO)).get(0).getId();
+		TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		// a edicao trava o saldo e o lancamento ate o commit; o arquivamento comeca antes dele
+		Future<Integer> arquivamento = transacao.execute(status -> {
+			Lancamento editado = lancamentoService.obterPorId(id).get();
+			editado.setValor(BigDecimal.valueOf(150));
+			lancamentoService.atualizar(editado);
+			Future<Integer> tarefa = executor.submit(() -> service.arquivar(usuario.getId(), ANO_ANTIGO));
+			try {
+				TimeUnit.MILLISECONDS.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return tarefa;
+		});
+		executor.shutdown();
+
+		Assertions.assertThat(arquivamento.get(10, TimeUnit.SECONDS)).isEqualTo(2);
+		Assertions.assertThat(arquivadoRepository.findById(id).get().getValor()).isEqualByComparingTo("150");
+		Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal()).isEqualByComparingTo("107");
+		Assertions.assertThat(saldoUsuarioService.verificarConsistencia(usuario.getId())).isTrue();
+	}
+
+	@Test(expected = RegraNegocioException.class)
+	public void naoDeveArquivarAnosAtivos() {
+		service.arquivar(usuario.getId(), ANO_ATUAL);
+	}
+
+	private void salvar(int ano, int mes, int valor, TipoLancamento tipo) {
+		lancamentoService.salvar(Lancamento.builder()
+				.descricao("lancamento")
+				.mes(mes)
+				.ano(ano)
+				.valor(BigDecimal.valueOf(valor))
+				.tipo(tipo)
+				.status(StatusLancamento.PENDENTE)
+				.usuario(usuario)
+				.build());
+	}
+
+	private Lancamento filtro(Integer ano) {
+		return Lancamento.builder().usuario(usuario).ano(ano).build();
+	}
+
+	private static Lancamento posicao(LancamentoLinha linha) {
+		return Lancamento.builder().ano(linha.getAno()).mes(linha.getMes()).id(linha.getId()).build();
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "minhasfinancas.busca.maximo-documentos=30", "minhasfinancas.busca.validade=2s" })
+@ActiveProfiles("h2")
+public class BuscaDescricaoServiceTest {
+
+	@Autowired
+	LancamentoService lancamentoService;
+
+	@Autowired
+	LancamentoRepository lancamentoRepository;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.build());
+	}
+
+	@Test
+	public void deveBuscarPorPalavrasDaDescricaoIgnorandoCaixaEAcentos() {
+		salvar("Conta de Água", 1);
+		salvar("Supermercado do bairro", 1);
+		salvar("conta de luz", 2);
+
+		Assertions.assertThat(buscar("agua")).extracting(Lancamento::getDescricao).containsExactly("Conta de Água");
+		Assertions.assertThat(buscar("CONTA")).hasSize(2);
+		Assertions.assertThat(buscar("super bai")).extracting(Lancamento::getDescricao).containsExactly("Supermercado do bairro");
+		Assertions.assertThat(buscar("conta mercado")).isEmpty();
+
+		Lancamento filtro = filtro("conta");
+		filtro.setMes(2);
+		Assertions.assertThat(lancamentoService.buscar(filtro)).extracting(Lancamento::getDescricao).containsExactly("conta de luz");
+	}
+
+	@Test
+	public void deveAcompanharAsGravacoesDepoisDeIndexarOUsuario() {
+		Lancamento luz = salvar("conta de luz", 1);
+		Assertions.assertThat(buscar("luz")).hasSize(1);
+
+		Lancamento gas = salvar("conta de gas", 1);
+		Assertions.assertThat(buscar("conta")).extracting(Lancamento::getId).containsExactlyInAnyOrder(luz.getId(), gas.getId());
+
+		gas.setDescricao("botijao");
+		lancamentoService.atualizar(gas);
+		Assertions.assertThat(buscar("gas")).isEmpty();
+		Assertions.assertThat(buscar("botijao")).extracting(Lancamento::getId).containsExactly(gas.getId());
+
+		lancamentoService.deletar(luz);
+		Assertions.assertThat(buscar("luz")).isEmpty();
+	}
+
+	@Test
+	public void devePaginarOResultadoDaBuscaEmOrdemDeAnoMesEId() {
+		for (int mes = 12; mes >= 1; mes--) {
+			salvar("conta de luz", mes);
+			salvar("salario", mes);
+		}
+
+		List<Lancamento> todos = new ArrayList<>();
+		Lancamento posicao = null;
+		List<Lancamento> pagina;
+		do {
+			pagina = lancamentoService.buscar(filtro("luz"), posicao, 5);
+			todos.addAll(pagina);
+			posicao = pagina.isEmpty() ? null : pagina.get(pagina.size() - 1);
+		} while (pagina.size() == 5);
+
+		Assertions.assertThat(todos).hasSize(12);
+		Assertions.assertThat(todos).extracting(Lancamento::getMes).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+	}
+
+	@Test
+	public void deveReindexarOUsuarioQueSaiuDoIndice() {
+		Usuario atual = usuario;
+		for (int i = 0; i < 20; i++) {
+			salvar("conta de luz", 1);
+		}
+		Assertions.assertThat(buscar("luz")).hasSize(20);
+
+		// a gravacao direta nao publica evento: so aparece se o indice do usuario for refeito
+		gravarSemEvento("conta de agua");
+		usuario = usuarioRepository.save(Usuario.builder().nome("outro").email(System.nanoTime() + "@email.com").build());
+		for (int i = 0; i < 20; i++) {
+			salvar("conta de gas", 1);
+		}
+		Assertions.assertThat(buscar("gas")).hasSize(20);
+
+		usuario = atual;
+		Assertions.assertThat(buscar("conta")).hasSize(21);
+	}
+
+	// o que outra instancia grava nao gera evento aqui: entra no indice quando ele vence
+	@Test
+	public void deveRefazerOIndiceDoUsuarioDepoisDaValidade() throws InterruptedException {
+		salvar("conta de luz", 1);
+		Assertions.assertThat(buscar("conta")).hasSize(1);
+
+		gravarSemEvento("conta de agua");
+		Assertions.assertThat(buscar("conta")).hasSize(1);
+
+		TimeUnit.MILLISECONDS.sleep(2100);
+		Assertions.assertThat(buscar("conta")).hasSize(2);
+	}
+
+	private Lancamento salvar(String descricao, int mes) {
+		return lancamentoService.salvar(Lancamento.builder()
+				.descricao(descricao)
+				.mes(mes)
+				.ano(2020)
+				.valor(BigDecimal.TEN)
+				.tipo(TipoLancamento.DESPESA)
+				.usuario(usuario)
+				.build());
+	}
+
+	private void gravarSemEvento(String descricao) {
+		lancamentoRepository.save(Lancamento.builder()
+				.descricao(descricao)
+				.mes(1)
+				.ano(2020)
+				.valor(BigDecimal.TEN)
+				.tipo(TipoLancamento.DESPESA)
+				.status(StatusLancamento.PENDENTE)
+				.usuario(usuario)
+				.build());
+	}
+
+	private List<Lancamento> buscar(String descricao) {
+		return lancamentoService.buscar(filtro(descricao));
+	}
+
+	private Lancamento filtro(String descricao) {
+		return Lancamento.builder().descricao(descricao).usuario(usuario).build();
+	}
+
+}
@@ -0,0 +1,256 @@
+package com.epierre.minhasfinancas.service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.unit.DataSize;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.SaldoUsuario;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.SaldoUsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+import com.epierre.minhasfinancas.service.LancamentoAlteradoEvento.Operacao;
+import com.epierre.minhasfinancas.service.RegistroDiario.Tipo;
+import com.epierre.minhasfinancas.service.impl.DiarioServiceImpl;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+		"minhasfinancas.diario.diretorio=target/diario-${random.uuid}",
+		"minhasfinancas.diario.tamanho-segmento=4KB" })
+@ActiveProfiles("h2")
+public class DiarioServiceTest {
+
+	@Autowired
+	DiarioService service;
+
+	@Autowired
+	LancamentoService lancamentoService;
+
+	@Autowired
+	ResumoMensalService resumoMensalService;
+
+	@Autowired
+	SaldoUsuarioRepository saldoUsuarioRepository;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	LancamentoRepository lancamentoRepository;
+
+	@Autowired
+	ArquivamentoService arquivamentoService;
+
+	@Rule
+	public TemporaryFolder pasta = new TemporaryFolder();
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.build());
+	}
+
+	@Test
+	public void deveRegistrarAsAlteracoesNaOrdemEmQueForamConfirmadas() {
+		long inicio = service.fim();
+
+		Lancamento lancamento = lancamentoService.salvar(criarLancamento(1, 10));
+		lancamento.setDescricao("alterado");
+		lancamento = lancamentoService.atualizar(lancamento);
+		lancamentoService.atualizarStatus(Lancamento.builder().usuario(usuario).build(), null, StatusLancamento.EFETIVADO);
+		lancamentoService.deletar(lancamentoService.obterPorId(lancamento.getId()).get());
+
+		List<RegistroDiario> registros = service.ler(inicio, 10);
+		Assertions.assertThat(registros).extracting(RegistroDiario::getTipo)
+				.containsExactly(Tipo.INCLUSAO, Tipo.ATUALIZACAO, Tipo.STATUS_EM_LOTE, Tipo.EXCLUSAO);
+		Assertions.assertThat(registros.get(1).getLancamento().getDescricao()).isEqualTo("alterado");
+		Assertions.assertThat(registros.get(1).getLancamento().getValor()).isEqualByComparingTo("10");
+		Assertions.assertThat(registros.get(2).getAlteracaoStatus().getNovoStatus()).isEqualTo(StatusLancamento.EFETIVADO);
+		Assertions.assertThat(registros.get(3).getLancamento().getId()).isEqualTo(lancamento.getId());
+		Assertions.assertThat(registros.get(3).getProximo()).isEqualTo(service.fim());
+	}
+
+	@Test
+	public void deveEntregarOsNovosRegistrosAQuemAguardaNoFim() throws Exception {
+		long fim = service.fim();
+		CompletableFuture<List<RegistroDiario>> aguardando = CompletableFuture.supplyAsync(() -> {
+			try {
+				return service.aguardar(fim, 10, 10_000);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		Lancamento salvo = lancamentoService.salvar(criarLancamento(1, 10));
+
+		List<RegistroDiario> registros = aguardando.get(10, TimeUnit.SECONDS);
+		Assertions.assertThat(registros).extracting(registro -> registro.getLancamento().getId())
+				.containsExactly(salvo.getId());
+		Assertions.assertThat(service.aguardar(service.fim(), 10, 10)).isEmpty();
+	}
+
+	@Test
+	public void deveRefazerSaldoEResumoMensalAPartirDoDiario() {
+		List<Lancamento> lancamentos = new ArrayList<>();
+		for (int i = 1; i <= 40; i++) {
+			lancamentos.add(lancamentoService.salvar(criarLancamento(i % 3 + 1, i)));
+		}
+		lancamentoService.atualizarStatus(Lancamento.builder().usuario(usuario).mes(2).build(), null,
+				StatusLancamento.EFETIVADO);
+		lancamentoService.deletar(lancamentoService.obterPorId(lancamentos.get(0).getId()).get());
+		SaldoUsuario saldo = saldoUsuarioRepository.findById(usuario.getId()).get();
+		List<ResumoMensal> resumo = resumoMensalService.obterResumoAnual(usuario.getId(), 2020);
+
+		saldoUsuarioRepository.save(new SaldoUsuario(usuario.getId(), Dinheiro.ZERO, Dinheiro.deCentavos(100), 0l));
+		Assertions.assertThat(service.reconstruirDerivados()).isPositive();
+
+		SaldoUsuario refeito = saldoUsuarioRepository.findById(usuario.getId()).get();
+		Assertions.assertThat(refeito.getReceitas()).isEqualTo(saldo.getReceitas());
+		Assertions.assertThat(refeito.getDespesas()).isEqualTo(saldo.getDespesas());
+		Assertions.assertThat(resumoMensalService.obterResumoAnual(usuario.getId(), 2020))
+				.usingElementComparatorOnFields("id", "quantidade")
+				.containsExactlyInAnyOrderElementsOf(resumo.stream().filter(r -> r.getQuantidade() > 0)
+						.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void deveManterAMaiorVersaoComRegistrosForaDeOrdem() {
+		Lancamento lancamento = lancamentoService.salvar(criarLancamento(1, 10));
+		Lancamento anterior = criarLancamento(1, 10);
+		anterior.setId(lancamento.getId());
+		anterior.setVersao(lancamento.getVersao());
+		lancamento.setValor(BigDecimal.valueOf(30));
+		lancamentoService.atualizar(lancamento);
+		// o registro da inclusao chega depois do da atualizacao
+		((DiarioServiceImpl) service).aoAlterarLancamento(new LancamentoAlteradoEvento(Operacao.INCLUSAO, anterior));
+
+		saldoUsuarioRepository.save(new SaldoUsuario(usuario.getId(), Dinheiro.ZERO, Dinheiro.ZERO, 0l));
+		service.reconstruirDerivados();
+
+		Assertions.assertThat(saldoUsuarioRepository.findById(usuario.getId()).get().getDespesas())
+				.isEqualTo(Dinheiro.deCentavos(3000));
+	}
+
+	@Test
+	public void deveManterOsAnosArquivadosAoRefazer() {
+		// arquivado antes do diario: o lancamento de 2019 nunca passou por ele
+		Lancamento antigo = criarLancamento(3, 50);
+		antigo.setAno(2019);
+		antigo.setTipo(TipoLancamento.RECEITA);
+		lancamentoRepository.save(antigo);
+		arquivamentoService.arquivar(usuario.getId(), 2019);
+		lancamentoService.salvar(criarLancamento(1, 10));
+
+		saldoUsuarioRepository.save(new SaldoUsuario(usuario.getId(), Dinheiro.ZERO, Dinheiro.ZERO, 0l));
+		service.reconstruirDerivados();
+
+		SaldoUsuario refeito = saldoUsuarioRepository.findById(usuario.getId()).get();
+		Assertions.assertThat(refeito.getReceitas()).isEqualTo(Dinheiro.deCentavos(5000));
+		Assertions.assertThat(refeito.getDespesas()).isEqualTo(Dinheiro.deCentavos(1000));
+		List<ResumoMensal> arquivados = resumoMensalService.obterResumoAnual(usuario.getId(), 2019).stream()
+				.filter(resumo -> resumo.getQuantidade() > 0)
+				.collect(Collectors.toList());
+		Assertions.assertThat(arquivados).hasSize(1);
+		Assertions.assertThat(arquivados.get(0).getId().getMes()).isEqualTo(3);
+		Assertions.assertThat(arquivados.get(0).getTotal()).isEqualByComparingTo("50");
+	}
+
+	@Test
+	public void naoDeveRefazerOUsuarioSemTodosOsRegistros() {
+		lancamentoService.salvar(criarLancamento(1, 10));
+		// gravado sem passar pelo servico, como uma alteracao cujo registro se perdeu
+		lancamentoRepository.save(criarLancamento(1, 21));
+		SaldoUsuario divergente = new SaldoUsuario(usuario.getId(), Dinheiro.deCentavos(100), Dinheiro.ZERO, 0l);
+		saldoUsuarioRepository.save(divergente);
+
+		service.reconstruirDerivados();
+
+		SaldoUsuario mantido = saldoUsuarioRepository.findById(usuario.getId()).get();
+		Assertions.assertThat(mantido.getReceitas()).isEqualTo(divergente.getReceitas());
+		Assertions.assertThat(mantido.getDespesas()).isEqualTo(divergente.getDespesas());
+	}
+
+	@Test
+	public void deveDescartarORegistroIncompletoAoReabrir() throws IOException {
+		Path diretorio = pasta.newFolder("diario").toPath();
+		DiarioServiceImpl diario = abrir(diretorio);
+		for (int i = 1; i <= 100; i++) {
+			Lancamento lancamento = criarLancamento(1, i);
+			lancamento.setId((long) i);
+			diario.aoAlterarLancamento(new LancamentoAlteradoEvento(Operacao.INCLUSAO, lancamento));
+		}
+		long fim = diario.fim();
+		diario.fechar();
+
+		// simula uma gravacao interrompida depois do ultimo registro
+		Path ultimo;
+		try (Stream<Path> segmentos = Files.list(diretorio)) {
+			ultimo = segmentos.sorted().reduce((primeiro, segundo) -> segundo).get();
+		}
+		try (RandomAccessFile arquivo = new RandomAccessFile(ultimo.toFile(), "rw")) {
+			arquivo.seek(fim - Long.parseLong(ultimo.getFileName().toString().replace(".diario", "")));
+			arquivo.writeInt(64);
+			arquivo.write(new byte[] { 1, 2, 3 });
+		}
+
+		diario = abrir(diretorio);
+		Assertions.assertThat(diario.fim()).isEqualTo(fim);
+		Lancamento lancamento = criarLancamento(1, 101);
+		lancamento.setId(101L);
+		diario.aoAlterarLancamento(new LancamentoAlteradoEvento(Operacao.INCLUSAO, lancamento));
+
+		List<RegistroDiario> registros = new ArrayList<>();
+		diario.reproduzir(0, registros::add);
+		Assertions.assertThat(registros).extracting(registro -> registro.getLancamento().getId())
+				.containsExactlyElementsOf(Arrays.asList(Stream.iterate(1L, id -> id + 1).limit(101).toArray(Long[]::new)));
+		diario.fechar();
+	}
+
+	private static DiarioServiceImpl abrir(Path diretorio) throws IOException {
+		return new DiarioServiceImpl(diretorio.toString(), DataSize.ofKilobytes(4), 60_000, null, null, null, null, null, null, null,
+				null, null);
+	}
+
+	private Lancamento criarLancamento(int mes, int valor) {
+		return Lancamento.builder()
+				.descricao("lancamento")
+				.mes(mes)
+				.ano(2020)
+				.valor(BigDecimal.valueOf(valor))
+				.tipo(valor % 2 == 0 ? TipoLancamento.DESPESA : TipoLancamento.RECEITA)
+				.status(StatusLancamento.PENDENTE)
+				.usuario(usuario)
+				.build();
+	}
+
+}
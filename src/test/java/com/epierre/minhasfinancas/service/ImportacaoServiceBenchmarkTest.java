@@ -0,0 +1,100 @@
+package com.epierre.minhasfinancas.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.epierre.minhasfinancas.Medicao;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.FormatoImportacao;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+
+/**
+ * Mede a vazao da importacao em lotes contra o H2 em memoria. Por padrao
+ * importa 10 mil linhas; volumes maiores sao informados pela propriedade
+ * de sistema benchmark.importacao, por exemplo
+ * -Dbenchmark.importacao=10000,100000,1000000
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("h2")
+@Category(Medicao.class)
+public class ImportacaoServiceBenchmarkTest {
+
+	@Autowired
+	ImportacaoService service;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Test
+	public void deveImportarComInsertsEmBatch() {
+		Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		for (String volume : System.getProperty("benchmark.importacao", "10000").split(",")) {
+			int linhas = Integer.parseInt(volume.trim());
+			Usuario usuario = usuarioRepository.save(Usuario.builder().nome("benchmark").email("benchmark" + linhas).build());
+
+			estatisticas.clear();
+			long inicio = System.nanoTime();
+			ResultadoImportacao resultado = service.importar(usuario.getId(), FormatoImportacao.CSV, new CsvGerado(linhas));
+			double segundos = (System.nanoTime() - inicio) / 1e9;
+
+			Assertions.assertThat(resultado.getImportados()).isEqualTo(linhas);
+			// os inserts sao agrupados: bem menos statements preparados do que linhas importadas
+			Assertions.assertThat(estatisticas.getPrepareStatementCount()).isLessThan(linhas / 10);
+
+			System.out.printf("importacao de %d linhas: %.2f s, %.0f linhas/s, %d statements preparados%n",
+					linhas, segundos, linhas / segundos, estatisticas.getPrepareStatementCount());
+		}
+	}
+
+	/**
+	 * CSV sintetico gerado sob demanda, para nao manter o arquivo inteiro em memoria.
+	 */
+	static class CsvGerado extends InputStream {
+
+		private final int linhas;
+		private int linhaAtual = -1;
+		private byte[] buffer = new byte[0];
+		private int posicao;
+
+		CsvGerado(int linhas) {
+			this.linhas = linhas;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (posicao == buffer.length) {
+				if (++linhaAtual > linhas) {
+					return -1;
+				}
+				String linha = linhaAtual == 0
+						? "descricao,mes,ano,valor,tipo\n"
+						: "lancamento " + linhaAtual + "," + (linhaAtual % 12 + 1) + ",2020," + (linhaAtual % 500 + 1)
+								+ ".90," + (linhaAtual % 3 == 0 ? "DESPESA" : "RECEITA") + "\n";
+				buffer = linha.getBytes(StandardCharsets.UTF_8);
+				posicao = 0;
+			}
+			return buffer[posicao++];
+		}
+
+	}
+
+}
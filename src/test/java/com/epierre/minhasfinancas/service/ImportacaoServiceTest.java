@@ -0,0 +1,118 @@
+package com.epierre.minhasfinancas.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.FormatoImportacao;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ImportacaoServiceTest {
+
+	@Autowired
+	ImportacaoService service;
+
+	@Autowired
+	LancamentoService lancamentoService;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.build());
+	}
+
+	@Test
+	public void deveImportarAsLinhasValidasDoCsvEReportarAsInvalidas() {
+		String csv = "descricao;mes;ano;valor;tipo\n"
+				+ "salario;1;2020;1.500,00;RECEITA\n"
+				+ "\"aluguel; apto\";1;2020;800,00;despesa\n"
+				+ ";1;2020;10;DESPESA\n"
+				+ "luz;13;2020;10;DESPESA\n"
+				+ "agua;2;2020;abc;DESPESA\n";
+
+		ResultadoImportacao resultado = service.importar(usuario.getId(), FormatoImportacao.CSV, entrada(csv));
+
+		Assertions.assertThat(resultado.getImportados()).isEqualTo(2);
+		Assertions.assertThat(resultado.getRejeitados()).isEqualTo(3);
+		Assertions.assertThat(resultado.getErros()).extracting(ResultadoImportacao.Erro::getLinha).containsExactly(4l, 5l, 6l);
+		Assertions.assertThat(resultado.getErros()).extracting(ResultadoImportacao.Erro::getMensagem)
+				.containsExactly("Informe uma Descrição válida.", "Informe um Mês válido.", "Informe um Valor válido.");
+
+		List<Lancamento> lancamentos = lancamentoService.buscar(Lancamento.builder().usuario(usuario).build());
+		Assertions.assertThat(lancamentos).extracting(Lancamento::getDescricao).containsOnly("salario", "aluguel; apto");
+		Assertions.assertThat(lancamentos).extracting(Lancamento::getStatus).containsOnly(StatusLancamento.PENDENTE);
+		Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal()).isEqualByComparingTo("700");
+	}
+
+	@Test
+	public void deveAgruparOsInsertsEmBatch() {
+		Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		estatisticas.clear();
+
+		ResultadoImportacao resultado = service.importar(usuario.getId(), FormatoImportacao.CSV,
+				new ImportacaoServiceBenchmarkTest.CsvGerado(1000));
+
+		Assertions.assertThat(resultado.getImportados()).isEqualTo(1000);
+		Assertions.assertThat(estatisticas.getPrepareStatementCount()).isLessThan(100);
+	}
+
+	@Test
+	public void deveImportarAsTransacoesDeUmExtratoOfx() {
+		String ofx = "OFXHEADER:100\nDATA:OFXSGML\n\n<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>\n"
+				+ "<STMTTRN>\n<TRNTYPE>CREDIT\n<DTPOSTED>20200305120000[-3:BRT]\n<TRNAMT>2500.00\n<MEMO>Salario\n</STMTTRN>\n"
+				+ "<STMTTRN><TRNTYPE>DEBIT</TRNTYPE><DTPOSTED>20200310</DTPOSTED><TRNAMT>-120.50</TRNAMT>"
+				+ "<NAME>Mercado</NAME></STMTTRN>\n"
+				+ "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>";
+
+		ResultadoImportacao resultado = service.importar(usuario.getId(), FormatoImportacao.OFX, entrada(ofx));
+
+		Assertions.assertThat(resultado.getImportados()).isEqualTo(2);
+		Assertions.assertThat(resultado.getRejeitados()).isZero();
+
+		List<Lancamento> lancamentos = lancamentoService.buscar(Lancamento.builder().usuario(usuario).build());
+		Assertions.assertThat(lancamentos).extracting(Lancamento::getDescricao).containsOnly("Salario", "Mercado");
+		Assertions.assertThat(lancamentos).extracting(Lancamento::getTipo)
+				.containsOnly(TipoLancamento.RECEITA, TipoLancamento.DESPESA);
+		Assertions.assertThat(lancamentos).extracting(Lancamento::getMes).containsOnly(3);
+		Assertions.assertThat(lancamentos).extracting(Lancamento::getStatus).containsOnly(StatusLancamento.EFETIVADO);
+		Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal())
+				.isEqualByComparingTo(new BigDecimal("2379.50"));
+	}
+
+	private InputStream entrada(String conteudo) {
+		return new ByteArrayInputStream(conteudo.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepositoryTest;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureTestEntityManager
+@Transactional
+@ActiveProfiles("h2")
+public class LancamentoServiceAtualizacaoStatusTest {
+
+	@Autowired
+	LancamentoService service;
+
+	@Autowired
+	ResumoMensalService resumoMensalService;
+
+	@Autowired
+	LancamentoRepository repository;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	Usuario usuario;
+	Usuario outroUsuario;
+	List<Lancamento> janeiro = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		usuario = entityManager.persist(UsuarioRepositoryTest.criarUsuario());
+		outroUsuario = entityManager.persist(Usuario.builder().nome("outro").email("outro@email.com").build());
+
+		for (int i = 1; i <= 5; i++) {
+			janeiro.add(service.salvar(criarLancamento(usuario, 1, i * 10)));
+		}
+		service.salvar(criarLancamento(usuario, 2, 100));
+		service.salvar(criarLancamento(outroUsuario, 1, 1000));
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	public void deveAtualizarOStatusDoMesComUmUnicoComando() {
+		Lancamento filtro = Lancamento.builder().usuario(usuario).mes(1).ano(2020).status(StatusLancamento.PENDENTE).build();
+
+		int atualizados = service.atualizarStatus(filtro, null, StatusLancamento.EFETIVADO);
+		entityManager.flush();
+		entityManager.clear();
+
+		Assertions.assertThat(atualizados).isEqualTo(5);
+		Assertions.assertThat(repository.findAll()).filteredOn(l -> l.getStatus() == StatusLancamento.EFETIVADO)
+				.extracting(l -> l.getUsuario().getId()).containsOnly(usuario.getId()).hasSize(5);
+		Assertions.assertThat(service.atualizarStatus(filtro, null, StatusLancamento.EFETIVADO)).isZero();
+		verificarResumoMensal();
+	}
+
+	@Test
+	public void deveAtualizarApenasOsIdsDoUsuario() {
+		Lancamento doOutroUsuario = repository.findAll().stream()
+				.filter(l -> l.getUsuario().getId().equals(outroUsuario.getId())).findFirst().get();
+		List<Long> ids = Arrays.asList(janeiro.get(0).getId(), janeiro.get(1).getId(), doOutroUsuario.getId());
+
+		int atualizados = service.atualizarStatus(Lancamento.builder().usuario(usuario).build(), ids,
+				StatusLancamento.CANCELADO);
+		entityManager.flush();
+		entityManager.clear();
+
+		Assertions.assertThat(atualizados).isEqualTo(2);
+		Assertions.assertThat(repository.findById(doOutroUsuario.getId()).get().getStatus()).isEqualTo(StatusLancamento.PENDENTE);
+		verificarResumoMensal();
+	}
+
+	// o resumo mantido incrementalmente deve coincidir com o recalculado a partir dos lancamentos
+	private void verificarResumoMensal() {
+		List<ResumoMensal> mantido = new ArrayList<>(resumoMensalService.obterResumoAnual(usuario.getId(), 2020));
+		mantido.removeIf(r -> r.getQuantidade() == 0);
+		List<ResumoMensal> calculado = repository.obterResumosMensaisPorUsuario(usuario.getId());
+
+		Assertions.assertThat(mantido).usingElementComparatorOnFields("id", "quantidade")
+				.containsExactlyInAnyOrderElementsOf(calculado);
+		for (ResumoMensal resumo : calculado) {
+			BigDecimal total = mantido.stream().filter(r -> r.getId().equals(resumo.getId())).findFirst().get().getTotal();
+			Assertions.assertThat(total).isEqualByComparingTo(resumo.getTotal());
+		}
+	}
+
+	private static Lancamento criarLancamento(Usuario usuario, int mes, int valor) {
+		return Lancamento.builder()
+				.descricao("lancamento")
+				.mes(mes)
+				.ano(2020)
+				.valor(BigDecimal.valueOf(valor))
+				.tipo(TipoLancamento.DESPESA)
+				.usuario(usuario)
+				.build();
+	}
+
+}
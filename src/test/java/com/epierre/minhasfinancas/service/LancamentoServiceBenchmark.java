@@ -0,0 +1,133 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.epierre.minhasfinancas.MinhasfinancasApplication;
+import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.FormatoImportacao;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+import com.epierre.minhasfinancas.service.impl.LancamentoServiceImpl;
+
+/**
+ * Validacao de lancamentos e consulta de saldo contra o H2 em memoria. O
+ * saldo lido de saldo_usuario e comparado com a agregacao sobre todos os
+ * lancamentos do usuario, que ele substitui.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LancamentoServiceBenchmark {
+
+	LancamentoService validacao;
+	Lancamento valido;
+	Lancamento semValor;
+
+	@Setup
+	public void preparar() {
+		// validar nao usa nenhuma dependencia
+		validacao = new LancamentoServiceImpl(null, null, null, null, null, null, null);
+		valido = Lancamento.builder()
+				.descricao("conta de luz")
+				.mes(3)
+				.ano(2020)
+				.valor(new BigDecimal("123.45"))
+				.usuario(Usuario.builder().id(1l).build())
+				.tipo(TipoLancamento.DESPESA)
+				.build();
+		semValor = Lancamento.builder()
+				.descricao("conta de luz")
+				.mes(3)
+				.ano(2020)
+				.usuario(Usuario.builder().id(1l).build())
+				.tipo(TipoLancamento.DESPESA)
+				.build();
+	}
+
+	@Benchmark
+	public Lancamento validar() {
+		validacao.validar(valido);
+		return valido;
+	}
+
+	@Benchmark
+	public RegraNegocioException validarInvalido() {
+		try {
+			validacao.validar(semValor);
+			throw new IllegalStateException();
+		} catch (RegraNegocioException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Dinheiro obterSaldoPorUsuario(Banco banco) {
+		return banco.lancamentoService.obterSaldoPorUsuario(banco.idUsuario);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public ResumoSaldo recalcularSaldo(Banco banco) {
+		return banco.lancamentoRepository.obterResumoSaldoPorUsuario(banco.idUsuario);
+	}
+
+	@State(Scope.Benchmark)
+	public static class Banco {
+
+		@Param({ "10000" })
+		int lancamentos;
+
+		ConfigurableApplicationContext contexto;
+		LancamentoService lancamentoService;
+		LancamentoRepository lancamentoRepository;
+		Long idUsuario;
+
+		@Setup
+		public void iniciar() {
+			contexto = new SpringApplicationBuilder(MinhasfinancasApplication.class)
+					.profiles("h2")
+					.properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+					.run();
+			lancamentoService = contexto.getBean(LancamentoService.class);
+			lancamentoRepository = contexto.getBean(LancamentoRepository.class);
+
+			Usuario usuario = contexto.getBean(UsuarioRepository.class)
+					.save(Usuario.builder().nome("benchmark").email("benchmark@email.com").build());
+			idUsuario = usuario.getId();
+			contexto.getBean(ImportacaoService.class).importar(idUsuario, FormatoImportacao.CSV,
+					new ImportacaoServiceBenchmarkTest.CsvGerado(lancamentos));
+		}
+
+		@TearDown
+		public void encerrar() {
+			contexto.close();
+		}
+
+	}
+
+}
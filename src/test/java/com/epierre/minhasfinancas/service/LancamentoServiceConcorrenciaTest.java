@@ -0,0 +1,271 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.exception.ConflitoAtualizacaoException;
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.SaldoUsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class LancamentoServiceConcorrenciaTest {
+
+	private static final int THREADS = 8;
+	private static final int ALTERACOES_POR_THREAD = 50;
+
+	@Autowired
+	LancamentoService service;
+
+	@Autowired
+	ResumoMensalService resumoMensalService;
+
+	@Autowired
+	SaldoUsuarioService saldoUsuarioService;
+
+	@Autowired
+	LancamentoRepository repository;
+
+	@Autowired
+	SaldoUsuarioRepository saldoUsuarioRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	Usuario usuario;
+	List<Lancamento> lancamentos = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.build());
+		for (int mes = 1; mes <= 4; mes++) {
+			lancamentos.add(service.salvar(Lancamento.builder()
+					.descricao("lancamento")
+					.mes(mes)
+					.ano(2020)
+					.valor(BigDecimal.valueOf(mes * 10))
+					.tipo(TipoLancamento.DESPESA)
+					.status(StatusLancamento.PENDENTE)
+					.usuario(usuario)
+					.build()));
+		}
+	}
+
+	@Test
+	public void deveMudarAVersaoDoUsuarioACadaGravacao() {
+		Usuario outro = usuarioRepository.save(Usuario.builder().nome("outro").email(System.nanoTime() + "@email.com").build());
+		String versaoOutro = service.obterVersaoPorUsuario(outro.getId());
+		Set<String> versoes = new HashSet<>();
+		versoes.add(service.obterVersaoPorUsuario(usuario.getId()));
+
+		service.atualizarStatus(lancamentos.get(0), StatusLancamento.EFETIVADO);
+		versoes.add(service.obterVersaoPorUsuario(usuario.getId()));
+		service.atualizarStatus(Lancamento.builder().usuario(usuario).build(), null, StatusLancamento.CANCELADO);
+		versoes.add(service.obterVersaoPorUsuario(usuario.getId()));
+		service.deletar(service.obterPorId(lancamentos.get(1).getId()).get());
+		versoes.add(service.obterVersaoPorUsuario(usuario.getId()));
+
+		Assertions.assertThat(versoes).hasSize(4);
+		Assertions.assertThat(service.obterVersaoPorUsuario(outro.getId())).isEqualTo(versaoOutro);
+	}
+
+	@Test
+	public void deveLerAVersaoGravadaComOSaldo() {
+		String anterior = service.obterVersaoPorUsuario(usuario.getId());
+
+		// a gravacao desfeita nao muda a versao; a confirmada muda a coluna lida por todas as instancias
+		new TransactionTemplate(transactionManager).execute(status -> {
+			service.deletar(service.obterPorId(lancamentos.get(0).getId()).get());
+			status.setRollbackOnly();
+			return null;
+		});
+		Assertions.assertThat(service.obterVersaoPorUsuario(usuario.getId())).isEqualTo(anterior);
+
+		service.deletar(service.obterPorId(lancamentos.get(0).getId()).get());
+		String atual = service.obterVersaoPorUsuario(usuario.getId());
+		Assertions.assertThat(atual).isNotEqualTo(anterior)
+				.isEqualTo(saldoUsuarioRepository.findById(usuario.getId()).get().getVersao().toString());
+	}
+
+	@Test
+	public void naoDevePerderAtualizacoesDeStatusConcorrentes() throws Exception {
+		AtomicInteger sucessos = new AtomicInteger();
+		AtomicInteger conflitos = new AtomicInteger();
+		Set<String> versoesConfirmadas = ConcurrentHashMap.newKeySet();
+		CountDownLatch largada = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> tarefas = new ArrayList<>();
+
+		for (int t = 0; t < THREADS; t++) {
+			int thread = t;
+			tarefas.add(executor.submit(() -> {
+				largada.await();
+				for (int i = 0; i < ALTERACOES_POR_THREAD; i++) {
+					Long id = lancamentos.get((thread + i) % lancamentos.size()).getId();
+					Lancamento lancamento = service.obterPorId(id).get();
+					StatusLancamento novo = lancamento.getStatus() == StatusLancamento.PENDENTE
+							? StatusLancamento.EFETIVADO : StatusLancamento.PENDENTE;
+					try {
+						Lancamento atualizado = service.atualizarStatus(lancamento, novo);
+						versoesConfirmadas.add(atualizado.getId() + ":" + atualizado.getVersao());
+						sucessos.incrementAndGet();
+					} catch (ConflitoAtualizacaoException e) {
+						conflitos.incrementAndGet();
+					}
+				}
+				return null;
+			}));
+		}
+
+		largada.countDown();
+		for (Future<?> tarefa : tarefas) {
+			tarefa.get();
+		}
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+
+		// cada versao gravada foi devolvida a algum chamador: nenhuma escrita se perdeu. Uma nova
+		// tentativa que encontra o status ja aplicado nao gera versao, por isso versoes <= sucessos
+		long versoes = 0;
+		for (Lancamento lancamento : lancamentos) {
+			versoes += repository.findById(lancamento.getId()).get().getVersao() - lancamento.getVersao();
+		}
+		Assertions.assertThat(sucessos.get() + conflitos.get()).isEqualTo(THREADS * ALTERACOES_POR_THREAD);
+		Assertions.assertThat(versoes).isEqualTo(versoesConfirmadas.size()).isLessThanOrEqualTo(sucessos.get());
+		verificarResumoMensal();
+	}
+
+	@Test
+	public void deveRejeitarAtualizacaoComVersaoDesatualizada() {
+		Lancamento lido = service.obterPorId(lancamentos.get(0).getId()).get();
+		Lancamento concorrente = service.obterPorId(lancamentos.get(0).getId()).get();
+
+		concorrente.setDescricao("alterado");
+		service.atualizar(concorrente);
+
+		lido.setDescricao("desatualizado");
+		Assertions.assertThatThrownBy(() -> service.atualizar(lido))
+				.isInstanceOf(OptimisticLockingFailureException.class);
+		Assertions.assertThat(service.obterPorId(lido.getId()).get().getDescricao()).isEqualTo("alterado");
+	}
+
+	@Test
+	public void deveReaplicarOStatusSobreAVersaoMaisRecente() {
+		Lancamento lido = service.obterPorId(lancamentos.get(0).getId()).get();
+		Lancamento concorrente = service.obterPorId(lancamentos.get(0).getId()).get();
+
+		concorrente.setDescricao("alterado");
+		service.atualizar(concorrente);
+
+		Lancamento atualizado = service.atualizarStatus(lido, StatusLancamento.EFETIVADO);
+
+		Assertions.assertThat(atualizado.getStatus()).isEqualTo(StatusLancamento.EFETIVADO);
+		Assertions.assertThat(atualizado.getDescricao()).isEqualTo("alterado");
+		Assertions.assertThat(atualizado.getVersao()).isEqualTo(lido.getVersao() + 2);
+		verificarResumoMensal();
+	}
+
+	@Test
+	public void naoDevePerderOLancamentoConfirmadoDuranteACorrecaoDoSaldo() throws Exception {
+		TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+		// saldo divergente, para que a correcao grave
+		transacao.execute(status -> saldoUsuarioRepository.adicionar(usuario.getId(), Dinheiro.deCentavos(100), Dinheiro.ZERO));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		// a inclusao trava a linha do saldo ate o commit; a correcao comeca antes dele
+		Future<Boolean> correcao = transacao.execute(status -> {
+			service.salvar(Lancamento.builder().descricao("lancamento").mes(5).ano(2020).valor(BigDecimal.valueOf(7))
+					.tipo(TipoLancamento.RECEITA).status(StatusLancamento.PENDENTE).usuario(usuario).build());
+			Future<Boolean> tarefa = executor.submit(() -> saldoUsuarioService.verificarConsistencia(usuario.getId()));
+			try {
+				TimeUnit.MILLISECONDS.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return tarefa;
+		});
+		executor.shutdown();
+
+		Assertions.assertThat(correcao.get(10, TimeUnit.SECONDS)).isFalse();
+		Assertions.assertThat(saldoUsuarioService.verificarConsistencia(usuario.getId())).isTrue();
+		Assertions.assertThat(service.obterSaldoPorUsuario(usuario.getId()).toBigDecimal()).isEqualByComparingTo("-93");
+	}
+
+	@Test
+	public void naoDeveDesviarOResumoComEdicaoConfirmadaDuranteAAtualizacaoEmLote() throws Exception {
+		TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Lancamento filtro = Lancamento.builder().usuario(usuario).ano(2020).status(StatusLancamento.PENDENTE).build();
+
+		// a edicao trava o lancamento ate o commit; a atualizacao em lote comeca antes dele
+		Future<Integer> lote = transacao.execute(status -> {
+			Lancamento editado = service.obterPorId(lancamentos.get(0).getId()).get();
+			editado.setStatus(StatusLancamento.EFETIVADO);
+			service.atualizar(editado);
+			Future<Integer> tarefa = executor.submit(() -> service.atualizarStatus(filtro, null, StatusLancamento.CANCELADO));
+			try {
+				TimeUnit.MILLISECONDS.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return tarefa;
+		});
+		executor.shutdown();
+
+		Assertions.assertThat(lote.get(10, TimeUnit.SECONDS)).isEqualTo(lancamentos.size() - 1);
+		Assertions.assertThat(repository.findById(lancamentos.get(0).getId()).get().getStatus())
+				.isEqualTo(StatusLancamento.EFETIVADO);
+		verificarResumoMensal();
+	}
+
+	// o resumo mantido incrementalmente deve coincidir com o recalculado a partir dos lancamentos
+	private void verificarResumoMensal() {
+		List<ResumoMensal> mantido = new ArrayList<>(resumoMensalService.obterResumoAnual(usuario.getId(), 2020));
+		mantido.removeIf(r -> r.getQuantidade() == 0);
+		List<ResumoMensal> calculado = repository.obterResumosMensaisPorUsuario(usuario.getId());
+
+		Assertions.assertThat(mantido).usingElementComparatorOnFields("id", "quantidade")
+				.containsExactlyInAnyOrderElementsOf(calculado);
+		for (ResumoMensal resumo : calculado) {
+			BigDecimal total = mantido.stream().filter(r -> r.getId().equals(resumo.getId())).findFirst().get().getTotal();
+			Assertions.assertThat(total).isEqualByComparingTo(resumo.getTotal());
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.epierre.minhasfinancas.service;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.FormatoExportacao;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepositoryTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureTestEntityManager
+@Transactional
+@ActiveProfiles("h2")
+public class LancamentoServiceExportacaoTest {
+
+	@Autowired
+	LancamentoService service;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = entityManager.persist(UsuarioRepositoryTest.criarUsuario());
+		persistir(2020, 2, "aluguel, condominio", TipoLancamento.DESPESA);
+		persistir(2020, 1, "salario \"janeiro\"", TipoLancamento.RECEITA);
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	public void deveExportarEmCsvOrdenadoPorAnoEMes() {
+		String csv = exportar(FormatoExportacao.CSV);
+
+		String[] linhas = csv.split("\n");
+		Assertions.assertThat(linhas).hasSize(3);
+		Assertions.assertThat(linhas[0]).isEqualTo("id,descricao,mes,ano,valor,usuario,tipo,status,data_cadastro");
+		Assertions.assertThat(linhas[1]).contains(",\"salario \"\"janeiro\"\"\",1,2020,10.00,");
+		Assertions.assertThat(linhas[2]).contains(",\"aluguel, condominio\",2,2020,10.00," + usuario.getId() + ",DESPESA,PENDENTE,2020-01-10");
+	}
+
+	@Test
+	public void deveExportarUmObjetoJsonPorLinha() throws Exception {
+		String ndjson = exportar(FormatoExportacao.NDJSON);
+
+		String[] linhas = ndjson.split("\n");
+		Assertions.assertThat(linhas).hasSize(2);
+		JsonNode primeira = new ObjectMapper().readTree(linhas[0]);
+		Assertions.assertThat(primeira.get("descricao").asText()).isEqualTo("salario \"janeiro\"");
+		Assertions.assertThat(primeira.get("usuario").asLong()).isEqualTo(usuario.getId());
+		Assertions.assertThat(primeira.get("tipo").asText()).isEqualTo("RECEITA");
+	}
+
+	private String exportar(FormatoExportacao formato) {
+		ByteArrayOutputStream saida = new ByteArrayOutputStream();
+		service.exportar(usuario.getId(), formato, saida);
+		return new String(saida.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void persistir(int ano, int mes, String descricao, TipoLancamento tipo) {
+		entityManager.persist(Lancamento.builder()
+				.descricao(descricao)
+				.ano(ano)
+				.mes(mes)
+				.valor(BigDecimal.TEN)
+				.tipo(tipo)
+				.status(StatusLancamento.PENDENTE)
+				.dataCadastro(LocalDate.of(2020, 1, 10))
+				.usuario(usuario)
+				.build());
+	}
+
+}
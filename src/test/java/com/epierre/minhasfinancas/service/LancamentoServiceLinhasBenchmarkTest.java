@@ -0,0 +1,114 @@
+package com.epierre.minhasfinancas.service;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.epierre.minhasfinancas.Medicao;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+@Category(Medicao.class)
+public class LancamentoServiceLinhasBenchmarkTest {
+
+	private static final int LANCAMENTOS = 2000;
+
+	@Autowired
+	LancamentoService service;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.senha("senha")
+				.build());
+		for (int i = 0; i < LANCAMENTOS; i++) {
+			service.salvar(Lancamento.builder()
+					.descricao("lancamento " + i)
+					.mes(i % 12 + 1)
+					.ano(2020)
+					.valor(BigDecimal.valueOf(i + 1))
+					.tipo(TipoLancamento.DESPESA)
+					.usuario(usuario)
+					.build());
+		}
+	}
+
+	@Test
+	public void deveReduzirBytesEAlocacaoPorLinha() throws Exception {
+		Lancamento filtro = Lancamento.builder().usuario(usuario).build();
+		ObjectWriter escritor = objectMapper.writer(new SimpleFilterProvider()
+				.addFilter(LancamentoLinha.FILTRO_CAMPOS, SimpleBeanPropertyFilter.serializeAll()));
+		TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+		// as entidades sao serializadas dentro da transacao, como faria o open-in-view ao carregar o usuario
+		Supplier<byte[]> entidades = () -> transacao.execute(t -> serializar(escritor, service.buscar(filtro, null, LANCAMENTOS)));
+		Supplier<byte[]> linhas = () -> serializar(escritor, service.buscarLinhas(filtro, null, LANCAMENTOS));
+
+		for (int aquecimento = 0; aquecimento < 5; aquecimento++) {
+			entidades.get();
+			linhas.get();
+		}
+		long alocadoEntidades = alocado(entidades);
+		long alocadoLinhas = alocado(linhas);
+		int bytesEntidades = entidades.get().length;
+		int bytesLinhas = linhas.get().length;
+
+		System.out.printf("por linha: entidades %d bytes de JSON e %d bytes alocados; linhas %d bytes de JSON e %d bytes alocados%n",
+				bytesEntidades / LANCAMENTOS, alocadoEntidades / LANCAMENTOS, bytesLinhas / LANCAMENTOS,
+				alocadoLinhas / LANCAMENTOS);
+		Assertions.assertThat(bytesLinhas).isLessThan(bytesEntidades);
+		Assertions.assertThat(alocadoLinhas).isLessThan(alocadoEntidades);
+		Assertions.assertThat(new String(linhas.get(), "UTF-8")).doesNotContain("senha");
+	}
+
+	private static byte[] serializar(ObjectWriter escritor, Object valor) {
+		try {
+			return escritor.writeValueAsBytes(valor);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static long alocado(Supplier<byte[]> consulta) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long antes = threads.getThreadAllocatedBytes(thread);
+		consulta.get();
+		return threads.getThreadAllocatedBytes(thread) - antes;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class LancamentoServiceLinhasTest {
+
+	private static final int LANCAMENTOS = 200;
+
+	@Autowired
+	LancamentoService service;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.senha("senha")
+				.build());
+		for (int i = 0; i < LANCAMENTOS; i++) {
+			service.salvar(Lancamento.builder()
+					.descricao(i % 10 == 0 ? "conta de luz " + i : "lancamento " + i)
+					.mes(i % 12 + 1)
+					.ano(2020)
+					.valor(BigDecimal.valueOf(i + 1))
+					.tipo(TipoLancamento.DESPESA)
+					.usuario(usuario)
+					.build());
+		}
+	}
+
+	@Test
+	public void deveDevolverAsMesmasLinhasQueAsEntidades() {
+		Lancamento filtro = Lancamento.builder().usuario(usuario).mes(3).build();
+		Assertions.assertThat(service.buscarLinhas(filtro, null, 50)).extracting(LancamentoLinha::getId)
+				.containsExactlyElementsOf(ids(service.buscar(filtro, null, 50)));
+
+		Lancamento posicao = Lancamento.builder().ano(2020).mes(3).id(service.buscar(filtro, null, 10).get(9).getId()).build();
+		Assertions.assertThat(service.buscarLinhas(filtro, posicao, 20)).extracting(LancamentoLinha::getId)
+				.containsExactlyElementsOf(ids(service.buscar(filtro, posicao, 20)));
+
+		// com descricao os ids vem do indice, na ordem dele
+		Lancamento porDescricao = Lancamento.builder().usuario(usuario).descricao("luz").build();
+		List<LancamentoLinha> linhas = service.buscarLinhas(porDescricao);
+		Assertions.assertThat(linhas).hasSize(LANCAMENTOS / 10).extracting(LancamentoLinha::getUsuario)
+				.containsOnly(usuario.getId());
+		Assertions.assertThat(linhas).extracting(LancamentoLinha::getId).containsExactlyElementsOf(ids(service.buscar(porDescricao)));
+	}
+
+	private static List<Long> ids(List<Lancamento> lancamentos) {
+		List<Long> ids = new ArrayList<>();
+		lancamentos.forEach(l -> ids.add(l.getId()));
+		return ids;
+	}
+
+}
@@ -5,6 +5,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import javax.sql.DataSource;
+
 import org.assertj.core.api.Assertions;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,6 +15,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.data.domain.Example;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import com.epierre.minhasfinancas.exception.RegraNegocioException;
 import com.epierre.minhasfinancas.model.entity.Lancamento;
@@ -20,6 +23,7 @@ import com.epierre.minhasfinancas.model.entity.Usuario;
 import com.epierre.minhasfinancas.model.enums.StatusLancamento;
 import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
 import com.epierre.minhasfinancas.model.repository.LancamentoRepositoryTest;
+import com.epierre.minhasfinancas.model.repository.Shards;
 import com.epierre.minhasfinancas.service.impl.LancamentoServiceImpl;
 
 @RunWith(SpringRunner.class)
@@ -29,6 +33,18 @@ public class LancamentoServiceTest {
 	LancamentoServiceImpl service;
 	@MockBean
 	LancamentoRepository repository;
+	@MockBean
+	SaldoUsuarioService saldoUsuarioService;
+	@MockBean
+	ResumoMensalService resumoMensalService;
+	@MockBean
+	BuscaDescricaoService buscaDescricaoService;
+	@MockBean
+	PlatformTransactionManager transactionManager;
+	@MockBean
+	DataSource dataSource;
+	@SpyBean
+	Shards shards;
 	
 	@Test
 	public void deveSalvarUmLancamento () {
@@ -0,0 +1,132 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.epierre.minhasfinancas.exception.RegraNegocioException;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.Recorrencia;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.RecorrenciaRepository;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.projection.LancamentoLinha;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "minhasfinancas.recorrencia.meses-antecedencia=3")
+@ActiveProfiles("h2")
+public class RecorrenciaServiceTest {
+
+	@Autowired
+	RecorrenciaService service;
+
+	@Autowired
+	LancamentoService lancamentoService;
+
+	@Autowired
+	RecorrenciaRepository repository;
+
+	@Autowired
+	UsuarioRepository usuarioRepository;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = usuarioRepository.save(Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.build());
+	}
+
+	@Test
+	public void deveGerarTodasAsParcelasEmUmaTransacao() {
+		Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		long transacoes = estatisticas.getSuccessfulTransactionCount();
+
+		Recorrencia recorrencia = service.criar(criarRecorrencia(2020, 11, 48, true));
+
+		Assertions.assertThat(estatisticas.getSuccessfulTransactionCount() - transacoes).isEqualTo(1);
+		Assertions.assertThat(recorrencia.getGeradas()).isEqualTo(48);
+		Assertions.assertThat(recorrencia.encerrada()).isTrue();
+
+		List<LancamentoLinha> linhas = lancamentoService.buscarLinhas(Lancamento.builder().usuario(usuario).build());
+		Assertions.assertThat(linhas).hasSize(48);
+		Assertions.assertThat(linhas.get(0).getDescricao()).isEqualTo("notebook (1/48)");
+		Assertions.assertThat(linhas.get(2).getDescricao()).isEqualTo("notebook (3/48)");
+		Assertions.assertThat(linhas.get(2).getAno()).isEqualTo(2021);
+		Assertions.assertThat(linhas.get(2).getMes()).isEqualTo(1);
+		Assertions.assertThat(linhas.get(47).getAno()).isEqualTo(2024);
+		Assertions.assertThat(linhas.get(47).getMes()).isEqualTo(10);
+		Assertions.assertThat(lancamentoService.obterSaldoPorUsuario(usuario.getId()).toBigDecimal())
+				.isEqualByComparingTo("-4800");
+	}
+
+	@Test
+	public void deveMaterializarAsRegrasSemFimAteAAntecedencia() {
+		YearMonth inicio = YearMonth.now().minusMonths(2);
+		Recorrencia recorrencia = service.criar(criarRecorrencia(inicio.getYear(), inicio.getMonthValue(), null, false));
+
+		// do mes inicial ao terceiro mes a frente do atual
+		Assertions.assertThat(recorrencia.getGeradas()).isEqualTo(6);
+		Assertions.assertThat(recorrencia.encerrada()).isFalse();
+
+		// regra que o materializador ainda nao alcancou
+		Recorrencia atrasada = repository.save(Recorrencia.builder()
+				.idUsuario(usuario.getId())
+				.descricao("aluguel")
+				.valor(BigDecimal.valueOf(100))
+				.tipo(TipoLancamento.DESPESA)
+				.mesInicial(inicio.getMonthValue())
+				.anoInicial(inicio.getYear())
+				.proximaCompetencia(Recorrencia.competencia(inicio.getYear(), inicio.getMonthValue()))
+				.build());
+
+		Assertions.assertThat(service.materializar()).isEqualTo(6);
+		Assertions.assertThat(service.materializar()).isZero();
+		Assertions.assertThat(repository.findById(atrasada.getId()).get().getGeradas()).isEqualTo(6);
+		Assertions.assertThat(lancamentoService.buscarLinhas(Lancamento.builder().usuario(usuario).build())).hasSize(12);
+	}
+
+	@Test
+	public void naoDeveCriarRecorrenciaInvalida() {
+		Throwable erro = Assertions.catchThrowable(() -> service.criar(criarRecorrencia(2020, 1, 0, true)));
+		Assertions.assertThat(erro).isInstanceOf(RegraNegocioException.class);
+
+		erro = Assertions.catchThrowable(() -> service.criar(criarRecorrencia(2020, 13, 12, true)));
+		Assertions.assertThat(erro).isInstanceOf(RegraNegocioException.class);
+
+		Assertions.assertThat(lancamentoService.buscarLinhas(Lancamento.builder().usuario(usuario).build())).isEmpty();
+	}
+
+	private Recorrencia criarRecorrencia(int ano, int mes, Integer quantidade, boolean parcelada) {
+		return Recorrencia.builder()
+				.idUsuario(usuario.getId())
+				.descricao(parcelada ? "notebook" : "aluguel")
+				.valor(BigDecimal.valueOf(100))
+				.tipo(TipoLancamento.DESPESA)
+				.mesInicial(mes)
+				.anoInicial(ano)
+				.quantidade(quantidade)
+				.parcelada(parcelada)
+				.build();
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.ResumoMensal;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.enums.StatusLancamento;
+import com.epierre.minhasfinancas.model.enums.TipoLancamento;
+import com.epierre.minhasfinancas.model.repository.UsuarioRepositoryTest;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureTestEntityManager
+@Transactional
+@ActiveProfiles("h2")
+public class ResumoMensalServiceTest {
+
+	@Autowired
+	LancamentoService lancamentoService;
+
+	@Autowired
+	ResumoMensalService service;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	Usuario usuario;
+
+	@Before
+	public void setUp() {
+		usuario = entityManager.persist(UsuarioRepositoryTest.criarUsuario());
+	}
+
+	@Test
+	public void deveMaterializarOsLancamentosExistentesNaPrimeiraLeitura() {
+		// gravados direto, sem passar pelo servico
+		persistir(1, TipoLancamento.DESPESA, StatusLancamento.PENDENTE, 10);
+		persistir(1, TipoLancamento.DESPESA, StatusLancamento.PENDENTE, 15);
+		persistir(2, TipoLancamento.RECEITA, StatusLancamento.EFETIVADO, 100);
+		entityManager.flush();
+
+		List<ResumoMensal> resumos = service.obterResumoAnual(usuario.getId(), 2020);
+
+		Assertions.assertThat(resumos).hasSize(2);
+		Assertions.assertThat(resumos.get(0).getId().getMes()).isEqualTo(1);
+		Assertions.assertThat(resumos.get(0).getTotal()).isEqualByComparingTo(BigDecimal.valueOf(25));
+		Assertions.assertThat(resumos.get(0).getQuantidade()).isEqualTo(2);
+		Assertions.assertThat(resumos.get(1).getId().getTipo()).isEqualTo(TipoLancamento.RECEITA);
+	}
+
+	@Test
+	public void deveAcompanharInclusaoMudancaDeStatusEExclusao() {
+		persistir(3, TipoLancamento.DESPESA, StatusLancamento.PENDENTE, 40);
+		entityManager.flush();
+
+		Lancamento lancamento = lancamentoService.salvar(criarLancamento(3, TipoLancamento.DESPESA, 60));
+		Assertions.assertThat(total(3, StatusLancamento.PENDENTE)).isEqualByComparingTo(BigDecimal.valueOf(100));
+
+		lancamento = lancamentoService.atualizarStatus(lancamento, StatusLancamento.EFETIVADO);
+		Assertions.assertThat(total(3, StatusLancamento.PENDENTE)).isEqualByComparingTo(BigDecimal.valueOf(40));
+		Assertions.assertThat(total(3, StatusLancamento.EFETIVADO)).isEqualByComparingTo(BigDecimal.valueOf(60));
+
+		lancamentoService.deletar(lancamento);
+		Assertions.assertThat(total(3, StatusLancamento.EFETIVADO)).isEqualByComparingTo(BigDecimal.ZERO);
+	}
+
+	private BigDecimal total(int mes, StatusLancamento status) {
+		entityManager.flush();
+		entityManager.clear();
+		return service.obterResumoAnual(usuario.getId(), 2020).stream()
+				.filter(r -> r.getId().getMes() == mes && r.getId().getStatus() == status)
+				.map(ResumoMensal::getTotal)
+				.findFirst()
+				.orElse(BigDecimal.ZERO);
+	}
+
+	private void persistir(int mes, TipoLancamento tipo, StatusLancamento status, int valor) {
+		Lancamento lancamento = criarLancamento(mes, tipo, valor);
+		lancamento.setStatus(status);
+		entityManager.persist(lancamento);
+	}
+
+	private Lancamento criarLancamento(int mes, TipoLancamento tipo, int valor) {
+		return Lancamento.builder()
+				.descricao("lancamento")
+				.mes(mes)
+				.ano(2020)
+				.valor(BigDecimal.valueOf(valor))
+				.tipo(tipo)
+				.usuario(usuario)
+				.build();
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.epierre.minhasfinancas.service;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.epierre.minhasfinancas.model.entity.Dinheiro;
+import com.epierre.minhasfinancas.model.entity.Lancamento;
+import com.epierre.minhasfinancas.model.entity.SaldoUsuario;
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepository;
+import com.epierre.minhasfinancas.model.repository.LancamentoRepositoryTest;
+import com.epierre.minhasfinancas.model.repository.SaldoTransportadoRepository;
+import com.epierre.minhasfinancas.model.repository.SaldoUsuarioRepository;
+import com.epierre.minhasfinancas.model.repository.projection.ResumoSaldo;
+import com.epierre.minhasfinancas.service.impl.SaldoUsuarioServiceImpl;
+
+@RunWith(SpringRunner.class)
+public class SaldoUsuarioServiceTest {
+
+	@SpyBean
+	SaldoUsuarioServiceImpl service;
+	@MockBean
+	SaldoUsuarioRepository repository;
+	@MockBean
+	LancamentoRepository lancamentoRepository;
+	@MockBean
+	SaldoTransportadoRepository saldoTransportadoRepository;
+	@MockBean
+	PlatformTransactionManager transactionManager;
+
+	@Test
+	public void deveSomarOLancamentoAoSaldoMaterializado() {
+		//cenario
+		Lancamento lancamento = criarLancamentoDoUsuario(1l);
+		Mockito.when(repository.adicionar(1l, Dinheiro.deCentavos(1000), Dinheiro.ZERO)).thenReturn(1);
+
+		//execucao
+		service.registrarInclusao(lancamento);
+
+		//verificacao
+		Mockito.verify(repository).adicionar(1l, Dinheiro.deCentavos(1000), Dinheiro.ZERO);
+		Mockito.verify(repository, Mockito.never()).save(Mockito.any(SaldoUsuario.class));
+	}
+
+	@Test
+	public void deveCriarOSaldoAPartirDosLancamentosQuandoAindaNaoExistir() {
+		//cenario
+		Lancamento lancamento = criarLancamentoDoUsuario(1l);
+		Mockito.when(repository.adicionar(Mockito.anyLong(), Mockito.any(), Mockito.any())).thenReturn(0);
+		ResumoSaldo resumo = criarResumo(BigDecimal.valueOf(100), BigDecimal.valueOf(30));
+		Mockito.when(lancamentoRepository.obterResumoSaldoPorUsuario(1l)).thenReturn(resumo);
+
+		//execucao
+		service.registrarInclusao(lancamento);
+
+		//verificacao
+		ArgumentCaptor<SaldoUsuario> captor = ArgumentCaptor.forClass(SaldoUsuario.class);
+		Mockito.verify(repository).save(captor.capture());
+		Assertions.assertThat(captor.getValue().getIdUsuario()).isEqualTo(1l);
+		Assertions.assertThat(captor.getValue().getReceitas()).isEqualTo(Dinheiro.deCentavos(11000));
+		Assertions.assertThat(captor.getValue().getDespesas()).isEqualTo(Dinheiro.deCentavos(3000));
+	}
+
+	@Test
+	public void deveObterOSaldoMaterializadoSemConsultarOsLancamentos() {
+		//cenario
+		SaldoUsuario saldo = SaldoUsuario.builder().idUsuario(1l)
+				.receitas(Dinheiro.deCentavos(10000)).despesas(Dinheiro.deCentavos(4000)).build();
+		Mockito.when(repository.findById(1l)).thenReturn(Optional.of(saldo));
+
+		//execucao
+		Dinheiro resultado = service.obterSaldo(1l);
+
+		//verificacao
+		Assertions.assertThat(resultado).isEqualTo(Dinheiro.deCentavos(6000));
+		Mockito.verifyZeroInteractions(lancamentoRepository);
+	}
+
+	@Test
+	public void deveCalcularOSaldoQuandoAindaNaoMaterializado() {
+		//cenario
+		Mockito.when(repository.findById(1l)).thenReturn(Optional.empty());
+		ResumoSaldo resumo = criarResumo(BigDecimal.valueOf(100), BigDecimal.ZERO);
+		Mockito.when(lancamentoRepository.obterResumoSaldoPorUsuario(1l)).thenReturn(resumo);
+
+		//execucao
+		Dinheiro resultado = service.obterSaldo(1l);
+
+		//verificacao
+		Assertions.assertThat(resultado).isEqualTo(Dinheiro.deCentavos(10000));
+	}
+
+	@Test
+	public void deveReconstruirOSaldoQuandoEstiverInconsistente() {
+		//cenario
+		SaldoUsuario gravado = SaldoUsuario.builder().idUsuario(1l)
+				.receitas(Dinheiro.deCentavos(500)).despesas(Dinheiro.ZERO).versao(3l).build();
+		Mockito.when(repository.travar(1l)).thenReturn(Optional.of(gravado));
+		ResumoSaldo resumo = criarResumo(BigDecimal.valueOf(10), BigDecimal.ZERO);
+		Mockito.when(lancamentoRepository.obterResumoSaldoPorUsuario(1l)).thenReturn(resumo);
+
+		//execucao
+		boolean consistente = service.verificarConsistencia(1l);
+
+		//verificacao
+		Assertions.assertThat(consistente).isFalse();
+		ArgumentCaptor<SaldoUsuario> captor = ArgumentCaptor.forClass(SaldoUsuario.class);
+		Mockito.verify(repository).save(captor.capture());
+		Assertions.assertThat(captor.getValue().getReceitas()).isEqualTo(Dinheiro.deCentavos(1000));
+		Assertions.assertThat(captor.getValue().getVersao()).isEqualTo(4l);
+	}
+
+	private ResumoSaldo criarResumo(BigDecimal receitas, BigDecimal despesas) {
+		ResumoSaldo resumo = Mockito.mock(ResumoSaldo.class);
+		Mockito.when(resumo.getReceitas()).thenReturn(receitas);
+		Mockito.when(resumo.getDespesas()).thenReturn(despesas);
+		return resumo;
+	}
+
+	private Lancamento criarLancamentoDoUsuario(Long idUsuario) {
+		Lancamento lancamento = LancamentoRepositoryTest.criarLancamento();
+		lancamento.setUsuario(Usuario.builder().id(idUsuario).build());
+		return lancamento;
+	}
+
+}
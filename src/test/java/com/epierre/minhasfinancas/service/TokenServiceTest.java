@@ -0,0 +1,51 @@
+package com.epierre.minhasfinancas.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.service.impl.TokenServiceImpl;
+
+public class TokenServiceTest {
+
+	static final String CHAVE = "chave-de-teste-com-pelo-menos-32-bytes";
+
+	TokenService service = new TokenServiceImpl(CHAVE, 30);
+
+	@Test
+	public void deveObterOUsuarioDoTokenGerado() {
+		String token = service.gerarToken(Usuario.builder().id(7l).nome("usuario").build());
+
+		Assertions.assertThat(service.obterIdUsuario(token)).contains(7l);
+	}
+
+	@Test
+	public void deveRecusarTokenAlterado() {
+		String token = service.gerarToken(Usuario.builder().id(7l).build());
+		String alterado = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+		Assertions.assertThat(service.obterIdUsuario(alterado)).isEmpty();
+		Assertions.assertThat(service.obterIdUsuario("abc")).isEmpty();
+	}
+
+	@Test
+	public void deveRecusarTokenAssinadoComOutraChave() {
+		String token = new TokenServiceImpl("outra-chave-de-teste-com-mais-de-32-bytes", 30)
+				.gerarToken(Usuario.builder().id(7l).build());
+
+		Assertions.assertThat(service.obterIdUsuario(token)).isEmpty();
+	}
+
+	@Test
+	public void deveRecusarTokenExpirado() {
+		String token = new TokenServiceImpl(CHAVE, -1).gerarToken(Usuario.builder().id(7l).build());
+
+		Assertions.assertThat(service.obterIdUsuario(token)).isEmpty();
+	}
+
+	@Test
+	public void deveExigirAChaveConfigurada() {
+		Assertions.assertThatThrownBy(() -> new TokenServiceImpl("", 30)).isInstanceOf(IllegalStateException.class);
+	}
+
+}
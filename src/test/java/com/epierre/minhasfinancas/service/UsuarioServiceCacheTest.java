@@ -0,0 +1,91 @@
+package com.epierre.minhasfinancas.service;
+
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.epierre.minhasfinancas.model.entity.Usuario;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class UsuarioServiceCacheTest {
+
+	@Autowired
+	UsuarioService service;
+
+	@Autowired
+	CacheManager cacheManager;
+
+	@Autowired
+	MeterRegistry registry;
+
+	@Before
+	public void setUp() {
+		cacheManager.getCacheNames().forEach(nome -> cacheManager.getCache(nome).clear());
+	}
+
+	@Test
+	public void deveObterOUsuarioDoCacheAPartirDaSegundaConsulta() {
+		Usuario usuario = service.salvarUsuario(criarUsuario());
+		double acertos = contar("usuarios", "hit");
+		double faltas = contar("usuarios", "miss");
+
+		service.obterPorId(usuario.getId());
+		Optional<Usuario> encontrado = service.obterPorId(usuario.getId());
+
+		Assertions.assertThat(encontrado).isPresent();
+		Assertions.assertThat(encontrado.get().getEmail()).isEqualTo(usuario.getEmail());
+		Assertions.assertThat(contar("usuarios", "miss") - faltas).isEqualTo(1);
+		Assertions.assertThat(contar("usuarios", "hit") - acertos).isEqualTo(1);
+	}
+
+	@Test
+	public void naoDeveGuardarUsuarioInexistente() {
+		Assertions.assertThat(service.obterPorId(Long.MAX_VALUE)).isNotPresent();
+		Assertions.assertThat(cacheManager.getCache("usuarios").get(Long.MAX_VALUE)).isNull();
+	}
+
+	@Test
+	public void deveAutenticarPeloCacheDeEmail() {
+		Usuario usuario = service.salvarUsuario(criarUsuario());
+
+		service.autenticar(usuario.getEmail(), "senha");
+
+		Assertions.assertThat(cacheManager.getCache("usuariosPorEmail").get(usuario.getEmail())).isNotNull();
+		Assertions.assertThat(service.autenticar(usuario.getEmail(), "senha").getId()).isEqualTo(usuario.getId());
+	}
+
+	@Test
+	public void deveInvalidarOCacheAoSalvarUsuario() {
+		Usuario usuario = criarUsuario();
+		cacheManager.getCache("usuariosPorEmail").put(usuario.getEmail(), Usuario.builder().id(-1l).build());
+
+		service.salvarUsuario(usuario);
+
+		Assertions.assertThat(cacheManager.getCache("usuariosPorEmail").get(usuario.getEmail())).isNull();
+	}
+
+	private double contar(String cache, String resultado) {
+		return registry.get("cache.gets").tag("cache", cache).tag("result", resultado).functionCounter().count();
+	}
+
+	private static Usuario criarUsuario() {
+		return Usuario.builder()
+				.nome("usuario")
+				.email(System.nanoTime() + "@email.com")
+				.senha("senha")
+				.build();
+	}
+
+}
@@ -2,6 +2,8 @@ package com.epierre.minhasfinancas.service;
 
 import java.util.Optional;
 
+import javax.sql.DataSource;
+
 import org.assertj.core.api.Assertions;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -16,6 +18,7 @@ import com.epierre.minhasfinancas.exception.ErroAutenticacao;
 import com.epierre.minhasfinancas.exception.RegraNegocioException;
 //import com.epierre.minhasfinancas.exception.RegraNegocioException;
 import com.epierre.minhasfinancas.model.entity.Usuario;
+import com.epierre.minhasfinancas.model.repository.Shards;
 import com.epierre.minhasfinancas.model.repository.UsuarioRepository;
 import com.epierre.minhasfinancas.service.impl.UsuarioServiceImpl;
 
@@ -29,6 +32,12 @@ public class UsuarioServiceTest {
 	@MockBean
 	UsuarioRepository repository;
 
+	@MockBean
+	DataSource dataSource;
+
+	@SpyBean
+	Shards shards;
+
 	@Test(expected = Test.None.class)
 	public void deveSalvarUmUsuario() {
 		//cenário
@@ -40,6 +49,7 @@ public class UsuarioServiceTest {
 					.senha("senha").build();
 
 		Mockito.when(repository.save(Mockito.any(Usuario.class))).thenReturn(usuario);
+		Mockito.doNothing().when(shards).registrarUsuario(usuario);
 
 		//acao
 		Usuario usuarioSalvo = service.salvarUsuario(new Usuario());